@@ -13,18 +13,30 @@
  */
 package de.cau.cs.kieler.papyrus.sequence;
 
+import java.io.Reader;
+import java.io.Writer;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 
 import org.eclipse.elk.alg.layered.graph.LGraph;
 import org.eclipse.elk.core.klayoutdata.KLayoutData;
 import org.eclipse.elk.graph.KNode;
 
+import com.google.common.base.Function;
+import com.google.common.collect.Maps;
+
 import de.cau.cs.kieler.papyrus.sequence.graph.SGraph;
 import de.cau.cs.kieler.papyrus.sequence.graph.SLifeline;
+import de.cau.cs.kieler.papyrus.sequence.p3layering.LayeringStrategy;
+import de.cau.cs.kieler.papyrus.sequence.p4sorting.LifelineGraph;
 import de.cau.cs.kieler.papyrus.sequence.p4sorting.LifelineSortingStrategy;
 import de.cau.cs.kieler.papyrus.sequence.properties.CoordinateSystem;
 import de.cau.cs.kieler.papyrus.sequence.properties.LabelAlignment;
+import de.cau.cs.kieler.papyrus.sequence.properties.LayoutQuality;
+import de.cau.cs.kieler.papyrus.sequence.properties.RenderFormat;
 import de.cau.cs.kieler.papyrus.sequence.properties.SequenceDiagramOptions;
+import de.cau.cs.kieler.papyrus.sequence.properties.TraceFormat;
 
 /**
  * A simple data holder class used to pass data about the layout process around to the different phases
@@ -32,7 +44,7 @@ import de.cau.cs.kieler.papyrus.sequence.properties.SequenceDiagramOptions;
  * 
  * @author cds
  */
-public final class LayoutContext {
+public final class LayoutContext implements Cloneable {
     // CHECKSTYLEOFF VisibilityModifier
     
     // Layout Graphs
@@ -43,8 +55,16 @@ public final class LayoutContext {
     public SGraph sgraph;
     /** The {@link LGraph} created from the SGraph. */
     public LGraph lgraph;
+    /** The communication graph between the lifelines, once a lifeline sorter has created it. */
+    public LifelineGraph lifelineGraph;
     /** The order of lifelines as determined later in the algorithm. */
     public List<SLifeline> lifelineOrder;
+    /** The lifelines indexed by their horizontal slot, which is also their index in the order. */
+    public SLifeline[] lifelinesBySlot;
+    /** Whether a windowed trace layout has events left for another window after the current one. */
+    public boolean traceWindowPending;
+    /** The index of the window currently laid out if traces are laid out in windows. */
+    public int traceWindowIndex;
     
     
     // Layout Settings
@@ -67,15 +87,62 @@ public final class LayoutContext {
     public double containmentOffset;
     /** The label alignment strategy. */
     public LabelAlignment labelAlignment;
+    /** The quality of the computed layout. */
+    public LayoutQuality quality;
+    /** The strategy used to assign messages to layers. */
+    public LayeringStrategy layeringStrategy;
+    /** Maximum number of nodes the automatic layering strategy uses network simplex for. */
+    public int autoLayeringNodeLimit;
+    /** Maximum number of network simplex iterations to improve automatic longest path layerings. */
+    public int autoLayeringIterations;
+    /** Whether to start network simplex layering from the layering of the previous layout run. */
+    public boolean layeringWarmStart;
+    /** Number of threads parallel phases of the algorithm use, or 0 for all processors. */
+    public int layeringThreads;
+    /** The pool parallel phases run their tasks in, shared by layout runs with the same threads. */
+    public ForkJoinPool threadPool;
+    /** Whether the messages of areas are laid out separately from the rest of the diagram. */
+    public boolean layerAreasSeparately;
     /** The lifeline sorting strategy. */
     public LifelineSortingStrategy sortingStrategy;
     /** Whether to include areas in the lifeline sorting process. Used by some sorters. */
     public boolean groupAreasWhenSorting;
+    /** Number of starting orders the sifting lifeline sorter optimizes. */
+    public int siftingStarts;
+    /** Time limit of the sifting lifeline sorter in milliseconds, or 0 for no limit. */
+    public int siftingTimeLimit;
+    /** Time limit of the optimal lifeline sorter in milliseconds, or 0 for no limit. */
+    public int optimalSortingTimeLimit;
+    /** Number of lifeline orders to remember across layout runs, or 0 to disable the cache. */
+    public int lifelineOrderCacheSize;
+    /** Number of lifelines above which lifelines are sorted in clusters, or 0 to disable clustering. */
+    public int lifelineClusteringThreshold;
     /** The coordinate system to use. */
     public CoordinateSystem coordinateSystem;
+    /** Whether to only write coordinates back to the graph that have changed. */
+    public boolean deltaExport;
+    /** The amount by which a coordinate has to change to be written back in delta export mode. */
+    public double deltaExportEpsilon;
+    /** The writer to render the layout results to instead of applying them, if any. */
+    public Writer renderTarget;
+    /** The format to render the layout results in. */
+    public RenderFormat renderFormat;
+    /** The reader to import the interaction from instead of the KGraph, if any. */
+    public Reader traceSource;
+    /** The format of the trace the interaction is imported from. */
+    public TraceFormat traceFormat;
+    /** The number of message layers per window if traces are laid out in windows, or 0. */
+    public int traceWindowSize;
+    /** Provides the writer each window of a windowed trace is rendered to, if any. */
+    public Function<Integer, Writer> traceWindowTargets;
+    /** Whether to apply a draft layout first and compute a refined layout in the background. */
+    public boolean progressiveLayout;
     
     // CHECKSTYLEON VisibilityModifier
     
+    /** The pools created so far, by their number of threads. */
+    private static final Map<Integer, ForkJoinPool> THREAD_POOLS = Maps.newHashMap();
+    
     
     /**
      * Use {@link #fromLayoutData(KLayoutData)} to obtain a new instance.
@@ -111,11 +178,80 @@ public final class LayoutContext {
         context.containmentOffset = layoutData.getProperty(
                 SequenceDiagramOptions.CONTAINMENT_OFFSET);
         context.labelAlignment = layoutData.getProperty(SequenceDiagramOptions.LABEL_ALIGNMENT);
+        context.quality = layoutData.getProperty(SequenceDiagramOptions.LAYOUT_QUALITY);
+        context.layeringStrategy = layoutData.getProperty(SequenceDiagramOptions.LAYERING_STRATEGY);
+        context.autoLayeringNodeLimit = layoutData.getProperty(
+                SequenceDiagramOptions.AUTO_LAYERING_NODE_LIMIT);
+        context.autoLayeringIterations = layoutData.getProperty(
+                SequenceDiagramOptions.AUTO_LAYERING_ITERATIONS);
+        context.layeringWarmStart = layoutData.getProperty(SequenceDiagramOptions.LAYERING_WARM_START);
+        context.layeringThreads = layoutData.getProperty(SequenceDiagramOptions.LAYERING_THREADS);
+        context.threadPool = threadPool(context.layeringThreads);
+        context.layerAreasSeparately = layoutData.getProperty(
+                SequenceDiagramOptions.LAYER_AREAS_SEPARATELY);
         context.sortingStrategy = layoutData.getProperty(
                 SequenceDiagramOptions.LIFELINE_SORTING_STRATEGY);
         context.groupAreasWhenSorting = layoutData.getProperty(SequenceDiagramOptions.GROUP_AREAS);
+        context.siftingStarts = layoutData.getProperty(SequenceDiagramOptions.SIFTING_STARTS);
+        context.siftingTimeLimit = layoutData.getProperty(SequenceDiagramOptions.SIFTING_TIME_LIMIT);
+        context.optimalSortingTimeLimit = layoutData.getProperty(
+                SequenceDiagramOptions.OPTIMAL_SORTING_TIME_LIMIT);
+        context.lifelineOrderCacheSize = layoutData.getProperty(
+                SequenceDiagramOptions.LIFELINE_ORDER_CACHE_SIZE);
+        context.lifelineClusteringThreshold = layoutData.getProperty(
+                SequenceDiagramOptions.LIFELINE_CLUSTERING_THRESHOLD);
         context.coordinateSystem = layoutData.getProperty(SequenceDiagramOptions.COORDINATE_SYSTEM);
+        context.deltaExport = layoutData.getProperty(SequenceDiagramOptions.DELTA_EXPORT);
+        context.deltaExportEpsilon = layoutData.getProperty(
+                SequenceDiagramOptions.DELTA_EXPORT_EPSILON);
+        context.renderTarget = layoutData.getProperty(SequenceDiagramOptions.RENDER_TARGET);
+        context.renderFormat = layoutData.getProperty(SequenceDiagramOptions.RENDER_FORMAT);
+        context.traceSource = layoutData.getProperty(SequenceDiagramOptions.TRACE_SOURCE);
+        context.traceFormat = layoutData.getProperty(SequenceDiagramOptions.TRACE_FORMAT);
+        context.traceWindowSize = layoutData.getProperty(SequenceDiagramOptions.TRACE_WINDOW_SIZE);
+        context.traceWindowTargets = layoutData.getProperty(
+                SequenceDiagramOptions.TRACE_WINDOW_TARGETS);
+        context.progressiveLayout = layoutData.getProperty(
+                SequenceDiagramOptions.PROGRESSIVE_LAYOUT);
         
         return context;
     }
+    
+    /**
+     * Returns the pool with the given number of threads. Pools are created once and kept for later
+     * layout runs, since starting their threads anew for every run would cost more than parallelism
+     * saves on interactive layouts. Their threads are daemons, so the pools are never shut down.
+     * 
+     * @param threads
+     *            the number of threads, or 0 for as many threads as there are processors.
+     * @return the pool.
+     */
+    private static synchronized ForkJoinPool threadPool(final int threads) {
+        if (threads <= 0) {
+            return ForkJoinPool.commonPool();
+        }
+        
+        ForkJoinPool pool = THREAD_POOLS.get(threads);
+        if (pool == null) {
+            pool = new ForkJoinPool(threads);
+            THREAD_POOLS.put(threads, pool);
+        }
+        return pool;
+    }
+    
+    /**
+     * Creates a shallow copy of this context. The copy refers to the same graphs and has the same
+     * settings, but assigning its fields doesn't affect this context. Used to run parts of the
+     * algorithm on derived graphs.
+     * 
+     * @return the copy.
+     */
+    public LayoutContext copy() {
+        try {
+            return (LayoutContext) clone();
+        } catch (CloneNotSupportedException e) {
+            // Can't happen since we implement Cloneable
+            throw new IllegalStateException(e);
+        }
+    }
 }
\ No newline at end of file
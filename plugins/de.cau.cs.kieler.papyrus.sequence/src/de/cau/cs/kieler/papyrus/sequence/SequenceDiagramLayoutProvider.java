@@ -14,26 +14,45 @@
 package de.cau.cs.kieler.papyrus.sequence;
 
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import org.eclipse.elk.core.AbstractLayoutProvider;
 import org.eclipse.elk.core.UnsupportedGraphException;
+import org.eclipse.elk.core.klayoutdata.KShapeLayout;
+import org.eclipse.elk.core.util.BasicProgressMonitor;
 import org.eclipse.elk.core.util.IElkProgressMonitor;
 import org.eclipse.elk.graph.KNode;
+import org.eclipse.emf.ecore.util.EcoreUtil.Copier;
 
 import com.google.common.collect.Lists;
 
 import de.cau.cs.kieler.papyrus.sequence.p0import.KGraphImporter;
 import de.cau.cs.kieler.papyrus.sequence.p0import.PapyrusImporter;
+import de.cau.cs.kieler.papyrus.sequence.p0import.TraceImporter;
 import de.cau.cs.kieler.papyrus.sequence.p1allocation.SpaceAllocator;
 import de.cau.cs.kieler.papyrus.sequence.p2cycles.SCycleBreaker;
+import de.cau.cs.kieler.papyrus.sequence.p3layering.LayeringStrategy;
 import de.cau.cs.kieler.papyrus.sequence.p3layering.MessageLayerer;
+import de.cau.cs.kieler.papyrus.sequence.p4sorting.CachingLifelineSorter;
+import de.cau.cs.kieler.papyrus.sequence.p4sorting.ClusteringLifelineSorter;
 import de.cau.cs.kieler.papyrus.sequence.p4sorting.InteractiveLifelineSorter;
 import de.cau.cs.kieler.papyrus.sequence.p4sorting.LayerBasedLifelineSorter;
-import de.cau.cs.kieler.papyrus.sequence.p4sorting.ShortMessageLifelineSorter;
+import de.cau.cs.kieler.papyrus.sequence.p4sorting.LifelineSortingStrategy;
 import de.cau.cs.kieler.papyrus.sequence.p5coordinates.KGraphCoordinateCalculator;
 import de.cau.cs.kieler.papyrus.sequence.p5coordinates.PapyrusCoordinateCalculator;
+import de.cau.cs.kieler.papyrus.sequence.p5coordinates.TraceWindowCoordinateCalculator;
 import de.cau.cs.kieler.papyrus.sequence.p6export.KGraphExporter;
 import de.cau.cs.kieler.papyrus.sequence.p6export.PapyrusExporter;
+import de.cau.cs.kieler.papyrus.sequence.p6export.RefinedLayout;
+import de.cau.cs.kieler.papyrus.sequence.p6export.SGraphRenderer;
+import de.cau.cs.kieler.papyrus.sequence.p6export.TraceRenderer;
+import de.cau.cs.kieler.papyrus.sequence.properties.CoordinateSystem;
+import de.cau.cs.kieler.papyrus.sequence.properties.RenderFormat;
+import de.cau.cs.kieler.papyrus.sequence.properties.SequenceDiagramOptions;
 
 /**
  * Layout algorithm for Papyrus sequence diagrams.
@@ -47,6 +66,17 @@ public final class SequenceDiagramLayoutProvider extends AbstractLayoutProvider
     /** The layout provider's ID. */
     public static final String ID = "de.cau.cs.kieler.papyrus.sequence.layout";
     
+    /** Executor that computes the refined layouts of progressive layout runs, one after another. */
+    private static final ExecutorService REFINEMENT_EXECUTOR = Executors.newSingleThreadExecutor(
+            new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable runnable) {
+                    Thread thread = new Thread(runnable, "Sequence Diagram Layout Refinement");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+    
 
     @Override
     public void layout(final KNode parentNode, final IElkProgressMonitor progressMonitor) {
@@ -58,19 +88,120 @@ public final class SequenceDiagramLayoutProvider extends AbstractLayoutProvider
         
         // Initialize our layout context
         LayoutContext context = LayoutContext.fromLayoutData(parentNode);
+        
+        // Traces are imported without a KGraph, so their layout can only be rendered
+        if (context.traceSource != null && (context.renderTarget == null
+                || context.coordinateSystem == CoordinateSystem.PAPYRUS)) {
+            
+            throw new UnsupportedGraphException(
+                    "Traces can only be laid out in KGraph mode and with a render target.");
+        }
+        
+        // Windows are rendered as diagrams of their own, which can only share a target in JSON
+        boolean windowed = context.traceSource != null && context.traceWindowSize > 0;
+        if (windowed && context.traceWindowTargets == null
+                && context.renderFormat != RenderFormat.JSON) {
+            
+            throw new UnsupportedGraphException(
+                    "Windowed traces need window targets unless they are rendered as JSON.");
+        }
+        
+        // Progressive layouts apply a quick draft and compute the refined layout in the background,
+        // which only works if the results are applied to a KGraph
+        boolean progressive = context.progressiveLayout
+                && context.coordinateSystem != CoordinateSystem.PAPYRUS
+                && context.traceSource == null && context.renderTarget == null;
+        if (progressive) {
+            context.sortingStrategy = LifelineSortingStrategy.INTERACTIVE;
+            context.layeringStrategy = LayeringStrategy.COORDINATE_ORDER;
+        }
 
         // Assemble and execute the algorithm
         List<ISequenceLayoutProcessor> algorithm = assembleLayoutProcessors(context);
         
-        progressMonitor.begin("Sequence Diagram Layouter", algorithm.size());
+        if (windowed) {
+            // Traces laid out in windows run the algorithm once per window; the importer remembers
+            // where the previous window ended. The number of windows isn't known in advance, so
+            // each window gets a subtask of its own that doesn't count towards the overall progress
+            progressMonitor.begin("Sequence Diagram Layouter", 1);
+            
+            context.traceWindowIndex = 0;
+            do {
+                IElkProgressMonitor windowMonitor = progressMonitor.subTask(0);
+                windowMonitor.begin("Window " + context.traceWindowIndex, algorithm.size());
+                for (ISequenceLayoutProcessor processor : algorithm) {
+                    processor.process(context, windowMonitor.subTask(1));
+                }
+                windowMonitor.done();
+                
+                context.traceWindowIndex++;
+            } while (context.traceWindowPending);
+            
+        } else {
+            progressMonitor.begin("Sequence Diagram Layouter", algorithm.size());
+            
+            for (ISequenceLayoutProcessor processor : algorithm) {
+                processor.process(context, progressMonitor.subTask(1));
+            }
+        }
         
-        for (ISequenceLayoutProcessor processor : algorithm) {
-            processor.process(context, progressMonitor.subTask(1));
+        if (progressive) {
+            scheduleRefinement(parentNode);
         }
         
         progressMonitor.done();
     }
     
+    /**
+     * Schedules the computation of the refined layout of a progressive layout run and makes it
+     * available through the graph's {@link SequenceDiagramOptions#REFINED_LAYOUT} property. The
+     * refinement lays out a copy of the interaction, so the original graph may be changed while it
+     * is running. A refinement that is still pending from an earlier layout run of the same graph is
+     * cancelled.
+     * 
+     * @param parentNode
+     *            parent node of the graph that was laid out.
+     */
+    private void scheduleRefinement(final KNode parentNode) {
+        KShapeLayout parentLayout = parentNode.getData(KShapeLayout.class);
+        Future<RefinedLayout> previousRefinement = parentLayout.getProperty(
+                SequenceDiagramOptions.REFINED_LAYOUT);
+        if (previousRefinement != null) {
+            previousRefinement.cancel(false);
+        }
+        
+        // The copy has to be made here, since the graph may be changed once we return
+        final Copier copier = new Copier();
+        final KNode copy = (KNode) copier.copy(parentNode);
+        copier.copyReferences();
+        
+        Future<RefinedLayout> refinement = REFINEMENT_EXECUTOR.submit(new Callable<RefinedLayout>() {
+            @Override
+            public RefinedLayout call() {
+                // Replace the strategies the draft was computed with by their better counterparts
+                LayoutContext context = LayoutContext.fromLayoutData(copy);
+                if (context.sortingStrategy == LifelineSortingStrategy.INTERACTIVE) {
+                    context.sortingStrategy = LifelineSortingStrategy.SHORT_MESSAGES;
+                }
+                if (context.layeringStrategy == LayeringStrategy.COORDINATE_ORDER
+                        || context.layeringStrategy == LayeringStrategy.INTERACTIVE) {
+                    context.layeringStrategy = LayeringStrategy.NETWORK_SIMPLEX;
+                }
+                
+                List<ISequenceLayoutProcessor> algorithm = assembleLayoutProcessors(context);
+                IElkProgressMonitor progressMonitor = new BasicProgressMonitor();
+                progressMonitor.begin("Sequence Diagram Layout Refinement", algorithm.size());
+                for (ISequenceLayoutProcessor processor : algorithm) {
+                    processor.process(context, progressMonitor.subTask(1));
+                }
+                progressMonitor.done();
+                
+                return RefinedLayout.fromCopy(parentNode, copier, context);
+            }
+        });
+        parentLayout.setProperty(SequenceDiagramOptions.REFINED_LAYOUT, refinement);
+    }
+    
     /**
      * Assembles the list of layout processors that, when run in order, implement the sequence
      * diagram layout algorithm. The list may be different based on the given layout context.
@@ -83,29 +214,50 @@ public final class SequenceDiagramLayoutProvider extends AbstractLayoutProvider
     private List<ISequenceLayoutProcessor> assembleLayoutProcessors(final LayoutContext context) {
         List<ISequenceLayoutProcessor> processors = Lists.newArrayList();
 
-        // The import algorithm depends on the coordinate system that is to be used
-        switch (context.coordinateSystem) {
-        case PAPYRUS:
-            processors.add(new PapyrusImporter());
-            break;
-            
-        default:
-            processors.add(new KGraphImporter());
-            break;   
+        // The import algorithm depends on the coordinate system that is to be used, unless the
+        // interaction is read from a trace
+        if (context.traceSource != null) {
+            processors.add(new TraceImporter());
+        } else {
+            switch (context.coordinateSystem) {
+            case PAPYRUS:
+                processors.add(new PapyrusImporter());
+                break;
+                
+            default:
+                processors.add(new KGraphImporter());
+                break;   
+            }
         }
         
         processors.add(new SpaceAllocator());
-        processors.add(new SCycleBreaker());
+
+        // Traces only contain horizontal messages in the order they were sent, so their layered
+        // graphs can't contain cycles
+        if (context.traceSource == null) {
+            processors.add(new SCycleBreaker());
+        }
         processors.add(new MessageLayerer());
         
-        // Lifeline sorting provides different options
+        // Traces laid out in windows keep the lifeline order and positions the importer fixed
+        if (context.traceSource != null && context.traceWindowSize > 0) {
+            processors.add(new TraceWindowCoordinateCalculator());
+            processors.add(new TraceRenderer());
+            return processors;
+        }
+        
+        // Lifeline sorting provides different options; sorters that only depend on the communication
+        // between lifelines can sort clusters of lifelines, and their results are cached
         switch (context.sortingStrategy) {
         case LAYER_BASED:
             processors.add(new LayerBasedLifelineSorter());
             break;
             
         case SHORT_MESSAGES:
-            processors.add(new ShortMessageLifelineSorter());
+        case SIFTING:
+        case OPTIMAL:
+            processors.add(new CachingLifelineSorter(
+                    new ClusteringLifelineSorter(context.sortingStrategy)));
             break;
             
         default:
@@ -122,7 +274,15 @@ public final class SequenceDiagramLayoutProvider extends AbstractLayoutProvider
             
         default:
             processors.add(new KGraphCoordinateCalculator());
-            processors.add(new KGraphExporter());
+            
+            // The results are either applied to the graph or rendered to the render target
+            if (context.traceSource != null) {
+                processors.add(new TraceRenderer());
+            } else if (context.renderTarget == null) {
+                processors.add(new KGraphExporter());
+            } else {
+                processors.add(new SGraphRenderer());
+            }
             break;   
         }
         
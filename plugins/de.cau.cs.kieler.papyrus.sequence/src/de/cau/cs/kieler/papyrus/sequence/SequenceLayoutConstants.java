@@ -37,6 +37,10 @@ public final class SequenceLayoutConstants {
     public static final int MIN_EXECUTION_HEIGHT = 20;
     /** The width of executions. This could well be turned into a layout option at some point. */
     public static final int EXECUCTION_WIDTH = 16;
+    /** The estimated width of a character of texts imported from traces, which carry no sizes. */
+    public static final int TRACE_CHARACTER_WIDTH = 6;
+    /** The estimated height of message labels imported from traces. */
+    public static final int TRACE_LABEL_HEIGHT = 12;
     
 
     /**
@@ -107,6 +107,18 @@ public final class SLifeline extends SGraphElement implements Comparable<SLifeli
         // Get the position of the message at this lifeline
         double messageYPos = msg.getSource() == this ? msg.getSourceYPos() : msg.getTargetYPos();
         
+        // Messages are usually added top-down, in which case they simply belong at the end
+        if (!messages.isEmpty()) {
+            SMessage lastMsg = messages.get(messages.size() - 1);
+            double lastYPos =
+                    lastMsg.getSource() == this ? lastMsg.getSourceYPos() : lastMsg.getTargetYPos();
+            
+            if (messageYPos >= lastYPos) {
+                messages.add(msg);
+                return;
+            }
+        }
+        
         // Insert the message just before the first message with a greater y position
         for (int i = 0; i < messages.size(); i++) {
             // Get the position of the current message in the list
@@ -0,0 +1,112 @@
+/*
+ * KIELER - Kiel Integrated Environment for Layout Eclipse RichClient
+ *
+ * http://www.informatik.uni-kiel.de/rtsys/kieler/
+ * 
+ * Copyright 2016 by
+ * + Kiel University
+ *   + Department of Computer Science
+ *     + Real-Time and Embedded Systems Group
+ * 
+ * This code is provided under the terms of the Eclipse Public License (EPL).
+ * See the file epl-v10.html for the license text.
+ */
+package de.cau.cs.kieler.papyrus.sequence.p0import;
+
+import java.util.List;
+
+import org.eclipse.elk.graph.properties.IProperty;
+
+import com.google.common.collect.Lists;
+
+import de.cau.cs.kieler.papyrus.sequence.graph.SGraph;
+import de.cau.cs.kieler.papyrus.sequence.graph.SLifeline;
+import de.cau.cs.kieler.papyrus.sequence.graph.SMessage;
+import de.cau.cs.kieler.papyrus.sequence.properties.InternalSequenceProperties;
+import de.cau.cs.kieler.papyrus.sequence.properties.SequenceDiagramOptions;
+import de.cau.cs.kieler.papyrus.sequence.properties.SequenceExecution;
+
+/**
+ * Utility methods shared by the importers to index the executions messages are connected to.
+ * 
+ * @author cds
+ */
+final class ExecutionIndexUtil {
+
+    /**
+     * Utility class, not to be instantiated.
+     */
+    private ExecutionIndexUtil() {
+
+    }
+
+    /**
+     * Annotates each message with the executions it is connected to, which saves the exporters from
+     * searching the message lists of all executions of a lifeline for each of its messages. The
+     * executions of a message's source lifeline that contain the message are stored in its
+     * {@link InternalSequenceProperties#SOURCE_EXECUTIONS} property, those of its target lifeline in
+     * its {@link InternalSequenceProperties#TARGET_EXECUTIONS} property. Both lists are in the order
+     * in which the executions appear in their lifeline's list of executions. Messages that are not
+     * connected to executions don't have the properties set.
+     * 
+     * <p>This must be called once all messages have been created and the executions' lists of
+     * messages are complete.</p>
+     * 
+     * @param sgraph
+     *            the imported graph.
+     */
+    static void indexExecutions(final SGraph sgraph) {
+        for (SLifeline lifeline : sgraph.getLifelines()) {
+            List<SequenceExecution> executions = lifeline.getProperty(
+                    SequenceDiagramOptions.EXECUTIONS);
+            if (executions == null) {
+                continue;
+            }
+
+            for (SequenceExecution execution : executions) {
+                for (Object messageObj : execution.getMessages()) {
+                    if (messageObj instanceof SMessage) {
+                        SMessage message = (SMessage) messageObj;
+                        if (message.getSource() == lifeline) {
+                            addExecution(message, InternalSequenceProperties.SOURCE_EXECUTIONS,
+                                    execution);
+                        }
+                        if (message.getTarget() == lifeline) {
+                            addExecution(message, InternalSequenceProperties.TARGET_EXECUTIONS,
+                                    execution);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds the execution to the given list of executions of the message unless it was just added.
+     * Executions are processed one after another, so a message that appears in the execution's list
+     * of messages more than once still only lists the execution once.
+     * 
+     * @param message
+     *            the message.
+     * @param property
+     *            the property that holds the list of executions.
+     * @param execution
+     *            the execution to add.
+     */
+    private static void addExecution(final SMessage message,
+            final IProperty<List<SequenceExecution>> property, final SequenceExecution execution) {
+
+        List<SequenceExecution> messageExecutions = message.getProperty(property);
+        if (messageExecutions == null) {
+            messageExecutions = Lists.newArrayList();
+            message.setProperty(property, messageExecutions);
+        }
+
+        if (messageExecutions.isEmpty()
+                || messageExecutions.get(messageExecutions.size() - 1) != execution) {
+
+            messageExecutions.add(execution);
+        }
+    }
+
+}
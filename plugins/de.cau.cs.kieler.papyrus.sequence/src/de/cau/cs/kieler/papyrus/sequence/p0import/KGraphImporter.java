@@ -129,6 +129,9 @@ public final class KGraphImporter implements ISequenceLayoutProcessor {
             }
         }
 
+        // Remember which executions each message is connected to
+        ExecutionIndexUtil.indexExecutions(sgraph);
+
         // Reset graph size to zero before layouting
         sgraph.getSize().x = 0;
         sgraph.getSize().y = 0;
@@ -323,7 +326,7 @@ public final class KGraphImporter implements ISequenceLayoutProcessor {
             
             List<Integer> targetExecutionIds =
                     kedgelayout.getProperty(SequenceDiagramOptions.TARGET_EXECUTION_IDS);
-            smessage.setProperty(SequenceDiagramOptions.TARGET_EXECUTION_IDS, sourceExecutionIds);
+            smessage.setProperty(SequenceDiagramOptions.TARGET_EXECUTION_IDS, targetExecutionIds);
             for (Integer execId : targetExecutionIds) {
                 SequenceExecution targetExecution = executionIdMap.get(execId);
                 if (targetExecution != null) {
@@ -342,6 +345,10 @@ public final class KGraphImporter implements ISequenceLayoutProcessor {
                 smessage.setProperty(SequenceDiagramOptions.MESSAGE_TYPE, messageType);
             }
 
+            // Remember the layer the message was assigned to in the previous layout run
+            smessage.setProperty(SequenceDiagramOptions.MESSAGE_LAYER,
+                    kedgelayout.getProperty(SequenceDiagramOptions.MESSAGE_LAYER));
+
             // Outgoing messages to the surrounding interaction are drawn to the right and therefore
             // their target lifeline should have highest position
             if (targetLL.isDummy() && messageType != MessageType.LOST) {
@@ -431,6 +438,10 @@ public final class KGraphImporter implements ISequenceLayoutProcessor {
                 }
             }
 
+            // Remember the layer the message was assigned to in the previous layout run
+            smessage.setProperty(SequenceDiagramOptions.MESSAGE_LAYER,
+                    kedgelayout.getProperty(SequenceDiagramOptions.MESSAGE_LAYER));
+
             // Check if the message connects to a target executions
             List<Integer> targetExecutionIds =
                     kedgelayout.getProperty(SequenceDiagramOptions.TARGET_EXECUTION_IDS);
@@ -129,6 +129,9 @@ public final class PapyrusImporter implements ISequenceLayoutProcessor {
             }
         }
 
+        // Remember which executions each message is connected to
+        ExecutionIndexUtil.indexExecutions(sgraph);
+
         // Copy the areas property to the SGraph
         sgraph.setProperty(SequenceDiagramOptions.AREAS, areas);
 
@@ -381,6 +384,10 @@ public final class PapyrusImporter implements ISequenceLayoutProcessor {
                 message.setProperty(SequenceDiagramOptions.MESSAGE_TYPE, messageType);
             }
 
+            // Remember the layer the message was assigned to in the previous layout run
+            message.setProperty(SequenceDiagramOptions.MESSAGE_LAYER,
+                    layout.getProperty(SequenceDiagramOptions.MESSAGE_LAYER));
+
             // Outgoing messages to the surrounding interaction are drawn to the right and therefore
             // their target lifeline should have highest position
             if (targetLL.isDummy() && messageType != MessageType.LOST) {
@@ -472,6 +479,10 @@ public final class PapyrusImporter implements ISequenceLayoutProcessor {
                     }
                 }
 
+                // Remember the layer the message was assigned to in the previous layout run
+                message.setProperty(SequenceDiagramOptions.MESSAGE_LAYER,
+                        layout.getProperty(SequenceDiagramOptions.MESSAGE_LAYER));
+
                 // replace KEdge by its SMessage if it appears in one of the lifeline's
                 // executions
                 if (sourceLL.getProperty(SequenceDiagramOptions.EXECUTIONS) != null) {
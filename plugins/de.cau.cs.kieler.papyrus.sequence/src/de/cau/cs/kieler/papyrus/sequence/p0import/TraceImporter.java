@@ -0,0 +1,477 @@
+/*
+ * KIELER - Kiel Integrated Environment for Layout Eclipse RichClient
+ *
+ * http://www.informatik.uni-kiel.de/rtsys/kieler/
+ * 
+ * Copyright 2016 by
+ * + Kiel University
+ *   + Department of Computer Science
+ *     + Real-Time and Embedded Systems Group
+ * 
+ * This code is provided under the terms of the Eclipse Public License (EPL).
+ * See the file epl-v10.html for the license text.
+ */
+package de.cau.cs.kieler.papyrus.sequence.p0import;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.elk.alg.layered.graph.LEdge;
+import org.eclipse.elk.alg.layered.graph.LGraph;
+import org.eclipse.elk.alg.layered.graph.LNode;
+import org.eclipse.elk.alg.layered.graph.LPort;
+import org.eclipse.elk.alg.layered.properties.InternalProperties;
+import org.eclipse.elk.core.util.IElkProgressMonitor;
+import org.eclipse.elk.core.util.WrappedException;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import de.cau.cs.kieler.papyrus.sequence.ISequenceLayoutProcessor;
+import de.cau.cs.kieler.papyrus.sequence.LayoutContext;
+import de.cau.cs.kieler.papyrus.sequence.SequenceLayoutConstants;
+import de.cau.cs.kieler.papyrus.sequence.graph.SGraph;
+import de.cau.cs.kieler.papyrus.sequence.graph.SLifeline;
+import de.cau.cs.kieler.papyrus.sequence.graph.SMessage;
+import de.cau.cs.kieler.papyrus.sequence.properties.InternalSequenceProperties;
+import de.cau.cs.kieler.papyrus.sequence.properties.MessageType;
+import de.cau.cs.kieler.papyrus.sequence.properties.SequenceArea;
+import de.cau.cs.kieler.papyrus.sequence.properties.SequenceDiagramOptions;
+
+/**
+ * Builds the SGraph and the LGraph directly from the trace of the layout context, without creating a
+ * KGraph first. Events are read one at a time and turned into messages right away. Lifelines are
+ * looked up in a dictionary by name and created when they first appear. Since events arrive in the
+ * order they happened, each message simply becomes the new end of its lifelines' chains of messages,
+ * and the layered graph's edges are added as the chains grow.
+ * 
+ * <p>Traces carry no sizes, so the widths of lifelines and labels are estimated from the length of
+ * their texts. Messages are positioned by the order of their events, which is what the interactive
+ * lifeline sorter and the coordinate-based layering strategies work with.</p>
+ * 
+ * <p>If a trace window size is set, each run of the importer only imports the next window of the
+ * trace: the events whose messages end up in the next few layers of a longest path layering. Since
+ * events arrive in order, a message's layer is simply the layer below the last messages of its
+ * lifelines. The importer stops at the first event that doesn't fit into the window and keeps it for
+ * the next run. Lifelines are kept across windows, but the graphs only contain the current window's
+ * messages. The order of lifelines and their horizontal positions are fixed when they first appear,
+ * so no lifeline sorter has to be run.</p>
+ * 
+ * @author cds
+ */
+public final class TraceImporter implements ISequenceLayoutProcessor {
+
+    /** The minimum width of lifelines. */
+    private static final double MIN_LIFELINE_WIDTH = 60;
+
+    /** The lifelines created so far, indexed by their names. */
+    private final Map<String, LifelineChain> lifelineDictionary = Maps.newHashMap();
+    /** The lifelines created so far, in the order they first appeared in. */
+    private final List<LifelineChain> lifelineChains = Lists.newArrayList();
+    /** Dummy lifelines that represent the surrounding interaction as the target of messages. */
+    private final List<SLifeline> interactionTargets = Lists.newArrayList();
+
+    /** The reader events are read from. Kept across the runs of a windowed layout. */
+    private TraceReader reader;
+    /** The number of events read so far. */
+    private int eventIndex = 0;
+    /** The first layer of the current window. */
+    private int windowStart = 0;
+    /** The first layer after the current window. */
+    private int windowEnd = 0;
+    /** Whether the current event didn't fit into the last window and still has to be imported. */
+    private boolean eventPending = false;
+    /** The x coordinate of the next lifeline to be created in a windowed layout. */
+    private double nextLifelineXPos;
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void process(final LayoutContext context, final IElkProgressMonitor progressMonitor) {
+        progressMonitor.begin("Trace import", 1);
+
+        context.sgraph = new SGraph();
+        context.lgraph = new LGraph();
+
+        // Traces don't have areas
+        context.sgraph.setProperty(SequenceDiagramOptions.AREAS, Lists.<SequenceArea>newArrayList());
+
+        if (reader == null) {
+            reader = new TraceReader(context.traceSource, context.traceFormat);
+            nextLifelineXPos = context.borderSpacing + context.lifelineSpacing / 2;
+        }
+
+        if (context.traceWindowSize > 0) {
+            startWindow(context);
+        }
+
+        try {
+            importTrace(context);
+            if (context.traceWindowSize > 0) {
+                fixLifelineOrder(context);
+            }
+        } catch (IOException exception) {
+            throw new WrappedException(exception, "Could not read the trace.");
+        } finally {
+            // Forget everything once the trace was read completely
+            if (!eventPending) {
+                reader = null;
+                lifelineDictionary.clear();
+                lifelineChains.clear();
+            }
+            interactionTargets.clear();
+        }
+
+        context.traceWindowPending = eventPending;
+
+        progressMonitor.done();
+    }
+
+    /**
+     * Reads events from the reader and adds a message to the layout context's graphs for each of
+     * them, until the end of the trace or of the current window is reached.
+     * 
+     * @param context
+     *            the layout context that contains all relevant information for the current layout run.
+     * @throws IOException
+     *             if reading fails.
+     */
+    private void importTrace(final LayoutContext context) throws IOException {
+        SGraph sgraph = context.sgraph;
+        boolean windowed = context.traceWindowSize > 0;
+
+        while (eventPending || reader.next()) {
+            // The message's layer only depends on the last messages of its lifelines
+            int layer = windowStart;
+            if (windowed) {
+                layer = Math.max(layer, lastLayer(reader.getSender()) + 1);
+                layer = Math.max(layer, lastLayer(reader.getReceiver()) + 1);
+            }
+
+            eventPending = layer >= windowEnd && windowed;
+            if (eventPending) {
+                break;
+            }
+
+            LifelineChain sourceChain = lookupLifeline(context, reader.getSender());
+            LifelineChain targetChain = lookupLifeline(context, reader.getReceiver());
+            if (sourceChain == null && targetChain == null) {
+                throw reader.malformed("the event has neither a sender nor a receiver.");
+            }
+
+            MessageType messageType = parseKind(reader);
+
+            // Messages without a sender or receiver get a dummy lifeline, just like the importers do
+            // it for messages without a source or target lifeline
+            SLifeline sourceLL;
+            if (sourceChain != null) {
+                sourceLL = sourceChain.lifeline;
+            } else {
+                sourceLL = createDummyLifeline(sgraph);
+
+                if (messageType == null) {
+                    messageType = MessageType.FOUND;
+                } else if (messageType != MessageType.FOUND) {
+                    // Messages from the surrounding interaction come from its left side
+                    sourceLL.setHorizontalSlot(-1);
+                }
+            }
+
+            SLifeline targetLL;
+            if (targetChain != null) {
+                targetLL = targetChain.lifeline;
+            } else {
+                targetLL = createDummyLifeline(sgraph);
+
+                if (messageType == null) {
+                    messageType = MessageType.LOST;
+                } else if (messageType != MessageType.LOST) {
+                    // Messages to the surrounding interaction lead to its right side; the slot is
+                    // assigned once all lifelines are known
+                    interactionTargets.add(targetLL);
+                }
+            }
+
+            // Create the message; its position is simply the index of its event
+            SMessage smessage = new SMessage(sourceLL, targetLL);
+            smessage.setSourceYPos(eventIndex);
+            smessage.setTargetYPos(eventIndex);
+            eventIndex++;
+
+            if (messageType != null) {
+                smessage.setProperty(SequenceDiagramOptions.MESSAGE_TYPE, messageType);
+            }
+
+            String label = reader.getLabel();
+            if (!label.isEmpty()) {
+                smessage.setProperty(InternalSequenceProperties.MESSAGE_LABEL, label);
+                smessage.setLabelWidth(label.length() * SequenceLayoutConstants.TRACE_CHARACTER_WIDTH);
+            }
+
+            sourceLL.addMessage(smessage);
+            targetLL.addMessage(smessage);
+
+            // Append the message to the chains of its lifelines
+            LNode node = createLayeredNode(context.lgraph, smessage);
+            if (sourceChain != null) {
+                sourceChain.append(node, layer, false);
+            }
+            if (targetChain != null) {
+                targetChain.append(node, layer, messageType == MessageType.DELETE);
+            }
+        }
+
+        for (SLifeline interactionTarget : interactionTargets) {
+            interactionTarget.setHorizontalSlot(lifelineChains.size() + 1);
+        }
+
+        // Reset graph size to zero before layouting
+        sgraph.getSize().x = 0;
+        sgraph.getSize().y = 0;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    // Windows
+
+    /**
+     * Advances to the next window. All lifelines that exist at the start of the window are part of it,
+     * except for those that were deleted, even if they don't send or receive any of its messages.
+     * 
+     * @param context
+     *            the layout context that contains all relevant information for the current layout run.
+     */
+    private void startWindow(final LayoutContext context) {
+        windowStart = windowEnd;
+        windowEnd = windowStart + context.traceWindowSize;
+
+        for (LifelineChain chain : lifelineChains) {
+            chain.lastNode = null;
+            chain.inWindow = false;
+
+            if (!chain.deleted) {
+                addToWindow(context.sgraph, chain);
+            }
+        }
+    }
+
+    /**
+     * Adds the given lifeline to the current window's graph, dropping the messages it had in the
+     * previous window.
+     * 
+     * @param sgraph
+     *            the Sequence Graph
+     * @param chain
+     *            the lifeline's chain.
+     */
+    private void addToWindow(final SGraph sgraph, final LifelineChain chain) {
+        chain.lifeline.getMessages().clear();
+        sgraph.addLifeline(chain.lifeline);
+        chain.inWindow = true;
+    }
+
+    /**
+     * Returns the layer of the last message of the lifeline with the given name.
+     * 
+     * @param name
+     *            the lifeline's name.
+     * @return the layer, or {@code -1} if the lifeline doesn't exist yet or the name is empty.
+     */
+    private int lastLayer(final String name) {
+        LifelineChain chain = lifelineDictionary.get(name);
+        return chain == null ? -1 : chain.lastLayer;
+    }
+
+    /**
+     * Publishes the order of the current window's lifelines as the result of the sorting phase, which
+     * is skipped in windowed layouts. Lifelines keep the slots they were created with.
+     * 
+     * @param context
+     *            the layout context that contains all relevant information for the current layout run.
+     */
+    private void fixLifelineOrder(final LayoutContext context) {
+        SLifeline[] lifelinesBySlot = new SLifeline[lifelineChains.size()];
+        for (LifelineChain chain : lifelineChains) {
+            lifelinesBySlot[chain.lifeline.getHorizontalSlot()] = chain.lifeline;
+        }
+
+        context.lifelineOrder = Lists.newArrayList(context.sgraph.getLifelines());
+        context.lifelinesBySlot = lifelinesBySlot;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    // Lifelines
+
+    /**
+     * Returns the chain of the lifeline with the given name, creating the lifeline if it doesn't
+     * exist yet.
+     * 
+     * @param context
+     *            the layout context that contains all relevant information for the current layout run.
+     * @param name
+     *            the lifeline's name.
+     * @return the lifeline's chain, or {@code null} if the name is empty.
+     */
+    private LifelineChain lookupLifeline(final LayoutContext context, final String name) {
+        if (name.isEmpty()) {
+            return null;
+        }
+
+        LifelineChain chain = lifelineDictionary.get(name);
+        if (chain == null) {
+            SLifeline slifeline = new SLifeline();
+            slifeline.setName(name);
+            slifeline.getSize().x = Math.max(MIN_LIFELINE_WIDTH,
+                    name.length() * SequenceLayoutConstants.TRACE_CHARACTER_WIDTH
+                    + 2 * SequenceLayoutConstants.LABELMARGIN);
+
+            if (context.traceWindowSize > 0) {
+                // The lifeline's slot and position are final. Found messages start half a lifeline
+                // spacing left of their target, so there's room for them left of the first lifeline
+                slifeline.setHorizontalSlot(lifelineChains.size());
+                slifeline.getPosition().x = nextLifelineXPos;
+                nextLifelineXPos += slifeline.getSize().x + context.lifelineSpacing;
+            } else {
+                // Lifelines are placed in the order of their first appearance by the interactive
+                // sorter
+                slifeline.getPosition().x = lifelineChains.size();
+            }
+
+            chain = new LifelineChain(slifeline);
+            lifelineDictionary.put(name, chain);
+            lifelineChains.add(chain);
+            addToWindow(context.sgraph, chain);
+        } else if (!chain.inWindow) {
+            // The lifeline was deleted before, but is used again
+            addToWindow(context.sgraph, chain);
+        }
+
+        return chain;
+    }
+
+    /**
+     * Creates a dummy lifeline for a message without a sender or receiver.
+     * 
+     * @param sgraph
+     *            the Sequence Graph
+     * @return the dummy lifeline.
+     */
+    private SLifeline createDummyLifeline(final SGraph sgraph) {
+        SLifeline sdummy = new SLifeline();
+        sdummy.setDummy(true);
+        sdummy.setGraph(sgraph);
+        return sdummy;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    // Messages
+
+    /**
+     * Parses the kind of the current event.
+     * 
+     * @param reader
+     *            the reader positioned at the event.
+     * @return the message type named by the kind, or {@code null} if the event has no kind.
+     */
+    private MessageType parseKind(final TraceReader reader) {
+        String kind = reader.getKind();
+        if (kind.isEmpty()) {
+            return null;
+        }
+
+        try {
+            return MessageType.valueOf(kind.toUpperCase());
+        } catch (IllegalArgumentException exception) {
+            throw reader.malformed("unknown message kind '" + kind + "'.");
+        }
+    }
+
+    /**
+     * Creates the node that represents the given message in the layered graph.
+     * 
+     * @param lgraph
+     *            the layered graph.
+     * @param message
+     *            the message.
+     * @return the new node.
+     */
+    private LNode createLayeredNode(final LGraph lgraph, final SMessage message) {
+        LNode node = new LNode(lgraph);
+        node.setProperty(InternalProperties.ORIGIN, message);
+        message.setProperty(InternalSequenceProperties.LAYERED_NODE, node);
+        lgraph.getLayerlessNodes().add(node);
+        return node;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    // Lifeline Chains
+
+    /**
+     * A lifeline together with the layered node of the last message that was added to it. This is all
+     * that windowed layouts carry over from one window to the next.
+     */
+    private static final class LifelineChain {
+
+        /** The lifeline. */
+        private final SLifeline lifeline;
+        /** The node of the lifeline's last message in the current window, if any. */
+        private LNode lastNode;
+        /** The layer of the lifeline's last message in windowed layouts, or {@code -1}. */
+        private int lastLayer = -1;
+        /** Whether the lifeline's last message deleted it. */
+        private boolean deleted = false;
+        /** Whether the lifeline is part of the current window's graph. */
+        private boolean inWindow = false;
+
+
+        /**
+         * Creates a new chain for the given lifeline.
+         * 
+         * @param lifeline
+         *            the lifeline.
+         */
+        LifelineChain(final SLifeline lifeline) {
+            this.lifeline = lifeline;
+        }
+
+        /**
+         * Appends the given node to the chain, connecting it to the previous node with an edge that
+         * indicates the relative order of their messages at the lifeline.
+         * 
+         * @param node
+         *            the node of the lifeline's new last message.
+         * @param layer
+         *            the layer of the message in windowed layouts.
+         * @param deleting
+         *            whether the message deletes the lifeline.
+         */
+        void append(final LNode node, final int layer, final boolean deleting) {
+            // Self loops are appended twice
+            if (lastNode != null && lastNode != node) {
+                LPort sourcePort = new LPort();
+                sourcePort.setNode(lastNode);
+
+                LPort targetPort = new LPort();
+                targetPort.setNode(node);
+
+                LEdge edge = new LEdge();
+
+                edge.setSource(sourcePort);
+                edge.setTarget(targetPort);
+
+                edge.setProperty(InternalSequenceProperties.BELONGS_TO_LIFELINE, lifeline);
+            }
+
+            lastNode = node;
+            lastLayer = layer;
+            deleted = deleting;
+        }
+    }
+
+}
@@ -0,0 +1,438 @@
+/*
+ * KIELER - Kiel Integrated Environment for Layout Eclipse RichClient
+ *
+ * http://www.informatik.uni-kiel.de/rtsys/kieler/
+ * 
+ * Copyright 2016 by
+ * + Kiel University
+ *   + Department of Computer Science
+ *     + Real-Time and Embedded Systems Group
+ * 
+ * This code is provided under the terms of the Eclipse Public License (EPL).
+ * See the file epl-v10.html for the license text.
+ */
+package de.cau.cs.kieler.papyrus.sequence.p0import;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.List;
+
+import org.eclipse.elk.core.UnsupportedGraphException;
+
+import com.google.common.collect.Lists;
+
+import de.cau.cs.kieler.papyrus.sequence.properties.TraceFormat;
+
+/**
+ * Reads the events of an interaction trace one at a time. Only the current event is kept in memory,
+ * which makes it possible to import traces that are much larger than the graphs built from them. The
+ * fields of the current event are available through the getters after each successful call to
+ * {@link #next()}. Missing fields are returned as empty strings.
+ * 
+ * <p>Timestamps are not interpreted. Traces are expected to list their events in the order they
+ * happened.</p>
+ * 
+ * @author cds
+ */
+final class TraceReader {
+
+    /** Name of the sender field of JSON lines events. */
+    private static final String SENDER = "sender";
+    /** Name of the receiver field of JSON lines events. */
+    private static final String RECEIVER = "receiver";
+    /** Name of the kind field of JSON lines events. */
+    private static final String KIND = "kind";
+    /** Name of the label field of JSON lines events. */
+    private static final String LABEL = "label";
+
+    /** Index of the sender in CSV records. */
+    private static final int CSV_SENDER = 1;
+    /** Index of the receiver in CSV records. */
+    private static final int CSV_RECEIVER = 2;
+    /** Index of the kind in CSV records. */
+    private static final int CSV_KIND = 3;
+    /** Index of the label in CSV records. */
+    private static final int CSV_LABEL = 4;
+    /** Name of the first field in CSV header lines. */
+    private static final String CSV_HEADER = "timestamp";
+
+    /** The reader lines are read from. */
+    private final BufferedReader in;
+    /** The format of the trace. */
+    private final TraceFormat format;
+    /** Number of the line the current event was read from. */
+    private int lineNumber = 0;
+    /** Whether the current line is the first non-blank one, which may be a CSV header. */
+    private boolean firstLine = true;
+
+    /** The line currently being parsed. */
+    private String line;
+    /** Position of the next character to be parsed in the current line. */
+    private int pos;
+
+    /** Sender of the current event. */
+    private String sender;
+    /** Receiver of the current event. */
+    private String receiver;
+    /** Kind of the current event. */
+    private String kind;
+    /** Label of the current event. */
+    private String label;
+
+
+    /**
+     * Creates a new trace reader.
+     * 
+     * @param in
+     *            the reader to read the trace from. It is not closed by the trace reader.
+     * @param format
+     *            the format of the trace.
+     */
+    TraceReader(final Reader in, final TraceFormat format) {
+        this.in = new BufferedReader(in);
+        this.format = format;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    // Events
+
+    /**
+     * Reads the next event. Blank lines are skipped.
+     * 
+     * @return {@code true} if an event was read, {@code false} if the end of the trace was reached.
+     * @throws IOException
+     *             if reading fails.
+     * @throws UnsupportedGraphException
+     *             if the event is malformed.
+     */
+    boolean next() throws IOException {
+        while ((line = in.readLine()) != null) {
+            lineNumber++;
+            pos = 0;
+
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+
+            sender = "";
+            receiver = "";
+            kind = "";
+            label = "";
+
+            if (format == TraceFormat.CSV) {
+                boolean header = firstLine && isHeader();
+                firstLine = false;
+                
+                if (!header) {
+                    parseRecord();
+                    return true;
+                }
+            } else {
+                parseObject();
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns the sender of the current event.
+     * 
+     * @return the sender's name, or an empty string if the event has no sender.
+     */
+    String getSender() {
+        return sender;
+    }
+
+    /**
+     * Returns the receiver of the current event.
+     * 
+     * @return the receiver's name, or an empty string if the event has no receiver.
+     */
+    String getReceiver() {
+        return receiver;
+    }
+
+    /**
+     * Returns the kind of the current event.
+     * 
+     * @return the event's kind, or an empty string if the event has no kind.
+     */
+    String getKind() {
+        return kind;
+    }
+
+    /**
+     * Returns the label of the current event.
+     * 
+     * @return the event's label, or an empty string if the event has no label.
+     */
+    String getLabel() {
+        return label;
+    }
+
+    /**
+     * Returns an exception that reports a problem with the current event.
+     * 
+     * @param problem
+     *            description of the problem.
+     * @return the exception to be thrown.
+     */
+    UnsupportedGraphException malformed(final String problem) {
+        return new UnsupportedGraphException(
+                "Malformed trace event in line " + lineNumber + ": " + problem);
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    // CSV
+
+    /**
+     * Checks whether the current line is a CSV header line.
+     * 
+     * @return {@code true} if the line's first field is named like the timestamp field.
+     */
+    private boolean isHeader() {
+        int end = line.indexOf(',');
+        String firstField = end < 0 ? line : line.substring(0, end);
+        return firstField.trim().equalsIgnoreCase(CSV_HEADER);
+    }
+
+    /**
+     * Parses the current line as a CSV record. Fields may be quoted with double quotes, in which case
+     * they may contain commas and doubled double quotes.
+     */
+    private void parseRecord() {
+        List<String> fields = Lists.newArrayListWithCapacity(CSV_LABEL + 1);
+        fields.add(parseField());
+        while (pos < line.length()) {
+            // Skip the comma that ended the previous field
+            pos++;
+            fields.add(parseField());
+        }
+
+        if (fields.size() < CSV_KIND + 1 || fields.size() > CSV_LABEL + 1) {
+            throw malformed("expected 4 or 5 fields, but found " + fields.size() + ".");
+        }
+
+        sender = fields.get(CSV_SENDER).trim();
+        receiver = fields.get(CSV_RECEIVER).trim();
+        kind = fields.get(CSV_KIND).trim();
+        if (fields.size() > CSV_LABEL) {
+            label = fields.get(CSV_LABEL);
+        }
+    }
+
+    /**
+     * Parses a single field of a CSV record, leaving the position at the comma that ends it or at the
+     * end of the line.
+     * 
+     * @return the field's contents.
+     */
+    private String parseField() {
+        if (pos >= line.length() || line.charAt(pos) != '"') {
+            int end = line.indexOf(',', pos);
+            if (end < 0) {
+                end = line.length();
+            }
+
+            String field = line.substring(pos, end);
+            pos = end;
+            return field;
+        }
+
+        // Quoted field
+        StringBuilder field = new StringBuilder();
+        pos++;
+        while (true) {
+            if (pos >= line.length()) {
+                throw malformed("unterminated quoted field.");
+            }
+
+            char c = line.charAt(pos++);
+            if (c != '"') {
+                field.append(c);
+            } else if (pos < line.length() && line.charAt(pos) == '"') {
+                field.append('"');
+                pos++;
+            } else {
+                break;
+            }
+        }
+
+        if (pos < line.length() && line.charAt(pos) != ',') {
+            throw malformed("unexpected characters after quoted field.");
+        }
+
+        return field.toString();
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    // JSON Lines
+
+    /**
+     * Parses the current line as a flat JSON object. Fields other than the ones we're interested in
+     * are skipped, as long as their values are not objects or arrays.
+     */
+    private void parseObject() {
+        expect('{');
+
+        if (peek() == '}') {
+            pos++;
+        } else {
+            while (true) {
+                String key = parseString();
+                expect(':');
+                String value = parseValue();
+
+                if (SENDER.equals(key)) {
+                    sender = value;
+                } else if (RECEIVER.equals(key)) {
+                    receiver = value;
+                } else if (KIND.equals(key)) {
+                    kind = value;
+                } else if (LABEL.equals(key)) {
+                    label = value;
+                }
+
+                if (peek() == ',') {
+                    pos++;
+                } else {
+                    expect('}');
+                    break;
+                }
+            }
+        }
+
+        if (peek() != 0) {
+            throw malformed("unexpected characters after the event.");
+        }
+    }
+
+    /**
+     * Parses a value that is either a string, a number or one of the literals {@code true},
+     * {@code false} and {@code null}.
+     * 
+     * @return the value as a string. {@code null} is returned as an empty string.
+     */
+    private String parseValue() {
+        if (peek() == '"') {
+            return parseString();
+        }
+
+        // Numbers and literals extend to the next delimiter
+        int start = pos;
+        while (pos < line.length() && ",}] \t".indexOf(line.charAt(pos)) < 0) {
+            pos++;
+        }
+
+        String value = line.substring(start, pos);
+        if (value.isEmpty()) {
+            throw malformed("expected a string, number or literal at column " + (start + 1) + ".");
+        }
+
+        return value.equals("null") ? "" : value;
+    }
+
+    /**
+     * Parses a string literal.
+     * 
+     * @return the string with all escape sequences resolved.
+     */
+    private String parseString() {
+        expect('"');
+
+        StringBuilder string = new StringBuilder();
+        while (true) {
+            if (pos >= line.length()) {
+                throw malformed("unterminated string.");
+            }
+
+            char c = line.charAt(pos++);
+            if (c == '"') {
+                return string.toString();
+            } else if (c != '\\') {
+                string.append(c);
+            } else if (pos >= line.length()) {
+                throw malformed("unterminated string.");
+            } else {
+                char escaped = line.charAt(pos++);
+                switch (escaped) {
+                case 'b':
+                    string.append('\b');
+                    break;
+                case 'f':
+                    string.append('\f');
+                    break;
+                case 'n':
+                    string.append('\n');
+                    break;
+                case 'r':
+                    string.append('\r');
+                    break;
+                case 't':
+                    string.append('\t');
+                    break;
+                case 'u':
+                    string.append(parseUnicodeEscape());
+                    break;
+                default:
+                    // Covers quotes, backslashes and slashes
+                    string.append(escaped);
+                }
+            }
+        }
+    }
+
+    /**
+     * Parses the four hex digits of a unicode escape sequence.
+     * 
+     * @return the escaped character.
+     */
+    private char parseUnicodeEscape() {
+        if (pos + 4 > line.length()) {
+            throw malformed("incomplete unicode escape.");
+        }
+
+        try {
+            char c = (char) Integer.parseInt(line.substring(pos, pos + 4), 16);
+            pos += 4;
+            return c;
+        } catch (NumberFormatException e) {
+            throw malformed("invalid unicode escape.");
+        }
+    }
+
+    /**
+     * Skips whitespace and returns the next character without consuming it.
+     * 
+     * @return the next character, or {@code 0} at the end of the line.
+     */
+    private char peek() {
+        while (pos < line.length() && Character.isWhitespace(line.charAt(pos))) {
+            pos++;
+        }
+
+        return pos < line.length() ? line.charAt(pos) : 0;
+    }
+
+    /**
+     * Skips whitespace and consumes the given character.
+     * 
+     * @param c
+     *            the expected character.
+     * @throws UnsupportedGraphException
+     *             if the next character is a different one.
+     */
+    private void expect(final char c) {
+        if (peek() != c) {
+            throw malformed("expected '" + c + "' at column " + (pos + 1) + ".");
+        }
+        pos++;
+    }
+
+}
@@ -29,6 +29,7 @@ import de.cau.cs.kieler.papyrus.sequence.graph.SComment;
 import de.cau.cs.kieler.papyrus.sequence.graph.SGraphElement;
 import de.cau.cs.kieler.papyrus.sequence.graph.SMessage;
 import de.cau.cs.kieler.papyrus.sequence.properties.CoordinateSystem;
+import de.cau.cs.kieler.papyrus.sequence.properties.LayoutQuality;
 import de.cau.cs.kieler.papyrus.sequence.properties.SequenceArea;
 import de.cau.cs.kieler.papyrus.sequence.properties.SequenceDiagramOptions;
 import de.cau.cs.kieler.papyrus.sequence.properties.InternalSequenceProperties;
@@ -51,7 +52,11 @@ public final class SpaceAllocator implements ISequenceLayoutProcessor {
         progressMonitor.begin("Space Allocation", 1);
         
         allocateSpaceForAreaHeaders(context);
-        allocateSpaceForComments(context);
+        
+        // Comments are not placed in draft quality, so they don't need any space either
+        if (context.quality != LayoutQuality.DRAFT) {
+            allocateSpaceForComments(context);
+        }
         allocateSpaceForEmptyAreas(context);
         
         progressMonitor.done();
@@ -0,0 +1,591 @@
+/*
+ * KIELER - Kiel Integrated Environment for Layout Eclipse RichClient
+ *
+ * http://www.informatik.uni-kiel.de/rtsys/kieler/
+ * 
+ * Copyright 2016 by
+ * + Kiel University
+ *   + Department of Computer Science
+ *     + Real-Time and Embedded Systems Group
+ * 
+ * This code is provided under the terms of the Eclipse Public License (EPL).
+ * See the file epl-v10.html for the license text.
+ */
+package de.cau.cs.kieler.papyrus.sequence.p3layering;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.eclipse.elk.alg.layered.graph.LEdge;
+import org.eclipse.elk.alg.layered.graph.LGraph;
+import org.eclipse.elk.alg.layered.graph.LNode;
+import org.eclipse.elk.alg.layered.graph.Layer;
+
+import com.google.common.collect.Iterables;
+
+/**
+ * A compact, index-based view of the layerless nodes of an {@link LGraph} and the edges between them.
+ * Node {@code i} is the {@code i}-th layerless node of the graph, edges are stored as pairs of node
+ * indices with incidence lists in compressed form. The layering algorithms in this package work on
+ * this representation instead of traversing ports and edge lists over and over again.
+ * 
+ * <p>Creating an instance overwrites the {@code id} fields of the graph's nodes with their
+ * indices.</p>
+ * 
+ * @author cds
+ */
+final class LayeringGraph {
+
+    /** The nodes, indexed by their ID. */
+    private final LNode[] nodes;
+    /** For each edge, the index of its source node. */
+    private final int[] edgeSources;
+    /** For each edge, the index of its target node. */
+    private final int[] edgeTargets;
+    /** For each edge, the minimum number of layers it has to span, or {@code null} if that's 1. */
+    private final int[] edgeMinLengths;
+    /** For each node, the index in {@link #outgoing} its outgoing edges start at. */
+    private final int[] outgoingStart;
+    /** The indices of the outgoing edges of all nodes, grouped by source node. */
+    private final int[] outgoing;
+    /** For each node, the index in {@link #incoming} its incoming edges start at. */
+    private final int[] incomingStart;
+    /** The indices of the incoming edges of all nodes, grouped by target node. */
+    private final int[] incoming;
+
+
+    /**
+     * Creates a new layering graph from the given edge lists.
+     * 
+     * @param nodes
+     *            the nodes.
+     * @param edgeSources
+     *            source node index of each edge.
+     * @param edgeTargets
+     *            target node index of each edge.
+     */
+    LayeringGraph(final LNode[] nodes, final int[] edgeSources, final int[] edgeTargets) {
+        this(nodes, edgeSources, edgeTargets, null);
+    }
+
+    /**
+     * Creates a new layering graph from the given edge lists with arbitrary minimum edge lengths.
+     * Such graphs are used to describe parts of a layering problem, with the rest of the graph being
+     * represented by a single node. Minimum edge lengths may be negative, and the graph doesn't have
+     * to be acyclic, but that is only supported by {@link NetworkSimplex}. The layering utilities of
+     * this class only support positive minimum lengths in acyclic graphs.
+     * 
+     * @param nodes
+     *            the nodes.
+     * @param edgeSources
+     *            source node index of each edge.
+     * @param edgeTargets
+     *            target node index of each edge.
+     * @param edgeMinLengths
+     *            minimum length of each edge, or {@code null} if all edges have minimum length 1.
+     */
+    LayeringGraph(final LNode[] nodes, final int[] edgeSources, final int[] edgeTargets,
+            final int[] edgeMinLengths) {
+
+        this.nodes = nodes;
+        this.edgeSources = edgeSources;
+        this.edgeTargets = edgeTargets;
+        this.edgeMinLengths = edgeMinLengths;
+
+        outgoingStart = new int[nodes.length + 1];
+        incomingStart = new int[nodes.length + 1];
+        outgoing = new int[edgeSources.length];
+        incoming = new int[edgeSources.length];
+        buildIncidenceLists(edgeSources, outgoingStart, outgoing);
+        buildIncidenceLists(edgeTargets, incomingStart, incoming);
+    }
+
+    /**
+     * Creates a layering graph for the layerless nodes of the given layered graph. Self loops are
+     * ignored since they don't impose any constraints on the layering.
+     * 
+     * @param lgraph
+     *            the layered graph.
+     * @return the layering graph.
+     */
+    static LayeringGraph fromLGraph(final LGraph lgraph) {
+        List<LNode> layerlessNodes = lgraph.getLayerlessNodes();
+        LNode[] nodes = layerlessNodes.toArray(new LNode[layerlessNodes.size()]);
+
+        int edgeCount = 0;
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i].id = i;
+            edgeCount += Iterables.size(nodes[i].getOutgoingEdges());
+        }
+
+        int[] edgeSources = new int[edgeCount];
+        int[] edgeTargets = new int[edgeCount];
+        int edge = 0;
+        for (LNode node : nodes) {
+            for (LEdge lEdge : node.getOutgoingEdges()) {
+                LNode target = lEdge.getTarget().getNode();
+                if (target != node) {
+                    edgeSources[edge] = node.id;
+                    edgeTargets[edge] = target.id;
+                    edge++;
+                }
+            }
+        }
+
+        if (edge < edgeCount) {
+            edgeSources = Arrays.copyOf(edgeSources, edge);
+            edgeTargets = Arrays.copyOf(edgeTargets, edge);
+        }
+        return new LayeringGraph(nodes, edgeSources, edgeTargets);
+    }
+
+    /**
+     * Fills the given compressed incidence list with the edges grouped by the given end points.
+     * 
+     * @param endPoints
+     *            for each edge, the node index of the end point to group by.
+     * @param start
+     *            array with one more entry than there are nodes that receives the start index of each
+     *            node's edges.
+     * @param edges
+     *            array that receives the edge indices.
+     */
+    private static void buildIncidenceLists(final int[] endPoints, final int[] start,
+            final int[] edges) {
+
+        for (int endPoint : endPoints) {
+            start[endPoint + 1]++;
+        }
+        for (int i = 1; i < start.length; i++) {
+            start[i] += start[i - 1];
+        }
+
+        int[] next = Arrays.copyOf(start, start.length - 1);
+        for (int edge = 0; edge < endPoints.length; edge++) {
+            edges[next[endPoints[edge]]++] = edge;
+        }
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    // Accessors
+
+    /**
+     * Returns the number of nodes.
+     * 
+     * @return the number of nodes.
+     */
+    int getNodeCount() {
+        return nodes.length;
+    }
+
+    /**
+     * Returns the node with the given index.
+     * 
+     * @param node
+     *            the node's index.
+     * @return the node.
+     */
+    LNode getNode(final int node) {
+        return nodes[node];
+    }
+
+    /**
+     * Returns the number of edges.
+     * 
+     * @return the number of edges.
+     */
+    int getEdgeCount() {
+        return edgeSources.length;
+    }
+
+    /**
+     * Returns the index of the given edge's source node.
+     * 
+     * @param edge
+     *            the edge's index.
+     * @return the source node's index.
+     */
+    int getSource(final int edge) {
+        return edgeSources[edge];
+    }
+
+    /**
+     * Returns the index of the given edge's target node.
+     * 
+     * @param edge
+     *            the edge's index.
+     * @return the target node's index.
+     */
+    int getTarget(final int edge) {
+        return edgeTargets[edge];
+    }
+
+    /**
+     * Returns the minimum number of layers the given edge has to span.
+     * 
+     * @param edge
+     *            the edge's index.
+     * @return the edge's minimum length.
+     */
+    int getMinLength(final int edge) {
+        return edgeMinLengths == null ? 1 : edgeMinLengths[edge];
+    }
+
+    /**
+     * Returns the number of edges leaving the given node.
+     * 
+     * @param node
+     *            the node's index.
+     * @return the node's out-degree.
+     */
+    int getOutDegree(final int node) {
+        return outgoingStart[node + 1] - outgoingStart[node];
+    }
+
+    /**
+     * Returns the {@code i}-th edge leaving the given node.
+     * 
+     * @param node
+     *            the node's index.
+     * @param i
+     *            index between {@code 0} and {@code getOutDegree(node) - 1}.
+     * @return the edge's index.
+     */
+    int getOutgoingEdge(final int node, final int i) {
+        return outgoing[outgoingStart[node] + i];
+    }
+
+    /**
+     * Returns the number of edges entering the given node.
+     * 
+     * @param node
+     *            the node's index.
+     * @return the node's in-degree.
+     */
+    int getInDegree(final int node) {
+        return incomingStart[node + 1] - incomingStart[node];
+    }
+
+    /**
+     * Returns the {@code i}-th edge entering the given node.
+     * 
+     * @param node
+     *            the node's index.
+     * @param i
+     *            index between {@code 0} and {@code getInDegree(node) - 1}.
+     * @return the edge's index.
+     */
+    int getIncomingEdge(final int node, final int i) {
+        return incoming[incomingStart[node] + i];
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    // Connected Components
+
+    /**
+     * Computes the connected components of the graph, ignoring edge directions.
+     * 
+     * @return for each component, the indices of its nodes in ascending order. Components are ordered
+     *         by their smallest node index.
+     */
+    int[][] connectedComponents() {
+        // Union-find with path halving
+        int[] parents = new int[nodes.length];
+        for (int node = 0; node < nodes.length; node++) {
+            parents[node] = node;
+        }
+        for (int edge = 0; edge < edgeSources.length; edge++) {
+            int sourceRoot = findRoot(parents, edgeSources[edge]);
+            int targetRoot = findRoot(parents, edgeTargets[edge]);
+            if (sourceRoot != targetRoot) {
+                parents[Math.max(sourceRoot, targetRoot)] = Math.min(sourceRoot, targetRoot);
+            }
+        }
+
+        // Since roots are always the smallest node of their component, they are found in order
+        int[] componentIndices = new int[nodes.length];
+        int[] componentSizes = new int[nodes.length];
+        int componentCount = 0;
+        for (int node = 0; node < nodes.length; node++) {
+            int root = findRoot(parents, node);
+            if (root == node) {
+                componentIndices[node] = componentCount++;
+            }
+            componentSizes[componentIndices[root]]++;
+        }
+
+        int[][] components = new int[componentCount][];
+        for (int component = 0; component < componentCount; component++) {
+            components[component] = new int[componentSizes[component]];
+            componentSizes[component] = 0;
+        }
+        for (int node = 0; node < nodes.length; node++) {
+            int component = componentIndices[findRoot(parents, node)];
+            components[component][componentSizes[component]++] = node;
+        }
+        return components;
+    }
+
+    /**
+     * Finds the root of the given node in the given union-find forest, halving the path on the way.
+     * 
+     * @param parents
+     *            the parent of each node in the forest.
+     * @param node
+     *            the node.
+     * @return the node's root.
+     */
+    private static int findRoot(final int[] parents, final int node) {
+        int current = node;
+        while (parents[current] != current) {
+            parents[current] = parents[parents[current]];
+            current = parents[current];
+        }
+        return current;
+    }
+
+    /**
+     * Creates a layering graph for a connected component of this graph. The component's nodes are
+     * numbered in the order given.
+     * 
+     * @param componentNodes
+     *            the indices of the component's nodes.
+     * @param localIndices
+     *            array with an entry for each node of this graph that receives the index of the
+     *            component's nodes in the new graph.
+     * @return the component's layering graph.
+     */
+    LayeringGraph componentGraph(final int[] componentNodes, final int[] localIndices) {
+        LNode[] componentLNodes = new LNode[componentNodes.length];
+        int edgeCount = 0;
+        for (int i = 0; i < componentNodes.length; i++) {
+            componentLNodes[i] = nodes[componentNodes[i]];
+            localIndices[componentNodes[i]] = i;
+            edgeCount += getOutDegree(componentNodes[i]);
+        }
+
+        int[] componentSources = new int[edgeCount];
+        int[] componentTargets = new int[edgeCount];
+        int[] componentMinLengths = edgeMinLengths == null ? null : new int[edgeCount];
+        int componentEdge = 0;
+        for (int i = 0; i < componentNodes.length; i++) {
+            int node = componentNodes[i];
+            for (int j = outgoingStart[node]; j < outgoingStart[node + 1]; j++) {
+                int edge = outgoing[j];
+                componentSources[componentEdge] = i;
+                componentTargets[componentEdge] = localIndices[edgeTargets[edge]];
+                if (componentMinLengths != null) {
+                    componentMinLengths[componentEdge] = edgeMinLengths[edge];
+                }
+                componentEdge++;
+            }
+        }
+
+        return new LayeringGraph(componentLNodes, componentSources, componentTargets,
+                componentMinLengths);
+    }
+
+    /**
+     * Creates a layering graph for the subgraph induced by the given nodes. Edges that connect the
+     * subgraph to the rest of the graph are left out. The subgraph's nodes are numbered in the order
+     * given.
+     * 
+     * @param subgraphNodes
+     *            the indices of the subgraph's nodes.
+     * @param localIndices
+     *            array with an entry for each node of this graph. Must be {@code -1} for nodes outside
+     *            the subgraph, and receives the index of the subgraph's nodes in the new graph.
+     * @return the subgraph's layering graph.
+     */
+    LayeringGraph subgraph(final int[] subgraphNodes, final int[] localIndices) {
+        LNode[] subgraphLNodes = new LNode[subgraphNodes.length];
+        int edgeCount = 0;
+        for (int i = 0; i < subgraphNodes.length; i++) {
+            subgraphLNodes[i] = nodes[subgraphNodes[i]];
+            localIndices[subgraphNodes[i]] = i;
+            edgeCount += getOutDegree(subgraphNodes[i]);
+        }
+
+        int[] subgraphSources = new int[edgeCount];
+        int[] subgraphTargets = new int[edgeCount];
+        int[] subgraphMinLengths = edgeMinLengths == null ? null : new int[edgeCount];
+        int subgraphEdge = 0;
+        for (int i = 0; i < subgraphNodes.length; i++) {
+            int node = subgraphNodes[i];
+            for (int j = outgoingStart[node]; j < outgoingStart[node + 1]; j++) {
+                int edge = outgoing[j];
+                if (localIndices[edgeTargets[edge]] >= 0) {
+                    subgraphSources[subgraphEdge] = i;
+                    subgraphTargets[subgraphEdge] = localIndices[edgeTargets[edge]];
+                    if (subgraphMinLengths != null) {
+                        subgraphMinLengths[subgraphEdge] = edgeMinLengths[edge];
+                    }
+                    subgraphEdge++;
+                }
+            }
+        }
+
+        return new LayeringGraph(subgraphLNodes, Arrays.copyOf(subgraphSources, subgraphEdge),
+                Arrays.copyOf(subgraphTargets, subgraphEdge), subgraphMinLengths == null
+                        ? null
+                        : Arrays.copyOf(subgraphMinLengths, subgraphEdge));
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    // Layering Utilities
+
+    /**
+     * Computes a topological order of the nodes. The graph is expected to be acyclic, which is what
+     * the cycle breaking phase ensures. Should there be cycles anyway, their nodes are appended to the
+     * order in index order.
+     * 
+     * @return the node indices in topological order.
+     */
+    int[] topologicalOrder() {
+        int[] order = new int[nodes.length];
+        int[] unprocessedPredecessors = new int[nodes.length];
+        int head = 0;
+        int tail = 0;
+
+        for (int node = 0; node < nodes.length; node++) {
+            unprocessedPredecessors[node] = getInDegree(node);
+            if (unprocessedPredecessors[node] == 0) {
+                order[tail++] = node;
+            }
+        }
+
+        while (head < tail) {
+            int node = order[head++];
+            for (int i = getOutDegree(node) - 1; i >= 0; i--) {
+                int successor = edgeTargets[getOutgoingEdge(node, i)];
+                if (--unprocessedPredecessors[successor] == 0) {
+                    order[tail++] = successor;
+                }
+            }
+        }
+
+        for (int node = 0; node < nodes.length && tail < nodes.length; node++) {
+            if (unprocessedPredecessors[node] > 0) {
+                order[tail++] = node;
+            }
+        }
+        return order;
+    }
+
+    /**
+     * Checks whether the graph is acyclic.
+     * 
+     * @return {@code true} if there are no cycles.
+     */
+    boolean isAcyclic() {
+        // Nodes on cycles are appended to the topological order, so some edge has to point backwards
+        int[] order = topologicalOrder();
+        int[] positions = new int[nodes.length];
+        for (int i = 0; i < order.length; i++) {
+            positions[order[i]] = i;
+        }
+
+        for (int edge = 0; edge < edgeSources.length; edge++) {
+            if (positions[edgeSources[edge]] >= positions[edgeTargets[edge]]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Computes a layering that places each node in the uppermost layer its predecessors allow. This
+     * is the longest path layering with all sources in the first layer.
+     * 
+     * @return layer index for each node.
+     */
+    int[] longestPathLayering() {
+        int[] layering = new int[nodes.length];
+        for (int node : topologicalOrder()) {
+            for (int i = getInDegree(node) - 1; i >= 0; i--) {
+                int edge = getIncomingEdge(node, i);
+                layering[node] = Math.max(layering[node],
+                        layering[edgeSources[edge]] + getMinLength(edge));
+            }
+        }
+        return layering;
+    }
+
+    /**
+     * Computes a feasible layering that keeps the given nodes as close to their desired layers as
+     * possible. Nodes are moved down if their predecessors don't allow their desired layer. Nodes
+     * without a desired layer are placed directly above their uppermost successor, or directly below
+     * their lowermost predecessor if they don't have successors.
+     * 
+     * @param desiredLayers
+     *            the desired layer index for each node, or a negative value if a node doesn't have a
+     *            desired layer.
+     * @return layer index for each node.
+     */
+    int[] feasibleLayering(final int[] desiredLayers) {
+        int[] order = topologicalOrder();
+        int[] layering = new int[nodes.length];
+
+        // Push nodes down as far as their predecessors require
+        for (int node : order) {
+            layering[node] = Math.max(desiredLayers[node], 0);
+            for (int i = getInDegree(node) - 1; i >= 0; i--) {
+                int predecessor = edgeSources[getIncomingEdge(node, i)];
+                layering[node] = Math.max(layering[node], layering[predecessor] + 1);
+            }
+        }
+
+        // Move nodes without a desired layer down towards their successors
+        for (int j = order.length - 1; j >= 0; j--) {
+            int node = order[j];
+            if (desiredLayers[node] < 0 && getOutDegree(node) > 0) {
+                int layer = Integer.MAX_VALUE;
+                for (int i = getOutDegree(node) - 1; i >= 0; i--) {
+                    int successor = edgeTargets[getOutgoingEdge(node, i)];
+                    layer = Math.min(layer, layering[successor] - 1);
+                }
+                layering[node] = Math.max(layering[node], layer);
+            }
+        }
+
+        return layering;
+    }
+
+    /**
+     * Assigns the nodes of the given layered graph to layers according to the given layering. Empty
+     * layers are skipped, and the graph's list of layerless nodes is cleared afterwards.
+     * 
+     * @param lgraph
+     *            the layered graph this layering graph was created from.
+     * @param layering
+     *            layer index for each node.
+     */
+    void applyLayering(final LGraph lgraph, final int[] layering) {
+        int layerCount = 0;
+        for (int layer : layering) {
+            layerCount = Math.max(layerCount, layer + 1);
+        }
+
+        // Map layer indices to actual layers, leaving out layers that wouldn't have any nodes
+        Layer[] layers = new Layer[layerCount];
+        for (int layer : layering) {
+            if (layers[layer] == null) {
+                layers[layer] = new Layer(lgraph);
+            }
+        }
+        for (Layer layer : layers) {
+            if (layer != null) {
+                lgraph.getLayers().add(layer);
+            }
+        }
+
+        for (int node = 0; node < nodes.length; node++) {
+            nodes[node].setLayer(layers[layering[node]]);
+        }
+        lgraph.getLayerlessNodes().clear();
+    }
+
+}
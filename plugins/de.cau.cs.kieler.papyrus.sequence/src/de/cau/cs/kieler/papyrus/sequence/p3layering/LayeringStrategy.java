@@ -0,0 +1,67 @@
+/*
+ * KIELER - Kiel Integrated Environment for Layout Eclipse RichClient
+ *
+ * http://www.informatik.uni-kiel.de/rtsys/kieler/
+ * 
+ * Copyright 2016 by
+ * + Kiel University
+ *   + Department of Computer Science
+ *     + Real-Time and Embedded Systems Group
+ * 
+ * This code is provided under the terms of the Eclipse Public License (EPL).
+ * See the file epl-v10.html for the license text.
+ */
+package de.cau.cs.kieler.papyrus.sequence.p3layering;
+
+/**
+ * Definition of available strategies for assigning the messages of a sequence diagram to layers.
+ * 
+ * @author cds
+ */
+public enum LayeringStrategy {
+
+    /**
+     * Minimize the total length of the edges of the layered graph using network simplex. Yields the
+     * most compact diagrams, but is the most expensive strategy on large diagrams.
+     */
+    NETWORK_SIMPLEX,
+
+    /**
+     * Place each message in the uppermost layer its predecessors allow. Runs in linear time, but
+     * may produce taller diagrams than network simplex.
+     */
+    LONGEST_PATH,
+
+    /**
+     * Assign layers in the order of the messages' current vertical coordinates. Messages at the same
+     * vertical coordinate share a layer unless their order constraints prevent that.
+     */
+    COORDINATE_ORDER,
+
+    /**
+     * Assign layers in a single sweep over the messages ordered by their current vertical coordinates,
+     * merging each message into the layer of its predecessor in that order whenever the order
+     * constraints allow it. Intended for interactive use, where the input coordinates already encode a
+     * valid vertical order and re-layouts after small edits should be instant.
+     */
+    INTERACTIVE,
+
+    /**
+     * Use network simplex for graphs up to a certain size and longest path, refined by a bounded
+     * number of network simplex iterations, for larger graphs.
+     */
+    AUTO;
+
+
+    /**
+     * Returns the enumeration value related to the given ordinal.
+     * 
+     * @param i
+     *            ordinal value
+     * @return the related enumeration value
+     */
+    public static LayeringStrategy valueOf(final int i) {
+        return values()[i];
+    }
+
+}
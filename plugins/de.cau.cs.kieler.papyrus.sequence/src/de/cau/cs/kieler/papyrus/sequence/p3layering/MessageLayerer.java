@@ -13,17 +13,37 @@
  */
 package de.cau.cs.kieler.papyrus.sequence.p3layering;
 
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.RecursiveAction;
+
+import org.eclipse.elk.alg.layered.graph.LNode;
+import org.eclipse.elk.alg.layered.graph.Layer;
 import org.eclipse.elk.alg.layered.p2layers.NetworkSimplexLayerer;
+import org.eclipse.elk.alg.layered.properties.InternalProperties;
 import org.eclipse.elk.core.util.IElkProgressMonitor;
 
 import de.cau.cs.kieler.papyrus.sequence.ISequenceLayoutProcessor;
 import de.cau.cs.kieler.papyrus.sequence.LayoutContext;
+import de.cau.cs.kieler.papyrus.sequence.graph.SLifeline;
+import de.cau.cs.kieler.papyrus.sequence.graph.SMessage;
+import de.cau.cs.kieler.papyrus.sequence.properties.InternalSequenceProperties;
+import de.cau.cs.kieler.papyrus.sequence.properties.SequenceArea;
+import de.cau.cs.kieler.papyrus.sequence.properties.SequenceDiagramOptions;
 
 /**
- * Uses KLay Layered's {@link NetworkSimplexLayerer} to compute a layering for the messages in the
- * LGraph representation of a sequence diagram. This simply delegates to the network simplex layerer,
- * but needs to be in its own class because the network simplex layerer doesn't implement out layout
- * processor interface.
+ * Computes a layering for the messages in the LGraph representation of a sequence diagram, according
+ * to the {@link LayeringStrategy} configured in the layout context. Network simplex layering is
+ * delegated to KLay Layered's {@link NetworkSimplexLayerer}. The other strategies work on a
+ * {@link LayeringGraph} and are considerably faster on large diagrams, at the price of possibly
+ * taller diagrams. If enabled, network simplex starts from the layers messages were assigned to in the
+ * previous layout run and only optimizes the parts of the diagram that have changed. Disconnected
+ * groups of messages and the messages of areas can be laid out in parallel by strategies that don't
+ * depend on the current vertical order of messages.
  * 
  * @author cds
  */
@@ -34,8 +54,638 @@ public final class MessageLayerer implements ISequenceLayoutProcessor {
      */
     @Override
     public void process(final LayoutContext context, final IElkProgressMonitor progressMonitor) {
-        NetworkSimplexLayerer layerer = new NetworkSimplexLayerer();
-        layerer.process(context.lgraph, progressMonitor);
+        progressMonitor.begin("Message layering", 1);
+
+        LayeringStrategy strategy = context.layeringStrategy;
+        if (strategy == LayeringStrategy.AUTO) {
+            strategy = context.lgraph.getLayerlessNodes().size() <= context.autoLayeringNodeLimit
+                    ? LayeringStrategy.NETWORK_SIMPLEX
+                    : LayeringStrategy.LONGEST_PATH;
+        }
+
+        LayeringGraph graph = null;
+        int[] layering = null;
+
+        // Try to start from the previous layering if we're supposed to run network simplex
+        if (context.layeringWarmStart && (strategy == LayeringStrategy.NETWORK_SIMPLEX
+                || context.layeringStrategy == LayeringStrategy.AUTO)) {
+
+            graph = LayeringGraph.fromLGraph(context.lgraph);
+            int[] previousLayers = previousLayers(graph);
+            if (previousLayers != null) {
+                layering = WarmStartLayering.compute(graph, previousLayers,
+                        strategy == LayeringStrategy.NETWORK_SIMPLEX
+                                ? -1
+                                : context.autoLayeringIterations);
+            }
+        }
+
+        // Lay out the messages of areas separately and in parallel, if requested; just as with
+        // disconnected groups of messages below, this only works for strategies that don't depend on
+        // the vertical order of messages
+        if (layering == null && context.layerAreasSeparately
+                && (strategy == LayeringStrategy.NETWORK_SIMPLEX
+                        || strategy == LayeringStrategy.LONGEST_PATH)) {
+            if (graph == null) {
+                graph = LayeringGraph.fromLGraph(context.lgraph);
+            }
+            layering = layerAreas(graph, strategy, context);
+        }
+
+        // Lay out disconnected groups of messages in parallel, if there are any; the coordinate-based
+        // strategies have to see the whole graph to keep the vertical order of the groups intact
+        if (layering == null && context.layeringThreads != 1
+                && (strategy == LayeringStrategy.NETWORK_SIMPLEX
+                        || strategy == LayeringStrategy.LONGEST_PATH)) {
+            if (graph == null) {
+                graph = LayeringGraph.fromLGraph(context.lgraph);
+            }
+            int[][] components = graph.connectedComponents();
+            if (components.length > 1) {
+                layering = layerComponents(graph, components, strategy, context);
+            }
+        }
+
+        if (layering == null && strategy != LayeringStrategy.NETWORK_SIMPLEX) {
+            if (graph == null) {
+                graph = LayeringGraph.fromLGraph(context.lgraph);
+            }
+            layering = layer(graph, strategy, context);
+        }
+
+        if (layering != null) {
+            graph.applyLayering(context.lgraph, layering);
+        } else {
+            NetworkSimplexLayerer layerer = new NetworkSimplexLayerer();
+            layerer.process(context.lgraph, progressMonitor.subTask(1));
+        }
+
+        // The layers are only worth persisting if the next layout run will start from them
+        if (context.layeringWarmStart) {
+            recordMessageLayers(context);
+        }
+        progressMonitor.done();
+    }
+
+
+    /**
+     * Computes a layering for the given layering graph with the given strategy. Network simplex
+     * layering is done by {@link NetworkSimplex}, starting from a longest path layering.
+     * 
+     * @param graph
+     *            the layering graph.
+     * @param strategy
+     *            the layering strategy, with {@link LayeringStrategy#AUTO} already resolved.
+     * @param context
+     *            the layout context that contains all relevant information for the current layout run.
+     * @return layer index for each node.
+     */
+    private int[] layer(final LayeringGraph graph, final LayeringStrategy strategy,
+            final LayoutContext context) {
+
+        switch (strategy) {
+        case COORDINATE_ORDER:
+            return coordinateOrderLayering(graph, false);
+
+        case INTERACTIVE:
+            return coordinateOrderLayering(graph, true);
+
+        default:
+            int[] layering = graph.longestPathLayering();
+            if (strategy == LayeringStrategy.NETWORK_SIMPLEX) {
+                NetworkSimplex.optimize(graph, layering, -1);
+            } else if (context.layeringStrategy == LayeringStrategy.AUTO
+                    && context.autoLayeringIterations > 0) {
+
+                NetworkSimplex.optimize(graph, layering, context.autoLayeringIterations);
+            }
+            return layering;
+        }
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    // Parallel Component Layering
+
+    /**
+     * Lays out the connected components of the given graph in parallel. Each component is laid out
+     * independently, with its uppermost nodes in the first layer.
+     * 
+     * @param graph
+     *            the layering graph.
+     * @param components
+     *            the graph's connected components.
+     * @param strategy
+     *            the layering strategy, with {@link LayeringStrategy#AUTO} already resolved.
+     * @param context
+     *            the layout context that contains all relevant information for the current layout run.
+     * @return layer index for each node.
+     */
+    private int[] layerComponents(final LayeringGraph graph, final int[][] components,
+            final LayeringStrategy strategy, final LayoutContext context) {
+
+        LayeringGraph[] componentGraphs = new LayeringGraph[components.length];
+        int[] localIndices = new int[graph.getNodeCount()];
+        for (int component = 0; component < components.length; component++) {
+            componentGraphs[component] = graph.componentGraph(components[component], localIndices);
+        }
+
+        int[][] componentLayerings = layerInParallel(componentGraphs, strategy, context);
+
+        // Merge the component layerings; each of them starts at layer 0
+        int[] layering = new int[graph.getNodeCount()];
+        for (int component = 0; component < components.length; component++) {
+            for (int i = 0; i < components[component].length; i++) {
+                layering[components[component][i]] = componentLayerings[component][i];
+            }
+        }
+        return layering;
+    }
+
+    /**
+     * Lays out the given independent graphs in parallel, using as many threads as configured.
+     * 
+     * @param graphs
+     *            the layering graphs.
+     * @param strategy
+     *            the layering strategy, with {@link LayeringStrategy#AUTO} already resolved.
+     * @param context
+     *            the layout context that contains all relevant information for the current layout run.
+     * @return for each graph, the layer index of each of its nodes.
+     */
+    private int[][] layerInParallel(final LayeringGraph[] graphs, final LayeringStrategy strategy,
+            final LayoutContext context) {
+
+        int[][] layerings = new int[graphs.length][];
+        context.threadPool.invoke(new SubgraphLayeringTask(graphs, layerings, strategy, context, 0,
+                graphs.length));
+        return layerings;
+    }
+
+    /**
+     * Task that lays out a range of independent graphs, splitting the range in half until only
+     * single graphs remain.
+     */
+    private final class SubgraphLayeringTask extends RecursiveAction {
+        private static final long serialVersionUID = -4409447432329101587L;
+
+        /** The layering graphs. */
+        private final LayeringGraph[] graphs;
+        /** Array that receives the layering of each graph. */
+        private final int[][] layerings;
+        /** The layering strategy. */
+        private final LayeringStrategy strategy;
+        /** The layout context. */
+        private final LayoutContext context;
+        /** The first graph to lay out. */
+        private final int from;
+        /** The graph after the last one to lay out. */
+        private final int to;
+
+        /**
+         * Creates a new task for the given range of graphs.
+         * 
+         * @param graphs
+         *            the layering graphs.
+         * @param layerings
+         *            array that receives the layering of each graph.
+         * @param strategy
+         *            the layering strategy, with {@link LayeringStrategy#AUTO} already resolved.
+         * @param context
+         *            the layout context.
+         * @param from
+         *            the first graph to lay out.
+         * @param to
+         *            the graph after the last one to lay out.
+         */
+        SubgraphLayeringTask(final LayeringGraph[] graphs, final int[][] layerings,
+                final LayeringStrategy strategy, final LayoutContext context, final int from,
+                final int to) {
+
+            this.graphs = graphs;
+            this.layerings = layerings;
+            this.strategy = strategy;
+            this.context = context;
+            this.from = from;
+            this.to = to;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                layerings[from] = layer(graphs[from], strategy, context);
+            } else {
+                int middle = (from + to) / 2;
+                invokeAll(
+                        new SubgraphLayeringTask(graphs, layerings, strategy, context, from,
+                                middle),
+                        new SubgraphLayeringTask(graphs, layerings, strategy, context, middle,
+                                to));
+            }
+        }
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    // Area Layering
+
+    /**
+     * Lays out the messages of areas separately from the rest of the graph. Areas that share messages,
+     * such as nested ones, form a single partition. The partitions are laid out in parallel, each with
+     * its uppermost nodes in its first layer. The rest of the graph is then laid out with each
+     * partition collapsed into a single node, and each partition is finally placed below the layer of
+     * its collapsed node. Dummy nodes that allocate space above messages belong to the partition of
+     * their message, which keeps the space allocated for area headers.
+     * 
+     * @param graph
+     *            the layering graph.
+     * @param strategy
+     *            the layering strategy, with {@link LayeringStrategy#AUTO} already resolved.
+     * @param context
+     *            the layout context that contains all relevant information for the current layout run.
+     * @return layer index for each node, or {@code null} if there are less than two partitions or if
+     *         collapsing the partitions would introduce cycles.
+     */
+    private int[] layerAreas(final LayeringGraph graph, final LayeringStrategy strategy,
+            final LayoutContext context) {
+
+        int nodeCount = graph.getNodeCount();
+        int[] partitionOf = new int[nodeCount];
+        int partitionCount = computePartitions(graph, context, partitionOf);
+        if (partitionCount < 2) {
+            return null;
+        }
+
+        // Collect the nodes of each partition; the rest of the graph is numbered first in the graph
+        // the partitions are collapsed in, followed by one node per partition
+        int[] partitionSizes = new int[partitionCount];
+        int[] outerIndices = new int[nodeCount];
+        int outsideCount = 0;
+        for (int node = 0; node < nodeCount; node++) {
+            if (partitionOf[node] < 0) {
+                outerIndices[node] = outsideCount++;
+            } else {
+                partitionSizes[partitionOf[node]]++;
+            }
+        }
+
+        int[][] partitions = new int[partitionCount][];
+        for (int partition = 0; partition < partitionCount; partition++) {
+            partitions[partition] = new int[partitionSizes[partition]];
+            partitionSizes[partition] = 0;
+        }
+        for (int node = 0; node < nodeCount; node++) {
+            int partition = partitionOf[node];
+            if (partition >= 0) {
+                partitions[partition][partitionSizes[partition]++] = node;
+                outerIndices[node] = outsideCount + partition;
+            }
+        }
+
+        // Lay out the partitions
+        LayeringGraph[] partitionGraphs = new LayeringGraph[partitionCount];
+        int[] localIndices = new int[nodeCount];
+        Arrays.fill(localIndices, -1);
+        for (int partition = 0; partition < partitionCount; partition++) {
+            partitionGraphs[partition] = graph.subgraph(partitions[partition], localIndices);
+            for (int node : partitions[partition]) {
+                localIndices[node] = -1;
+            }
+        }
+        int[][] partitionLayerings = layerInParallel(partitionGraphs, strategy, context);
+
+        int[] localLayers = new int[nodeCount];
+        for (int partition = 0; partition < partitionCount; partition++) {
+            for (int i = 0; i < partitions[partition].length; i++) {
+                localLayers[partitions[partition][i]] = partitionLayerings[partition][i];
+            }
+        }
+
+        // Collapse the partitions. Edges leaving a partition have to be long enough to leave room for
+        // the partition's layers above their source
+        LNode[] outerNodes = new LNode[outsideCount + partitionCount];
+        for (int node = 0; node < nodeCount; node++) {
+            if (partitionOf[node] < 0 || outerNodes[outerIndices[node]] == null) {
+                outerNodes[outerIndices[node]] = graph.getNode(node);
+            }
+        }
+
+        int edgeCount = graph.getEdgeCount();
+        int[] outerSources = new int[edgeCount];
+        int[] outerTargets = new int[edgeCount];
+        int[] outerMinLengths = new int[edgeCount];
+        int outerEdge = 0;
+        for (int edge = 0; edge < edgeCount; edge++) {
+            int source = graph.getSource(edge);
+            int target = graph.getTarget(edge);
+            if (outerIndices[source] != outerIndices[target]) {
+                outerSources[outerEdge] = outerIndices[source];
+                outerTargets[outerEdge] = outerIndices[target];
+                outerMinLengths[outerEdge] = partitionOf[source] < 0 ? 1 : localLayers[source] + 1;
+                outerEdge++;
+            }
+        }
+
+        LayeringGraph outerGraph = new LayeringGraph(outerNodes,
+                Arrays.copyOf(outerSources, outerEdge), Arrays.copyOf(outerTargets, outerEdge),
+                Arrays.copyOf(outerMinLengths, outerEdge));
+        if (!outerGraph.isAcyclic()) {
+            return null;
+        }
+        int[] outerLayering = layer(outerGraph, strategy, context);
+
+        // Place the partitions below the layers of their collapsed nodes
+        int[] layering = new int[nodeCount];
+        for (int node = 0; node < nodeCount; node++) {
+            layering[node] = outerLayering[outerIndices[node]];
+            if (partitionOf[node] >= 0) {
+                layering[node] += localLayers[node];
+            }
+        }
+        return layering;
+    }
+
+    /**
+     * Assigns the nodes of the given graph to the partitions that are laid out separately. Areas that
+     * share messages are merged into a single partition. Message nodes belong to the partition of
+     * their message's areas, if any. Dummy nodes belong to the partition of their successors if they
+     * all belong to the same one.
+     * 
+     * @param graph
+     *            the layering graph.
+     * @param context
+     *            the layout context that contains all relevant information for the current layout run.
+     * @param partitionOf
+     *            array that receives the partition of each node, or {@code -1} for nodes that don't
+     *            belong to any partition.
+     * @return the number of partitions.
+     */
+    private int computePartitions(final LayeringGraph graph, final LayoutContext context,
+            final int[] partitionOf) {
+
+        List<SequenceArea> areas = context.sgraph.getProperty(SequenceDiagramOptions.AREAS);
+        if (areas == null || areas.size() < 2) {
+            return 0;
+        }
+
+        // Merge areas that share messages with a union-find structure
+        Map<Object, Integer> areaOfMessage = new HashMap<Object, Integer>();
+        int[] parents = new int[areas.size()];
+        for (int area = 0; area < parents.length; area++) {
+            parents[area] = area;
+            for (Object message : areas.get(area).getMessages()) {
+                Integer otherArea = areaOfMessage.put(message, area);
+                if (otherArea != null) {
+                    int root = findRoot(parents, area);
+                    int otherRoot = findRoot(parents, otherArea);
+                    parents[Math.max(root, otherRoot)] = Math.min(root, otherRoot);
+                }
+            }
+        }
+
+        // Partitions are numbered in the order their first nodes are found
+        int[] partitionOfRoot = new int[parents.length];
+        Arrays.fill(partitionOfRoot, -1);
+        int partitionCount = 0;
+        for (int node = 0; node < partitionOf.length; node++) {
+            partitionOf[node] = -1;
+            Object origin = graph.getNode(node).getProperty(InternalProperties.ORIGIN);
+            Integer area = origin instanceof SMessage ? areaOfMessage.get(origin) : null;
+            if (area != null) {
+                int root = findRoot(parents, area);
+                if (partitionOfRoot[root] < 0) {
+                    partitionOfRoot[root] = partitionCount++;
+                }
+                partitionOf[node] = partitionOfRoot[root];
+            }
+        }
+
+        // Dummy nodes precede the nodes they allocate space for, possibly in chains
+        int[] order = graph.topologicalOrder();
+        for (int i = order.length - 1; i >= 0; i--) {
+            int node = order[i];
+            if (graph.getNode(node).getProperty(InternalProperties.ORIGIN) instanceof SMessage
+                    || graph.getOutDegree(node) == 0) {
+                continue;
+            }
+
+            int partition = partitionOf[graph.getTarget(graph.getOutgoingEdge(node, 0))];
+            for (int j = graph.getOutDegree(node) - 1; j > 0; j--) {
+                if (partitionOf[graph.getTarget(graph.getOutgoingEdge(node, j))] != partition) {
+                    partition = -1;
+                    break;
+                }
+            }
+            partitionOf[node] = partition;
+        }
+
+        return partitionCount;
+    }
+
+    /**
+     * Finds the root of the given area in the given union-find forest, halving the path on the way.
+     * 
+     * @param parents
+     *            the parent of each area in the forest.
+     * @param area
+     *            the area.
+     * @return the area's root.
+     */
+    private static int findRoot(final int[] parents, final int area) {
+        int current = area;
+        while (parents[current] != current) {
+            parents[current] = parents[parents[current]];
+            current = parents[current];
+        }
+        return current;
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    // Warm Start
+
+    /**
+     * Collects the layers the messages were assigned to in the previous layout run. Nodes of messages
+     * that were added since then are marked as new, dummy nodes and nodes created by splitting a
+     * message as auxiliary nodes.
+     * 
+     * @param graph
+     *            the layering graph.
+     * @return previous layer index for each node as expected by {@link WarmStartLayering}, or
+     *         {@code null} if no message knows its previous layer.
+     */
+    private int[] previousLayers(final LayeringGraph graph) {
+        int nodeCount = graph.getNodeCount();
+        int[] previousLayers = new int[nodeCount];
+        boolean anyPreviousLayer = false;
+
+        for (int node = 0; node < nodeCount; node++) {
+            previousLayers[node] = WarmStartLayering.AUXILIARY_NODE;
+
+            LNode lnode = graph.getNode(node);
+            Object origin = lnode.getProperty(InternalProperties.ORIGIN);
+            if (origin instanceof SMessage) {
+                SMessage message = (SMessage) origin;
+                // Split messages only remember the layer of their original node
+                if (message.getProperty(InternalSequenceProperties.LAYERED_NODE) == lnode) {
+                    int previousLayer = message.getProperty(SequenceDiagramOptions.MESSAGE_LAYER);
+                    if (previousLayer >= 0) {
+                        previousLayers[node] = previousLayer;
+                        anyPreviousLayer = true;
+                    } else {
+                        previousLayers[node] = WarmStartLayering.NEW_NODE;
+                    }
+                }
+            }
+        }
+
+        return anyPreviousLayer ? previousLayers : null;
+    }
+
+    /**
+     * Remembers the layer of each message's node in the message's {@link
+     * SequenceDiagramOptions#MESSAGE_LAYER} property. The exporters write the layers back to the
+     * original diagram for the next layout run to start from.
+     * 
+     * @param context
+     *            the layout context that contains all relevant information for the current layout run.
+     */
+    private void recordMessageLayers(final LayoutContext context) {
+        int layerIndex = 0;
+        for (Layer layer : context.lgraph.getLayers()) {
+            for (LNode node : layer.getNodes()) {
+                Object origin = node.getProperty(InternalProperties.ORIGIN);
+                if (origin instanceof SMessage) {
+                    SMessage message = (SMessage) origin;
+                    if (message.getProperty(InternalSequenceProperties.LAYERED_NODE) == node) {
+                        message.setProperty(SequenceDiagramOptions.MESSAGE_LAYER, layerIndex);
+                    }
+                }
+            }
+            layerIndex++;
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    // Coordinate Order Layering
+
+    /**
+     * Computes a layering that respects the current vertical order of messages. Nodes are visited in
+     * a topological order that prefers nodes with smaller vertical coordinates. A node is placed in
+     * the layer of the previously visited node if none of its predecessors is in that layer and, unless
+     * layers are merged, its vertical coordinate is the same. Otherwise, it is placed in the next layer.
+     * 
+     * @param graph
+     *            the layering graph.
+     * @param mergeLayers
+     *            if {@code true}, nodes share a layer with the previously visited node whenever their
+     *            predecessors allow it, even if their vertical coordinates differ.
+     * @return layer index for each node.
+     */
+    private int[] coordinateOrderLayering(final LayeringGraph graph, final boolean mergeLayers) {
+        final double[] yPositions = computeNodeYPositions(graph);
+
+        int nodeCount = graph.getNodeCount();
+        int[] unprocessedPredecessors = new int[nodeCount];
+        PriorityQueue<Integer> readyNodes = new PriorityQueue<Integer>(Math.max(nodeCount, 1),
+                new Comparator<Integer>() {
+                    @Override
+                    public int compare(final Integer node1, final Integer node2) {
+                        int result = Double.compare(yPositions[node1], yPositions[node2]);
+                        return result != 0 ? result : node1.compareTo(node2);
+                    }
+                });
+
+        for (int node = 0; node < nodeCount; node++) {
+            unprocessedPredecessors[node] = graph.getInDegree(node);
+            if (unprocessedPredecessors[node] == 0) {
+                readyNodes.add(node);
+            }
+        }
+
+        int[] layering = new int[nodeCount];
+        int currentLayer = 0;
+        double currentY = Double.NaN;
+        while (!readyNodes.isEmpty()) {
+            int node = readyNodes.poll();
+
+            if (!mergeLayers && !Double.isNaN(currentY) && yPositions[node] > currentY) {
+                currentLayer++;
+            }
+            currentY = yPositions[node];
+
+            layering[node] = Math.max(layering[node], currentLayer);
+            currentLayer = layering[node];
+
+            for (int i = graph.getOutDegree(node) - 1; i >= 0; i--) {
+                int edge = graph.getOutgoingEdge(node, i);
+                int successor = graph.getTarget(edge);
+                layering[successor] = Math.max(layering[successor], layering[node] + 1);
+                if (--unprocessedPredecessors[successor] == 0) {
+                    readyNodes.add(successor);
+                }
+            }
+        }
+
+        return layering;
+    }
+
+    /**
+     * Determines a vertical coordinate for each node of the layering graph. Message nodes use the
+     * vertical coordinate of their message or, if the node was split, of the message end they
+     * represent. Nodes without a coordinate, such as the dummy nodes that allocate space, inherit
+     * the smallest coordinate of their successors.
+     * 
+     * @param graph
+     *            the layering graph.
+     * @return vertical coordinate for each node.
+     */
+    private double[] computeNodeYPositions(final LayeringGraph graph) {
+        int nodeCount = graph.getNodeCount();
+        double[] yPositions = new double[nodeCount];
+        Arrays.fill(yPositions, Double.NaN);
+
+        for (int node = 0; node < nodeCount; node++) {
+            LNode lnode = graph.getNode(node);
+            Object origin = lnode.getProperty(InternalProperties.ORIGIN);
+            if (origin instanceof SMessage) {
+                SMessage message = (SMessage) origin;
+                SLifeline belongsTo = lnode.getProperty(
+                        InternalSequenceProperties.BELONGS_TO_LIFELINE);
+
+                double sourceY = message.getSourceYPos();
+                double targetY = message.getTargetYPos();
+                if (belongsTo == message.getSource() && sourceY >= 0) {
+                    yPositions[node] = sourceY;
+                } else if (belongsTo == message.getTarget() && targetY >= 0) {
+                    yPositions[node] = targetY;
+                } else if (sourceY >= 0 && targetY >= 0) {
+                    yPositions[node] = Math.min(sourceY, targetY);
+                } else if (sourceY >= 0 || targetY >= 0) {
+                    yPositions[node] = Math.max(sourceY, targetY);
+                }
+            }
+        }
+
+        // Let nodes without coordinates inherit them from their successors
+        int[] order = graph.topologicalOrder();
+        for (int i = order.length - 1; i >= 0; i--) {
+            int node = order[i];
+            if (Double.isNaN(yPositions[node])) {
+                double y = Double.MAX_VALUE;
+                for (int j = graph.getOutDegree(node) - 1; j >= 0; j--) {
+                    int successor = graph.getTarget(graph.getOutgoingEdge(node, j));
+                    if (!Double.isNaN(yPositions[successor])) {
+                        y = Math.min(y, yPositions[successor]);
+                    }
+                }
+                yPositions[node] = y;
+            }
+        }
+
+        return yPositions;
     }
 
 }
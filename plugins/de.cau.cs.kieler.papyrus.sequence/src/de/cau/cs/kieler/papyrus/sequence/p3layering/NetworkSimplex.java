@@ -0,0 +1,577 @@
+/*
+ * KIELER - Kiel Integrated Environment for Layout Eclipse RichClient
+ *
+ * http://www.informatik.uni-kiel.de/rtsys/kieler/
+ * 
+ * Copyright 2016 by
+ * + Kiel University
+ *   + Department of Computer Science
+ *     + Real-Time and Embedded Systems Group
+ * 
+ * This code is provided under the terms of the Eclipse Public License (EPL).
+ * See the file epl-v10.html for the license text.
+ */
+package de.cau.cs.kieler.papyrus.sequence.p3layering;
+
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+/**
+ * Network simplex implementation that minimizes the total edge length of a layering as described
+ * in
+ * <ul>
+ *   <li>Emden R. Gansner, Eleftherios Koutsofios, Stephen C. North, Kiem-Phong Vo. A technique for
+ *     drawing directed graphs. <i>Software Engineering</i> 19(3), pp. 214-230, 1993.</li>
+ * </ul>
+ * 
+ * <p>Contrary to KLay Layered's network simplex layerer, this one works on a {@link LayeringGraph},
+ * starts from a feasible layering supplied by the caller, and can be told to stop after a certain
+ * number of iterations. The better the initial layering, the fewer iterations are necessary to reach
+ * the optimum. Each connected component is normalized to start at layer 0.</p>
+ * 
+ * @author cds
+ */
+final class NetworkSimplex {
+
+    /** The graph whose layering to improve. */
+    private final LayeringGraph graph;
+    /** The layering, which is modified in place. */
+    private final int[] layering;
+
+    /** For each edge, whether it is part of the spanning tree. */
+    private final boolean[] treeEdges;
+    /** For each node, the edge connecting it to its parent in the spanning tree or -1 for roots. */
+    private final int[] parentEdges;
+    /** For each node, the index of its connected component. */
+    private final int[] components;
+    /** The root node of each connected component's spanning tree. */
+    private int[] roots;
+    /** For each node, its number in a postorder traversal of the spanning tree. */
+    private final int[] lim;
+    /** For each node, the lowest postorder number in its subtree. */
+    private final int[] low;
+    /** The nodes in postorder. */
+    private final int[] postOrder;
+    /** For each tree edge, its cut value. */
+    private final int[] cutValues;
+    /** The edge index the next search for a leaving edge starts at. */
+    private int searchStart = 0;
+    /** Stack used while traversing the spanning tree. */
+    private final int[] stack;
+    /** For each node on the traversal stack, the next incident edge to look at. */
+    private final int[] nextIncidentEdge;
+
+
+    /**
+     * Creates a new instance for the given graph and layering.
+     * 
+     * @param graph
+     *            the graph.
+     * @param layering
+     *            the feasible layering to start from.
+     */
+    private NetworkSimplex(final LayeringGraph graph, final int[] layering) {
+        this.graph = graph;
+        this.layering = layering;
+
+        int nodeCount = graph.getNodeCount();
+        int edgeCount = graph.getEdgeCount();
+        treeEdges = new boolean[edgeCount];
+        parentEdges = new int[nodeCount];
+        components = new int[nodeCount];
+        lim = new int[nodeCount];
+        low = new int[nodeCount];
+        postOrder = new int[nodeCount];
+        cutValues = new int[edgeCount];
+        stack = new int[nodeCount];
+        nextIncidentEdge = new int[nodeCount];
+    }
+
+    /**
+     * Improves the given layering until it is optimal or until the iteration limit is reached.
+     * The layering must be feasible, that is, each edge must be at least as long as its minimum
+     * length.
+     * 
+     * @param graph
+     *            the graph.
+     * @param layering
+     *            feasible layering to start from, which is modified in place.
+     * @param iterationLimit
+     *            the maximum number of iterations to run, or a negative value to run until the
+     *            layering is optimal.
+     * @return the number of iterations that were run.
+     */
+    static int optimize(final LayeringGraph graph, final int[] layering,
+            final int iterationLimit) {
+
+        NetworkSimplex networkSimplex = new NetworkSimplex(graph, layering);
+        networkSimplex.feasibleTree();
+        networkSimplex.computeTreeStructure();
+
+        int iterations = 0;
+        while (iterationLimit < 0 || iterations < iterationLimit) {
+            int leavingEdge = networkSimplex.leavingEdge();
+            if (leavingEdge < 0) {
+                break;
+            }
+            int enteringEdge = networkSimplex.enteringEdge(leavingEdge);
+            if (enteringEdge < 0) {
+                break;
+            }
+
+            networkSimplex.exchange(leavingEdge, enteringEdge);
+            iterations++;
+        }
+
+        networkSimplex.normalize();
+        return iterations;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    // Feasible Tree
+
+    /**
+     * Computes the slack of the given edge, that is, the number of layers it could be shortened by
+     * without falling below its minimum length.
+     * 
+     * @param edge
+     *            the edge.
+     * @return the edge's slack.
+     */
+    private int slack(final int edge) {
+        return layering[graph.getTarget(edge)] - layering[graph.getSource(edge)]
+                - graph.getMinLength(edge);
+    }
+
+    /**
+     * Builds a spanning tree of tight edges for each connected component, shifting the layers of
+     * tree nodes where necessary. Instead of shifting the tree nodes every time, their layers are
+     * stored relative to an offset that is only applied once the component's tree is complete.
+     */
+    private void feasibleTree() {
+        int nodeCount = graph.getNodeCount();
+        boolean[] inTree = new boolean[nodeCount];
+        int[] treeNodes = new int[nodeCount];
+        int[] rootList = new int[nodeCount];
+        int componentCount = 0;
+
+        // Edges that leave or enter the current tree, encoded as (key << 32 | edge); the key is the
+        // slack with the tree offset not yet applied
+        PriorityQueue<Long> leavingEdges = new PriorityQueue<Long>();
+        PriorityQueue<Long> enteringEdges = new PriorityQueue<Long>();
+        int[] pendingEdges = new int[graph.getEdgeCount()];
+
+        for (int root = 0; root < nodeCount; root++) {
+            if (inTree[root]) {
+                continue;
+            }
+
+            int component = componentCount++;
+            rootList[component] = root;
+
+            int treeSize = 0;
+            int offset = 0;
+            int pendingCount = 0;
+            int pendingNode = root;
+
+            while (true) {
+                // Add the pending node and everything reachable through tight edges to the tree
+                while (pendingNode >= 0) {
+                    int node = pendingNode;
+                    inTree[node] = true;
+                    components[node] = component;
+                    treeNodes[treeSize++] = node;
+                    layering[node] -= offset;
+
+                    for (int i = graph.getOutDegree(node) - 1; i >= 0; i--) {
+                        int edge = graph.getOutgoingEdge(node, i);
+                        int other = graph.getTarget(edge);
+                        if (!inTree[other]) {
+                            int key = layering[other] - layering[node] - graph.getMinLength(edge);
+                            if (key - offset == 0) {
+                                pendingEdges[pendingCount++] = edge;
+                            } else {
+                                leavingEdges.add(encode(key, edge));
+                            }
+                        }
+                    }
+                    for (int i = graph.getInDegree(node) - 1; i >= 0; i--) {
+                        int edge = graph.getIncomingEdge(node, i);
+                        int other = graph.getSource(edge);
+                        if (!inTree[other]) {
+                            int key = layering[node] - layering[other] - graph.getMinLength(edge);
+                            if (key + offset == 0) {
+                                pendingEdges[pendingCount++] = edge;
+                            } else {
+                                enteringEdges.add(encode(key, edge));
+                            }
+                        }
+                    }
+
+                    // Find the next pending edge that still leads to a node outside the tree
+                    pendingNode = -1;
+                    while (pendingNode < 0 && pendingCount > 0) {
+                        pendingNode = addToTree(pendingEdges[--pendingCount], inTree);
+                    }
+                }
+
+                // Remove edges that have become internal to the tree
+                while (!leavingEdges.isEmpty()
+                        && inTree[graph.getTarget(edgeOf(leavingEdges.peek()))]) {
+                    leavingEdges.poll();
+                }
+                while (!enteringEdges.isEmpty()
+                        && inTree[graph.getSource(edgeOf(enteringEdges.peek()))]) {
+                    enteringEdges.poll();
+                }
+
+                if (leavingEdges.isEmpty() && enteringEdges.isEmpty()) {
+                    break;
+                }
+
+                // Shift the tree such that the incident edge with minimal slack becomes tight
+                int leavingSlack = leavingEdges.isEmpty()
+                        ? Integer.MAX_VALUE : keyOf(leavingEdges.peek()) - offset;
+                int enteringSlack = enteringEdges.isEmpty()
+                        ? Integer.MAX_VALUE : keyOf(enteringEdges.peek()) + offset;
+                if (leavingSlack <= enteringSlack) {
+                    offset += leavingSlack;
+                    pendingNode = addToTree(edgeOf(leavingEdges.poll()), inTree);
+                } else {
+                    offset -= enteringSlack;
+                    pendingNode = addToTree(edgeOf(enteringEdges.poll()), inTree);
+                }
+            }
+
+            for (int i = 0; i < treeSize; i++) {
+                layering[treeNodes[i]] += offset;
+            }
+            leavingEdges.clear();
+            enteringEdges.clear();
+        }
+
+        roots = Arrays.copyOf(rootList, componentCount);
+    }
+
+    /**
+     * Adds the given tight edge to the tree if its end point outside the tree is not part of the
+     * tree yet.
+     * 
+     * @param edge
+     *            the edge.
+     * @param inTree
+     *            which nodes are already part of the tree.
+     * @return the end point to add to the tree, or -1 if both end points already are.
+     */
+    private int addToTree(final int edge, final boolean[] inTree) {
+        int source = graph.getSource(edge);
+        int target = graph.getTarget(edge);
+        if (inTree[source] && inTree[target]) {
+            return -1;
+        }
+
+        treeEdges[edge] = true;
+        return inTree[source] ? target : source;
+    }
+
+    /**
+     * Encodes the given key and edge into a single value that sorts by key first.
+     * 
+     * @param key
+     *            the key, which may be negative.
+     * @param edge
+     *            the edge.
+     * @return the encoded value.
+     */
+    private static long encode(final int key, final int edge) {
+        return ((long) key << Integer.SIZE) | edge;
+    }
+
+    /**
+     * Extracts the key from a value created by {@link #encode(int, int)}.
+     * 
+     * @param value
+     *            the encoded value.
+     * @return the key.
+     */
+    private static int keyOf(final long value) {
+        return (int) (value >> Integer.SIZE);
+    }
+
+    /**
+     * Extracts the edge from a value created by {@link #encode(int, int)}.
+     * 
+     * @param value
+     *            the encoded value.
+     * @return the edge.
+     */
+    private static int edgeOf(final long value) {
+        return (int) value;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    // Tree Structure and Cut Values
+
+    /**
+     * Returns the {@code i}-th edge incident to the given node, outgoing edges first.
+     * 
+     * @param node
+     *            the node.
+     * @param i
+     *            index between {@code 0} and the node's degree minus one.
+     * @return the edge.
+     */
+    private int incidentEdge(final int node, final int i) {
+        int outDegree = graph.getOutDegree(node);
+        return i < outDegree
+                ? graph.getOutgoingEdge(node, i)
+                : graph.getIncomingEdge(node, i - outDegree);
+    }
+
+    /**
+     * Returns the end point of the given edge that is not the given node.
+     * 
+     * @param edge
+     *            the edge.
+     * @param node
+     *            one of the edge's end points.
+     * @return the other end point.
+     */
+    private int opposite(final int edge, final int node) {
+        int source = graph.getSource(edge);
+        return source == node ? graph.getTarget(edge) : source;
+    }
+
+    /**
+     * Computes parent edges, postorder numbers, and the cut values of all tree edges.
+     */
+    private void computeTreeStructure() {
+        int counter = 0;
+        for (int root : roots) {
+            parentEdges[root] = -1;
+            counter = numberSubtree(root, counter);
+        }
+
+        // The cut value of a tree edge follows from the number of edges leaving and entering the
+        // subtree below it, which can be accumulated bottom-up
+        int nodeCount = graph.getNodeCount();
+        int[] subtreeBalance = new int[nodeCount];
+        for (int node = 0; node < nodeCount; node++) {
+            subtreeBalance[node] = graph.getOutDegree(node) - graph.getInDegree(node);
+        }
+        for (int i = 0; i < nodeCount; i++) {
+            int node = postOrder[i];
+            int parentEdge = parentEdges[node];
+            if (parentEdge >= 0) {
+                cutValues[parentEdge] = graph.getSource(parentEdge) == node
+                        ? subtreeBalance[node]
+                        : -subtreeBalance[node];
+                subtreeBalance[opposite(parentEdge, node)] += subtreeBalance[node];
+            }
+        }
+    }
+
+    /**
+     * Assigns parent edges and postorder numbers to the nodes in the subtree rooted at the given
+     * node. The root's parent edge must already be set.
+     * 
+     * @param subtreeRoot
+     *            root of the subtree.
+     * @param firstNumber
+     *            the postorder number to assign to the first node finished.
+     * @return the postorder number following the one assigned to the subtree's root.
+     */
+    private int numberSubtree(final int subtreeRoot, final int firstNumber) {
+        int counter = firstNumber;
+        int stackSize = 0;
+        stack[stackSize++] = subtreeRoot;
+        nextIncidentEdge[subtreeRoot] = 0;
+        low[subtreeRoot] = counter;
+
+        while (stackSize > 0) {
+            int node = stack[stackSize - 1];
+            int degree = graph.getOutDegree(node) + graph.getInDegree(node);
+
+            // Advance to the next tree edge leading to a child
+            int child = -1;
+            while (child < 0 && nextIncidentEdge[node] < degree) {
+                int edge = incidentEdge(node, nextIncidentEdge[node]++);
+                if (treeEdges[edge] && edge != parentEdges[node]) {
+                    child = opposite(edge, node);
+                    parentEdges[child] = edge;
+                }
+            }
+
+            if (child >= 0) {
+                nextIncidentEdge[child] = 0;
+                low[child] = counter;
+                stack[stackSize++] = child;
+            } else {
+                lim[node] = counter;
+                postOrder[counter] = node;
+                counter++;
+                stackSize--;
+            }
+        }
+        return counter;
+    }
+
+    /**
+     * Checks whether the given node is part of the subtree rooted at the given root.
+     * 
+     * @param node
+     *            the node.
+     * @param subtreeRoot
+     *            root of the subtree.
+     * @return {@code true} if the node is in the subtree.
+     */
+    private boolean isInSubtree(final int node, final int subtreeRoot) {
+        return low[subtreeRoot] <= lim[node] && lim[node] <= lim[subtreeRoot];
+    }
+
+    /**
+     * Returns the node of the given tree edge that is farther away from the root.
+     * 
+     * @param treeEdge
+     *            the tree edge.
+     * @return the edge's end point whose parent edge it is.
+     */
+    private int childOf(final int treeEdge) {
+        int source = graph.getSource(treeEdge);
+        return parentEdges[source] == treeEdge ? source : graph.getTarget(treeEdge);
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    // Pivoting
+
+    /**
+     * Finds a tree edge with negative cut value.
+     * 
+     * @return the edge, or -1 if there is none and the layering is optimal.
+     */
+    private int leavingEdge() {
+        int edgeCount = graph.getEdgeCount();
+        for (int i = 0; i < edgeCount; i++) {
+            int edge = (searchStart + i) % edgeCount;
+            if (treeEdges[edge] && cutValues[edge] < 0) {
+                searchStart = (edge + 1) % edgeCount;
+                return edge;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Finds the non-tree edge with minimal slack that reconnects the two components the tree falls
+     * apart into when the given edge is removed, going from the component that contains the leaving
+     * edge's head to the component that contains its tail.
+     * 
+     * @param leavingEdge
+     *            the tree edge to be removed.
+     * @return the entering edge.
+     */
+    private int enteringEdge(final int leavingEdge) {
+        int subtreeRoot = childOf(leavingEdge);
+        boolean subtreeIsTail = graph.getSource(leavingEdge) == subtreeRoot;
+
+        int bestEdge = -1;
+        int bestSlack = Integer.MAX_VALUE;
+        for (int i = low[subtreeRoot]; i <= lim[subtreeRoot]; i++) {
+            int node = postOrder[i];
+            int degree = subtreeIsTail ? graph.getInDegree(node) : graph.getOutDegree(node);
+            for (int j = 0; j < degree; j++) {
+                int edge = subtreeIsTail
+                        ? graph.getIncomingEdge(node, j)
+                        : graph.getOutgoingEdge(node, j);
+                if (!treeEdges[edge] && !isInSubtree(opposite(edge, node), subtreeRoot)) {
+                    int slack = slack(edge);
+                    if (slack < bestSlack) {
+                        bestSlack = slack;
+                        bestEdge = edge;
+                    }
+                }
+            }
+        }
+        return bestEdge;
+    }
+
+    /**
+     * Replaces the leaving edge by the entering edge in the spanning tree and shifts the subtree
+     * below the leaving edge such that the entering edge becomes tight. Only the cut values of the
+     * tree edges on the cycle closed by the entering edge change, and only the subtree rooted at the
+     * cycle's topmost node needs to be renumbered.
+     * 
+     * @param leavingEdge
+     *            the tree edge to be removed.
+     * @param enteringEdge
+     *            the edge to be added to the tree.
+     */
+    private void exchange(final int leavingEdge, final int enteringEdge) {
+        int subtreeRoot = childOf(leavingEdge);
+        int delta = slack(enteringEdge);
+        if (graph.getSource(leavingEdge) == subtreeRoot) {
+            delta = -delta;
+        }
+
+        for (int i = low[subtreeRoot]; i <= lim[subtreeRoot]; i++) {
+            layering[postOrder[i]] += delta;
+        }
+
+        int cutValue = cutValues[leavingEdge];
+        int source = graph.getSource(enteringEdge);
+        int target = graph.getTarget(enteringEdge);
+        int commonAncestor = updateCutValues(source, target, cutValue, true);
+        updateCutValues(target, source, cutValue, false);
+        cutValues[enteringEdge] = -cutValue;
+        cutValues[leavingEdge] = 0;
+
+        treeEdges[leavingEdge] = false;
+        treeEdges[enteringEdge] = true;
+        numberSubtree(commonAncestor, low[commonAncestor]);
+    }
+
+    /**
+     * Walks up the tree from the given start node until reaching an ancestor of the given end node,
+     * updating the cut values of the tree edges on the way.
+     * 
+     * @param start
+     *            the node to start at.
+     * @param end
+     *            the node whose ancestor to stop at.
+     * @param cutValue
+     *            the cut value of the leaving edge.
+     * @param forward
+     *            whether the cut value is to be added to edges pointing upwards.
+     * @return the ancestor the walk stopped at.
+     */
+    private int updateCutValues(final int start, final int end, final int cutValue,
+            final boolean forward) {
+
+        int node = start;
+        while (!isInSubtree(end, node)) {
+            int parentEdge = parentEdges[node];
+            boolean add = graph.getSource(parentEdge) == node ? forward : !forward;
+            cutValues[parentEdge] += add ? cutValue : -cutValue;
+            node = opposite(parentEdge, node);
+        }
+        return node;
+    }
+
+    /**
+     * Shifts the layers of each connected component such that its topmost layer is layer 0.
+     */
+    private void normalize() {
+        int[] minLayers = new int[roots.length];
+        Arrays.fill(minLayers, Integer.MAX_VALUE);
+        for (int node = 0; node < layering.length; node++) {
+            minLayers[components[node]] = Math.min(minLayers[components[node]], layering[node]);
+        }
+        for (int node = 0; node < layering.length; node++) {
+            layering[node] -= minLayers[components[node]];
+        }
+    }
+
+}
@@ -0,0 +1,230 @@
+/*
+ * KIELER - Kiel Integrated Environment for Layout Eclipse RichClient
+ *
+ * http://www.informatik.uni-kiel.de/rtsys/kieler/
+ * 
+ * Copyright 2016 by
+ * + Kiel University
+ *   + Department of Computer Science
+ *     + Real-Time and Embedded Systems Group
+ * 
+ * This code is provided under the terms of the Eclipse Public License (EPL).
+ * See the file epl-v10.html for the license text.
+ */
+package de.cau.cs.kieler.papyrus.sequence.p3layering;
+
+import java.util.Arrays;
+
+import org.eclipse.elk.alg.layered.graph.LNode;
+
+/**
+ * Computes a layering that starts from the layering of a previous layout run. Nodes that keep their
+ * previous layer stay where they are, unless they are close to a node that is new or doesn't. Only
+ * the nodes in the neighborhood of such changed nodes are optimized by {@link NetworkSimplex}, with
+ * the rest of the graph contracted into a single anchor node. If a diagram has only changed slightly,
+ * this is much faster than optimizing the whole layering again, which would spend most of its
+ * iterations on rediscovering that the unchanged parts are already fine.
+ * 
+ * @author cds
+ */
+final class WarmStartLayering {
+
+    /** Previous layer of nodes that didn't exist in the previous layout run. */
+    static final int NEW_NODE = -1;
+    /**
+     * Previous layer of auxiliary nodes such as dummy nodes. Their layers are not remembered, but
+     * derived from their neighbors, so they are not considered to have changed.
+     */
+    static final int AUXILIARY_NODE = -2;
+
+    /** Number of edges a node may be away from a changed node to still be optimized. */
+    private static final int NEIGHBORHOOD_RADIUS = 2;
+
+
+    /**
+     * Hidden constructor.
+     */
+    private WarmStartLayering() {
+    }
+
+    /**
+     * Computes a layering that keeps nodes in their previous layers where possible and optimizes the
+     * neighborhood of nodes that have changed.
+     * 
+     * @param graph
+     *            the layering graph.
+     * @param previousLayers
+     *            the previous layer index for each node, {@link #NEW_NODE} if a node didn't exist in
+     *            the previous layout run, or {@link #AUXILIARY_NODE}.
+     * @param iterationLimit
+     *            the maximum number of network simplex iterations to run, or a negative value to run
+     *            until the neighborhood's layering is optimal.
+     * @return layer index for each node.
+     */
+    static int[] compute(final LayeringGraph graph, final int[] previousLayers,
+            final int iterationLimit) {
+
+        int[] layering = graph.feasibleLayering(previousLayers);
+        int nodeCount = graph.getNodeCount();
+
+        // Collect the nodes that are new or didn't retain their previous layer
+        int[] freeNodes = new int[nodeCount];
+        int[] freeIndices = new int[nodeCount];
+        Arrays.fill(freeIndices, -1);
+        int freeCount = 0;
+
+        for (int node = 0; node < nodeCount; node++) {
+            if (previousLayers[node] == NEW_NODE
+                    || previousLayers[node] >= 0 && layering[node] != previousLayers[node]) {
+                freeIndices[node] = freeCount;
+                freeNodes[freeCount++] = node;
+            }
+        }
+
+        if (freeCount > 0) {
+            freeCount = extendByNeighborhood(graph, freeNodes, freeIndices, freeCount);
+            optimizeFreeNodes(graph, layering, freeNodes, freeIndices, freeCount, iterationLimit);
+        }
+
+        // The free nodes may have ended up above the first layer, and the previous layering may not
+        // have started at layer 0 anymore
+        int minLayer = Integer.MAX_VALUE;
+        for (int layer : layering) {
+            minLayer = Math.min(minLayer, layer);
+        }
+        for (int node = 0; node < nodeCount; node++) {
+            layering[node] -= minLayer;
+        }
+
+        return layering;
+    }
+
+    /**
+     * Adds all nodes to the set of free nodes that are at most {@link #NEIGHBORHOOD_RADIUS} edges
+     * away from a free node.
+     * 
+     * @param graph
+     *            the layering graph.
+     * @param freeNodes
+     *            the free nodes, with enough space for all nodes.
+     * @param freeIndices
+     *            for each node, its index in {@code freeNodes} or -1 if it is not free.
+     * @param initialFreeCount
+     *            the number of free nodes before extending the set.
+     * @return the number of free nodes after extending the set.
+     */
+    private static int extendByNeighborhood(final LayeringGraph graph, final int[] freeNodes,
+            final int[] freeIndices, final int initialFreeCount) {
+
+        int freeCount = initialFreeCount;
+        int ringStart = 0;
+        for (int radius = 0; radius < NEIGHBORHOOD_RADIUS; radius++) {
+            int ringEnd = freeCount;
+            for (int i = ringStart; i < ringEnd; i++) {
+                int node = freeNodes[i];
+                for (int j = graph.getOutDegree(node) - 1; j >= 0; j--) {
+                    int neighbor = graph.getTarget(graph.getOutgoingEdge(node, j));
+                    if (freeIndices[neighbor] < 0) {
+                        freeIndices[neighbor] = freeCount;
+                        freeNodes[freeCount++] = neighbor;
+                    }
+                }
+                for (int j = graph.getInDegree(node) - 1; j >= 0; j--) {
+                    int neighbor = graph.getSource(graph.getIncomingEdge(node, j));
+                    if (freeIndices[neighbor] < 0) {
+                        freeIndices[neighbor] = freeCount;
+                        freeNodes[freeCount++] = neighbor;
+                    }
+                }
+            }
+            ringStart = ringEnd;
+        }
+
+        return freeCount;
+    }
+
+    /**
+     * Optimizes the layers of the free nodes while the layers of all other nodes remain fixed. To
+     * this end, a subgraph is built that consists of the free nodes and an anchor node that all fixed
+     * nodes are merged into. An edge between a free and a fixed node becomes an edge between the free
+     * node and the anchor whose minimum length ensures that the free node keeps its distance to the
+     * fixed node if the anchor is placed in layer 0.
+     * 
+     * @param graph
+     *            the layering graph.
+     * @param layering
+     *            feasible layering, which is modified in place.
+     * @param freeNodes
+     *            the free nodes.
+     * @param freeIndices
+     *            for each node, its index in {@code freeNodes} or -1 if it is fixed.
+     * @param freeCount
+     *            the number of free nodes.
+     * @param iterationLimit
+     *            the maximum number of network simplex iterations to run, or a negative value to run
+     *            until the free nodes' layering is optimal.
+     */
+    private static void optimizeFreeNodes(final LayeringGraph graph, final int[] layering,
+            final int[] freeNodes, final int[] freeIndices, final int freeCount,
+            final int iterationLimit) {
+
+        int anchor = freeCount;
+
+        // Count the edges incident to free nodes
+        int edgeCount = 0;
+        for (int i = 0; i < freeCount; i++) {
+            int node = freeNodes[i];
+            edgeCount += graph.getOutDegree(node);
+            for (int j = graph.getInDegree(node) - 1; j >= 0; j--) {
+                if (freeIndices[graph.getSource(graph.getIncomingEdge(node, j))] < 0) {
+                    edgeCount++;
+                }
+            }
+        }
+
+        int[] edgeSources = new int[edgeCount];
+        int[] edgeTargets = new int[edgeCount];
+        int[] edgeMinLengths = new int[edgeCount];
+        int edge = 0;
+        for (int i = 0; i < freeCount; i++) {
+            int node = freeNodes[i];
+
+            for (int j = graph.getOutDegree(node) - 1; j >= 0; j--) {
+                int target = graph.getTarget(graph.getOutgoingEdge(node, j));
+                edgeSources[edge] = i;
+                if (freeIndices[target] >= 0) {
+                    edgeTargets[edge] = freeIndices[target];
+                    edgeMinLengths[edge] = 1;
+                } else {
+                    edgeTargets[edge] = anchor;
+                    edgeMinLengths[edge] = 1 - layering[target];
+                }
+                edge++;
+            }
+
+            for (int j = graph.getInDegree(node) - 1; j >= 0; j--) {
+                int source = graph.getSource(graph.getIncomingEdge(node, j));
+                if (freeIndices[source] < 0) {
+                    edgeSources[edge] = anchor;
+                    edgeTargets[edge] = i;
+                    edgeMinLengths[edge] = layering[source] + 1;
+                    edge++;
+                }
+            }
+        }
+
+        LayeringGraph subgraph = new LayeringGraph(new LNode[freeCount + 1], edgeSources, edgeTargets,
+                edgeMinLengths);
+        int[] subgraphLayering = new int[freeCount + 1];
+        for (int i = 0; i < freeCount; i++) {
+            subgraphLayering[i] = layering[freeNodes[i]];
+        }
+
+        NetworkSimplex.optimize(subgraph, subgraphLayering, iterationLimit);
+
+        for (int i = 0; i < freeCount; i++) {
+            layering[freeNodes[i]] = subgraphLayering[i] - subgraphLayering[anchor];
+        }
+    }
+
+}
@@ -0,0 +1,242 @@
+/*
+ * KIELER - Kiel Integrated Environment for Layout Eclipse RichClient
+ *
+ * http://www.informatik.uni-kiel.de/rtsys/kieler/
+ * 
+ * Copyright 2016 by
+ * + Kiel University
+ *   + Department of Computer Science
+ *     + Real-Time and Embedded Systems Group
+ * 
+ * This code is provided under the terms of the Eclipse Public License (EPL).
+ * See the file epl-v10.html for the license text.
+ */
+package de.cau.cs.kieler.papyrus.sequence.p4sorting;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import org.eclipse.elk.alg.layered.graph.LNode;
+import org.eclipse.elk.alg.layered.graph.Layer;
+import org.eclipse.elk.alg.layered.properties.InternalProperties;
+import org.eclipse.elk.core.util.IElkProgressMonitor;
+
+import de.cau.cs.kieler.papyrus.sequence.ISequenceLayoutProcessor;
+import de.cau.cs.kieler.papyrus.sequence.LayoutContext;
+import de.cau.cs.kieler.papyrus.sequence.graph.SLifeline;
+import de.cau.cs.kieler.papyrus.sequence.graph.SMessage;
+
+/**
+ * Wraps a lifeline sorter whose result only depends on which lifelines exchange how many messages,
+ * and reuses the orders it computed in previous layout runs. This saves the sorting effort if a
+ * diagram is laid out again after changes that don't affect the communication between lifelines,
+ * such as edits of labels or comments.
+ * 
+ * <p>Orders are cached in a least recently used cache shared by all instances. The key consists of
+ * the sorting options, the weighted communication graph between the lifelines, and the lifelines
+ * of the uppermost messages, which are where the greedy sorters start. Lifelines are identified by
+ * their index in the sequence graph, and so is the cached order.</p>
+ * 
+ * @author cds
+ */
+public final class CachingLifelineSorter implements ISequenceLayoutProcessor {
+
+    /** The cached orders of lifeline indices, in least recently used order. */
+    private static final LinkedHashMap<Key, int[]> CACHE =
+            new LinkedHashMap<Key, int[]>(16, 0.75f, true);
+
+    /** The sorter whose results are cached. */
+    private final ISequenceLayoutProcessor sorter;
+
+
+    /**
+     * Creates a new instance that caches the results of the given sorter.
+     * 
+     * @param sorter
+     *            the sorter, which has to work with the lifeline graph as seen by
+     *            {@link LifelineGraph}.
+     */
+    public CachingLifelineSorter(final ISequenceLayoutProcessor sorter) {
+        this.sorter = sorter;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void process(final LayoutContext context, final IElkProgressMonitor progressMonitor) {
+        progressMonitor.begin("Cached lifeline sorting", 1);
+
+        if (context.lifelineOrderCacheSize <= 0) {
+            sorter.process(context, progressMonitor.subTask(1));
+            progressMonitor.done();
+            return;
+        }
+
+        LifelineGraph graph = LifelineGraph.of(context);
+        Key key = new Key(createKey(context, graph));
+
+        int[] order;
+        synchronized (CACHE) {
+            order = CACHE.get(key);
+        }
+
+        if (order != null) {
+            // Assign the lifelines to their slots
+            List<SLifeline> lifelines = new ArrayList<SLifeline>(order.length);
+            for (int lifeline : order) {
+                lifelines.add(graph.getLifeline(lifeline));
+            }
+            LifelineSortingUtil.applyOrder(context, lifelines);
+        } else {
+            sorter.process(context, progressMonitor.subTask(1));
+
+            // The slots are now the lifelines' positions
+            int lifelineCount = graph.getLifelineCount();
+            if (context.lifelineOrder.size() == lifelineCount) {
+                order = new int[lifelineCount];
+                for (int lifeline = 0; lifeline < lifelineCount; lifeline++) {
+                    order[graph.getLifeline(lifeline).getHorizontalSlot()] = lifeline;
+                }
+
+                synchronized (CACHE) {
+                    CACHE.put(key, order);
+                    Iterator<Key> keys = CACHE.keySet().iterator();
+                    while (CACHE.size() > context.lifelineOrderCacheSize) {
+                        keys.next();
+                        keys.remove();
+                    }
+                }
+            }
+        }
+
+        progressMonitor.done();
+    }
+
+    /**
+     * Creates the cache key for the current layout run.
+     * 
+     * @param context
+     *            the layout context that contains all relevant information for the current layout run.
+     * @param graph
+     *            the lifeline graph.
+     * @return the key's contents.
+     */
+    private static int[] createKey(final LayoutContext context, final LifelineGraph graph) {
+        int lifelineCount = graph.getLifelineCount();
+        int size = 8 + 4 * lifelineCount;
+        for (int lifeline = 0; lifeline < lifelineCount; lifeline++) {
+            size += 2 * graph.getDegree(lifeline);
+        }
+
+        int[] key = new int[size];
+        int next = 0;
+
+        // Sorting options
+        key[next++] = context.sortingStrategy.ordinal();
+        key[next++] = context.groupAreasWhenSorting ? 1 : 0;
+        key[next++] = context.siftingStarts;
+        key[next++] = context.siftingTimeLimit;
+        key[next++] = context.optimalSortingTimeLimit;
+        key[next++] = context.lifelineClusteringThreshold;
+
+        // Communication graph
+        key[next++] = lifelineCount;
+        for (int lifeline = 0; lifeline < lifelineCount; lifeline++) {
+            key[next++] = graph.getMessagesFromBorder(lifeline);
+            key[next++] = graph.getMessagesToBorder(lifeline);
+            key[next++] = graph.getDegree(lifeline);
+            for (int i = 0; i < graph.getDegree(lifeline); i++) {
+                key[next++] = graph.getNeighbor(lifeline, i);
+                key[next++] = graph.getNeighborWeight(lifeline, i);
+            }
+        }
+
+        // Lifelines of the messages in the uppermost layer that contains messages, which is where
+        // the greedy sorters start
+        int startCount = 0;
+        int startIndex = next++;
+        for (Layer layer : context.lgraph.getLayers()) {
+            for (LNode node : layer.getNodes()) {
+                Object origin = node.getProperty(InternalProperties.ORIGIN);
+                if (origin instanceof SMessage) {
+                    SMessage message = (SMessage) origin;
+                    if (next + 2 > key.length) {
+                        key = Arrays.copyOf(key, 2 * key.length);
+                    }
+                    key[next++] = lifelineIndex(message.getSource());
+                    key[next++] = lifelineIndex(message.getTarget());
+                    startCount++;
+                }
+            }
+            if (startCount > 0) {
+                break;
+            }
+        }
+        key[startIndex] = startCount;
+
+        return Arrays.copyOf(key, next);
+    }
+
+    /**
+     * Returns the index of the given lifeline in the lifeline graph.
+     * 
+     * @param lifeline
+     *            the lifeline, may be {@code null}.
+     * @return the index, or {@code -1} if the lifeline is a dummy lifeline that represents the
+     *         surrounding interaction.
+     */
+    private static int lifelineIndex(final SLifeline lifeline) {
+        // Creating the lifeline graph assigned the indices as slots
+        if (lifeline == null || lifeline.isDummy()) {
+            return -1;
+        }
+        return lifeline.getHorizontalSlot();
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    // Key Class
+
+    /**
+     * A cache key. Keys are compared by their contents, with their hash codes computed only once.
+     */
+    private static final class Key {
+        /** The key's contents. */
+        private final int[] contents;
+        /** The hash code of the contents. */
+        private final int hashCode;
+
+        /**
+         * Creates a new key with the given contents.
+         * 
+         * @param contents
+         *            the contents.
+         */
+        Key(final int[] contents) {
+            this.contents = contents;
+            this.hashCode = Arrays.hashCode(contents);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean equals(final Object obj) {
+            return obj instanceof Key && hashCode == ((Key) obj).hashCode
+                    && Arrays.equals(contents, ((Key) obj).contents);
+        }
+    }
+
+}
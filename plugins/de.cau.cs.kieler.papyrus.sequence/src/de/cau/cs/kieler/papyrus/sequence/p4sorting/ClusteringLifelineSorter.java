@@ -0,0 +1,661 @@
+/*
+ * KIELER - Kiel Integrated Environment for Layout Eclipse RichClient
+ *
+ * http://www.informatik.uni-kiel.de/rtsys/kieler/
+ * 
+ * Copyright 2016 by
+ * + Kiel University
+ *   + Department of Computer Science
+ *     + Real-Time and Embedded Systems Group
+ * 
+ * This code is provided under the terms of the Eclipse Public License (EPL).
+ * See the file epl-v10.html for the license text.
+ */
+package de.cau.cs.kieler.papyrus.sequence.p4sorting;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.RecursiveAction;
+
+import org.eclipse.elk.alg.layered.graph.LGraph;
+import org.eclipse.elk.alg.layered.graph.LNode;
+import org.eclipse.elk.alg.layered.graph.Layer;
+import org.eclipse.elk.alg.layered.properties.InternalProperties;
+import org.eclipse.elk.core.util.BasicProgressMonitor;
+import org.eclipse.elk.core.util.IElkProgressMonitor;
+
+import de.cau.cs.kieler.papyrus.sequence.ISequenceLayoutProcessor;
+import de.cau.cs.kieler.papyrus.sequence.LayoutContext;
+import de.cau.cs.kieler.papyrus.sequence.graph.SGraph;
+import de.cau.cs.kieler.papyrus.sequence.graph.SLifeline;
+import de.cau.cs.kieler.papyrus.sequence.graph.SMessage;
+
+/**
+ * Runs one of the sorters that only depend on the communication between lifelines on clusters of
+ * lifelines instead of single lifelines, if there are more lifelines than the clustering threshold.
+ * Otherwise, the sorter simply runs on the whole graph.
+ * 
+ * <p>Lifelines are clustered greedily by merging the clusters of the lifeline pairs that exchange
+ * the most messages, as long as the merged cluster doesn't grow beyond the square root of the number
+ * of lifelines. Each cluster is then collapsed into a single proxy lifeline that exchanges all of its
+ * members' messages with other clusters, and the sorter orders the proxies. Finally, the members of
+ * each cluster are ordered in parallel by separate instances of the sorter. Messages to members of
+ * clusters placed further left or right are treated as messages from or to the surrounding
+ * interaction, which pulls the members that send them towards the respective side of their
+ * cluster.</p>
+ * 
+ * <p>The sorter works on proxy graphs built from the {@link LifelineGraph}, so it never sees the
+ * original messages. If areas are to be included in the sorting process, they are included in the
+ * proxy messages' numbers. Time limits apply to the whole process and not to each proxy graph.</p>
+ * 
+ * @author cds
+ */
+public final class ClusteringLifelineSorter implements ISequenceLayoutProcessor {
+
+    /** The strategy of the sorter that sorts the clusters and their members. */
+    private final LifelineSortingStrategy strategy;
+
+    /** The communication graph between the lifelines. */
+    private LifelineGraph graph;
+    /** For each lifeline, the cluster it belongs to. */
+    private int[] clusterOf;
+    /** The members of each cluster, sorted by index. */
+    private int[][] clusters;
+    /** For each cluster, its position in the order of clusters. */
+    private int[] clusterPositions;
+    /** The messages in the uppermost layer that contains messages, where greedy sorters start. */
+    private List<SMessage> startMessages;
+    /** For each cluster, its members in their computed order. */
+    private int[][] clusterOrders;
+
+
+    /**
+     * Creates a new instance that sorts clusters of lifelines with sorters of the given strategy.
+     * 
+     * @param strategy
+     *            the sorting strategy, which has to be one that only depends on the communication
+     *            between lifelines: {@link LifelineSortingStrategy#SHORT_MESSAGES},
+     *            {@link LifelineSortingStrategy#SIFTING}, or {@link LifelineSortingStrategy#OPTIMAL}.
+     */
+    public ClusteringLifelineSorter(final LifelineSortingStrategy strategy) {
+        switch (strategy) {
+        case SHORT_MESSAGES:
+        case SIFTING:
+        case OPTIMAL:
+            this.strategy = strategy;
+            break;
+
+        default:
+            throw new IllegalArgumentException("Lifelines can't be sorted in clusters with the "
+                    + strategy + " strategy.");
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void process(final LayoutContext context, final IElkProgressMonitor progressMonitor) {
+        progressMonitor.begin("Clustering lifeline sorting", 2);
+
+        int lifelineCount = context.sgraph.getLifelines().size();
+        if (context.lifelineClusteringThreshold <= 0
+                || lifelineCount <= context.lifelineClusteringThreshold) {
+
+            createSorter().process(context, progressMonitor.subTask(2));
+            progressMonitor.done();
+            return;
+        }
+
+        // The time limits apply to sorting as a whole, not to each proxy graph
+        long now = System.nanoTime();
+        long siftingDeadline = deadline(now, context.siftingTimeLimit);
+        long optimalDeadline = deadline(now, context.optimalSortingTimeLimit);
+
+        graph = LifelineGraph.of(context);
+        startMessages = findStartMessages(context);
+        computeClusters((int) Math.ceil(Math.sqrt(lifelineCount)));
+
+        // Sort the clusters
+        sortClusters(context, siftingDeadline, optimalDeadline, progressMonitor.subTask(1));
+
+        // Sort the members of each cluster
+        clusterOrders = new int[clusters.length][];
+        context.threadPool.invoke(new ClusterTask(context, siftingDeadline, optimalDeadline, 0,
+                clusters.length));
+        progressMonitor.worked(1);
+
+        // Expand the clusters in their order
+        int[] clustersByPosition = new int[clusters.length];
+        for (int cluster = 0; cluster < clusters.length; cluster++) {
+            clustersByPosition[clusterPositions[cluster]] = cluster;
+        }
+
+        List<SLifeline> lifelines = new ArrayList<SLifeline>(lifelineCount);
+        for (int cluster : clustersByPosition) {
+            for (int lifeline : clusterOrders[cluster]) {
+                lifelines.add(graph.getLifeline(lifeline));
+            }
+        }
+        LifelineSortingUtil.applyOrder(context, lifelines);
+
+        // Free memory
+        graph = null;
+        clusterOf = null;
+        clusters = null;
+        clusterPositions = null;
+        startMessages = null;
+        clusterOrders = null;
+
+        progressMonitor.done();
+    }
+
+    /**
+     * Creates a new instance of the sorter of our strategy. Sorters keep state while they run, so
+     * each proxy graph gets its own instance.
+     * 
+     * @return the sorter.
+     */
+    private ISequenceLayoutProcessor createSorter() {
+        switch (strategy) {
+        case SIFTING:
+            return new SiftingLifelineSorter();
+
+        case OPTIMAL:
+            return new OptimalLifelineSorter();
+
+        default:
+            return new ShortMessageLifelineSorter();
+        }
+    }
+
+    /**
+     * Collects the messages in the uppermost layer that contains messages.
+     * 
+     * @param context
+     *            the layout context that contains all relevant information for the current layout run.
+     * @return the messages.
+     */
+    private static List<SMessage> findStartMessages(final LayoutContext context) {
+        List<SMessage> messages = new ArrayList<SMessage>();
+        for (Layer layer : context.lgraph.getLayers()) {
+            for (LNode node : layer.getNodes()) {
+                Object origin = node.getProperty(InternalProperties.ORIGIN);
+                if (origin instanceof SMessage) {
+                    messages.add((SMessage) origin);
+                }
+            }
+            if (!messages.isEmpty()) {
+                break;
+            }
+        }
+        return messages;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    // Clustering
+
+    /**
+     * Clusters the lifelines by merging the clusters of the lifeline pairs that exchange the most
+     * messages first. Pairs with the same number of messages are merged in the order of their
+     * lifelines' indices.
+     * 
+     * @param maxClusterSize
+     *            the maximum number of lifelines in a cluster.
+     */
+    private void computeClusters(final int maxClusterSize) {
+        int lifelineCount = graph.getLifelineCount();
+
+        // Collect each pair of communicating lifelines once
+        List<int[]> pairs = new ArrayList<int[]>();
+        for (int lifeline = 0; lifeline < lifelineCount; lifeline++) {
+            for (int i = 0; i < graph.getDegree(lifeline); i++) {
+                int neighbor = graph.getNeighbor(lifeline, i);
+                if (neighbor > lifeline) {
+                    pairs.add(new int[] { lifeline, neighbor, graph.getNeighborWeight(lifeline, i) });
+                }
+            }
+        }
+        int[][] sortedPairs = pairs.toArray(new int[pairs.size()][]);
+        Arrays.sort(sortedPairs, new Comparator<int[]>() {
+            public int compare(final int[] pair1, final int[] pair2) {
+                return Integer.compare(pair2[2], pair1[2]);
+            }
+        });
+
+        // Merge clusters with a union-find structure
+        int[] parent = new int[lifelineCount];
+        int[] size = new int[lifelineCount];
+        for (int lifeline = 0; lifeline < lifelineCount; lifeline++) {
+            parent[lifeline] = lifeline;
+            size[lifeline] = 1;
+        }
+
+        for (int[] pair : sortedPairs) {
+            int root1 = find(parent, pair[0]);
+            int root2 = find(parent, pair[1]);
+            if (root1 != root2 && size[root1] + size[root2] <= maxClusterSize) {
+                if (size[root1] < size[root2]) {
+                    int swap = root1;
+                    root1 = root2;
+                    root2 = swap;
+                }
+                parent[root2] = root1;
+                size[root1] += size[root2];
+            }
+        }
+
+        // Number the clusters in the order of their first members
+        clusterOf = new int[lifelineCount];
+        int[] clusterOfRoot = new int[lifelineCount];
+        Arrays.fill(clusterOfRoot, -1);
+        int clusterCount = 0;
+        for (int lifeline = 0; lifeline < lifelineCount; lifeline++) {
+            int root = find(parent, lifeline);
+            if (clusterOfRoot[root] < 0) {
+                clusterOfRoot[root] = clusterCount++;
+            }
+            clusterOf[lifeline] = clusterOfRoot[root];
+        }
+
+        clusters = new int[clusterCount][];
+        int[] memberCounts = new int[clusterCount];
+        for (int lifeline = 0; lifeline < lifelineCount; lifeline++) {
+            memberCounts[clusterOf[lifeline]]++;
+        }
+        for (int cluster = 0; cluster < clusterCount; cluster++) {
+            clusters[cluster] = new int[memberCounts[cluster]];
+            memberCounts[cluster] = 0;
+        }
+        for (int lifeline = 0; lifeline < lifelineCount; lifeline++) {
+            int cluster = clusterOf[lifeline];
+            clusters[cluster][memberCounts[cluster]++] = lifeline;
+        }
+    }
+
+    /**
+     * Finds the root of the given lifeline's cluster, halving the path to it on the way.
+     * 
+     * @param parent
+     *            the parent of each lifeline in the union-find structure.
+     * @param lifeline
+     *            the lifeline.
+     * @return the root.
+     */
+    private static int find(final int[] parent, final int lifeline) {
+        int current = lifeline;
+        while (parent[current] != current) {
+            parent[current] = parent[parent[current]];
+            current = parent[current];
+        }
+        return current;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    // Sorting
+
+    /**
+     * Sorts the clusters by collapsing each of them into a proxy lifeline and sorting the proxies.
+     * 
+     * @param context
+     *            the layout context that contains all relevant information for the current layout run.
+     * @param siftingDeadline
+     *            the {@link System#nanoTime()} sifting has to stop at.
+     * @param optimalDeadline
+     *            the {@link System#nanoTime()} optimal sorting has to stop at.
+     * @param progressMonitor
+     *            the progress monitor to pass to the sorter.
+     */
+    private void sortClusters(final LayoutContext context, final long siftingDeadline,
+            final long optimalDeadline, final IElkProgressMonitor progressMonitor) {
+
+        int lifelineCount = graph.getLifelineCount();
+        ProxyGraph proxyGraph = new ProxyGraph(clusters.length);
+
+        for (int lifeline = 0; lifeline < lifelineCount; lifeline++) {
+            int cluster = clusterOf[lifeline];
+            for (int i = 0; i < graph.getDegree(lifeline); i++) {
+                int neighbor = graph.getNeighbor(lifeline, i);
+                if (neighbor > lifeline && clusterOf[neighbor] != cluster) {
+                    proxyGraph.addMessages(proxyGraph.proxies[cluster],
+                            proxyGraph.proxies[clusterOf[neighbor]],
+                            graph.getNeighborWeight(lifeline, i));
+                }
+            }
+            proxyGraph.addMessages(proxyGraph.left, proxyGraph.proxies[cluster],
+                    graph.getMessagesFromBorder(lifeline));
+            proxyGraph.addMessages(proxyGraph.proxies[cluster], proxyGraph.right,
+                    graph.getMessagesToBorder(lifeline));
+        }
+
+        for (SMessage message : startMessages) {
+            proxyGraph.addStartMessage(clusterProxy(proxyGraph, message.getSource(), true),
+                    clusterProxy(proxyGraph, message.getTarget(), false));
+        }
+
+        proxyGraph.sort(context, siftingDeadline, optimalDeadline, progressMonitor);
+
+        clusterPositions = new int[clusters.length];
+        for (int cluster = 0; cluster < clusters.length; cluster++) {
+            clusterPositions[cluster] = proxyGraph.proxies[cluster].getHorizontalSlot();
+        }
+    }
+
+    /**
+     * Returns the proxy that represents the given lifeline in the graph of clusters.
+     * 
+     * @param proxyGraph
+     *            the graph of clusters.
+     * @param lifeline
+     *            the lifeline.
+     * @param source
+     *            whether the lifeline is the source of a message.
+     * @return the proxy.
+     */
+    private SLifeline clusterProxy(final ProxyGraph proxyGraph, final SLifeline lifeline,
+            final boolean source) {
+
+        if (lifeline.isDummy()) {
+            return source ? proxyGraph.left : proxyGraph.right;
+        } else {
+            return proxyGraph.proxies[clusterOf[lifeline.getHorizontalSlot()]];
+        }
+    }
+
+    /**
+     * Sorts the members of the given cluster by sorting a proxy graph that only contains them. All
+     * other lifelines are replaced by the left or right border of the proxy graph, depending on
+     * where their clusters are placed.
+     * 
+     * @param context
+     *            the layout context that contains all relevant information for the current layout run.
+     * @param siftingDeadline
+     *            the {@link System#nanoTime()} sifting has to stop at.
+     * @param optimalDeadline
+     *            the {@link System#nanoTime()} optimal sorting has to stop at.
+     * @param cluster
+     *            the cluster.
+     */
+    private void sortCluster(final LayoutContext context, final long siftingDeadline,
+            final long optimalDeadline, final int cluster) {
+        int[] members = clusters[cluster];
+        if (members.length == 1) {
+            clusterOrders[cluster] = members;
+            return;
+        }
+
+        // Clusters are sorted by index, so members can be looked up by binary search
+        ProxyGraph proxyGraph = new ProxyGraph(members.length);
+        for (int member = 0; member < members.length; member++) {
+            int lifeline = members[member];
+            for (int i = 0; i < graph.getDegree(lifeline); i++) {
+                int neighbor = graph.getNeighbor(lifeline, i);
+                int weight = graph.getNeighborWeight(lifeline, i);
+
+                if (clusterOf[neighbor] == cluster) {
+                    if (neighbor > lifeline) {
+                        proxyGraph.addMessages(proxyGraph.proxies[member],
+                                proxyGraph.proxies[Arrays.binarySearch(members, neighbor)], weight);
+                    }
+                } else if (clusterPositions[clusterOf[neighbor]] < clusterPositions[cluster]) {
+                    proxyGraph.addMessages(proxyGraph.left, proxyGraph.proxies[member], weight);
+                } else {
+                    proxyGraph.addMessages(proxyGraph.proxies[member], proxyGraph.right, weight);
+                }
+            }
+            proxyGraph.addMessages(proxyGraph.left, proxyGraph.proxies[member],
+                    graph.getMessagesFromBorder(lifeline));
+            proxyGraph.addMessages(proxyGraph.proxies[member], proxyGraph.right,
+                    graph.getMessagesToBorder(lifeline));
+        }
+
+        for (SMessage message : startMessages) {
+            SLifeline source = memberProxy(proxyGraph, cluster, message.getSource(), true);
+            SLifeline target = memberProxy(proxyGraph, cluster, message.getTarget(), false);
+            if (!source.isDummy() || !target.isDummy()) {
+                proxyGraph.addStartMessage(source, target);
+            }
+        }
+
+        proxyGraph.sort(context, siftingDeadline, optimalDeadline, new BasicProgressMonitor());
+
+        int[] order = new int[members.length];
+        for (int member = 0; member < members.length; member++) {
+            order[proxyGraph.proxies[member].getHorizontalSlot()] = members[member];
+        }
+        clusterOrders[cluster] = order;
+    }
+
+    /**
+     * Returns the lifeline that represents the given lifeline in the proxy graph of the given
+     * cluster.
+     * 
+     * @param proxyGraph
+     *            the cluster's proxy graph.
+     * @param cluster
+     *            the cluster.
+     * @param lifeline
+     *            the lifeline.
+     * @param source
+     *            whether the lifeline is the source of a message.
+     * @return the member's proxy, or one of the borders for lifelines outside the cluster.
+     */
+    private SLifeline memberProxy(final ProxyGraph proxyGraph, final int cluster,
+            final SLifeline lifeline, final boolean source) {
+
+        if (lifeline.isDummy()) {
+            return source ? proxyGraph.left : proxyGraph.right;
+        }
+
+        // The lifeline graph assigned each lifeline its index as its slot
+        int index = lifeline.getHorizontalSlot();
+        int lifelineCluster = clusterOf[index];
+        if (lifelineCluster == cluster) {
+            return proxyGraph.proxies[Arrays.binarySearch(clusters[cluster], index)];
+        } else if (clusterPositions[lifelineCluster] < clusterPositions[cluster]) {
+            return proxyGraph.left;
+        } else {
+            return proxyGraph.right;
+        }
+    }
+
+    /**
+     * Task that sorts the members of a range of clusters, splitting the range in half until only
+     * single clusters remain.
+     */
+    private final class ClusterTask extends RecursiveAction {
+        private static final long serialVersionUID = -2301934571824476203L;
+
+        /** The layout context. */
+        private final LayoutContext context;
+        /** The {@link System#nanoTime()} sifting has to stop at. */
+        private final long siftingDeadline;
+        /** The {@link System#nanoTime()} optimal sorting has to stop at. */
+        private final long optimalDeadline;
+        /** The first cluster to sort. */
+        private final int from;
+        /** The cluster after the last one to sort. */
+        private final int to;
+
+        /**
+         * Creates a new task for the given range of clusters.
+         * 
+         * @param context
+         *            the layout context.
+         * @param siftingDeadline
+         *            the {@link System#nanoTime()} sifting has to stop at.
+         * @param optimalDeadline
+         *            the {@link System#nanoTime()} optimal sorting has to stop at.
+         * @param from
+         *            the first cluster to sort.
+         * @param to
+         *            the cluster after the last one to sort.
+         */
+        ClusterTask(final LayoutContext context, final long siftingDeadline,
+                final long optimalDeadline, final int from, final int to) {
+
+            this.context = context;
+            this.siftingDeadline = siftingDeadline;
+            this.optimalDeadline = optimalDeadline;
+            this.from = from;
+            this.to = to;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                sortCluster(context, siftingDeadline, optimalDeadline, from);
+            } else {
+                int middle = (from + to) / 2;
+                invokeAll(new ClusterTask(context, siftingDeadline, optimalDeadline, from, middle),
+                        new ClusterTask(context, siftingDeadline, optimalDeadline, middle, to));
+            }
+        }
+    }
+
+
+    /**
+     * Returns the {@link System#nanoTime()} a time limit that starts now ends at.
+     * 
+     * @param now
+     *            the current {@link System#nanoTime()}.
+     * @param timeLimit
+     *            the time limit in milliseconds, or 0 for no limit.
+     * @return the deadline, or {@link Long#MAX_VALUE} for no limit.
+     */
+    private static long deadline(final long now, final int timeLimit) {
+        return timeLimit > 0 ? now + timeLimit * 1000000L : Long.MAX_VALUE;
+    }
+
+    /**
+     * Returns the time limit that ends at the given deadline.
+     * 
+     * @param now
+     *            the current {@link System#nanoTime()}.
+     * @param deadline
+     *            the deadline, or {@link Long#MAX_VALUE} for no limit.
+     * @return the time limit in milliseconds, at least 1, or 0 for no limit.
+     */
+    private static int timeLimit(final long now, final long deadline) {
+        if (deadline == Long.MAX_VALUE) {
+            return 0;
+        }
+        return (int) Math.max(1, (deadline - now) / 1000000L);
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    // Proxy Graphs
+
+    /**
+     * A sequence graph of proxy lifelines the sorter is run on. Messages from the surrounding
+     * interaction start at a dummy lifeline on the left, messages to the surrounding interaction end
+     * at one on the right, which is how the lifeline graph sees them as well.
+     */
+    private final class ProxyGraph {
+        /** The sequence graph. */
+        private final SGraph sgraph = new SGraph();
+        /** The layered graph with the messages the greedy sorters start at. */
+        private final LGraph lgraph = new LGraph();
+        /** The proxy lifelines. */
+        private final SLifeline[] proxies;
+        /** Source of messages from the surrounding interaction. */
+        private final SLifeline left = new SLifeline();
+        /** Target of messages to the surrounding interaction. */
+        private final SLifeline right = new SLifeline();
+
+        /**
+         * Creates a new proxy graph.
+         * 
+         * @param proxyCount
+         *            the number of proxy lifelines.
+         */
+        ProxyGraph(final int proxyCount) {
+            proxies = new SLifeline[proxyCount];
+            for (int i = 0; i < proxyCount; i++) {
+                proxies[i] = new SLifeline();
+                sgraph.addLifeline(proxies[i]);
+            }
+
+            left.setDummy(true);
+            right.setDummy(true);
+        }
+
+        /**
+         * Adds the given number of messages between the given lifelines.
+         * 
+         * @param source
+         *            the source lifeline.
+         * @param target
+         *            the target lifeline.
+         * @param count
+         *            the number of messages.
+         */
+        void addMessages(final SLifeline source, final SLifeline target, final int count) {
+            for (int i = 0; i < count; i++) {
+                SMessage message = new SMessage(source, target);
+                if (!source.isDummy()) {
+                    source.addMessage(message);
+                }
+                if (!target.isDummy()) {
+                    target.addMessage(message);
+                }
+            }
+        }
+
+        /**
+         * Adds a message greedy sorters may start at. The message is not added to the sequence
+         * graph since its lifelines already exchange messages that represent it.
+         * 
+         * @param source
+         *            the source lifeline.
+         * @param target
+         *            the target lifeline.
+         */
+        void addStartMessage(final SLifeline source, final SLifeline target) {
+            if (lgraph.getLayers().isEmpty()) {
+                lgraph.getLayers().add(new Layer(lgraph));
+            }
+
+            LNode node = new LNode(lgraph);
+            node.setProperty(InternalProperties.ORIGIN, new SMessage(source, target));
+            node.setLayer(lgraph.getLayers().get(0));
+        }
+
+        /**
+         * Sorts the proxy lifelines. Afterwards, their slots are their positions.
+         * 
+         * @param context
+         *            the layout context of the original graph.
+         * @param siftingDeadline
+         *            the {@link System#nanoTime()} sifting has to stop at.
+         * @param optimalDeadline
+         *            the {@link System#nanoTime()} optimal sorting has to stop at.
+         * @param progressMonitor
+         *            the progress monitor to pass to the sorter.
+         */
+        void sort(final LayoutContext context, final long siftingDeadline,
+                final long optimalDeadline, final IElkProgressMonitor progressMonitor) {
+
+            LayoutContext proxyContext = context.copy();
+            proxyContext.sgraph = sgraph;
+            proxyContext.lgraph = lgraph;
+            // Areas are already included in the number of proxy messages
+            proxyContext.groupAreasWhenSorting = false;
+            // The sorters take time limits, which end at the given deadlines
+            long now = System.nanoTime();
+            proxyContext.siftingTimeLimit = timeLimit(now, siftingDeadline);
+            proxyContext.optimalSortingTimeLimit = timeLimit(now, optimalDeadline);
+
+            createSorter().process(proxyContext, progressMonitor);
+        }
+    }
+
+}
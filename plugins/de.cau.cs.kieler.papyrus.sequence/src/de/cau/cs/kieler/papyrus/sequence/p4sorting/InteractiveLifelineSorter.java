@@ -42,13 +42,8 @@ public final class InteractiveLifelineSorter implements ISequenceLayoutProcessor
         List<SLifeline> lifelines = context.sgraph.getLifelines();
         java.util.Collections.sort(lifelines);
         
-        // Apply lifeline slots
-        for (int i = 0; i < lifelines.size(); i++) {
-            lifelines.get(i).setHorizontalSlot(i);
-        }
-
-        // Return the list of lifelines in the calculated order
-        context.lifelineOrder = lifelines;
+        // Apply lifeline slots and return the list of lifelines in the calculated order
+        LifelineSortingUtil.applyOrder(context, lifelines);
         
         progressMonitor.done();
     }
@@ -13,7 +13,10 @@
  */
 package de.cau.cs.kieler.papyrus.sequence.p4sorting;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 
 import org.eclipse.elk.alg.layered.graph.LGraph;
@@ -22,8 +25,6 @@ import org.eclipse.elk.alg.layered.graph.Layer;
 import org.eclipse.elk.alg.layered.properties.InternalProperties;
 import org.eclipse.elk.core.util.IElkProgressMonitor;
 
-import com.google.common.collect.Lists;
-
 import de.cau.cs.kieler.papyrus.sequence.ISequenceLayoutProcessor;
 import de.cau.cs.kieler.papyrus.sequence.LayoutContext;
 import de.cau.cs.kieler.papyrus.sequence.graph.SLifeline;
@@ -33,17 +34,43 @@ import de.cau.cs.kieler.papyrus.sequence.graph.SMessage;
  * Lifelinesorting algorithm that sorts the lifelines according to their uppermost outgoing
  * messages. The "source" lifeline is placed leftmost, the successor lifelines following.
  * 
+ * <p>Lifelines are identified by their index in the sequence graph, which is temporarily stored as
+ * their horizontal slot. The messages of each layer and the outgoing messages of each lifeline are
+ * collected once. Since lifelines are never unplaced again, messages that lead to placed lifelines
+ * can be skipped for good, which allows to search for the next uppermost message with cursors that
+ * only move forward.</p>
+ * 
  * @author grh
  * @kieler.design proposed grh
  * @kieler.rating proposed yellow grh
  */
 public final class LayerBasedLifelineSorter implements ISequenceLayoutProcessor {
-    /** The next position a lifeline will be placed in. */
-    private int nextPosition;
-    /** List of lifelines to be processed. */
-    private List<SLifeline> unprocessedLifelines = Lists.newArrayList();
-    /** List of lifelines that have already been sorted. */
+    /** The lifelines, indexed by their position in the sequence graph. */
+    private SLifeline[] lifelines;
+    /** Which lifelines have already been sorted. */
+    private boolean[] placed;
+    /** Lifelines that have already been sorted, in the order they were sorted in. */
     private List<SLifeline> sortedLifelines;
+    /** The index of the first lifeline that may not have been sorted yet. */
+    private int unplacedCursor;
+    /**
+     * The messages of each layer, in the order of their nodes. Messages whose source lifeline has
+     * been sorted are removed.
+     */
+    private SMessage[][] layerMessages;
+    /** The number of messages left in each array of {@link #layerMessages}. */
+    private int[] layerMessageCounts;
+    /** The index of the first layer that may still contain messages with unsorted sources. */
+    private int layerCursor;
+    /**
+     * For each lifeline, the outgoing messages to other lifelines that are in a layer, sorted by
+     * layer and then by their vertical order at the lifeline.
+     */
+    private SMessage[][] outgoingMessages;
+    /** For each lifeline, the index of the first outgoing message that may lead to an unsorted one. */
+    private int[] outgoingCursors;
+    /** For each lifeline, the number of outgoing minus the number of incoming messages. */
+    private int[] relations;
 
     
     /**
@@ -53,80 +80,160 @@ public final class LayerBasedLifelineSorter implements ISequenceLayoutProcessor
     public void process(final LayoutContext context, final IElkProgressMonitor progressMonitor) {
         progressMonitor.begin("Layer based lifeline sorting", 1);
 
-        unprocessedLifelines.addAll(context.sgraph.getLifelines());
-        sortedLifelines = new LinkedList<SLifeline>();
+        List<SLifeline> lifelineList = context.sgraph.getLifelines();
+        lifelines = lifelineList.toArray(new SLifeline[lifelineList.size()]);
+        sortedLifelines = new ArrayList<SLifeline>(lifelines.length);
 
         if (context.lgraph.getLayers().size() == 0) {
             // Abort, if no layers are set (e.g. outer node)
-            context.lifelineOrder = unprocessedLifelines;
-            return;
+            sortedLifelines.addAll(lifelineList);
+        } else {
+            sortLifelines(context.lgraph);
         }
 
-        // Add the layerIndex Property to messages
-        addLayerToMessages(context.lgraph);
+        // Assign the lifelines to their slots
+        LifelineSortingUtil.applyOrder(context, sortedLifelines);
+
+        // Free memory
+        lifelines = null;
+        placed = null;
+        sortedLifelines = null;
+        layerMessages = null;
+        layerMessageCounts = null;
+        outgoingMessages = null;
+        outgoingCursors = null;
+        relations = null;
+
+        progressMonitor.done();
+    }
+
+    /**
+     * Computes the order of the lifelines.
+     * 
+     * @param lgraph
+     *            the layered graph
+     */
+    private void sortLifelines(final LGraph lgraph) {
+        for (int i = 0; i < lifelines.length; i++) {
+            lifelines[i].setHorizontalSlot(i);
+        }
+        placed = new boolean[lifelines.length];
+        unplacedCursor = 0;
 
-        nextPosition = 0;
+        // Add the layerIndex Property to messages and remember the messages of every layer
+        collectLayerMessages(lgraph);
+        collectOutgoingMessages(lgraph.getLayers().size());
 
-        while (!unprocessedLifelines.isEmpty()) {
+        while (sortedLifelines.size() < lifelines.length) {
             // Find the message with the uppermost position whose source has not been set
-            SMessage uppermostMessage = findUppermostMessage(context.lgraph);
+            SMessage uppermostMessage = findUppermostMessage();
             if (uppermostMessage == null) {
                 // Left lifelines are not connected by any message => assign positions arbitrarily
-                assignToNextPosition(unprocessedLifelines.get(0));
+                while (placed[unplacedCursor]) {
+                    unplacedCursor++;
+                }
+                assignToNextPosition(unplacedCursor);
                 continue;
             }
-            SLifeline x = uppermostMessage.getSource();
+            int x = uppermostMessage.getSource().getHorizontalSlot();
 
             // Append Lifeline to the ordered lifelines list
             assignToNextPosition(x);
 
-            do {
+            // Messages to the surrounding interaction end the chain
+            while (uppermostMessage != null && !uppermostMessage.getTarget().isDummy()) {
                 // The target of this lifeline is set to next position
-                x = uppermostMessage.getTarget();
+                x = uppermostMessage.getTarget().getHorizontalSlot();
 
                 // Append Lifeline to the ordered lifelines list
                 assignToNextPosition(x);
 
                 // Find the uppermost outgoing message of the next lifeline
-                uppermostMessage = findUppermostOutgoingMessage(context.lgraph, x);
-            } while (uppermostMessage != null);
+                uppermostMessage = findUppermostOutgoingMessage(x);
+            }
         }
-        
-        context.lifelineOrder = sortedLifelines;
-
-        progressMonitor.done();
     }
 
     /**
      * Place the given lifeline to the next position.
      * 
      * @param lifeline
-     *            the next lifeline to be placed
+     *            index of the next lifeline to be placed
      */
-    private void assignToNextPosition(final SLifeline lifeline) {
-        if (!sortedLifelines.contains(lifeline)) {
-            sortedLifelines.add(lifeline);
-            lifeline.setHorizontalSlot(nextPosition);
-            nextPosition++;
-            unprocessedLifelines.remove(lifeline);
+    private void assignToNextPosition(final int lifeline) {
+        if (!placed[lifeline]) {
+            placed[lifeline] = true;
+            sortedLifelines.add(lifelines[lifeline]);
         }
     }
 
     /**
-     * Annotate the messages with a layer number.
+     * Annotate the messages with a layer number and collect the messages of each layer.
      * 
      * @param lgraph
      *            the layered graph
      */
-    private void addLayerToMessages(final LGraph lgraph) {
-        for (Layer layer : lgraph.getLayers()) {
+    private void collectLayerMessages(final LGraph lgraph) {
+        List<Layer> layers = lgraph.getLayers();
+        layerMessages = new SMessage[layers.size()][];
+        layerMessageCounts = new int[layers.size()];
+        layerCursor = 0;
+
+        for (Layer layer : layers) {
             int layerIndex = layer.getIndex();
+            SMessage[] messages = new SMessage[layer.getNodes().size()];
+            int messageCount = 0;
             for (LNode node : layer.getNodes()) {
-                SMessage message = (SMessage) node.getProperty(InternalProperties.ORIGIN);
-                if (message != null) {
+                Object origin = node.getProperty(InternalProperties.ORIGIN);
+                if (origin instanceof SMessage) {
+                    SMessage message = (SMessage) origin;
                     message.setMessageLayer(layerIndex);
+                    messages[messageCount++] = message;
+                }
+            }
+            layerMessages[layerIndex] = messages;
+            layerMessageCounts[layerIndex] = messageCount;
+        }
+    }
+
+    /**
+     * Collect the outgoing messages of each lifeline that lead to other lifelines and count the
+     * lifeline's incoming and outgoing messages.
+     * 
+     * @param layerCount
+     *            the number of layers
+     */
+    private void collectOutgoingMessages(final int layerCount) {
+        outgoingMessages = new SMessage[lifelines.length][];
+        outgoingCursors = new int[lifelines.length];
+        relations = new int[lifelines.length];
+
+        // Stable sorting keeps the vertical order of messages in the same layer
+        Comparator<SMessage> layerComparator = new Comparator<SMessage>() {
+            public int compare(final SMessage message1, final SMessage message2) {
+                return Integer.compare(message1.getMessageLayer(), message2.getMessageLayer());
+            }
+        };
+
+        List<SMessage> outgoing = new ArrayList<SMessage>();
+        for (int i = 0; i < lifelines.length; i++) {
+            SLifeline lifeline = lifelines[i];
+            outgoing.clear();
+            for (SMessage message : lifeline.getMessages()) {
+                if (message.getSource() == lifeline) {
+                    relations[i]++;
+                    SLifeline target = message.getTarget();
+                    if (target != lifeline && !target.isDummy()
+                            && message.getMessageLayer() < layerCount) {
+                        outgoing.add(message);
+                    }
+                }
+                if (message.getTarget() == lifeline) {
+                    relations[i]--;
                 }
             }
+            Collections.sort(outgoing, layerComparator);
+            outgoingMessages[i] = outgoing.toArray(new SMessage[outgoing.size()]);
         }
     }
 
@@ -135,36 +242,36 @@ public final class LayerBasedLifelineSorter implements ISequenceLayoutProcessor
      * messages in that layer, select lifeline with best incoming/outgoing relation (more outgoing
      * messages are desirable).
      * 
-     * @param lgraph
-     *            the layered graph
      * @return the uppermost message
      */
-    private SMessage findUppermostMessage(final LGraph lgraph) {
-        List<LNode> candidates = new LinkedList<LNode>();
-        for (Layer layer : lgraph.getLayers()) {
-            for (LNode node : layer.getNodes()) {
-                SMessage message = (SMessage) node.getProperty(InternalProperties.ORIGIN);
-                if (message != null && unprocessedLifelines.contains(message.getSource())) {
-                    candidates.add(node);
+    private SMessage findUppermostMessage() {
+        for (; layerCursor < layerMessages.length; layerCursor++) {
+            SMessage[] messages = layerMessages[layerCursor];
+
+            // Drop messages whose source has been placed since the layer was last looked at. If
+            // there are several candidates left, check, which ones source has the best in/out
+            // relation
+            SMessage bestOne = null;
+            int bestRelation = Integer.MIN_VALUE;
+            int candidateCount = 0;
+            for (int i = 0; i < layerMessageCounts[layerCursor]; i++) {
+                SMessage candidate = messages[i];
+                SLifeline source = candidate.getSource();
+                if (source.isDummy() || placed[source.getHorizontalSlot()]) {
+                    continue;
                 }
-            }
-            if (candidates.size() == 1) {
-                // If there is only one candidate, return it
-                return (SMessage) candidates.get(0).getProperty(InternalProperties.ORIGIN);
-            } else if (!candidates.isEmpty()) {
-                // If there are more candidates, check, which ones source has the best in/out
-                // relation
-                SMessage bestOne = (SMessage) candidates.get(0).getProperty(InternalProperties.ORIGIN);
-                int bestRelation = Integer.MIN_VALUE;
-                for (LNode node : candidates) {
-                    SMessage candidate = (SMessage) node.getProperty(InternalProperties.ORIGIN);
-                    int relation = candidate.getSource().getNumberOfOutgoingMessages()
-                            - candidate.getSource().getNumberOfIncomingMessages();
-                    if (relation > bestRelation) {
-                        bestRelation = relation;
-                        bestOne = candidate;
-                    }
+                messages[candidateCount++] = candidate;
+
+                int relation = relations[source.getHorizontalSlot()];
+                if (relation > bestRelation) {
+                    bestRelation = relation;
+                    bestOne = candidate;
                 }
+            }
+            Arrays.fill(messages, candidateCount, layerMessageCounts[layerCursor], null);
+            layerMessageCounts[layerCursor] = candidateCount;
+
+            if (bestOne != null) {
                 return bestOne;
             }
         }
@@ -176,24 +283,20 @@ public final class LayerBasedLifelineSorter implements ISequenceLayoutProcessor
      * Find the uppermost message of the given lifeline that is pointing at a lifeline that was not
      * already set.
      * 
-     * @param lgraph
-     *            the layered graph
      * @param lifeline
-     *            the current lifeline
+     *            index of the current lifeline
      * @return the uppermost outgoing message
      */
-    private SMessage findUppermostOutgoingMessage(final LGraph lgraph, final SLifeline lifeline) {
-        SMessage uppermostMessage = null;
-        int bestLayer = lgraph.getLayers().size();
-        for (SMessage outgoingMessage : lifeline.getOutgoingMessages()) {
-            if (outgoingMessage.getMessageLayer() < bestLayer) {
-                // check if target lifeline was already set
-                if (unprocessedLifelines.contains(outgoingMessage.getTarget())) {
-                    uppermostMessage = outgoingMessage;
-                    bestLayer = outgoingMessage.getMessageLayer();
-                }
+    private SMessage findUppermostOutgoingMessage(final int lifeline) {
+        SMessage[] outgoing = outgoingMessages[lifeline];
+        while (outgoingCursors[lifeline] < outgoing.length) {
+            SMessage message = outgoing[outgoingCursors[lifeline]];
+            // check if target lifeline was already set
+            if (!placed[message.getTarget().getHorizontalSlot()]) {
+                return message;
             }
+            outgoingCursors[lifeline]++;
         }
-        return uppermostMessage;
+        return null;
     }
 }
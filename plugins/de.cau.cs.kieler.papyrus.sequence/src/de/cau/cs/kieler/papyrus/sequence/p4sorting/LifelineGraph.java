@@ -0,0 +1,518 @@
+/*
+ * KIELER - Kiel Integrated Environment for Layout Eclipse RichClient
+ *
+ * http://www.informatik.uni-kiel.de/rtsys/kieler/
+ * 
+ * Copyright 2016 by
+ * + Kiel University
+ *   + Department of Computer Science
+ *     + Real-Time and Embedded Systems Group
+ * 
+ * This code is provided under the terms of the Eclipse Public License (EPL).
+ * See the file epl-v10.html for the license text.
+ */
+package de.cau.cs.kieler.papyrus.sequence.p4sorting;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.cau.cs.kieler.papyrus.sequence.LayoutContext;
+import de.cau.cs.kieler.papyrus.sequence.graph.SGraph;
+import de.cau.cs.kieler.papyrus.sequence.graph.SLifeline;
+import de.cau.cs.kieler.papyrus.sequence.graph.SMessage;
+import de.cau.cs.kieler.papyrus.sequence.properties.MessageType;
+import de.cau.cs.kieler.papyrus.sequence.properties.SequenceArea;
+import de.cau.cs.kieler.papyrus.sequence.properties.SequenceDiagramOptions;
+
+/**
+ * The undirected, weighted communication graph between the lifelines of an {@link SGraph}, used by
+ * the lifeline sorters. Node {@code i} is the {@code i}-th lifeline of the graph. Two lifelines are
+ * adjacent if there are messages between them, with the number of messages as the edge weight.
+ * Self messages don't connect different lifelines and are not part of the graph.
+ * 
+ * <p>Neighbors are stored in compressed form, sorted by their index. If most lifelines communicate
+ * with each other, the weights are additionally kept in a matrix to look them up in constant
+ * time.</p>
+ * 
+ * <p>Obtaining an instance overwrites the horizontal slots of the graph's lifelines with their
+ * indices. Dummy lifelines of messages from or to the surrounding interaction keep their slots.</p>
+ * 
+ * <p>The graph is kept in the layout context, so sorters that run one after another, or wrap each
+ * other, share it instead of building it again. It can only be used by the lifeline sorters.</p>
+ * 
+ * @author cds
+ */
+public final class LifelineGraph {
+
+    /**
+     * The weights are kept in a matrix if it has at most this many entries per message between
+     * different lifelines.
+     */
+    private static final int MATRIX_DENSITY_FACTOR = 4;
+    /** The maximum number of lifelines the weights are kept in a matrix for. */
+    private static final int MAX_MATRIX_LIFELINES = 1024;
+
+    /** The lifelines, indexed by their slot. */
+    private final SLifeline[] lifelines;
+    /** For each lifeline, the index in {@link #neighbors} its neighbors start at. */
+    private final int[] neighborStart;
+    /** The neighbors of all lifelines, grouped by lifeline and sorted by index. */
+    private final int[] neighbors;
+    /** The weight of the edge to each entry of {@link #neighbors}. */
+    private final int[] neighborWeights;
+    /** For each lifeline, the sum of the weights of its edges. */
+    private final int[] weightedDegrees;
+    /** Edge weights in row-major order, or {@code null} if the graph is too sparse. */
+    private final int[] matrix;
+    /** For each lifeline, the number of messages it sends to the surrounding interaction. */
+    private final int[] messagesToBorder;
+    /** For each lifeline, the number of messages it receives from the surrounding interaction. */
+    private final int[] messagesFromBorder;
+    /** The sequence graph this graph was created from. */
+    private SGraph sgraph;
+    /** Whether the weights include the areas messages are contained in. */
+    private boolean weighAreas;
+
+
+    /**
+     * Creates a new lifeline graph from the given adjacency lists.
+     * 
+     * @param lifelines
+     *            the lifelines.
+     * @param neighborStart
+     *            start index of each lifeline's neighbors, with an additional entry at the end.
+     * @param neighbors
+     *            the neighbors.
+     * @param neighborWeights
+     *            the edge weights.
+     * @param matrix
+     *            the edge weights as a matrix, or {@code null}.
+     * @param messagesToBorder
+     *            number of messages to the surrounding interaction for each lifeline.
+     * @param messagesFromBorder
+     *            number of messages from the surrounding interaction for each lifeline.
+     */
+    private LifelineGraph(final SLifeline[] lifelines, final int[] neighborStart,
+            final int[] neighbors, final int[] neighborWeights, final int[] matrix,
+            final int[] messagesToBorder, final int[] messagesFromBorder) {
+
+        this.lifelines = lifelines;
+        this.neighborStart = neighborStart;
+        this.neighbors = neighbors;
+        this.neighborWeights = neighborWeights;
+        this.matrix = matrix;
+        this.messagesToBorder = messagesToBorder;
+        this.messagesFromBorder = messagesFromBorder;
+
+        weightedDegrees = new int[lifelines.length];
+        for (int lifeline = 0; lifeline < lifelines.length; lifeline++) {
+            for (int i = neighborStart[lifeline]; i < neighborStart[lifeline + 1]; i++) {
+                weightedDegrees[lifeline] += neighborWeights[i];
+            }
+        }
+    }
+
+    /**
+     * Returns the lifeline graph of the context's sequence graph. The graph is created the first
+     * time and kept in the context for later calls; those only reset the lifelines' slots to their
+     * indices, which sorters may have changed in the meantime.
+     * 
+     * @param context
+     *            the layout context that contains all relevant information for the current layout run.
+     * @return the lifeline graph.
+     */
+    static LifelineGraph of(final LayoutContext context) {
+        LifelineGraph graph = context.lifelineGraph;
+        if (graph == null || graph.sgraph != context.sgraph
+                || graph.weighAreas != context.groupAreasWhenSorting) {
+            
+            graph = create(context.sgraph, context.groupAreasWhenSorting);
+            graph.sgraph = context.sgraph;
+            graph.weighAreas = context.groupAreasWhenSorting;
+            context.lifelineGraph = graph;
+        } else {
+            for (int i = 0; i < graph.lifelines.length; i++) {
+                graph.lifelines[i].setHorizontalSlot(i);
+            }
+        }
+        return graph;
+    }
+
+    /**
+     * Creates the lifeline graph of the given sequence graph in a single pass over its messages.
+     * 
+     * @param sgraph
+     *            the sequence graph.
+     * @param weighAreas
+     *            if {@code true}, the weight of each message is increased by the number of areas it
+     *            is contained in, which tends to keep the lifelines of an area together.
+     * @return the lifeline graph.
+     */
+    private static LifelineGraph create(final SGraph sgraph, final boolean weighAreas) {
+        List<SLifeline> lifelineList = sgraph.getLifelines();
+        SLifeline[] lifelines = lifelineList.toArray(new SLifeline[lifelineList.size()]);
+        int lifelineCount = lifelines.length;
+
+        int messageCount = 0;
+        for (int i = 0; i < lifelineCount; i++) {
+            lifelines[i].setHorizontalSlot(i);
+            messageCount += lifelines[i].getMessages().size();
+        }
+
+        Map<SMessage, Integer> areaCounts = weighAreas ? countAreas(sgraph) : null;
+
+        // Collect each message between different lifelines once, in both directions
+        int[] entrySources = new int[messageCount];
+        int[] entryTargets = new int[messageCount];
+        int[] entryWeights = new int[messageCount];
+        int entryCount = 0;
+        int[] messagesToBorder = new int[lifelineCount];
+        int[] messagesFromBorder = new int[lifelineCount];
+
+        for (int lifeline = 0; lifeline < lifelineCount; lifeline++) {
+            for (SMessage message : lifelines[lifeline].getMessages()) {
+                SLifeline source = message.getSource();
+                SLifeline target = message.getTarget();
+                MessageType messageType = message.getProperty(SequenceDiagramOptions.MESSAGE_TYPE);
+
+                if (source != lifelines[lifeline]) {
+                    // Messages are listed at both of their lifelines; only those from the
+                    // surrounding interaction are handled at their target
+                    if (source.isDummy() && messageType != MessageType.FOUND) {
+                        messagesFromBorder[lifeline]++;
+                    }
+                } else if (target.isDummy()) {
+                    if (messageType != MessageType.LOST) {
+                        messagesToBorder[lifeline]++;
+                    }
+                } else if (target != source) {
+                    int weight = 1;
+                    if (areaCounts != null) {
+                        Integer areaCount = areaCounts.get(message);
+                        if (areaCount != null) {
+                            weight += areaCount;
+                        }
+                    }
+
+                    entrySources[entryCount] = lifeline;
+                    entryTargets[entryCount] = target.getHorizontalSlot();
+                    entryWeights[entryCount] = weight;
+                    entryCount++;
+                    entrySources[entryCount] = target.getHorizontalSlot();
+                    entryTargets[entryCount] = lifeline;
+                    entryWeights[entryCount] = weight;
+                    entryCount++;
+                }
+            }
+        }
+
+        boolean dense = lifelineCount <= MAX_MATRIX_LIFELINES
+                && lifelineCount * lifelineCount <= MATRIX_DENSITY_FACTOR * entryCount;
+        if (dense) {
+            return fromMatrix(lifelines, entrySources, entryTargets, entryWeights, entryCount,
+                    messagesToBorder, messagesFromBorder);
+        } else {
+            return fromEntries(lifelines, entrySources, entryTargets, entryWeights, entryCount,
+                    messagesToBorder, messagesFromBorder);
+        }
+    }
+
+    /**
+     * Counts the number of areas each message is contained in.
+     * 
+     * @param sgraph
+     *            the sequence graph.
+     * @return map of messages to the number of areas they are contained in. Messages not contained
+     *         in any area are not in the map.
+     */
+    private static Map<SMessage, Integer> countAreas(final SGraph sgraph) {
+        Map<SMessage, Integer> areaCounts = new HashMap<SMessage, Integer>();
+        List<SequenceArea> areas = sgraph.getProperty(SequenceDiagramOptions.AREAS);
+        if (areas != null) {
+            for (SequenceArea area : areas) {
+                for (Object messageObject : area.getMessages()) {
+                    SMessage message = (SMessage) messageObject;
+                    Integer areaCount = areaCounts.get(message);
+                    areaCounts.put(message, areaCount == null ? 1 : areaCount + 1);
+                }
+            }
+        }
+        return areaCounts;
+    }
+
+    /**
+     * Creates a lifeline graph by accumulating the weights in a matrix. The neighbor lists are then
+     * read off the matrix rows.
+     * 
+     * @param lifelines
+     *            the lifelines.
+     * @param entrySources
+     *            source lifeline of each directed entry.
+     * @param entryTargets
+     *            target lifeline of each directed entry.
+     * @param entryWeights
+     *            weight of each directed entry.
+     * @param entryCount
+     *            the number of entries.
+     * @param messagesToBorder
+     *            number of messages to the surrounding interaction for each lifeline.
+     * @param messagesFromBorder
+     *            number of messages from the surrounding interaction for each lifeline.
+     * @return the lifeline graph.
+     */
+    private static LifelineGraph fromMatrix(final SLifeline[] lifelines, final int[] entrySources,
+            final int[] entryTargets, final int[] entryWeights, final int entryCount,
+            final int[] messagesToBorder, final int[] messagesFromBorder) {
+
+        int lifelineCount = lifelines.length;
+        int[] matrix = new int[lifelineCount * lifelineCount];
+        for (int entry = 0; entry < entryCount; entry++) {
+            matrix[entrySources[entry] * lifelineCount + entryTargets[entry]] +=
+                    entryWeights[entry];
+        }
+
+        int[] neighborStart = new int[lifelineCount + 1];
+        for (int i = 0; i < matrix.length; i++) {
+            if (matrix[i] != 0) {
+                neighborStart[i / lifelineCount + 1]++;
+            }
+        }
+        for (int lifeline = 0; lifeline < lifelineCount; lifeline++) {
+            neighborStart[lifeline + 1] += neighborStart[lifeline];
+        }
+
+        int[] neighbors = new int[neighborStart[lifelineCount]];
+        int[] neighborWeights = new int[neighbors.length];
+        int next = 0;
+        for (int i = 0; i < matrix.length; i++) {
+            if (matrix[i] != 0) {
+                neighbors[next] = i % lifelineCount;
+                neighborWeights[next] = matrix[i];
+                next++;
+            }
+        }
+
+        return new LifelineGraph(lifelines, neighborStart, neighbors, neighborWeights, matrix,
+                messagesToBorder, messagesFromBorder);
+    }
+
+    /**
+     * Creates a lifeline graph by grouping the entries by target and then, keeping that order, by
+     * source lifeline. This leaves the entries of each lifeline sorted by neighbor, so entries for
+     * the same pair of lifelines are adjacent and can be merged in a single scan.
+     * 
+     * @param lifelines
+     *            the lifelines.
+     * @param entrySources
+     *            source lifeline of each directed entry.
+     * @param entryTargets
+     *            target lifeline of each directed entry.
+     * @param entryWeights
+     *            weight of each directed entry.
+     * @param entryCount
+     *            the number of entries.
+     * @param messagesToBorder
+     *            number of messages to the surrounding interaction for each lifeline.
+     * @param messagesFromBorder
+     *            number of messages from the surrounding interaction for each lifeline.
+     * @return the lifeline graph.
+     */
+    private static LifelineGraph fromEntries(final SLifeline[] lifelines, final int[] entrySources,
+            final int[] entryTargets, final int[] entryWeights, final int entryCount,
+            final int[] messagesToBorder, final int[] messagesFromBorder) {
+
+        int lifelineCount = lifelines.length;
+        int[] entries = new int[entryCount];
+        for (int entry = 0; entry < entryCount; entry++) {
+            entries[entry] = entry;
+        }
+        int[] byTarget = new int[entryCount];
+        groupEntries(entryTargets, entries, byTarget, lifelineCount);
+        int[] bySource = new int[entryCount];
+        int[] neighborStart = groupEntries(entrySources, byTarget, bySource, lifelineCount);
+
+        // Merge entries for the same pair of lifelines
+        int[] neighbors = new int[entryCount];
+        int[] neighborWeights = new int[entryCount];
+        int next = 0;
+        for (int lifeline = 0; lifeline < lifelineCount; lifeline++) {
+            int start = next;
+            for (int i = neighborStart[lifeline]; i < neighborStart[lifeline + 1]; i++) {
+                int entry = bySource[i];
+                if (next > start && neighbors[next - 1] == entryTargets[entry]) {
+                    neighborWeights[next - 1] += entryWeights[entry];
+                } else {
+                    neighbors[next] = entryTargets[entry];
+                    neighborWeights[next] = entryWeights[entry];
+                    next++;
+                }
+            }
+            neighborStart[lifeline] = start;
+        }
+        neighborStart[lifelineCount] = next;
+
+        return new LifelineGraph(lifelines, neighborStart, Arrays.copyOf(neighbors, next),
+                Arrays.copyOf(neighborWeights, next), null, messagesToBorder, messagesFromBorder);
+    }
+
+    /**
+     * Stably groups the given entries by the given keys.
+     * 
+     * @param keys
+     *            the key of each entry, between {@code 0} and {@code keyCount - 1}.
+     * @param entries
+     *            the entries in their current order.
+     * @param result
+     *            array that receives the grouped entries.
+     * @param keyCount
+     *            the number of different keys.
+     * @return array with one more entry than there are keys that holds the index in {@code result}
+     *         each key's entries start at.
+     */
+    private static int[] groupEntries(final int[] keys, final int[] entries, final int[] result,
+            final int keyCount) {
+
+        int[] start = new int[keyCount + 1];
+        for (int entry : entries) {
+            start[keys[entry] + 1]++;
+        }
+        for (int key = 0; key < keyCount; key++) {
+            start[key + 1] += start[key];
+        }
+
+        int[] next = Arrays.copyOf(start, keyCount);
+        for (int entry : entries) {
+            result[next[keys[entry]]++] = entry;
+        }
+        return start;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    // Accessors
+
+    /**
+     * Returns the number of lifelines.
+     * 
+     * @return the number of lifelines.
+     */
+    int getLifelineCount() {
+        return lifelines.length;
+    }
+
+    /**
+     * Returns the lifeline with the given index.
+     * 
+     * @param lifeline
+     *            the lifeline's index.
+     * @return the lifeline.
+     */
+    SLifeline getLifeline(final int lifeline) {
+        return lifelines[lifeline];
+    }
+
+    /**
+     * Returns the number of lifelines the given lifeline exchanges messages with.
+     * 
+     * @param lifeline
+     *            the lifeline's index.
+     * @return the lifeline's degree.
+     */
+    int getDegree(final int lifeline) {
+        return neighborStart[lifeline + 1] - neighborStart[lifeline];
+    }
+
+    /**
+     * Returns the {@code i}-th neighbor of the given lifeline. Neighbors are sorted by index.
+     * 
+     * @param lifeline
+     *            the lifeline's index.
+     * @param i
+     *            index between {@code 0} and {@code getDegree(lifeline) - 1}.
+     * @return the neighbor's index.
+     */
+    int getNeighbor(final int lifeline, final int i) {
+        return neighbors[neighborStart[lifeline] + i];
+    }
+
+    /**
+     * Returns the weight of the edge to the {@code i}-th neighbor of the given lifeline.
+     * 
+     * @param lifeline
+     *            the lifeline's index.
+     * @param i
+     *            index between {@code 0} and {@code getDegree(lifeline) - 1}.
+     * @return the edge's weight.
+     */
+    int getNeighborWeight(final int lifeline, final int i) {
+        return neighborWeights[neighborStart[lifeline] + i];
+    }
+
+    /**
+     * Returns the weight of the edge between the given lifelines.
+     * 
+     * @param lifeline1
+     *            the first lifeline's index.
+     * @param lifeline2
+     *            the second lifeline's index.
+     * @return the edge's weight, or {@code 0} if the lifelines don't exchange messages.
+     */
+    int getWeight(final int lifeline1, final int lifeline2) {
+        if (matrix != null) {
+            return matrix[lifeline1 * lifelines.length + lifeline2];
+        }
+
+        // Binary search through the sorted neighbors
+        int low = neighborStart[lifeline1];
+        int high = neighborStart[lifeline1 + 1] - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (neighbors[mid] < lifeline2) {
+                low = mid + 1;
+            } else if (neighbors[mid] > lifeline2) {
+                high = mid - 1;
+            } else {
+                return neighborWeights[mid];
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the sum of the weights of the edges incident to the given lifeline.
+     * 
+     * @param lifeline
+     *            the lifeline's index.
+     * @return the lifeline's weighted degree.
+     */
+    int getWeightedDegree(final int lifeline) {
+        return weightedDegrees[lifeline];
+    }
+
+    /**
+     * Returns the number of messages the given lifeline sends to the surrounding interaction. Lost
+     * messages are not counted.
+     * 
+     * @param lifeline
+     *            the lifeline's index.
+     * @return the number of messages.
+     */
+    int getMessagesToBorder(final int lifeline) {
+        return messagesToBorder[lifeline];
+    }
+
+    /**
+     * Returns the number of messages the given lifeline receives from the surrounding interaction.
+     * Found messages are not counted.
+     * 
+     * @param lifeline
+     *            the lifeline's index.
+     * @return the number of messages.
+     */
+    int getMessagesFromBorder(final int lifeline) {
+        return messagesFromBorder[lifeline];
+    }
+
+}
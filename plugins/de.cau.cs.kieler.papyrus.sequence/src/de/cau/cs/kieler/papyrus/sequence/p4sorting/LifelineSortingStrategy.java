@@ -32,7 +32,19 @@ public enum LifelineSortingStrategy {
      * Sort the lifelines according to McAllisters solution for the linear arrangement problem that
      * minimizes the total length of messages.
      */
-    SHORT_MESSAGES;
+    SHORT_MESSAGES,
+    
+    /**
+     * Sort the lifelines by barycenter and sifting sweeps from several starting orders in parallel to
+     * minimize the total length of messages and the number of lifelines they cross.
+     */
+    SIFTING,
+    
+    /**
+     * Sort the lifelines in an order with the minimum total length of messages. Only feasible for
+     * small interactions; larger ones are sorted as by {@link #SHORT_MESSAGES}.
+     */
+    OPTIMAL;
 
     
     /**
@@ -0,0 +1,56 @@
+/*
+ * KIELER - Kiel Integrated Environment for Layout Eclipse RichClient
+ *
+ * http://www.informatik.uni-kiel.de/rtsys/kieler/
+ * 
+ * Copyright 2016 by
+ * + Kiel University
+ *   + Department of Computer Science
+ *     + Real-Time and Embedded Systems Group
+ * 
+ * This code is provided under the terms of the Eclipse Public License (EPL).
+ * See the file epl-v10.html for the license text.
+ */
+package de.cau.cs.kieler.papyrus.sequence.p4sorting;
+
+import java.util.List;
+
+import de.cau.cs.kieler.papyrus.sequence.LayoutContext;
+import de.cau.cs.kieler.papyrus.sequence.graph.SLifeline;
+
+/**
+ * Utility methods shared by the lifeline sorters.
+ * 
+ * @author cds
+ */
+final class LifelineSortingUtil {
+
+    /**
+     * Utility class, not to be instantiated.
+     */
+    private LifelineSortingUtil() {
+
+    }
+
+    /**
+     * Publishes the given order of lifelines as the result of the sorting phase. Each lifeline is
+     * assigned its index in the order as its horizontal slot, and the order is made available both as
+     * {@link LayoutContext#lifelineOrder} and as {@link LayoutContext#lifelinesBySlot}, which later
+     * phases use to look up lifelines by their slot.
+     * 
+     * @param context
+     *            the layout context that contains all relevant information for the current layout run.
+     * @param order
+     *            the lifelines in their computed order. Should support fast random access.
+     */
+    static void applyOrder(final LayoutContext context, final List<SLifeline> order) {
+        SLifeline[] lifelinesBySlot = order.toArray(new SLifeline[order.size()]);
+        for (int slot = 0; slot < lifelinesBySlot.length; slot++) {
+            lifelinesBySlot[slot].setHorizontalSlot(slot);
+        }
+
+        context.lifelineOrder = order;
+        context.lifelinesBySlot = lifelinesBySlot;
+    }
+
+}
@@ -0,0 +1,363 @@
+/*
+ * KIELER - Kiel Integrated Environment for Layout Eclipse RichClient
+ *
+ * http://www.informatik.uni-kiel.de/rtsys/kieler/
+ * 
+ * Copyright 2016 by
+ * + Kiel University
+ *   + Department of Computer Science
+ *     + Real-Time and Embedded Systems Group
+ * 
+ * This code is provided under the terms of the Eclipse Public License (EPL).
+ * See the file epl-v10.html for the license text.
+ */
+package de.cau.cs.kieler.papyrus.sequence.p4sorting;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.eclipse.elk.core.util.IElkProgressMonitor;
+
+import de.cau.cs.kieler.papyrus.sequence.ISequenceLayoutProcessor;
+import de.cau.cs.kieler.papyrus.sequence.LayoutContext;
+import de.cau.cs.kieler.papyrus.sequence.graph.SLifeline;
+
+/**
+ * Lifeline sorting algorithm that computes an order with the minimum total length of messages, with
+ * messages from and to the surrounding interaction starting at the left and ending at the right
+ * border of the diagram. This is only feasible for small interactions: larger ones, and those whose
+ * optimal order is not found within the time limit, keep the best order found so far, which is at
+ * least as good as the one found by {@link ShortMessageLifelineSorter}.
+ * 
+ * <p>The total message length equals the number of messages that cross each gap between two
+ * neighboring lifelines, summed over all gaps. How many messages cross a gap only depends on the set
+ * of lifelines left of it, which makes this a problem on subsets of lifelines. The algorithm is a
+ * depth-first branch and bound that places one lifeline after another. A partial order is discarded
+ * if it can't beat the best complete order found so far, or if the same set of lifelines has already
+ * been placed at no larger cost. With the latter, each set is only expanded a few times, which keeps
+ * the search close to the classic subset dynamic program while finding good complete orders
+ * early.</p>
+ * 
+ * @author cds
+ */
+public final class OptimalLifelineSorter implements ISequenceLayoutProcessor {
+
+    /** The maximum number of lifelines an optimal order is searched for. */
+    private static final int MAX_LIFELINES = 20;
+    /** The number of search nodes after which the time limit is checked again. */
+    private static final int DEADLINE_CHECK_INTERVAL = 1024;
+
+    /** The communication graph between the lifelines. */
+    private LifelineGraph graph;
+    /** The {@link System#nanoTime()} after which the search is aborted. */
+    private long deadline;
+    /** Whether the search was aborted because of the time limit. */
+    private boolean aborted;
+    /** The number of search nodes visited so far. */
+    private int visitedNodes;
+
+    /** For each set of lifelines, the smallest cost it was placed at so far. */
+    private int[] bestSetCosts;
+    /** The total weight of all edges. */
+    private int totalWeight;
+    /** The lifelines placed so far, from left to right. */
+    private int[] order;
+    /** For each lifeline, the weight of the edges to placed lifelines. */
+    private int[] placedWeight;
+    /** Scratch array used to compute lower bounds. */
+    private int[] offsetCoefficients;
+    /** The best complete order found so far. */
+    private int[] bestOrder;
+    /** The total message length of {@link #bestOrder}. */
+    private int bestCost;
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void process(final LayoutContext context, final IElkProgressMonitor progressMonitor) {
+        progressMonitor.begin("Optimal lifeline sorting", 2);
+
+        // The greedy order is the initial best order
+        new ShortMessageLifelineSorter().process(context, progressMonitor.subTask(1));
+        List<SLifeline> greedyOrder = context.lifelineOrder;
+
+        if (greedyOrder.size() <= MAX_LIFELINES) {
+            deadline = context.optimalSortingTimeLimit > 0
+                    ? System.nanoTime() + context.optimalSortingTimeLimit * 1000000L
+                    : Long.MAX_VALUE;
+            graph = LifelineGraph.of(context);
+
+            // Obtaining the graph replaced the slots by the lifelines' indices
+            int lifelineCount = graph.getLifelineCount();
+            bestOrder = new int[lifelineCount];
+            for (int i = 0; i < lifelineCount; i++) {
+                bestOrder[i] = greedyOrder.get(i).getHorizontalSlot();
+            }
+            bestCost = cost(bestOrder);
+
+            search();
+
+            List<SLifeline> lifelines = new ArrayList<SLifeline>(lifelineCount);
+            for (int lifeline : bestOrder) {
+                lifelines.add(graph.getLifeline(lifeline));
+            }
+            context.lifelineOrder = lifelines;
+        }
+
+        // Assign the lifelines to their slots
+        LifelineSortingUtil.applyOrder(context, context.lifelineOrder);
+
+        // Free memory
+        graph = null;
+        bestSetCosts = null;
+        order = null;
+        placedWeight = null;
+        offsetCoefficients = null;
+        bestOrder = null;
+
+        progressMonitor.done();
+    }
+
+    /**
+     * Computes the total message length of the given order.
+     * 
+     * @param lifelines
+     *            the order of all lifelines.
+     * @return the total message length.
+     */
+    private int cost(final int[] lifelines) {
+        int[] position = new int[lifelines.length];
+        for (int i = 0; i < lifelines.length; i++) {
+            position[lifelines[i]] = i;
+        }
+
+        int cost = 0;
+        for (int lifeline = 0; lifeline < lifelines.length; lifeline++) {
+            for (int i = graph.getDegree(lifeline) - 1; i >= 0; i--) {
+                int neighbor = graph.getNeighbor(lifeline, i);
+                if (position[neighbor] < position[lifeline]) {
+                    cost += graph.getNeighborWeight(lifeline, i)
+                            * (position[lifeline] - position[neighbor]);
+                }
+            }
+            cost += graph.getMessagesFromBorder(lifeline) * position[lifeline]
+                    + graph.getMessagesToBorder(lifeline)
+                            * (lifelines.length - 1 - position[lifeline]);
+        }
+        return cost;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    // Branch and Bound
+
+    /**
+     * Searches for an order that is better than the best one found so far until the search space is
+     * exhausted or the time limit is reached.
+     */
+    private void search() {
+        int lifelineCount = graph.getLifelineCount();
+
+        bestSetCosts = new int[1 << lifelineCount];
+        Arrays.fill(bestSetCosts, Integer.MAX_VALUE);
+        order = new int[lifelineCount];
+        placedWeight = new int[lifelineCount];
+        offsetCoefficients = new int[lifelineCount];
+        aborted = false;
+        visitedNodes = 0;
+
+        // Messages from the surrounding interaction cross all gaps left of their target lifeline,
+        // so while no lifeline is placed, all of them cross the next gap
+        int fromBorder = 0;
+        totalWeight = 0;
+        for (int lifeline = 0; lifeline < lifelineCount; lifeline++) {
+            fromBorder += graph.getMessagesFromBorder(lifeline);
+            totalWeight += graph.getWeightedDegree(lifeline);
+        }
+        totalWeight /= 2;
+
+        extend(0, 0, 0, 0, 0, fromBorder, 0);
+    }
+
+    /**
+     * Tries all lifelines that are not placed yet at the next position.
+     * 
+     * @param placed
+     *            the set of placed lifelines.
+     * @param placedCount
+     *            the number of placed lifelines.
+     * @param cost
+     *            the number of messages crossing the gaps between the placed lifelines.
+     * @param inner
+     *            the weight of the edges between placed lifelines.
+     * @param cut
+     *            the weight of the edges between placed and unplaced lifelines.
+     * @param fromBorder
+     *            the number of messages from the surrounding interaction to unplaced lifelines.
+     * @param toBorder
+     *            the number of messages from placed lifelines to the surrounding interaction.
+     */
+    private void extend(final int placed, final int placedCount, final int cost, final int inner,
+            final int cut, final int fromBorder, final int toBorder) {
+
+        int lifelineCount = order.length;
+        if (placedCount == lifelineCount) {
+            if (cost < bestCost) {
+                bestCost = cost;
+                bestOrder = Arrays.copyOf(order, lifelineCount);
+            }
+            return;
+        }
+
+        if (++visitedNodes % DEADLINE_CHECK_INTERVAL == 0 && System.nanoTime() >= deadline) {
+            aborted = true;
+        }
+
+        // Try the candidates in the order the greedy heuristic would choose them
+        int[] candidates = candidates(placed);
+        for (int i = 0; i < candidates.length && !aborted; i++) {
+            int lifeline = candidates[i];
+            int newPlaced = placed | (1 << lifeline);
+
+            // Placing the lifeline moves its edges to placed lifelines from the cut to the inner
+            // edges and adds all of its other edges to the cut
+            int newInner = inner + placedWeight[lifeline];
+            int newCut = cut + graph.getWeightedDegree(lifeline) - 2 * placedWeight[lifeline];
+            int newFromBorder = fromBorder - graph.getMessagesFromBorder(lifeline);
+            int newToBorder = toBorder + graph.getMessagesToBorder(lifeline);
+
+            // The gap right of the new lifeline is crossed by the cut and by messages from and to
+            // the surrounding interaction; the last lifeline has no gap to its right
+            int newCost = cost;
+            if (placedCount + 1 < lifelineCount) {
+                newCost += newCut + newFromBorder + newToBorder;
+            }
+
+            if (newCost >= bestSetCosts[newPlaced]) {
+                continue;
+            }
+
+            order[placedCount] = lifeline;
+            updatePlacedWeights(lifeline, 1);
+            int bound = newCost + remainingCostBound(newPlaced, lifelineCount - placedCount - 1,
+                    totalWeight - newInner - newCut, newToBorder);
+            if (bound < bestCost) {
+                bestSetCosts[newPlaced] = newCost;
+                extend(newPlaced, placedCount + 1, newCost, newInner, newCut, newFromBorder,
+                        newToBorder);
+            }
+            updatePlacedWeights(lifeline, -1);
+        }
+    }
+
+    /**
+     * Returns the unplaced lifelines, sorted by their selection factor as used by
+     * {@link ShortMessageLifelineSorter}: lifelines with many edges to placed lifelines and few
+     * other edges come first.
+     * 
+     * @param placed
+     *            the set of placed lifelines.
+     * @return the unplaced lifelines.
+     */
+    private int[] candidates(final int placed) {
+        int lifelineCount = order.length;
+        int[] candidates = new int[lifelineCount - Integer.bitCount(placed)];
+        int candidateCount = 0;
+        for (int lifeline = 0; lifeline < lifelineCount; lifeline++) {
+            if ((placed & (1 << lifeline)) == 0) {
+                // Insertion sort by selection factor; there are only few candidates
+                int factor = selectionFactor(lifeline);
+                int i = candidateCount++;
+                while (i > 0 && selectionFactor(candidates[i - 1]) > factor) {
+                    candidates[i] = candidates[i - 1];
+                    i--;
+                }
+                candidates[i] = lifeline;
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * Returns the selection factor of the given lifeline as proposed by McAllister.
+     * 
+     * @param lifeline
+     *            the lifeline.
+     * @return the selection factor. The smaller, the better suited the lifeline is to be placed
+     *         next.
+     */
+    private int selectionFactor(final int lifeline) {
+        return graph.getWeightedDegree(lifeline) - 2 * placedWeight[lifeline];
+    }
+
+    /**
+     * Returns a lower bound for the number of messages that cross the gaps between the unplaced
+     * lifelines. Messages from placed lifelines to the surrounding interaction cross all of them, and
+     * each edge between two unplaced lifelines crosses at least one. An unplaced lifeline at offset
+     * {@code i} from the first unplaced position adds {@code i} crossings for each of its edges to
+     * placed lifelines and each message from the surrounding interaction, and
+     * {@code unplacedCount - 1 - i} for each message to the surrounding interaction. The sum of these
+     * is smallest if the lifelines are ordered by decreasing difference between the former and the
+     * latter.
+     * 
+     * @param placed
+     *            the set of placed lifelines.
+     * @param unplacedCount
+     *            the number of unplaced lifelines.
+     * @param unplacedWeight
+     *            the weight of the edges between unplaced lifelines.
+     * @param toBorder
+     *            the number of messages from placed lifelines to the surrounding interaction.
+     * @return the lower bound.
+     */
+    private int remainingCostBound(final int placed, final int unplacedCount,
+            final int unplacedWeight, final int toBorder) {
+
+        if (unplacedCount == 0) {
+            return 0;
+        }
+
+        int bound = unplacedWeight + toBorder * (unplacedCount - 1);
+        int coefficientCount = 0;
+        for (int lifeline = 0; lifeline < order.length; lifeline++) {
+            if ((placed & (1 << lifeline)) == 0) {
+                int lifelineToBorder = graph.getMessagesToBorder(lifeline);
+                bound += lifelineToBorder * (unplacedCount - 1);
+
+                // Insertion sort by decreasing coefficient
+                int coefficient = placedWeight[lifeline] + graph.getMessagesFromBorder(lifeline)
+                        - lifelineToBorder;
+                int i = coefficientCount++;
+                while (i > 0 && offsetCoefficients[i - 1] < coefficient) {
+                    offsetCoefficients[i] = offsetCoefficients[i - 1];
+                    i--;
+                }
+                offsetCoefficients[i] = coefficient;
+            }
+        }
+
+        for (int i = 1; i < coefficientCount; i++) {
+            bound += offsetCoefficients[i] * i;
+        }
+        return bound;
+    }
+
+    /**
+     * Adds the weights of the edges of the given lifeline to the placed weights of its neighbors.
+     * 
+     * @param lifeline
+     *            the lifeline that is placed or removed again.
+     * @param sign
+     *            {@code 1} if the lifeline is placed, {@code -1} if it is removed.
+     */
+    private void updatePlacedWeights(final int lifeline, final int sign) {
+        for (int i = graph.getDegree(lifeline) - 1; i >= 0; i--) {
+            placedWeight[graph.getNeighbor(lifeline, i)] +=
+                    sign * graph.getNeighborWeight(lifeline, i);
+        }
+    }
+
+}
@@ -13,7 +13,7 @@
  */
 package de.cau.cs.kieler.papyrus.sequence.p4sorting;
 
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -23,16 +23,11 @@ import org.eclipse.elk.alg.layered.graph.Layer;
 import org.eclipse.elk.alg.layered.properties.InternalProperties;
 import org.eclipse.elk.core.util.IElkProgressMonitor;
 
-import com.google.common.collect.HashBiMap;
-
 import de.cau.cs.kieler.papyrus.sequence.ISequenceLayoutProcessor;
 import de.cau.cs.kieler.papyrus.sequence.LayoutContext;
 import de.cau.cs.kieler.papyrus.sequence.graph.SGraph;
 import de.cau.cs.kieler.papyrus.sequence.graph.SLifeline;
 import de.cau.cs.kieler.papyrus.sequence.graph.SMessage;
-import de.cau.cs.kieler.papyrus.sequence.properties.MessageType;
-import de.cau.cs.kieler.papyrus.sequence.properties.SequenceArea;
-import de.cau.cs.kieler.papyrus.sequence.properties.SequenceDiagramOptions;
 import de.cau.cs.kieler.papyrus.sequence.properties.InternalSequenceProperties;
 
 /**
@@ -50,8 +45,14 @@ public final class ShortMessageLifelineSorter implements ISequenceLayoutProcesso
     private boolean layerBased = true;
     /** List of nodes that are already placed by the algorithm. */
     private List<EDLSNode> placedNodes;
-    /** The map of lifeline <-> node correspondences. */
-    private HashBiMap<SLifeline, EDLSNode> correspondences;
+    /** The communication graph between the lifelines. */
+    private LifelineGraph graph;
+    /** The nodes in the order of their lifelines. */
+    private EDLSNode[] nodes;
+    /** Nodes not placed yet, organized as a binary heap with the best candidate at the top. */
+    private EDLSNode[] candidates;
+    /** The number of nodes in the {@link #candidates} heap. */
+    private int candidateCount;
 
     
     /**
@@ -75,33 +76,33 @@ public final class ShortMessageLifelineSorter implements ISequenceLayoutProcesso
             first = degreeBasedFirstNode(context.sgraph, context.lgraph);
         }
         placedNodes.add(first);
+        // All other nodes are candidates for the next position
+        initializeCandidates();
         // Update the TL-values for connected nodes
-        first.incrementNeighborsTL();
+        incrementNeighborsTL(first);
 
         // Calculate following nodes one after another
         for (int i = 2; i <= context.sgraph.getLifelines().size(); i++) {
-            EDLSNode next = calculateNextNode(context.sgraph);
+            EDLSNode next = calculateNextNode();
             placedNodes.add(next);
             // Update the TL-value for connected nodes
-            next.incrementNeighborsTL();
+            incrementNeighborsTL(next);
         }
 
         // Get the corresponding lifelines
-        int i = 0;
-        List<SLifeline> lifelines = new LinkedList<SLifeline>();
+        List<SLifeline> lifelines = new ArrayList<SLifeline>(placedNodes.size());
         for (EDLSNode node : placedNodes) {
-            SLifeline lifeline = correspondences.inverse().get(node);
-            lifelines.add(lifeline);
-            lifeline.setHorizontalSlot(i);
-            i++;
+            lifelines.add(graph.getLifeline(node.index));
         }
 
         // Return the list of lifelines in the calculated order
-        context.lifelineOrder = lifelines;
+        LifelineSortingUtil.applyOrder(context, lifelines);
 
         // Free memory
         placedNodes = null;
-        correspondences = null;
+        graph = null;
+        nodes = null;
+        candidates = null;
         
         progressMonitor.done();
     }
@@ -124,90 +125,37 @@ public final class ShortMessageLifelineSorter implements ISequenceLayoutProcesso
      *            the layout context that contains all relevant information for the current layout run.
      */
     private void createEDLSNodes(final LayoutContext context) {
-        // List of lifelines
-        List<SLifeline> lifelines = context.sgraph.getLifelines();
+        // If the considerAreas option is set, the weight of every edge whose message is contained
+        // in an area is increased
+        graph = LifelineGraph.of(context);
 
-        // Initialize correspondences list
-        correspondences = HashBiMap.create(lifelines.size());
+        nodes = new EDLSNode[graph.getLifelineCount()];
+        for (int i = 0; i < nodes.length; i++) {
+            EDLSNode node = new EDLSNode(i, graph.getWeightedDegree(i));
 
-        // Create nodes
-        for (SLifeline lifeline : lifelines) {
-            EDLSNode node = new EDLSNode();
-            correspondences.put(lifeline, node);
-        }
+            // Give a "penalty" to the TL-value of the node if there are messages leading to the
+            // surrounding interaction and an "advantage" if there are messages coming from it. This
+            // is necessary, because these messages point to the right or come from the left border
+            // of the diagram and are not considered in the normal algorithm.
+            node.setTl(graph.getMessagesFromBorder(i) - graph.getMessagesToBorder(i));
 
-        // If the considerAreas option is set, increase the weight of every edge whose message is
-        // contained in an area.
-        // Prepare this by filling a map of (message <-> number of its areas) pairs.
-        HashMap<SMessage, Integer> areaMessages = new HashMap<SMessage, Integer>();
-        if (context.groupAreasWhenSorting) {
-            List<SequenceArea> areas = context.sgraph.getProperty(SequenceDiagramOptions.AREAS);
-            if (areas != null) {
-                for (SequenceArea area : areas) {
-                    for (Object messageObject : area.getMessages()) {
-                        SMessage message = (SMessage) messageObject;
-                        Integer messageEntry = areaMessages.get(message);
-                        if (messageEntry == null) {
-                            areaMessages.put(message, 1);
-                        } else {
-                            areaMessages.put(message, areaMessages.get(messageEntry) + 1);
-                        }
-                    }
-                }
-            }
+            nodes[i] = node;
         }
+    }
 
-        // Insert edges
-        for (SLifeline lifeline : lifelines) {
-            // Get the corresponding node
-            EDLSNode node = correspondences.get(lifeline);
-
-            // Update or create entry in the edges map for every message
-            for (SMessage message : lifeline.getOutgoingMessages()) {
-                int increaseValue = 1;
-                if (context.groupAreasWhenSorting) {
-                    if (areaMessages.containsKey(message)) {
-                        increaseValue += areaMessages.get(message);
-                    }
-                }
-
-                SLifeline target = message.getTarget();
-                EDLSNode oppositeNode = correspondences.get(target);
-                if (oppositeNode != null) {
-                    if (node.edges.containsKey(oppositeNode)) {
-                        // Increment edge-weight by one to represent this message
-                        node.edges.put(oppositeNode, node.edges.get(oppositeNode) + increaseValue);
-                        // Increment opposite's map too
-                        oppositeNode.edges.put(node, oppositeNode.edges.get(node) + increaseValue);
-                    } else {
-                        // Insert edge
-                        node.edges.put(oppositeNode, increaseValue);
-                        // Insert edge at opposite node too
-                        oppositeNode.edges.put(node, increaseValue);
-                    }
-                }
-
-                // Give a "penalty" to the TL-value of the node if there are messages leading to the
-                // surrounding interaction. This is necessary, because these messages point to the
-                // right border of the diagram and are not considered in the normal algorithm.
-                MessageType messageType = message.getProperty(SequenceDiagramOptions.MESSAGE_TYPE);
-                if (oppositeNode == null && messageType != MessageType.LOST) {
-                    node.setTl(node.getTl() - 1);
-                }
-            }
-
-            // Give an "advantage" to the TL-value of the node if there are messages coming from the
-            // surrounding interaction. This is necessary, because these messages come from the left
-            // border of the diagram and are not considered in the normal algorithm.
-            for (SMessage message : lifeline.getIncomingMessages()) {
-                SLifeline source = message.getSource();
-                EDLSNode oppositeNode = correspondences.get(source);
-                MessageType messageType = message.getProperty(SequenceDiagramOptions.MESSAGE_TYPE);
-                if (oppositeNode == null && messageType != MessageType.FOUND) {
-                    node.setTl(node.getTl() + 1);
-                }
-            }
+    /**
+     * Returns the node that corresponds to the given lifeline.
+     * 
+     * @param lifeline
+     *            the lifeline, may be {@code null}.
+     * @return the lifeline's node, or {@code null} if the lifeline is a dummy lifeline that
+     *         represents the surrounding interaction.
+     */
+    private EDLSNode nodeOf(final SLifeline lifeline) {
+        if (lifeline == null || lifeline.isDummy()) {
+            return null;
         }
+        return nodes[lifeline.getHorizontalSlot()];
     }
 
     /**
@@ -224,7 +172,7 @@ public final class ShortMessageLifelineSorter implements ISequenceLayoutProcesso
         // Search the node with the lowest weighted degree
         int minDegree = Integer.MAX_VALUE;
         EDLSNode candidate = null;
-        for (EDLSNode node : correspondences.values()) {
+        for (EDLSNode node : nodes) {
             if (node.getWeightedDegree() < minDegree) {
                 minDegree = node.getWeightedDegree();
                 candidate = node;
@@ -245,88 +193,194 @@ public final class ShortMessageLifelineSorter implements ISequenceLayoutProcesso
      * @return the node that should be placed in first location
      */
     private EDLSNode layerBasedFirstNode(final SGraph sgraph, final LGraph lgraph) {
-        List<Layer> layers = lgraph.getLayers();
-        Layer firstLayer = layers.get(0);
-        List<LNode> nodes = firstLayer.getNodes();
-        if (nodes.size() > 1) {
-            // If there is more than one message in the first layer, return the one with the lowest
-            // weighted node degree
-            EDLSNode candidate = null;
-            int bestDegree = Integer.MAX_VALUE;
-            for (LNode node : nodes) {
-                SMessage message = (SMessage) node.getProperty(InternalProperties.ORIGIN);
-                SLifeline sourceLifeline = message.getSource();
-                EDLSNode cand = correspondences.get(sourceLifeline);
-                if (cand.getWeightedDegree() < bestDegree) {
-                    bestDegree = cand.getWeightedDegree();
-                    candidate = cand;
+        // Find the first layer that contains messages (the layers above may only contain dummy
+        // nodes that allocate space)
+        List<SMessage> messages = new LinkedList<SMessage>();
+        for (Layer layer : lgraph.getLayers()) {
+            for (LNode node : layer.getNodes()) {
+                Object origin = node.getProperty(InternalProperties.ORIGIN);
+                if (origin instanceof SMessage) {
+                    messages.add((SMessage) origin);
                 }
             }
-            candidate.setPlaced(true);
-            return candidate;
-        } else {
-            // If there is just one message in the first layer, return the node corresponding to its
-            // source lifeline
-            SMessage message = (SMessage) nodes.get(0).getProperty(InternalProperties.ORIGIN);
-            SLifeline sourceLifeline = message.getSource();
-            EDLSNode candidate = correspondences.get(sourceLifeline);
-            if (candidate == null) {
-                // Found messages have no source lifeline. Therefore their target is the first lifeline 
-                candidate = correspondences.get(message.getTarget());
+            if (!messages.isEmpty()) {
+                break;
             }
-            candidate.setPlaced(true);
-            return candidate;
         }
+
+        // If there is more than one message in that layer, return the one with the lowest weighted
+        // node degree. If there is just one, this returns the node corresponding to its source
+        // lifeline
+        EDLSNode candidate = null;
+        int bestDegree = Integer.MAX_VALUE;
+        for (SMessage message : messages) {
+            EDLSNode cand = nodeOf(message.getSource());
+            if (cand == null) {
+                // Found messages have no source lifeline. Therefore their target is the first
+                // lifeline
+                cand = nodeOf(message.getTarget());
+            }
+            if (cand != null && cand.getWeightedDegree() < bestDegree) {
+                bestDegree = cand.getWeightedDegree();
+                candidate = cand;
+            }
+        }
+
+        if (candidate == null) {
+            return degreeBasedFirstNode(sgraph, lgraph);
+        }
+        candidate.setPlaced(true);
+        return candidate;
     }
 
     /**
-     * Calculate the next node to be set.
+     * Calculate the next node to be set. This is the unplaced node with the smallest selection factor
+     * as proposed by McAllister. If the factor is equal, the node that is more connected to already
+     * placed nodes is chosen, and the node whose lifeline comes first after that.
      * 
-     * @param sgraph
-     *            the sequence graph
      * @return the node that should be placed in the next position
      */
-    private EDLSNode calculateNextNode(final SGraph sgraph) {
-        int minSF = Integer.MAX_VALUE;
-        EDLSNode candidate = null;
-        for (EDLSNode node : correspondences.values()) {
-            if (!node.isPlaced()) {
-                // Calculate the selection factor as proposed by McAllister
-                int sf = node.getWeightedDegree() - 2 * node.getTl();
-                // If the selection factor is smaller than the ones of other nodes, this is the next
-                // node
-                if (sf < minSF) {
-                    minSF = sf;
-                    candidate = node;
-                } else if (sf == minSF) {
-                    // If the factor is equal, choose the one that is more connected to aready
-                    // placed nodes than the other
-                    if (candidate.getTl() < node.getTl()) {
-                        candidate = node;
-                    }
-                }
-            }
+    private EDLSNode calculateNextNode() {
+        EDLSNode candidate = candidates[0];
+        candidateCount--;
+        if (candidateCount > 0) {
+            candidates[0] = candidates[candidateCount];
+            candidates[0].heapIndex = 0;
+            siftDown(0);
         }
+        candidates[candidateCount] = null;
+        candidate.heapIndex = -1;
+
         candidate.setPlaced(true);
         return candidate;
     }
+
+    /**
+     * Increment the sum of the edge-weights for the neighbors of the given node. This is necessary,
+     * if the node was placed in the last step.
+     * 
+     * @param placedNode
+     *            the node that was just placed.
+     */
+    private void incrementNeighborsTL(final EDLSNode placedNode) {
+        int index = placedNode.index;
+        for (int i = graph.getDegree(index) - 1; i >= 0; i--) {
+            EDLSNode node = nodes[graph.getNeighbor(index, i)];
+            // If a connected node is node placed yet, its TL-value has to be incremented by the
+            // connecting edge's weight, which makes it a better candidate
+            if (!node.isPlaced()) {
+                node.setTl(node.getTl() + graph.getNeighborWeight(index, i));
+                siftUp(node.heapIndex);
+            }
+        }
+    }
+    
+    
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    // Candidate Heap
+
+    /**
+     * Puts all nodes that are not placed yet into the candidate heap.
+     */
+    private void initializeCandidates() {
+        candidates = new EDLSNode[nodes.length];
+        candidateCount = 0;
+        for (EDLSNode node : nodes) {
+            if (!node.isPlaced()) {
+                node.heapIndex = candidateCount;
+                candidates[candidateCount++] = node;
+            }
+        }
+
+        for (int i = candidateCount / 2 - 1; i >= 0; i--) {
+            siftDown(i);
+        }
+    }
+
+    /**
+     * Moves the candidate at the given heap position up until the heap property is restored.
+     * 
+     * @param index
+     *            the candidate's position in the heap.
+     */
+    private void siftUp(final int index) {
+        EDLSNode node = candidates[index];
+        int i = index;
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (!isBetterCandidate(node, candidates[parent])) {
+                break;
+            }
+            candidates[i] = candidates[parent];
+            candidates[i].heapIndex = i;
+            i = parent;
+        }
+        candidates[i] = node;
+        node.heapIndex = i;
+    }
+
+    /**
+     * Moves the candidate at the given heap position down until the heap property is restored.
+     * 
+     * @param index
+     *            the candidate's position in the heap.
+     */
+    private void siftDown(final int index) {
+        EDLSNode node = candidates[index];
+        int i = index;
+        while (2 * i + 1 < candidateCount) {
+            int child = 2 * i + 1;
+            if (child + 1 < candidateCount
+                    && isBetterCandidate(candidates[child + 1], candidates[child])) {
+                child++;
+            }
+            if (!isBetterCandidate(candidates[child], node)) {
+                break;
+            }
+            candidates[i] = candidates[child];
+            candidates[i].heapIndex = i;
+            i = child;
+        }
+        candidates[i] = node;
+        node.heapIndex = i;
+    }
+
+    /**
+     * Checks whether the first node should be placed before the second one.
+     * 
+     * @param node1
+     *            the first node.
+     * @param node2
+     *            the second node.
+     * @return {@code true} if the first node is the better candidate.
+     */
+    private static boolean isBetterCandidate(final EDLSNode node1, final EDLSNode node2) {
+        int sf1 = node1.getSelectionFactor();
+        int sf2 = node2.getSelectionFactor();
+        if (sf1 != sf2) {
+            return sf1 < sf2;
+        } else if (node1.getTl() != node2.getTl()) {
+            return node1.getTl() > node2.getTl();
+        } else {
+            return node1.index < node2.index;
+        }
+    }
     
     
     ///////////////////////////////////////////////////////////////////////////////////////////////////
     // EDSLNode Class
 
     /**
-     * A list of these nodes is a very basic implementation of a simple graph. Every node has a map
-     * with adjacent nodes and the weight of the connecting edge. Every node corresponds to a
-     * lifeline in the sequence diagram. The degree of an edge represents the number of messages
-     * connecting the corresponding lifelines.
+     * The placement state of a lifeline. The edges between lifelines are kept in the sorter's
+     * {@link LifelineGraph}.
      */
     private static final class EDLSNode {
-        /**
-         * A map that contains every adjacent node and the weight of the corresponding edge. Edges
-         * are stored in both of their connected nodes.
-         */
-        private HashMap<EDLSNode, Integer> edges;
+        /** The index of the node's lifeline in the lifeline graph. */
+        private final int index;
+        /** The sum of all edge weights. */
+        private final int weightedDegree;
+        /** The node's position in the candidate heap, or -1 if it is not a candidate. */
+        private int heapIndex = -1;
         /**
          * For an unplaced node, the weighted sum of edges to nodes that are already placed. At
          * first, this value is 0 since there are no nodes placed so far.
@@ -335,9 +389,17 @@ public final class ShortMessageLifelineSorter implements ISequenceLayoutProcesso
         /** Indicates, if the node was already placed. */
         private boolean placed = false;
 
-        /** Constructor. */
-        public EDLSNode() {
-            edges = new HashMap<ShortMessageLifelineSorter.EDLSNode, Integer>();
+        /**
+         * Constructor.
+         * 
+         * @param index
+         *            the index of the node's lifeline
+         * @param weightedDegree
+         *            the sum of the weights of the edges incident to the node's lifeline
+         */
+        public EDLSNode(final int index, final int weightedDegree) {
+            this.index = index;
+            this.weightedDegree = weightedDegree;
         }
 
         /**
@@ -355,20 +417,6 @@ public final class ShortMessageLifelineSorter implements ISequenceLayoutProcesso
             this.tl = tl;
         }
 
-        /**
-         * Increment the sum of the edge-weights for neighbored nodes. This is necessary, if this
-         * node was placed in the last step.
-         */
-        public void incrementNeighborsTL() {
-            for (EDLSNode node : edges.keySet()) {
-                // If a connected node is node placed yet, its TL-value has to be incremented by the
-                // connecting edge's weight
-                if (!node.isPlaced()) {
-                    node.setTl(node.getTl() + edges.get(node));
-                }
-            }
-        }
-
         /**
          * @return the placed value
          */
@@ -391,11 +439,17 @@ public final class ShortMessageLifelineSorter implements ISequenceLayoutProcesso
          * @return the weighted degree for the node
          */
         public int getWeightedDegree() {
-            int ret = 0;
-            for (int value : edges.values()) {
-                ret += value;
-            }
-            return ret;
+            return weightedDegree;
+        }
+
+        /**
+         * Get the selection factor as proposed by McAllister. The smaller, the better the node is
+         * suited to be placed next.
+         * 
+         * @return the selection factor for the node
+         */
+        public int getSelectionFactor() {
+            return weightedDegree - 2 * tl;
         }
     }
     
@@ -0,0 +1,485 @@
+/*
+ * KIELER - Kiel Integrated Environment for Layout Eclipse RichClient
+ *
+ * http://www.informatik.uni-kiel.de/rtsys/kieler/
+ * 
+ * Copyright 2016 by
+ * + Kiel University
+ *   + Department of Computer Science
+ *     + Real-Time and Embedded Systems Group
+ * 
+ * This code is provided under the terms of the Eclipse Public License (EPL).
+ * See the file epl-v10.html for the license text.
+ */
+package de.cau.cs.kieler.papyrus.sequence.p4sorting;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+import org.eclipse.elk.core.util.IElkProgressMonitor;
+
+import de.cau.cs.kieler.papyrus.sequence.ISequenceLayoutProcessor;
+import de.cau.cs.kieler.papyrus.sequence.LayoutContext;
+import de.cau.cs.kieler.papyrus.sequence.graph.SLifeline;
+
+/**
+ * Lifeline sorting algorithm that minimizes the total horizontal length of messages. Since a message
+ * crosses every lifeline between its source and its target, this also minimizes the number of
+ * crossings between messages and lifelines. Messages from and to the surrounding interaction are
+ * taken to start at the left and to end at the right border of the diagram.
+ * 
+ * <p>The order is improved by alternating barycenter sweeps, which move each lifeline towards the
+ * average position of its communication partners, and sifting passes, which move single lifelines to
+ * their best position. Since this only finds a local optimum, it is run from several starting orders
+ * in parallel: the current order of the lifelines, a breadth-first order of the communication graph,
+ * and random orders. The best result wins, with ties resolved in favor of the earlier start, which
+ * makes the result deterministic as long as no time limit interrupts the optimization.</p>
+ * 
+ * @author cds
+ */
+public final class SiftingLifelineSorter implements ISequenceLayoutProcessor {
+
+    /** Seed of the random starting orders. Each start adds its index. */
+    private static final long RANDOM_SEED = 0;
+    /** The maximum number of barycenter sweeps between two sifting passes. */
+    private static final int MAX_BARYCENTER_SWEEPS = 10;
+    /**
+     * The optimization of a start stops once a round of barycenter sweeps and sifting improves the
+     * total message length by less than this fraction.
+     */
+    private static final double MIN_IMPROVEMENT = 0.001;
+
+    /** The communication graph between the lifelines. */
+    private LifelineGraph graph;
+    /** The order lifelines are sifted in: by decreasing weighted degree. */
+    private int[] siftingOrder;
+    /** The {@link System#nanoTime()} after which no further improvements are attempted. */
+    private long deadline;
+    /** The resulting order of each start. */
+    private int[][] startOrders;
+    /** The total message length of each start's resulting order. */
+    private long[] startCosts;
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void process(final LayoutContext context, final IElkProgressMonitor progressMonitor) {
+        progressMonitor.begin("Sifting lifeline sorting", 1);
+
+        graph = LifelineGraph.of(context);
+        deadline = context.siftingTimeLimit > 0
+                ? System.nanoTime() + context.siftingTimeLimit * 1000000L
+                : Long.MAX_VALUE;
+        computeSiftingOrder();
+
+        int starts = Math.max(1, context.siftingStarts);
+        startOrders = new int[starts][];
+        startCosts = new long[starts];
+        if (starts == 1) {
+            optimize(0);
+        } else {
+            // The clustering sorter may call us from a pool task, whose pool then runs the starts
+            StartTask task = new StartTask(0, starts);
+            if (ForkJoinTask.inForkJoinPool()) {
+                task.invoke();
+            } else {
+                context.threadPool.invoke(task);
+            }
+        }
+
+        // Find the best start
+        int bestStart = 0;
+        for (int start = 1; start < starts; start++) {
+            if (startCosts[start] < startCosts[bestStart]) {
+                bestStart = start;
+            }
+        }
+
+        // Assign the lifelines to their slots
+        List<SLifeline> lifelines = new ArrayList<SLifeline>(graph.getLifelineCount());
+        for (int lifeline : startOrders[bestStart]) {
+            lifelines.add(graph.getLifeline(lifeline));
+        }
+        LifelineSortingUtil.applyOrder(context, lifelines);
+
+        // Free memory
+        graph = null;
+        siftingOrder = null;
+        startOrders = null;
+        startCosts = null;
+
+        progressMonitor.done();
+    }
+
+    /**
+     * Computes the order lifelines are sifted in. Lifelines with many messages are sifted first since
+     * their position has the largest influence on the total message length.
+     */
+    private void computeSiftingOrder() {
+        Integer[] lifelines = new Integer[graph.getLifelineCount()];
+        for (int i = 0; i < lifelines.length; i++) {
+            lifelines[i] = i;
+        }
+        Arrays.sort(lifelines, new Comparator<Integer>() {
+            public int compare(final Integer lifeline1, final Integer lifeline2) {
+                return Integer.compare(graph.getWeightedDegree(lifeline2),
+                        graph.getWeightedDegree(lifeline1));
+            }
+        });
+
+        siftingOrder = new int[lifelines.length];
+        for (int i = 0; i < lifelines.length; i++) {
+            siftingOrder[i] = lifelines[i];
+        }
+    }
+
+    /**
+     * Optimizes the starting order with the given index until it doesn't improve anymore or the time
+     * limit is reached.
+     * 
+     * @param start
+     *            index of the start.
+     */
+    private void optimize(final int start) {
+        Arrangement arrangement = new Arrangement(graph, initialOrder(start));
+
+        while (System.nanoTime() < deadline) {
+            long previousCost = arrangement.cost;
+
+            for (int i = 0; i < MAX_BARYCENTER_SWEEPS && arrangement.barycenterSweep(); i++) {
+                // Keep sweeping while that improves the order
+            }
+            arrangement.siftingPass(siftingOrder, deadline);
+
+            if (arrangement.cost >= previousCost * (1 - MIN_IMPROVEMENT)) {
+                break;
+            }
+        }
+
+        startOrders[start] = arrangement.order;
+        startCosts[start] = arrangement.cost;
+    }
+
+    /**
+     * Returns the starting order with the given index. The first start is the current order of the
+     * lifelines, the second one a breadth-first order of the communication graph, and all others are
+     * random.
+     * 
+     * @param start
+     *            index of the start.
+     * @return the order of the lifelines.
+     */
+    private int[] initialOrder(final int start) {
+        int lifelineCount = graph.getLifelineCount();
+        int[] order = new int[lifelineCount];
+
+        if (start == 1) {
+            // Breadth-first search, starting each connected component at the lifeline with the
+            // fewest messages
+            boolean[] visited = new boolean[lifelineCount];
+            int next = 0;
+            for (int i = lifelineCount - 1; i >= 0; i--) {
+                int root = siftingOrder[i];
+                if (visited[root]) {
+                    continue;
+                }
+
+                visited[root] = true;
+                order[next++] = root;
+                for (int head = next - 1; head < next; head++) {
+                    int lifeline = order[head];
+                    for (int j = 0; j < graph.getDegree(lifeline); j++) {
+                        int neighbor = graph.getNeighbor(lifeline, j);
+                        if (!visited[neighbor]) {
+                            visited[neighbor] = true;
+                            order[next++] = neighbor;
+                        }
+                    }
+                }
+            }
+        } else {
+            for (int i = 0; i < lifelineCount; i++) {
+                order[i] = i;
+            }
+
+            if (start > 1) {
+                Random random = new Random(RANDOM_SEED + start);
+                for (int i = lifelineCount - 1; i > 0; i--) {
+                    int j = random.nextInt(i + 1);
+                    int swap = order[i];
+                    order[i] = order[j];
+                    order[j] = swap;
+                }
+            }
+        }
+
+        return order;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    // Parallel Starts
+
+    /**
+     * Task that optimizes a range of starts, splitting the range in half until only single starts
+     * remain.
+     */
+    private final class StartTask extends RecursiveAction {
+        private static final long serialVersionUID = 4876290453155240615L;
+
+        /** The first start to optimize. */
+        private final int from;
+        /** The start after the last one to optimize. */
+        private final int to;
+
+        /**
+         * Creates a new task for the given range of starts.
+         * 
+         * @param from
+         *            the first start to optimize.
+         * @param to
+         *            the start after the last one to optimize.
+         */
+        StartTask(final int from, final int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                optimize(from);
+            } else {
+                int middle = (from + to) / 2;
+                invokeAll(new StartTask(from, middle), new StartTask(middle, to));
+            }
+        }
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    // Arrangement Class
+
+    /**
+     * An order of the lifelines together with its total message length. For each lifeline, the
+     * weight of the edges to lifelines left of it is kept up to date. With that, the change of the
+     * total message length caused by swapping two neighboring lifelines can be computed in constant
+     * time, which makes sifting cheap.
+     */
+    private static final class Arrangement {
+        /** The communication graph between the lifelines. */
+        private final LifelineGraph graph;
+        /** The lifelines from left to right. */
+        private final int[] order;
+        /** For each lifeline, its index in {@link #order}. */
+        private final int[] position;
+        /** For each lifeline, the weight of the edges to lifelines left of it. */
+        private final int[] leftWeight;
+        /** For each lifeline, the weight of the edge to the lifeline currently being sifted. */
+        private final int[] siftedWeight;
+        /** The total message length of the current order. */
+        private long cost;
+
+        /**
+         * Creates a new arrangement with the given order.
+         * 
+         * @param graph
+         *            the communication graph between the lifelines.
+         * @param order
+         *            the initial order, which is modified by the arrangement.
+         */
+        Arrangement(final LifelineGraph graph, final int[] order) {
+            this.graph = graph;
+            this.order = order;
+            position = new int[order.length];
+            leftWeight = new int[order.length];
+            siftedWeight = new int[order.length];
+            update();
+        }
+
+        /**
+         * Recomputes the positions, left weights and cost of the current order.
+         */
+        private void update() {
+            int lifelineCount = order.length;
+            for (int i = 0; i < lifelineCount; i++) {
+                position[order[i]] = i;
+            }
+
+            cost = 0;
+            for (int lifeline = 0; lifeline < lifelineCount; lifeline++) {
+                int lifelinePosition = position[lifeline];
+                leftWeight[lifeline] = 0;
+                for (int i = graph.getDegree(lifeline) - 1; i >= 0; i--) {
+                    int neighborPosition = position[graph.getNeighbor(lifeline, i)];
+                    if (neighborPosition < lifelinePosition) {
+                        int weight = graph.getNeighborWeight(lifeline, i);
+                        leftWeight[lifeline] += weight;
+                        cost += (long) weight * (lifelinePosition - neighborPosition);
+                    }
+                }
+                cost += (long) graph.getMessagesFromBorder(lifeline) * lifelinePosition
+                        + (long) graph.getMessagesToBorder(lifeline)
+                                * (lifelineCount - 1 - lifelinePosition);
+            }
+        }
+
+        /**
+         * Sorts the lifelines by the barycenter of their communication partners, with the borders of
+         * the diagram counting as partners for messages from or to the surrounding interaction.
+         * Lifelines without any messages keep their position.
+         * 
+         * @return {@code true} if the new order is better. Otherwise, the order is not changed.
+         */
+        boolean barycenterSweep() {
+            int lifelineCount = order.length;
+            final double[] barycenters = new double[lifelineCount];
+            Integer[] newOrder = new Integer[lifelineCount];
+
+            for (int lifeline = 0; lifeline < lifelineCount; lifeline++) {
+                double weightSum = graph.getMessagesFromBorder(lifeline)
+                        + graph.getMessagesToBorder(lifeline);
+                double positionSum = -graph.getMessagesFromBorder(lifeline)
+                        + (double) graph.getMessagesToBorder(lifeline) * lifelineCount;
+                for (int i = graph.getDegree(lifeline) - 1; i >= 0; i--) {
+                    int weight = graph.getNeighborWeight(lifeline, i);
+                    weightSum += weight;
+                    positionSum += (double) weight * position[graph.getNeighbor(lifeline, i)];
+                }
+
+                barycenters[lifeline] =
+                        weightSum > 0 ? positionSum / weightSum : position[lifeline];
+                newOrder[lifeline] = lifeline;
+            }
+
+            Arrays.sort(newOrder, new Comparator<Integer>() {
+                public int compare(final Integer lifeline1, final Integer lifeline2) {
+                    int result = Double.compare(barycenters[lifeline1], barycenters[lifeline2]);
+                    if (result == 0) {
+                        result = Integer.compare(position[lifeline1], position[lifeline2]);
+                    }
+                    return result;
+                }
+            });
+
+            int[] previousOrder = Arrays.copyOf(order, lifelineCount);
+            long previousCost = cost;
+            for (int i = 0; i < lifelineCount; i++) {
+                order[i] = newOrder[i];
+            }
+            update();
+
+            if (cost < previousCost) {
+                return true;
+            } else {
+                System.arraycopy(previousOrder, 0, order, 0, lifelineCount);
+                update();
+                return false;
+            }
+        }
+
+        /**
+         * Sifts the lifelines in the given order.
+         * 
+         * @param lifelines
+         *            the lifelines to sift.
+         * @param deadline
+         *            the {@link System#nanoTime()} after which no further lifelines are sifted.
+         */
+        void siftingPass(final int[] lifelines, final long deadline) {
+            for (int lifeline : lifelines) {
+                if (System.nanoTime() >= deadline) {
+                    return;
+                }
+                sift(lifeline);
+            }
+        }
+
+        /**
+         * Moves the given lifeline to the position where it causes the smallest total message
+         * length, keeping the relative order of all other lifelines. If several positions are
+         * equally good, the lifeline stays where it is or moves to the leftmost of them.
+         * 
+         * @param lifeline
+         *            the lifeline to sift.
+         */
+        private void sift(final int lifeline) {
+            for (int i = graph.getDegree(lifeline) - 1; i >= 0; i--) {
+                siftedWeight[graph.getNeighbor(lifeline, i)] = graph.getNeighborWeight(lifeline, i);
+            }
+
+            int originalPosition = position[lifeline];
+            long delta = 0;
+            long bestDelta = 0;
+            int bestPosition = originalPosition;
+
+            // Move the lifeline to the left end, then all the way to the right
+            for (int i = originalPosition - 1; i >= 0; i--) {
+                delta += swap(i, siftedWeight[order[i]]);
+            }
+            if (delta < bestDelta) {
+                bestDelta = delta;
+                bestPosition = 0;
+            }
+            for (int i = 0; i < order.length - 1; i++) {
+                delta += swap(i, siftedWeight[order[i + 1]]);
+                if (delta < bestDelta) {
+                    bestDelta = delta;
+                    bestPosition = i + 1;
+                }
+            }
+
+            // Move it back to the best position
+            for (int i = order.length - 2; i >= bestPosition; i--) {
+                swap(i, siftedWeight[order[i]]);
+            }
+
+            for (int i = graph.getDegree(lifeline) - 1; i >= 0; i--) {
+                siftedWeight[graph.getNeighbor(lifeline, i)] = 0;
+            }
+        }
+
+        /**
+         * Swaps the lifelines at the given position and the one after it.
+         * 
+         * @param i
+         *            the position of the first lifeline.
+         * @param weight
+         *            the weight of the edge between the two lifelines.
+         * @return the change of the total message length.
+         */
+        private long swap(final int i, final int weight) {
+            int movingRight = order[i];
+            int movingLeft = order[i + 1];
+
+            // The lifeline that moves right gets one position further away from the lifelines to its
+            // left and one closer to those to its right, and vice versa. The distance between the two
+            // doesn't change
+            long delta = 2L * leftWeight[movingRight] - graph.getWeightedDegree(movingRight) + weight
+                    + graph.getWeightedDegree(movingLeft) - 2L * leftWeight[movingLeft] + weight
+                    + graph.getMessagesFromBorder(movingRight) - graph.getMessagesToBorder(movingRight)
+                    + graph.getMessagesToBorder(movingLeft) - graph.getMessagesFromBorder(movingLeft);
+
+            order[i] = movingLeft;
+            order[i + 1] = movingRight;
+            position[movingLeft] = i;
+            position[movingRight] = i + 1;
+            leftWeight[movingRight] += weight;
+            leftWeight[movingLeft] -= weight;
+            cost += delta;
+
+            return delta;
+        }
+    }
+
+}
@@ -0,0 +1,115 @@
+/*
+ * KIELER - Kiel Integrated Environment for Layout Eclipse RichClient
+ *
+ * http://www.informatik.uni-kiel.de/rtsys/kieler/
+ * 
+ * Copyright 2016 by
+ * + Kiel University
+ *   + Department of Computer Science
+ *     + Real-Time and Embedded Systems Group
+ * 
+ * This code is provided under the terms of the Eclipse Public License (EPL).
+ * See the file epl-v10.html for the license text.
+ */
+package de.cau.cs.kieler.papyrus.sequence.p5coordinates;
+
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import de.cau.cs.kieler.papyrus.sequence.properties.SequenceArea;
+
+/**
+ * Computes how areas are nested in each other. The nesting depth of an area is the length of the
+ * longest chain of contained areas below it. It determines how far the area's borders have to be
+ * moved outwards to not overlap the borders of its contained areas.
+ * 
+ * <p>Depths are memoized, so each area's depth is computed once, after the depths of its contained
+ * areas, no matter how many areas contain it.</p>
+ * 
+ * @author cds
+ */
+final class AreaHierarchy {
+
+    /** The nesting depths of the areas computed so far. */
+    private final Map<SequenceArea, Integer> depths = Maps.newHashMap();
+
+
+    /**
+     * Finds the areas contained in each of the given areas and adds them to the areas' lists of
+     * contained areas. An area contains another area if it contains all of the other area's messages
+     * and its upper left corner is strictly above and to the left of the other area's corner.
+     * 
+     * <p>Instead of comparing the message sets of all pairs of areas, the only areas considered as
+     * containing a given area are those that contain the area's message which is contained in the
+     * fewest areas.</p>
+     * 
+     * @param areas
+     *            the list of areas, may be {@code null}.
+     */
+    static void computeContainment(final List<SequenceArea> areas) {
+        if (areas == null) {
+            return;
+        }
+
+        // Find the areas that contain each message
+        Map<Object, List<SequenceArea>> messageAreas = Maps.newHashMap();
+        for (SequenceArea area : areas) {
+            for (Object message : area.getMessages()) {
+                List<SequenceArea> containingAreas = messageAreas.get(message);
+                if (containingAreas == null) {
+                    containingAreas = Lists.newArrayList();
+                    messageAreas.put(message, containingAreas);
+                }
+                containingAreas.add(area);
+            }
+        }
+
+        // Each area that contains the other area has to contain its rarest message; areas without
+        // messages may be contained by any area
+        for (SequenceArea otherArea : areas) {
+            List<SequenceArea> candidates = areas;
+            for (Object message : otherArea.getMessages()) {
+                List<SequenceArea> containingAreas = messageAreas.get(message);
+                if (containingAreas.size() < candidates.size()) {
+                    candidates = containingAreas;
+                }
+            }
+
+            for (SequenceArea area : candidates) {
+                // Check if upper left corner is more upper and left than the other area's corner
+                if (area != otherArea
+                        && area.getPosition().y < otherArea.getPosition().y
+                        && area.getPosition().x < otherArea.getPosition().x
+                        && area.getMessages().containsAll(otherArea.getMessages())) {
+
+                    area.getContainedAreas().add(otherArea);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the nesting depth of the given area, which is {@code 0} if it doesn't contain any
+     * other areas.
+     * 
+     * @param area
+     *            the area.
+     * @return the maximum depth of hierarchy below the area.
+     */
+    int getContainmentDepth(final SequenceArea area) {
+        Integer depth = depths.get(area);
+        if (depth == null) {
+            int maxLevel = -1;
+            for (SequenceArea containedArea : area.getContainedAreas()) {
+                maxLevel = Math.max(maxLevel, getContainmentDepth(containedArea));
+            }
+            depth = maxLevel + 1;
+            depths.put(area, depth);
+        }
+        return depth;
+    }
+
+}
@@ -15,8 +15,10 @@ package de.cau.cs.kieler.papyrus.sequence.p5coordinates;
 
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.RecursiveAction;
 
 import org.eclipse.elk.alg.layered.graph.LNode;
+import org.eclipse.elk.alg.layered.graph.Layer;
 import org.eclipse.elk.alg.layered.properties.InternalProperties;
 import org.eclipse.elk.core.klayoutdata.KEdgeLayout;
 import org.eclipse.elk.core.klayoutdata.KShapeLayout;
@@ -33,6 +35,7 @@ import de.cau.cs.kieler.papyrus.sequence.graph.SGraphElement;
 import de.cau.cs.kieler.papyrus.sequence.graph.SLifeline;
 import de.cau.cs.kieler.papyrus.sequence.graph.SMessage;
 import de.cau.cs.kieler.papyrus.sequence.p6export.KGraphExporter;
+import de.cau.cs.kieler.papyrus.sequence.properties.LayoutQuality;
 import de.cau.cs.kieler.papyrus.sequence.properties.MessageType;
 import de.cau.cs.kieler.papyrus.sequence.properties.NodeType;
 import de.cau.cs.kieler.papyrus.sequence.properties.SequenceArea;
@@ -53,6 +56,11 @@ import de.cau.cs.kieler.papyrus.sequence.properties.InternalSequenceProperties;
  * @author cds
  */
 public class KGraphCoordinateCalculator implements ISequenceLayoutProcessor {
+    
+    /** Minimum number of lifelines to compute spacings and place comments for in parallel. */
+    private static final int PARALLEL_LIFELINES = 128;
+    /** Number of lifelines a task processes itself instead of splitting them up further. */
+    private static final int LIFELINES_PER_TASK = 32;
 
     /**
      * {@inheritDoc}
@@ -68,8 +76,12 @@ public class KGraphCoordinateCalculator implements ISequenceLayoutProcessor {
         // Assign vertical position to SMessages
         calculateMessageYCoords(context);
 
-        // Arrange comments that are connected to a message or lifeline
-        arrangeConnectedComments(context);
+        // Arrange comments that are connected to a message or lifeline; comments are left alone in
+        // draft quality
+        boolean draft = context.quality == LayoutQuality.DRAFT;
+        if (!draft) {
+            arrangeConnectedComments(context);
+        }
         
         // The graph size now extends to the y coordinate of the bottom-most message; add a message
         // spacing and border spacing
@@ -88,16 +100,20 @@ public class KGraphCoordinateCalculator implements ISequenceLayoutProcessor {
         // Position of the next lifeline (at first, of the first lifeline)
         double xPos = calculateFirstLifelinePosition(context);
         
-        // Set position for lifelines/nodes
-        for (SLifeline lifeline : context.lifelineOrder) {
+        // Calculate the spacing between each lifeline and its successor. The spacings don't depend
+        // on each other, so they are calculated in parallel for large diagrams
+        SLifeline[] lifelines = context.lifelinesBySlot;
+        double[] spacings = new double[lifelines.length];
+        processLifelines(new LifelineTask(context, lifelines, spacings, false, 0, lifelines.length));
+        
+        // Set position for lifelines/nodes; each lifeline is placed after its predecessor and the
+        // predecessor's spacing
+        for (SLifeline lifeline : lifelines) {
             // Dummy lifelines don't need any layout
             if (lifeline.isDummy()) {
                 continue;
             }
 
-            // Calculate the spacing between this lifeline and its successor. Place comments.
-            double thisLifelinesSpacing = calculateLifelineSpacing(context, xPos, lifeline);
-
             // Set position and height for the lifeline. This may be overridden if there are create-
             // or delete-messages involved.
             lifeline.getPosition().y = context.lifelineYPos;
@@ -105,7 +121,7 @@ public class KGraphCoordinateCalculator implements ISequenceLayoutProcessor {
             lifeline.getSize().y = lifelinesHeight;
 
             // Apply maximum comment width to new xPos
-            xPos += lifeline.getSize().x + thisLifelinesSpacing;
+            xPos += lifeline.getSize().x + spacings[lifeline.getHorizontalSlot()];
             
             // Reset the graph's horizontal size
             if (context.sgraph.getSize().x < xPos) {
@@ -116,9 +132,15 @@ public class KGraphCoordinateCalculator implements ISequenceLayoutProcessor {
         // Adjust the graph's width (the most recent lifeline spacing needs to be replaced by a border
         // spacing)
         context.sgraph.getSize().x -= context.lifelineSpacing - context.borderSpacing;
-
-        // Arrange unconnected comments (after the last lifeline)
-        arrangeUnconnectedComments(context);
+        
+        if (!draft) {
+            // Place the comments attached to the lifelines between them and their successors
+            processLifelines(
+                    new LifelineTask(context, lifelines, spacings, true, 0, lifelines.length));
+            
+            // Arrange unconnected comments (after the last lifeline)
+            arrangeUnconnectedComments(context);
+        }
 
         // Handle areas (interactions / combined fragments / interaction operands)
         List<SequenceArea> areas = context.sgraph.getProperty(SequenceDiagramOptions.AREAS);
@@ -132,19 +154,28 @@ public class KGraphCoordinateCalculator implements ISequenceLayoutProcessor {
     // Messages
 
     /**
-     * Apply the layering to the SGraph and check for message overlappings.
+     * Apply the layering to the SGraph and check for message overlappings. Also used by the
+     * {@link TraceWindowCoordinateCalculator}.
      * 
      * @param context
      *            the layout context that contains all relevant information for the current layout run.
      */
-    private void calculateMessageYCoords(final LayoutContext context) {
+    static void calculateMessageYCoords(final LayoutContext context) {
         // Position of first layer of messages
         double layerpos = context.lifelineYPos + context.lifelineHeader + context.messageSpacing;
 
+        // Finds overlapping messages in each layer
+        MessageOverlapIndex overlaps = new MessageOverlapIndex();
+
         // Iterate the layers of nodes that represent messages
-        for (int layerIndex = 0; layerIndex < context.lgraph.getLayers().size(); layerIndex++) {
+        for (Layer layer : context.lgraph.getLayers()) {
+            List<LNode> nodes = layer.getNodes();
+            overlaps.reset(nodes);
+            
             // Iterate the nodes of the layer
-            for (LNode node : context.lgraph.getLayers().get(layerIndex).getNodes()) {
+            for (int nodeIndex = 0; nodeIndex < nodes.size(); nodeIndex++) {
+                LNode node = nodes.get(nodeIndex);
+                
                 // Get the corresponding message and skip dummy nodes (which don't have a message)
                 SMessage message = (SMessage) node.getProperty(InternalProperties.ORIGIN);
                 if (message == null) {
@@ -171,42 +202,27 @@ public class KGraphCoordinateCalculator implements ISequenceLayoutProcessor {
                 int sourceSlot = message.getSource().getHorizontalSlot();
                 int targetSlot = message.getTarget().getHorizontalSlot();
 
-                // If the message crosses at least one lifeline, check for overlappings
+                // If the message crosses at least one lifeline, check for overlappings with the first
+                // message in the layer that starts or ends between the start and the end of the tested
+                // message (or vice versa) and that is either already placed or a short one
                 if (Math.abs(sourceSlot - targetSlot) > 1) {
-                    // Check overlappings with any other node in the layer
-                    for (LNode otherNode : context.lgraph.getLayers().get(layerIndex).getNodes()) {
-                        // Get the corresponding message
-                        SMessage otherMessage =
-                                (SMessage) otherNode.getProperty(InternalProperties.ORIGIN);
-                        
-                        try {
-                            int otherSourceSlot = otherMessage.getSource().getHorizontalSlot();
-                            int otherTargetSlot = otherMessage.getTarget().getHorizontalSlot();
-
-                            // If the other message starts or ends between the start and the end
-                            // of the tested message, there is an overlapping
-                            if (overlap(sourceSlot, targetSlot, otherSourceSlot, otherTargetSlot)) {
-                                if (otherMessage.isLayerPositionSet()) {
-                                    // If the other message was already placed, the current message has
-                                    // to be placed in another layer
-                                    layerpos += context.messageSpacing;
-                                    break;
-                                } else if (Math.abs(otherSourceSlot - otherTargetSlot) <= 1) {
-                                    // If the other message has not been placed yet and is a short one,
-                                    // it will be placed here
-                                    otherMessage.setLayerYPos(layerpos);
-                                    layerpos += context.messageSpacing;
-                                    break;
-                                }
-                            }
-                        } catch (NullPointerException n) {
-                            // Ignore
+                    int otherIndex = overlaps.findFirstOverlap(nodeIndex);
+                    if (otherIndex >= 0) {
+                        SMessage otherMessage = overlaps.getMessage(otherIndex);
+                        if (!otherMessage.isLayerPositionSet()) {
+                            // If the other message has not been placed yet, it is a short one and will
+                            // be placed here
+                            otherMessage.setLayerYPos(layerpos);
                         }
+                        
+                        // The current message has to be placed in another layer
+                        layerpos += context.messageSpacing;
                     }
                 }
                 
                 // Set the vertical position of the message
                 message.setLayerYPos(layerpos);
+                overlaps.addCandidate(nodeIndex);
 
                 // Handle selfloops
                 if (message.getSource() == message.getTarget()) {
@@ -218,36 +234,6 @@ public class KGraphCoordinateCalculator implements ISequenceLayoutProcessor {
             layerpos += context.messageSpacing;
         }
     }
-
-    /**
-     * Check if two messages overlap.
-     * 
-     * @param msg1source
-     *            the source position of the first message
-     * @param msg1target
-     *            the target position of the first message
-     * @param msg2source
-     *            the source position of the second message
-     * @param msg2target
-     *            the target position of the second message
-     * @return {@code true} if the messages overlap.
-     */
-    private boolean overlap(final int msg1source, final int msg1target,
-            final int msg2source, final int msg2target) {
-
-        return isBetween(msg1source, msg2source, msg2target)
-                || isBetween(msg1target, msg2source, msg2target)
-                || isBetween(msg2source, msg1source, msg1target)
-                || isBetween(msg2target, msg1source, msg1target);
-    }
-
-    /**
-     * Checks if {@code bound1 < x < bound2}.
-     */
-    private boolean isBetween(final int x, final int bound1, final int bound2) {
-        // x is between 1 and 2 if it is not smaller than both or greater than both
-        return !((x <= bound1 && x <= bound2) || (x >= bound1 && x >= bound2));
-    }
     
     
     ///////////////////////////////////////////////////////////////////////////////////////////////////
@@ -297,11 +283,8 @@ public class KGraphCoordinateCalculator implements ISequenceLayoutProcessor {
                     // Find lifeline left to "right" and attach comment to that lifeline because
                     // comments are drawn right of the connected lifeline.
                     int position = right.getHorizontalSlot();
-                    for (SLifeline ll : context.sgraph.getLifelines()) {
-                        if (ll.getHorizontalSlot() == position - 1) {
-                            comment.setLifeline(ll);
-                            break;
-                        }
+                    if (position > 0 && position <= context.lifelinesBySlot.length) {
+                        comment.setLifeline(context.lifelinesBySlot[position - 1]);
                     }
                 } else {
                     comment.setLifeline(left);
@@ -392,14 +375,11 @@ public class KGraphCoordinateCalculator implements ISequenceLayoutProcessor {
      * 
      * @param context
      *            the layout context that contains all relevant information for the current layout run.
-     * @param xPos
-     *            the horizontal position where the last lifeline was placed
      * @param lifeline
      *            the current lifeline
      * @return the width of the widest comment
      */
-    private double calculateLifelineSpacing(final LayoutContext context, final double xPos,
-            final SLifeline lifeline) {
+    private double calculateLifelineSpacing(final LayoutContext context, final SLifeline lifeline) {
         
         // Initialize spacing with the normal lifeline spacing or with half the normal spacing if the
         // current lifeline is a dummy
@@ -443,8 +423,8 @@ public class KGraphCoordinateCalculator implements ISequenceLayoutProcessor {
         // Get the list of comments attached to the current lifeline
         List<SComment> comments = lifeline.getComments();
 
-        // Return if there are no comments attached
-        if (comments == null) {
+        // Return if there are no comments attached or if they won't be placed anyway
+        if (comments == null || context.quality == LayoutQuality.DRAFT) {
             return spacing;
         }
 
@@ -454,6 +434,30 @@ public class KGraphCoordinateCalculator implements ISequenceLayoutProcessor {
                 spacing = comment.getSize().x;
             }
         }
+        
+        return spacing;
+    }
+
+    /**
+     * Place the comments attached to the current lifeline between it and its successor.
+     * 
+     * @param context
+     *            the layout context that contains all relevant information for the current layout run.
+     * @param xPos
+     *            the horizontal position where the current lifeline was placed
+     * @param lifeline
+     *            the current lifeline
+     * @param spacing
+     *            the spacing between the current lifeline and its successor
+     */
+    private void placeComments(final LayoutContext context, final double xPos,
+            final SLifeline lifeline, final double spacing) {
+        
+        // Get the list of comments attached to the current lifeline
+        List<SComment> comments = lifeline.getComments();
+        if (comments == null) {
+            return;
+        }
 
         // HashMap that organizes which comment belongs to which message. This is important
         // if there are more than one comments at a message.
@@ -504,8 +508,6 @@ public class KGraphCoordinateCalculator implements ISequenceLayoutProcessor {
                 }
             }
         }
-        
-        return spacing;
     }
     
     
@@ -525,6 +527,9 @@ public class KGraphCoordinateCalculator implements ISequenceLayoutProcessor {
             return;
         }
         
+        // Nesting depths of the areas
+        AreaHierarchy hierarchy = new AreaHierarchy();
+        
         // Set size and position of area
         for (SequenceArea area : areas) {
             if (area.getMessages().size() > 0) {
@@ -537,7 +542,7 @@ public class KGraphCoordinateCalculator implements ISequenceLayoutProcessor {
             KShapeLayout areaLayout = areaNode.getData(KShapeLayout.class);
 
             // Check if there are contained areas
-            int containmentDepth = checkHierarchy(area);
+            int containmentDepth = hierarchy.getContainmentDepth(area);
             // If so, an offset has to be calculated in order not to have overlapping borders
             int containmentSpacing = (int) (containmentDepth * context.containmentOffset);
 
@@ -553,7 +558,9 @@ public class KGraphCoordinateCalculator implements ISequenceLayoutProcessor {
                     + 2 * containmentSpacing));
             
             // The area might have a label that needs to be positioned as well
-            calculateAreaLabelPosition(context, area);
+            if (context.quality != LayoutQuality.DRAFT) {
+                calculateAreaLabelPosition(context, area);
+            }
 
             // Handle interaction operands
             // TODO Review this
@@ -701,28 +708,6 @@ public class KGraphCoordinateCalculator implements ISequenceLayoutProcessor {
         }
     }
 
-    /**
-     * Check recursively if an area has contained areas and return the maximum depth.
-     * 
-     * @param area
-     *            the {@link SequenceArea}
-     * @return the maximum depth of hierarchy
-     */
-    private int checkHierarchy(final SequenceArea area) {
-        if (area.getContainedAreas().size() > 0) {
-            int maxLevel = 0;
-            for (SequenceArea subArea : area.getContainedAreas()) {
-                int level = checkHierarchy(subArea);
-                if (level > maxLevel) {
-                    maxLevel = level;
-                }
-            }
-            return maxLevel + 1;
-        } else {
-            return 0;
-        }
-    }
-
     /**
      * Positions an area's label, if any.
      * 
@@ -745,4 +730,106 @@ public class KGraphCoordinateCalculator implements ISequenceLayoutProcessor {
         labelLayout.setXpos(
                 areaLayout.getWidth() - labelLayout.getWidth() - SequenceLayoutConstants.LABELSPACING);
     }
+    
+    
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    // Parallel Lifeline Processing
+    
+    /**
+     * Runs the given task, which covers all lifelines, in parallel if there are enough lifelines to
+     * make that worthwhile.
+     * 
+     * @param task
+     *            the task.
+     */
+    private void processLifelines(final LifelineTask task) {
+        if (task.to - task.from < PARALLEL_LIFELINES) {
+            task.processRange();
+        } else {
+            task.context.threadPool.invoke(task);
+        }
+    }
+    
+    /**
+     * Task that either calculates the spacings of a range of lifelines or places the comments attached
+     * to them, splitting the range in half until it is small enough.
+     */
+    private final class LifelineTask extends RecursiveAction {
+        private static final long serialVersionUID = -2265713893164618413L;
+        
+        /** The layout context that contains all relevant information for the current layout run. */
+        private final LayoutContext context;
+        /** The lifelines indexed by their slot. */
+        private final SLifeline[] lifelines;
+        /** The spacing between each lifeline and its successor. */
+        private final double[] spacings;
+        /** Whether to place comments instead of calculating spacings. */
+        private final boolean placeComments;
+        /** The slot of the first lifeline to process. */
+        private final int from;
+        /** The slot after the last lifeline to process. */
+        private final int to;
+        
+        /**
+         * Creates a new task for the given range of lifelines.
+         * 
+         * @param context
+         *            the layout context that contains all relevant information for the current layout
+         *            run.
+         * @param lifelines
+         *            the lifelines indexed by their slot.
+         * @param spacings
+         *            the spacing between each lifeline and its successor. Either filled in by the
+         *            task or, if comments are placed, already calculated.
+         * @param placeComments
+         *            whether to place comments instead of calculating spacings. Comments can only be
+         *            placed once the lifelines have their positions.
+         * @param from
+         *            the slot of the first lifeline to process.
+         * @param to
+         *            the slot after the last lifeline to process.
+         */
+        LifelineTask(final LayoutContext context, final SLifeline[] lifelines,
+                final double[] spacings, final boolean placeComments, final int from, final int to) {
+            
+            this.context = context;
+            this.lifelines = lifelines;
+            this.spacings = spacings;
+            this.placeComments = placeComments;
+            this.from = from;
+            this.to = to;
+        }
+        
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected void compute() {
+            if (to - from <= LIFELINES_PER_TASK) {
+                processRange();
+            } else {
+                int middle = (from + to) / 2;
+                invokeAll(
+                        new LifelineTask(context, lifelines, spacings, placeComments, from, middle),
+                        new LifelineTask(context, lifelines, spacings, placeComments, middle, to));
+            }
+        }
+        
+        /**
+         * Processes the task's range of lifelines in the current thread. Dummy lifelines don't need
+         * any layout and are skipped.
+         */
+        private void processRange() {
+            for (int slot = from; slot < to; slot++) {
+                SLifeline lifeline = lifelines[slot];
+                if (lifeline.isDummy()) {
+                    continue;
+                } else if (placeComments) {
+                    placeComments(context, lifeline.getPosition().x, lifeline, spacings[slot]);
+                } else {
+                    spacings[slot] = calculateLifelineSpacing(context, lifeline);
+                }
+            }
+        }
+    }
 }
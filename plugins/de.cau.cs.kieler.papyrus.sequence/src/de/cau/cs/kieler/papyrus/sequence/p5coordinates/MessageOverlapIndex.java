@@ -0,0 +1,288 @@
+/*
+ * KIELER - Kiel Integrated Environment for Layout Eclipse RichClient
+ *
+ * http://www.informatik.uni-kiel.de/rtsys/kieler/
+ * 
+ * Copyright 2016 by
+ * + Kiel University
+ *   + Department of Computer Science
+ *     + Real-Time and Embedded Systems Group
+ * 
+ * This code is provided under the terms of the Eclipse Public License (EPL).
+ * See the file epl-v10.html for the license text.
+ */
+package de.cau.cs.kieler.papyrus.sequence.p5coordinates;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.eclipse.elk.alg.layered.graph.LNode;
+import org.eclipse.elk.alg.layered.properties.InternalProperties;
+
+import de.cau.cs.kieler.papyrus.sequence.graph.SMessage;
+
+/**
+ * Finds overlapping messages in a layer of message nodes. Two messages overlap if the source or
+ * target slot of one message lies strictly between the source and target slots of the other.
+ * 
+ * <p>When placing a message that crosses at least one lifeline, the coordinate calculators look for
+ * the first message in the layer that overlaps it and that is either already placed or a short one.
+ * Such messages are called candidates here. A message only ever becomes a candidate, never stops
+ * being one, which allows the index to be built from two segment trees over the horizontal slots of
+ * the layer's messages, each storing the smallest node index of the candidates registered there:</p>
+ * <ul>
+ *   <li>The endpoint tree registers candidates at their source and target slots. It finds the
+ *   candidates with an endpoint strictly between the endpoints of a message.</li>
+ *   <li>The cover tree registers candidates at every slot strictly between their endpoints. It finds
+ *   the candidates that strictly contain an endpoint of a message.</li>
+ * </ul>
+ * 
+ * <p>Building the index for a layer of {@code k} nodes takes {@code O(k log k)} time, adding a
+ * candidate or looking up the first overlapping candidate takes {@code O(log k)}. The index is only
+ * built for layers that are actually queried.</p>
+ * 
+ * @author cds
+ */
+final class MessageOverlapIndex {
+
+    /** Tree value of slots no candidate is registered at. */
+    private static final int NONE = Integer.MAX_VALUE;
+
+    /** The nodes of the current layer. */
+    private List<LNode> nodes;
+    /** Whether the index was already built for the current layer. */
+    private boolean built;
+    /** The message of each node in the current layer, or {@code null} if it has none. */
+    private SMessage[] messages = new SMessage[0];
+    /** The index of the lower of the slots of each node's message among the layer's slots. */
+    private int[] lowerSlots = new int[0];
+    /** The index of the upper of the slots of each node's message among the layer's slots. */
+    private int[] upperSlots = new int[0];
+    /** Whether each node was already registered as a candidate. */
+    private boolean[] candidates = new boolean[0];
+    /** The distinct slots of the current layer's messages in ascending order, if compressed. */
+    private int[] slots = new int[0];
+    /** The number of distinct slots, if compressed. */
+    private int distinctSlotCount;
+    /** The smallest slot of the current layer's messages. */
+    private int minSlot;
+    /** Whether slots are compressed to their distinct values instead of offset by {@link #minSlot}. */
+    private boolean compressed;
+    /** The number of leaves of the segment trees; a power of two. */
+    private int leafCount;
+    /** Segment tree of the smallest candidate node index with an endpoint at each slot. */
+    private int[] endpointTree = new int[0];
+    /** Segment tree of the smallest candidate node index covering each slot, stored as range tags. */
+    private int[] coverTree = new int[0];
+
+
+    /**
+     * Prepares the index for the given layer of nodes. The index itself is only built once it is
+     * first queried, since many layers don't contain messages that cross lifelines.
+     * 
+     * @param layerNodes
+     *            the nodes of the layer.
+     */
+    void reset(final List<LNode> layerNodes) {
+        nodes = layerNodes;
+        built = false;
+    }
+
+    /**
+     * Builds the index for the current layer. Messages that are short or already placed are
+     * registered as candidates.
+     */
+    private void build() {
+        int nodeCount = nodes.size();
+        if (messages.length < nodeCount) {
+            messages = new SMessage[nodeCount];
+            lowerSlots = new int[nodeCount];
+            upperSlots = new int[nodeCount];
+            candidates = new boolean[nodeCount];
+            slots = new int[2 * nodeCount];
+        }
+
+        // Collect the messages and their slots, ignoring dummy nodes that don't have a message
+        int slotCount = 0;
+        minSlot = Integer.MAX_VALUE;
+        int maxSlot = Integer.MIN_VALUE;
+        for (int node = 0; node < nodeCount; node++) {
+            SMessage message = (SMessage) nodes.get(node).getProperty(InternalProperties.ORIGIN);
+            if (message != null && message.getSource() != null && message.getTarget() != null) {
+                messages[node] = message;
+                slots[slotCount++] = message.getSource().getHorizontalSlot();
+                slots[slotCount++] = message.getTarget().getHorizontalSlot();
+                minSlot = Math.min(minSlot, Math.min(slots[slotCount - 2], slots[slotCount - 1]));
+                maxSlot = Math.max(maxSlot, Math.max(slots[slotCount - 2], slots[slotCount - 1]));
+            } else {
+                messages[node] = null;
+            }
+            candidates[node] = false;
+        }
+
+        // If the slots are spread sparsely, compress them to their distinct values; otherwise, they
+        // are simply offset by the smallest slot
+        int slotRange = slotCount == 0 ? 0 : maxSlot - minSlot + 1;
+        compressed = slotRange > slotCount;
+        if (compressed) {
+            Arrays.sort(slots, 0, slotCount);
+            distinctSlotCount = 0;
+            for (int i = 0; i < slotCount; i++) {
+                if (distinctSlotCount == 0 || slots[distinctSlotCount - 1] != slots[i]) {
+                    slots[distinctSlotCount++] = slots[i];
+                }
+            }
+            slotRange = distinctSlotCount;
+        }
+
+        leafCount = 1;
+        while (leafCount < slotRange) {
+            leafCount <<= 1;
+        }
+        if (endpointTree.length < 2 * leafCount) {
+            endpointTree = new int[2 * leafCount];
+            coverTree = new int[2 * leafCount];
+        }
+        Arrays.fill(endpointTree, 0, 2 * leafCount, NONE);
+        Arrays.fill(coverTree, 0, 2 * leafCount, NONE);
+        built = true;
+
+        // Register the initial candidates
+        for (int node = 0; node < nodeCount; node++) {
+            SMessage message = messages[node];
+            if (message != null) {
+                int sourceSlot = message.getSource().getHorizontalSlot();
+                int targetSlot = message.getTarget().getHorizontalSlot();
+                lowerSlots[node] = slotIndex(Math.min(sourceSlot, targetSlot));
+                upperSlots[node] = slotIndex(Math.max(sourceSlot, targetSlot));
+
+                if (Math.abs(sourceSlot - targetSlot) <= 1 || message.isLayerPositionSet()) {
+                    addCandidate(node);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the message of the node with the given index.
+     * 
+     * @param node
+     *            index of the node in the current layer.
+     * @return the node's message, or {@code null} if it has none.
+     */
+    SMessage getMessage(final int node) {
+        return messages[node];
+    }
+
+    /**
+     * Registers the node with the given index as a candidate. This has to be called once the node's
+     * message was placed. Calling it for nodes that are already registered or don't have a message
+     * has no effect.
+     * 
+     * @param node
+     *            index of the node in the current layer.
+     */
+    void addCandidate(final int node) {
+        // Until the index is built, candidates are registered when building it
+        if (!built || messages[node] == null || candidates[node]) {
+            return;
+        }
+        candidates[node] = true;
+
+        int lower = lowerSlots[node];
+        int upper = upperSlots[node];
+
+        // Endpoints
+        for (int i = lower + leafCount; i > 0; i >>= 1) {
+            endpointTree[i] = Math.min(endpointTree[i], node);
+        }
+        for (int i = upper + leafCount; i > 0; i >>= 1) {
+            endpointTree[i] = Math.min(endpointTree[i], node);
+        }
+
+        // Slots strictly between the endpoints
+        int left = lower + 1 + leafCount;
+        int right = upper + leafCount;
+        while (left < right) {
+            if ((left & 1) == 1) {
+                coverTree[left] = Math.min(coverTree[left], node);
+                left++;
+            }
+            if ((right & 1) == 1) {
+                right--;
+                coverTree[right] = Math.min(coverTree[right], node);
+            }
+            left >>= 1;
+            right >>= 1;
+        }
+    }
+
+    /**
+     * Finds the candidate with the smallest node index whose message overlaps the message of the
+     * node with the given index.
+     * 
+     * @param node
+     *            index of the node in the current layer. The node must have a message.
+     * @return index of the overlapping candidate, or {@code -1} if there is none.
+     */
+    int findFirstOverlap(final int node) {
+        if (!built) {
+            build();
+        }
+        
+        int lower = lowerSlots[node];
+        int upper = upperSlots[node];
+
+        // Candidates that strictly contain one of the message's endpoints
+        int first = Math.min(coveringCandidate(lower), coveringCandidate(upper));
+
+        // Candidates with an endpoint strictly between the message's endpoints
+        int left = lower + 1 + leafCount;
+        int right = upper + leafCount;
+        while (left < right) {
+            if ((left & 1) == 1) {
+                first = Math.min(first, endpointTree[left]);
+                left++;
+            }
+            if ((right & 1) == 1) {
+                right--;
+                first = Math.min(first, endpointTree[right]);
+            }
+            left >>= 1;
+            right >>= 1;
+        }
+
+        return first == NONE ? -1 : first;
+    }
+
+    /**
+     * Returns the smallest candidate node index covering the slot with the given index.
+     * 
+     * @param slot
+     *            index of the slot among the layer's slots.
+     * @return the node index, or {@link #NONE}.
+     */
+    private int coveringCandidate(final int slot) {
+        int result = NONE;
+        for (int i = slot + leafCount; i > 0; i >>= 1) {
+            result = Math.min(result, coverTree[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the index of the leaf that represents the given slot in the segment trees.
+     * 
+     * @param slot
+     *            the slot, which must be one of the layer's slots.
+     * @return the slot's index.
+     */
+    private int slotIndex(final int slot) {
+        if (compressed) {
+            return Arrays.binarySearch(slots, 0, distinctSlotCount, slot);
+        } else {
+            return slot - minSlot;
+        }
+    }
+
+}
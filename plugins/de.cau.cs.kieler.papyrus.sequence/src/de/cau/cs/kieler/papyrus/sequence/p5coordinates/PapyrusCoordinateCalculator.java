@@ -17,6 +17,7 @@ import java.util.HashMap;
 import java.util.List;
 
 import org.eclipse.elk.alg.layered.graph.LNode;
+import org.eclipse.elk.alg.layered.graph.Layer;
 import org.eclipse.elk.alg.layered.properties.InternalProperties;
 import org.eclipse.elk.core.klayoutdata.KEdgeLayout;
 import org.eclipse.elk.core.klayoutdata.KShapeLayout;
@@ -32,6 +33,7 @@ import de.cau.cs.kieler.papyrus.sequence.graph.SGraphElement;
 import de.cau.cs.kieler.papyrus.sequence.graph.SLifeline;
 import de.cau.cs.kieler.papyrus.sequence.graph.SMessage;
 import de.cau.cs.kieler.papyrus.sequence.p6export.PapyrusExporter;
+import de.cau.cs.kieler.papyrus.sequence.properties.LayoutQuality;
 import de.cau.cs.kieler.papyrus.sequence.properties.MessageType;
 import de.cau.cs.kieler.papyrus.sequence.properties.NodeType;
 import de.cau.cs.kieler.papyrus.sequence.properties.SequenceArea;
@@ -67,8 +69,12 @@ public class PapyrusCoordinateCalculator implements ISequenceLayoutProcessor {
         // Assign vertical position to SMessages
         calculateMessageYCoords(context);
 
-        // Arrange comments that are connected to a message or lifeline
-        arrangeConnectedComments(context);
+        // Arrange comments that are connected to a message or lifeline; comments are left alone in
+        // draft quality
+        boolean draft = context.quality == LayoutQuality.DRAFT;
+        if (!draft) {
+            arrangeConnectedComments(context);
+        }
 
         // Position of the next lifeline (at first, of the first lifeline)
         double xPos = context.borderSpacing;
@@ -102,12 +108,14 @@ public class PapyrusCoordinateCalculator implements ISequenceLayoutProcessor {
         }
 
         // Arrange unconnected comments (after the last lifeline)
-        arrangeUnconnectedComments(context);
+        if (!draft) {
+            arrangeUnconnectedComments(context);
+        }
 
         // Handle areas (interactions / combined fragments / interaction operands)
         List<SequenceArea> areas = context.sgraph.getProperty(SequenceDiagramOptions.AREAS);
         // Check containments (hierarchy) of areas
-        checkAreaContainment(areas);
+        AreaHierarchy.computeContainment(areas);
         // Calculate the areas positions
         calculateAreaPosition(context, areas);
 
@@ -128,10 +136,18 @@ public class PapyrusCoordinateCalculator implements ISequenceLayoutProcessor {
         // Position of first layer of messages
         double layerpos = context.lifelineYPos + context.lifelineHeader + context.messageSpacing;
 
+        // Finds overlapping messages in each layer
+        MessageOverlapIndex overlaps = new MessageOverlapIndex();
+
         // Iterate the layers of nodes that represent messages
-        for (int i = 0; i < context.lgraph.getLayers().size(); i++) {
+        for (Layer layer : context.lgraph.getLayers()) {
+            List<LNode> nodes = layer.getNodes();
+            overlaps.reset(nodes);
+            
             // Iterate the nodes of the layer
-            for (LNode node : context.lgraph.getLayers().get(i).getNodes()) {
+            for (int nodeIndex = 0; nodeIndex < nodes.size(); nodeIndex++) {
+                LNode node = nodes.get(nodeIndex);
+                
                 // Get the corresponding message
                 SMessage message = (SMessage) node.getProperty(InternalProperties.ORIGIN);
 
@@ -162,43 +178,26 @@ public class PapyrusCoordinateCalculator implements ISequenceLayoutProcessor {
                 int sourceXPos = message.getSource().getHorizontalSlot();
                 int targetXPos = message.getTarget().getHorizontalSlot();
 
-                // If the message crosses at least one lifeline, check for overlappings
+                // If the message crosses at least one lifeline, check for overlappings with the first
+                // message in the layer that starts or ends between the start and the end of this
+                // message (or vice versa) and that was either already set or is a short one
                 if (Math.abs(sourceXPos - targetXPos) > 1) {
-                    // Check overlappings with any other node in the layer
-                    for (LNode otherNode : context.lgraph.getLayers().get(i).getNodes()) {
-                        // Get the corresponding message
-                        SMessage otherMessage =
-                                (SMessage) otherNode.getProperty(InternalProperties.ORIGIN);
-                        try {
-                            int otherSourcePos = otherMessage.getSource().getHorizontalSlot();
-                            int otherTargetPos = otherMessage.getTarget().getHorizontalSlot();
-
-                            // If the other message starts or ends between the start and the end
-                            // of the tested message, there is an overlapping
-                            if (doMessagesOverlap(sourceXPos, targetXPos, otherSourcePos,
-                                    otherTargetPos)) {
-                                
-                                if (otherMessage.isLayerPositionSet()) {
-                                    // If the other message was already set, this message has to
-                                    // be placed in another layer
-                                    layerpos += context.messageSpacing;
-                                    break;
-                                } else if (Math.abs(otherSourcePos - otherTargetPos) <= 1) {
-                                    // If the other message was not set and it is a short one,
-                                    // the other message has to be set here
-                                    otherMessage.setLayerYPos(layerpos);
-                                    layerpos += context.messageSpacing;
-                                    break;
-                                }
-                            }
-                        } catch (NullPointerException n) {
-                            // Ignore
+                    int otherIndex = overlaps.findFirstOverlap(nodeIndex);
+                    if (otherIndex >= 0) {
+                        SMessage otherMessage = overlaps.getMessage(otherIndex);
+                        if (!otherMessage.isLayerPositionSet()) {
+                            // If the other message was not set, it is a short one and has to be
+                            // set here
+                            otherMessage.setLayerYPos(layerpos);
                         }
-
+                        
+                        // This message has to be placed in another layer
+                        layerpos += context.messageSpacing;
                     }
                 }
                 // Set the vertical position of the message
                 message.setLayerYPos(layerpos);
+                overlaps.addCandidate(nodeIndex);
 
                 // Handle selfloops
                 if (message.getSource() == message.getTarget()) {
@@ -208,41 +207,6 @@ public class PapyrusCoordinateCalculator implements ISequenceLayoutProcessor {
             layerpos += context.messageSpacing;
         }
     }
-
-    /**
-     * Check if two messages are overlap.
-     * 
-     * @param msg1source
-     *            the source position of the first message
-     * @param msg1target
-     *            the target position of the first message
-     * @param msg2source
-     *            the source position of the second message
-     * @param msg2target
-     *            the target position of the second message
-     * @return {@code true} if the messages are overlapping
-     */
-    private boolean doMessagesOverlap(final int msg1source, final int msg1target,
-            final int msg2source, final int msg2target) {
-
-        return isBetween(msg1source, msg2source, msg2target)
-                || isBetween(msg1target, msg2source, msg2target)
-                || isBetween(msg2source, msg1source, msg1target)
-                || isBetween(msg2target, msg1source, msg1target);
-    }
-
-    /**
-     * Checks if {@code bound1 < x < bound2}.
-     * 
-     * @param x the value to check.
-     * @param bound1 lower bound.
-     * @param bound2 upper bound.
-     * @return {@code true} if x is between bound1 and bound2.
-     */
-    private boolean isBetween(final int x, final int bound1, final int bound2) {
-        // x is between 1 and 2 if it is not smaller than both or greater than both
-        return !((x <= bound1 && x <= bound2) || (x >= bound1 && x >= bound2));
-    }
     
     
     ///////////////////////////////////////////////////////////////////////////////////////////////////
@@ -292,11 +256,8 @@ public class PapyrusCoordinateCalculator implements ISequenceLayoutProcessor {
                     // Find lifeline left to "right" and attach comment to that lifeline because
                     // comments are drawn right of the connected lifeline.
                     int position = right.getHorizontalSlot();
-                    for (SLifeline ll : context.sgraph.getLifelines()) {
-                        if (ll.getHorizontalSlot() == position - 1) {
-                            comment.setLifeline(ll);
-                            break;
-                        }
+                    if (position > 0 && position <= context.lifelinesBySlot.length) {
+                        comment.setLifeline(context.lifelinesBySlot[position - 1]);
                     }
                 } else {
                     comment.setLifeline(left);
@@ -395,8 +356,8 @@ public class PapyrusCoordinateCalculator implements ISequenceLayoutProcessor {
         // Get the list of comments attached to the current lifeline
         List<SComment> comments = lifeline.getComments();
 
-        // Return if there are no comments attached
-        if (comments == null) {
+        // Return if there are no comments attached or if they won't be placed anyway
+        if (comments == null || context.quality == LayoutQuality.DRAFT) {
             return spacing;
         }
 
@@ -463,30 +424,6 @@ public class PapyrusCoordinateCalculator implements ISequenceLayoutProcessor {
     ///////////////////////////////////////////////////////////////////////////////////////////////////
     // Areas
 
-    /**
-     * Check the hierarchy of areas. This is necessary to avoid overlapping borders.
-     * 
-     * @param areas
-     *            the list of areas
-     */
-    private void checkAreaContainment(final List<SequenceArea> areas) {
-        if (areas != null) {
-            for (SequenceArea area : areas) {
-                for (SequenceArea otherArea : areas) {
-                    if (area != otherArea && area.getMessages().containsAll(otherArea.getMessages())) {
-                        // Check if upper left corner is more upper and left than the other
-                        // area's corner
-                        if (area.getPosition().y < otherArea.getPosition().y
-                                && area.getPosition().x < otherArea.getPosition().x) {
-                            
-                            area.getContainedAreas().add(otherArea);
-                        }
-                    }
-                }
-            }
-        }
-    }
-
     /**
      * Calculate the position of the areas (interactionUse, combined fragment).
      * 
@@ -497,6 +434,9 @@ public class PapyrusCoordinateCalculator implements ISequenceLayoutProcessor {
      */
     private void calculateAreaPosition(final LayoutContext context, final List<SequenceArea> areas) {
         if (areas != null) {
+            // Nesting depths of the areas
+            AreaHierarchy hierarchy = new AreaHierarchy();
+            
             // Set size and position of area
             for (SequenceArea area : areas) {
                 if (area.getMessages().size() > 0) {
@@ -508,7 +448,7 @@ public class PapyrusCoordinateCalculator implements ISequenceLayoutProcessor {
                 KShapeLayout areaLayout = areaNode.getData(KShapeLayout.class);
 
                 // Check if there are contained areas
-                int containmentDepth = checkHierarchy(area);
+                int containmentDepth = hierarchy.getContainmentDepth(area);
                 // If so, an offset has to be calculated in order not to have overlapping borders
                 int containmentSpacing = (int) (containmentDepth * context.containmentOffset);
 
@@ -667,26 +607,4 @@ public class PapyrusCoordinateCalculator implements ISequenceLayoutProcessor {
         }
     }
 
-    /**
-     * Check recursively if an area has contained areas and return the maximum depth.
-     * 
-     * @param area
-     *            the {@link SequenceArea}
-     * @return the maximum depth of hierarchy
-     */
-    private int checkHierarchy(final SequenceArea area) {
-        if (area.getContainedAreas().size() > 0) {
-            int maxLevel = 0;
-            for (SequenceArea subArea : area.getContainedAreas()) {
-                int level = checkHierarchy(subArea);
-                if (level > maxLevel) {
-                    maxLevel = level;
-                }
-            }
-            return maxLevel + 1;
-        } else {
-            return 0;
-        }
-    }
-
 }
@@ -0,0 +1,69 @@
+/*
+ * KIELER - Kiel Integrated Environment for Layout Eclipse RichClient
+ *
+ * http://www.informatik.uni-kiel.de/rtsys/kieler/
+ * 
+ * Copyright 2016 by
+ * + Kiel University
+ *   + Department of Computer Science
+ *     + Real-Time and Embedded Systems Group
+ * 
+ * This code is provided under the terms of the Eclipse Public License (EPL).
+ * See the file epl-v10.html for the license text.
+ */
+package de.cau.cs.kieler.papyrus.sequence.p5coordinates;
+
+import org.eclipse.elk.core.util.IElkProgressMonitor;
+
+import de.cau.cs.kieler.papyrus.sequence.ISequenceLayoutProcessor;
+import de.cau.cs.kieler.papyrus.sequence.LayoutContext;
+import de.cau.cs.kieler.papyrus.sequence.graph.SLifeline;
+
+/**
+ * Calculates coordinates for a window of a trace that is laid out in windows. Messages are placed
+ * just like the {@link KGraphCoordinateCalculator} places them, with each window starting below the
+ * lifeline headers again. Lifelines keep the horizontal positions the
+ * {@link de.cau.cs.kieler.papyrus.sequence.p0import.TraceImporter} assigned to them when they first
+ * appeared, so the spacing between them doesn't grow with the labels of their messages.
+ * 
+ * @author cds
+ */
+public final class TraceWindowCoordinateCalculator implements ISequenceLayoutProcessor {
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void process(final LayoutContext context, final IElkProgressMonitor progressMonitor) {
+        progressMonitor.begin("Calculate window coordinates", 1);
+
+        // Initialize graph size
+        context.sgraph.getSize().x = 0;
+        context.sgraph.getSize().y = 0;
+
+        // Assign vertical position to SMessages
+        KGraphCoordinateCalculator.calculateMessageYCoords(context);
+
+        // The graph size now extends to the y coordinate of the bottom-most message; add a message
+        // spacing and border spacing, but make sure we meet a minimum height if the window is empty
+        context.sgraph.getSize().y = Math.max(
+                context.sgraph.getSize().y + context.messageSpacing + context.borderSpacing,
+                context.lifelineYPos + context.lifelineHeader + context.messageSpacing
+                    + context.borderSpacing);
+
+        double lifelinesHeight = context.sgraph.getSize().y - context.lifelineYPos
+                - context.borderSpacing;
+
+        // Lifelines span the whole window, and the window is as wide as its rightmost lifeline
+        for (SLifeline lifeline : context.lifelineOrder) {
+            lifeline.getPosition().y = context.lifelineYPos;
+            lifeline.getSize().y = lifelinesHeight;
+
+            context.sgraph.getSize().x = Math.max(context.sgraph.getSize().x,
+                    lifeline.getPosition().x + lifeline.getSize().x + context.borderSpacing);
+        }
+
+        progressMonitor.done();
+    }
+
+}
@@ -0,0 +1,181 @@
+/*
+ * KIELER - Kiel Integrated Environment for Layout Eclipse RichClient
+ *
+ * http://www.informatik.uni-kiel.de/rtsys/kieler/
+ * 
+ * Copyright 2016 by
+ * + Kiel University
+ *   + Department of Computer Science
+ *     + Real-Time and Embedded Systems Group
+ * 
+ * This code is provided under the terms of the Eclipse Public License (EPL).
+ * See the file epl-v10.html for the license text.
+ */
+package de.cau.cs.kieler.papyrus.sequence.p6export;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import de.cau.cs.kieler.papyrus.sequence.properties.SequenceExecution;
+
+/**
+ * Utility methods shared by the exporters to stack executions that are nested in each other.
+ * 
+ * @author cds
+ */
+final class ExecutionNestingUtil {
+
+    /**
+     * Utility class, not to be instantiated.
+     */
+    private ExecutionNestingUtil() {
+
+    }
+
+    /**
+     * Computes the nesting slot of each of the given executions, which determines how far it has to
+     * be shifted to the right. The slot of an execution is the number of other executions that start
+     * strictly above it and end below it. Whether executions that end at the same position as the
+     * execution count as ending below it is configurable.
+     * 
+     * <p>The executions are swept from top to bottom. The bottom positions of the executions already
+     * swept over are kept in a Fenwick tree, which allows counting those that end below the current
+     * execution in logarithmic time. This takes {@code O(n log n)} time instead of the quadratic time
+     * required to compare all pairs of executions.</p>
+     * 
+     * @param executions
+     *            the executions of a lifeline. Their vertical positions and sizes must be set.
+     * @param includeEqualBottoms
+     *            {@code true} if executions that end at the same position as an execution count as
+     *            ending below it. This is the case in KGraph mode, where several executions can end
+     *            at the same message.
+     * @return the nesting slot of each execution, in the order of the list of executions.
+     */
+    static int[] computeNestingSlots(final List<SequenceExecution> executions,
+            final boolean includeEqualBottoms) {
+
+        final int count = executions.size();
+        final double[] tops = new double[count];
+        double[] bottoms = new double[count];
+        Integer[] sweepOrder = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            SequenceExecution execution = executions.get(i);
+            tops[i] = execution.getPosition().y;
+            bottoms[i] = execution.getPosition().y + execution.getSize().y;
+            sweepOrder[i] = i;
+        }
+
+        Arrays.sort(sweepOrder, new Comparator<Integer>() {
+            @Override
+            public int compare(final Integer execution1, final Integer execution2) {
+                return Double.compare(tops[execution1], tops[execution2]);
+            }
+        });
+
+        double[] sortedBottoms = bottoms.clone();
+        Arrays.sort(sortedBottoms);
+
+        // Fenwick tree over the sorted bottom positions, counting the executions swept over so far
+        int[] tree = new int[count + 1];
+        int sweptCount = 0;
+        int[] slots = new int[count];
+
+        int groupStart = 0;
+        while (groupStart < count) {
+            // Executions that start at the same position don't contain each other, so all of them
+            // are queried before any of them is added to the tree
+            int groupEnd = groupStart + 1;
+            while (groupEnd < count
+                    && tops[sweepOrder[groupEnd]] == tops[sweepOrder[groupStart]]) {
+                groupEnd++;
+            }
+
+            for (int i = groupStart; i < groupEnd; i++) {
+                int execution = sweepOrder[i];
+                int firstBelow = includeEqualBottoms
+                        ? lowerBound(sortedBottoms, bottoms[execution])
+                        : upperBound(sortedBottoms, bottoms[execution]);
+                slots[execution] = sweptCount - prefixCount(tree, firstBelow);
+            }
+
+            for (int i = groupStart; i < groupEnd; i++) {
+                int index = lowerBound(sortedBottoms, bottoms[sweepOrder[i]]) + 1;
+                while (index <= count) {
+                    tree[index]++;
+                    index += index & -index;
+                }
+                sweptCount++;
+            }
+
+            groupStart = groupEnd;
+        }
+
+        return slots;
+    }
+
+    /**
+     * Returns the number of executions added to the Fenwick tree whose bottom position is among the
+     * given number of smallest bottom positions.
+     * 
+     * @param tree
+     *            the Fenwick tree.
+     * @param length
+     *            the number of smallest bottom positions.
+     * @return the number of executions.
+     */
+    private static int prefixCount(final int[] tree, final int length) {
+        int result = 0;
+        for (int index = length; index > 0; index -= index & -index) {
+            result += tree[index];
+        }
+        return result;
+    }
+
+    /**
+     * Returns the index of the first value in the sorted array that is not less than the given value.
+     * 
+     * @param sorted
+     *            the sorted array.
+     * @param value
+     *            the value.
+     * @return the index, or the array's length if all values are less than the given value.
+     */
+    private static int lowerBound(final double[] sorted, final double value) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sorted[mid] < value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns the index of the first value in the sorted array that is greater than the given value.
+     * 
+     * @param sorted
+     *            the sorted array.
+     * @param value
+     *            the value.
+     * @return the index, or the array's length if no value is greater than the given value.
+     */
+    private static int upperBound(final double[] sorted, final double value) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sorted[mid] <= value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+}
@@ -0,0 +1,290 @@
+/*
+ * KIELER - Kiel Integrated Environment for Layout Eclipse RichClient
+ *
+ * http://www.informatik.uni-kiel.de/rtsys/kieler/
+ * 
+ * Copyright 2016 by
+ * + Kiel University
+ *   + Department of Computer Science
+ *     + Real-Time and Embedded Systems Group
+ * 
+ * This code is provided under the terms of the Eclipse Public License (EPL).
+ * See the file epl-v10.html for the license text.
+ */
+package de.cau.cs.kieler.papyrus.sequence.p6export;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import de.cau.cs.kieler.papyrus.sequence.properties.MessageType;
+import de.cau.cs.kieler.papyrus.sequence.properties.SequenceExecutionType;
+
+/**
+ * Streams the geometry of a diagram as a compact JSON object. The object has the diagram's
+ * {@code width} and {@code height} as well as one array per section, named after the section in
+ * lower case. Boxes are given as arrays {@code [x, y, width, height]}, paths as flat arrays of
+ * alternating x and y coordinates:
+ * 
+ * <pre>
+ * {"width":w,"height":h,
+ *  "areas":[box,...],
+ *  "lifelines":[{"name":"...","box":box,"header":h},...],
+ *  "executions":[{"type":"EXECUTION","box":box},...],
+ *  "destructions":[box,...],
+ *  "messages":[{"type":"SYNCHRONOUS","points":[x,y,...]},...],
+ *  "labels":[{"text":"...","box":box},...],
+ *  "comments":[box,...],
+ *  "connections":[[x1,y1,x2,y2],...]}
+ * </pre>
+ * 
+ * <p>The output contains no whitespace.</p>
+ * 
+ * @author cds
+ */
+final class JsonRenderSink extends RenderSink {
+
+    /** Whether the next element is the first one of its section. */
+    private boolean firstElement;
+
+
+    /**
+     * Creates a new sink that writes to the given writer.
+     * 
+     * @param out
+     *            the writer to stream the JSON object to.
+     */
+    JsonRenderSink(final Writer out) {
+        super(out);
+    }
+
+
+    /////////////////////////////////////////////////////////////////////////////////////////////////
+    // Structure
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    void beginDiagram(final double width, final double height) throws IOException {
+        write("{\"width\":").write(width).write(",\"height\":").write(height);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    void endDiagram() throws IOException {
+        write("}\n");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    void beginSection(final Section section) throws IOException {
+        write(",\"").write(section.name().toLowerCase()).write("\":[");
+        firstElement = true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    void endSection() throws IOException {
+        write("]");
+    }
+
+
+    /////////////////////////////////////////////////////////////////////////////////////////////////
+    // Elements
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    void area(final double x, final double y, final double width, final double height)
+            throws IOException {
+
+        nextElement();
+        box(x, y, width, height);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    void lifeline(final String name, final double x, final double y, final double width,
+            final double height, final double headerHeight) throws IOException {
+
+        nextElement();
+        write("{\"name\":");
+        string(name);
+        write(",\"box\":");
+        box(x, y, width, height);
+        write(",\"header\":").write(headerHeight).write("}");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    void execution(final SequenceExecutionType type, final double x, final double y,
+            final double width, final double height) throws IOException {
+
+        nextElement();
+        write("{\"type\":\"").write(type.name()).write("\",\"box\":");
+        box(x, y, width, height);
+        write("}");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    void destruction(final double x, final double y, final double width, final double height)
+            throws IOException {
+
+        nextElement();
+        box(x, y, width, height);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    void message(final MessageType type, final double[] points) throws IOException {
+        nextElement();
+        write("{\"type\":\"").write(type.name()).write("\",\"points\":[");
+        for (int i = 0; i < points.length; i++) {
+            if (i > 0) {
+                write(",");
+            }
+            write(points[i]);
+        }
+        write("]}");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    void label(final String text, final double x, final double y, final double width,
+            final double height) throws IOException {
+
+        nextElement();
+        write("{\"text\":");
+        string(text);
+        write(",\"box\":");
+        box(x, y, width, height);
+        write("}");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    void comment(final double x, final double y, final double width, final double height)
+            throws IOException {
+
+        nextElement();
+        box(x, y, width, height);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    void connection(final double x1, final double y1, final double x2, final double y2)
+            throws IOException {
+
+        nextElement();
+        write("[").write(x1).write(",").write(y1).write(",").write(x2).write(",").write(y2)
+                .write("]");
+    }
+
+
+    /////////////////////////////////////////////////////////////////////////////////////////////////
+    // Utility Methods
+
+    /**
+     * Separates the next element from the previous one in its section, if any.
+     * 
+     * @throws IOException
+     *             if writing fails.
+     */
+    private void nextElement() throws IOException {
+        if (firstElement) {
+            firstElement = false;
+        } else {
+            write(",");
+        }
+    }
+
+    /**
+     * Writes a box.
+     * 
+     * @param x
+     *            x coordinate of the box.
+     * @param y
+     *            y coordinate of the box.
+     * @param width
+     *            width of the box.
+     * @param height
+     *            height of the box.
+     * @throws IOException
+     *             if writing fails.
+     */
+    private void box(final double x, final double y, final double width, final double height)
+            throws IOException {
+
+        write("[").write(x).write(",").write(y).write(",").write(width).write(",").write(height)
+                .write("]");
+    }
+
+    /**
+     * Writes the given string as a JSON string literal.
+     * 
+     * @param string
+     *            the string to write. {@code null} is written as JSON's {@code null}.
+     * @throws IOException
+     *             if writing fails.
+     */
+    private void string(final String string) throws IOException {
+        if (string == null) {
+            write("null");
+            return;
+        }
+
+        StringBuilder escaped = new StringBuilder(string.length() + 2);
+        escaped.append('"');
+        for (int i = 0; i < string.length(); i++) {
+            char c = string.charAt(i);
+            switch (c) {
+            case '"':
+                escaped.append("\\\"");
+                break;
+            case '\\':
+                escaped.append("\\\\");
+                break;
+            case '\n':
+                escaped.append("\\n");
+                break;
+            case '\r':
+                escaped.append("\\r");
+                break;
+            case '\t':
+                escaped.append("\\t");
+                break;
+            default:
+                if (c < ' ') {
+                    escaped.append(String.format("\\u%04x", (int) c));
+                } else {
+                    escaped.append(c);
+                }
+            }
+        }
+        escaped.append('"');
+        write(escaped.toString());
+    }
+
+}
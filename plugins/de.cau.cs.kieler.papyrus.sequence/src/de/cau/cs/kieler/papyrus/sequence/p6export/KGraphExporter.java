@@ -17,11 +17,9 @@ import java.util.List;
 
 import org.eclipse.elk.alg.layered.properties.InternalProperties;
 import org.eclipse.elk.core.klayoutdata.KEdgeLayout;
-import org.eclipse.elk.core.klayoutdata.KLayoutDataFactory;
 import org.eclipse.elk.core.klayoutdata.KPoint;
 import org.eclipse.elk.core.klayoutdata.KShapeLayout;
 import org.eclipse.elk.core.math.KVector;
-import org.eclipse.elk.core.util.ElkUtil;
 import org.eclipse.elk.core.util.IElkProgressMonitor;
 import org.eclipse.elk.graph.KEdge;
 import org.eclipse.elk.graph.KLabel;
@@ -37,7 +35,9 @@ import de.cau.cs.kieler.papyrus.sequence.graph.SComment;
 import de.cau.cs.kieler.papyrus.sequence.graph.SGraph;
 import de.cau.cs.kieler.papyrus.sequence.graph.SLifeline;
 import de.cau.cs.kieler.papyrus.sequence.graph.SMessage;
+import de.cau.cs.kieler.papyrus.sequence.p6export.LifelineExportUtil.LifelineExporter;
 import de.cau.cs.kieler.papyrus.sequence.properties.LabelAlignment;
+import de.cau.cs.kieler.papyrus.sequence.properties.LayoutQuality;
 import de.cau.cs.kieler.papyrus.sequence.properties.MessageType;
 import de.cau.cs.kieler.papyrus.sequence.properties.SequenceDiagramOptions;
 import de.cau.cs.kieler.papyrus.sequence.properties.InternalSequenceProperties;
@@ -58,57 +58,99 @@ public final class KGraphExporter implements ISequenceLayoutProcessor {
     public void process(final LayoutContext context, final IElkProgressMonitor progressMonitor) {
         progressMonitor.begin("Applying Layout Results", 1);
         
-        // Set position for lifelines/nodes
-        for (SLifeline lifeline : context.lifelineOrder) {
-            // Dummy lifelines don't need any layout
-            if (lifeline.isDummy()) {
-                continue;
-            }
-
-            KNode node = (KNode) lifeline.getProperty(InternalProperties.ORIGIN);
-            KShapeLayout nodeLayout = node.getData(KShapeLayout.class);
-
-            // Handle messages of the lifeline and their labels
-            double lowestMessageCoordinate = applyMessageCoordinates(context, lifeline);
-
-            // Apply execution coordinates and adjust positions of messages attached to these executions
-            applyExecutionCoordinates(context, lifeline);
-
-            // Place destruction if existing (this may change the lifeline's height, since the
-            // desctruction event will be placed directly below the last incident message)
-            KNode destruction = lifeline.getProperty(SequenceDiagramOptions.DESTRUCTION_NODE);
-            if (destruction != null) {
-                // Calculate the lifeline's new height
-                double heightDelta = lowestMessageCoordinate + context.messageSpacing
-                        - (lifeline.getPosition().y + lifeline.getSize().y);
-                lifeline.getSize().y += heightDelta;
-                
-                KShapeLayout destructLayout = destruction.getData(KShapeLayout.class);
-                double destructionXPos = lifeline.getSize().x / 2 - destructLayout.getWidth() / 2;
-                double destructionYPos = lifeline.getSize().y - destructLayout.getHeight();
-                destructLayout.setPos((float) destructionXPos, (float) destructionYPos);
+        LayoutDataWriter writer = computeLayout(context);
+        
+        // Write the coordinates to the KGraph in one go and report how many elements have changed
+        KShapeLayout parentLayout = context.kgraph.getData(KShapeLayout.class);
+        parentLayout.setProperty(SequenceDiagramOptions.CHANGED_ELEMENTS, writer.apply());
+        
+        progressMonitor.done();
+    }
+    
+    /**
+     * Computes the final coordinates of all elements of the diagram in the KGraph coordinate system
+     * without writing them to the KGraph. The SGraph's size is updated to accomodate all elements.
+     * 
+     * @param context
+     *            the layout context that contains all relevant information for the current layout run.
+     * @return the writer that holds the computed coordinates.
+     */
+    LayoutDataWriter computeLayout(final LayoutContext context) {
+        LayoutDataWriter writer = new LayoutDataWriter(context.deltaExport, context.deltaExportEpsilon);
+        
+        // Compute the coordinates of the lifelines along with their messages and executions. Each
+        // lifeline only changes its own state, so large diagrams are handled in parallel
+        LifelineExportUtil.exportLifelines(context.lifelineOrder, new LifelineExporter() {
+            @Override
+            public void exportLifeline(final SLifeline lifeline, final LayoutDataWriter lifelineWriter) {
+                applyLifelineCoordinates(context, lifeline, lifelineWriter);
             }
+        }, writer, context.threadPool);
+        
+        // Labels and executions may have caused the graph's width to get wider
+        KVector graphSize = context.sgraph.getSize();
+        graphSize.x = Math.max(graphSize.x, writer.getRequiredGraphWidth());
 
-            // Set position and height for the lifeline.
-            nodeLayout.setYpos((float) lifeline.getPosition().y);
-            nodeLayout.setXpos((float) lifeline.getPosition().x);
-            nodeLayout.setHeight((float) lifeline.getSize().y);
+        // Place all comments, unless they were left alone in draft quality
+        if (context.quality != LayoutQuality.DRAFT) {
+            placeComments(context.sgraph, writer);
         }
 
-        // Place all comments
-        placeComments(context.sgraph);
-
         // Set size and position of surrounding interaction
-        ElkUtil.resizeNode(context.kgraph,
-                (float) context.sgraph.getSize().x,
-                (float) context.sgraph.getSize().y,
-                false,
-                false);
+        writer.resizeNode(context.kgraph, (float) graphSize.x, (float) graphSize.y);
         
         KShapeLayout parentLayout = context.kgraph.getData(KShapeLayout.class);
-        parentLayout.setPos((float) context.borderSpacing, (float) context.borderSpacing);
+        writer.setPos(parentLayout, (float) context.borderSpacing, (float) context.borderSpacing);
         
-        progressMonitor.done();
+        return writer;
+    }
+    
+    
+    /////////////////////////////////////////////////////////////////////////////////////////////////
+    // Lifelines
+
+    /**
+     * Computes the coordinates of the given lifeline, its destruction, and the messages and
+     * executions connected to it.
+     * 
+     * @param context
+     *            the layout context that contains all relevant information for the current layout run.
+     * @param lifeline
+     *            the lifeline to be placed.
+     * @param writer
+     *            the writer that collects the lifeline's coordinates.
+     */
+    private void applyLifelineCoordinates(final LayoutContext context, final SLifeline lifeline,
+            final LayoutDataWriter writer) {
+        
+        KNode node = (KNode) lifeline.getProperty(InternalProperties.ORIGIN);
+        KShapeLayout nodeLayout = node.getData(KShapeLayout.class);
+
+        // Handle messages of the lifeline and their labels
+        double lowestMessageCoordinate = applyMessageCoordinates(context, lifeline, writer);
+
+        // Apply execution coordinates and adjust positions of messages attached to these executions
+        applyExecutionCoordinates(context, lifeline, writer);
+
+        // Place destruction if existing (this may change the lifeline's height, since the
+        // desctruction event will be placed directly below the last incident message)
+        KNode destruction = lifeline.getProperty(SequenceDiagramOptions.DESTRUCTION_NODE);
+        if (destruction != null) {
+            // Calculate the lifeline's new height
+            double heightDelta = lowestMessageCoordinate + context.messageSpacing
+                    - (lifeline.getPosition().y + lifeline.getSize().y);
+            lifeline.getSize().y += heightDelta;
+            
+            KShapeLayout destructLayout = destruction.getData(KShapeLayout.class);
+            double destructionXPos = lifeline.getSize().x / 2 - destructLayout.getWidth() / 2;
+            double destructionYPos = lifeline.getSize().y - destructLayout.getHeight();
+            writer.setPos(destructLayout, (float) destructionXPos, (float) destructionYPos);
+        }
+
+        // Set position and height for the lifeline.
+        writer.setYpos(nodeLayout, (float) lifeline.getPosition().y);
+        writer.setXpos(nodeLayout, (float) lifeline.getPosition().x);
+        writer.setHeight(nodeLayout, (float) lifeline.getSize().y);
     }
     
     
@@ -124,19 +166,23 @@ public final class KGraphExporter implements ISequenceLayoutProcessor {
      *            the layout context that contains all relevant information for the current layout run.
      * @param lifeline
      *            the lifeline whose messages are handled
+     * @param writer
+     *            the writer that collects the computed coordinates.
      * @return y coordinate of the lowest message incident to the lifeline.
      */
-    private double applyMessageCoordinates(final LayoutContext context, final SLifeline lifeline) {
+    private double applyMessageCoordinates(final LayoutContext context, final SLifeline lifeline,
+            final LayoutDataWriter writer) {
+        
         double lowestMsgYCoord = 0;
         
         for (SMessage message : lifeline.getOutgoingMessages()) {
-            applyOutgoingMessageCoordinates(lifeline, message, context);
+            applyOutgoingMessageCoordinates(lifeline, message, context, writer);
             
             lowestMsgYCoord = Math.max(lowestMsgYCoord, message.getSourceYPos());
         }
 
         for (SMessage message : lifeline.getIncomingMessages()) {
-            applyIncomingMessageCoordinates(lifeline, message, context);
+            applyIncomingMessageCoordinates(lifeline, message, context, writer);
             
             lowestMsgYCoord = Math.max(lowestMsgYCoord, message.getTargetYPos());
         }
@@ -150,14 +196,19 @@ public final class KGraphExporter implements ISequenceLayoutProcessor {
      * @param lifeline the lifeline the message starts at.
      * @param message the message whose coordinates to apply.
      * @param context layout context of the current layout run.
+     * @param writer the writer that collects the computed coordinates.
      */
     private void applyOutgoingMessageCoordinates(final SLifeline lifeline, final SMessage message,
-            final LayoutContext context) {
+            final LayoutContext context, final LayoutDataWriter writer) {
         
         assert lifeline == message.getSource();
         
         KEdge edge = (KEdge) message.getProperty(InternalProperties.ORIGIN);
         KEdgeLayout edgeLayout = edge.getData(KEdgeLayout.class);
+        if (context.layeringWarmStart) {
+            writer.setProperty(edgeLayout, SequenceDiagramOptions.MESSAGE_LAYER,
+                    message.getProperty(SequenceDiagramOptions.MESSAGE_LAYER));
+        }
 
         MessageType messageType = message.getProperty(SequenceDiagramOptions.MESSAGE_TYPE);
         
@@ -167,42 +218,40 @@ public final class KGraphExporter implements ISequenceLayoutProcessor {
         // Clear the bend points of all edges (this is safe to do here since we will only be adding
         // bend points for self loops, which we encounter first as outgoing messages, so we're not
         // clearing bend points set by the incoming message handling)
-        edgeLayout.getBendPoints().clear();
+        writer.clearBendPoints(edgeLayout);
         
         // Apply source point position
         KPoint sourcePoint = edgeLayout.getSourcePoint();
-        sourcePoint.setY((float) message.getSourceYPos());
-        sourcePoint.setX((float) llCenter);
+        writer.setY(edgeLayout, sourcePoint, (float) message.getSourceYPos());
+        writer.setX(edgeLayout, sourcePoint, (float) llCenter);
         
         // Check if the message connects to executions
-        List<SequenceExecution> executions = lifeline.getProperty(
-                SequenceDiagramOptions.EXECUTIONS);
+        List<SequenceExecution> executions = message.getProperty(
+                InternalSequenceProperties.SOURCE_EXECUTIONS);
         if (executions != null) {
             for (SequenceExecution execution : executions) {
-                if (execution.getMessages().contains(message)) {
-                    // Adjust the execution's vertical extend. This must be done with consideration for
-                    // self loops: If an execution is created by a self-loop, it needs to start at the
-                    // loop's lower border. If it is ended by a self-loop, it needs to end at the upper
-                    // border. For regular messages, upper and lower border are the same.
-                    double topYPos = upperSequencePositionForMessage(message, true, context);
-                    double bottYPos = lowerSequencePositionForMessage(message, true, context);
-                    
-                    if (execution.getPosition().y == 0) {
-                        // If this is the first message to encounter this execution, initialize the
-                        // execution's y coordinate and height
+                // Adjust the execution's vertical extend. This must be done with consideration for
+                // self loops: If an execution is created by a self-loop, it needs to start at the
+                // loop's lower border. If it is ended by a self-loop, it needs to end at the upper
+                // border. For regular messages, upper and lower border are the same.
+                double topYPos = upperSequencePositionForMessage(message, true, context);
+                double bottYPos = lowerSequencePositionForMessage(message, true, context);
+                
+                if (execution.getPosition().y == 0) {
+                    // If this is the first message to encounter this execution, initialize the
+                    // execution's y coordinate and height
+                    execution.getPosition().y = topYPos;
+                    execution.getSize().y = 0;
+                } else {
+                    // The execution already has a position and size; adjust.
+                    if (topYPos < execution.getPosition().y) {
+                        double delta = execution.getPosition().y - topYPos;
                         execution.getPosition().y = topYPos;
-                        execution.getSize().y = 0;
-                    } else {
-                        // The execution already has a position and size; adjust.
-                        if (topYPos < execution.getPosition().y) {
-                            double delta = execution.getPosition().y - topYPos;
-                            execution.getPosition().y = topYPos;
-                            execution.getSize().y += delta;
-                        }
-                        
-                        if (bottYPos > execution.getPosition().y + execution.getSize().y) {
-                            execution.getSize().y = bottYPos - execution.getPosition().y;
-                        }
+                        execution.getSize().y += delta;
+                    }
+                
+                    if (bottYPos > execution.getPosition().y + execution.getSize().y) {
+                        execution.getSize().y = bottYPos - execution.getPosition().y;
                     }
                 }
             }
@@ -210,27 +259,27 @@ public final class KGraphExporter implements ISequenceLayoutProcessor {
 
         // Lost messages end between their source and the next lifeline
         if (messageType == MessageType.LOST) {
-            edgeLayout.getTargetPoint().setX((float)
+            KPoint targetPoint = edgeLayout.getTargetPoint();
+            writer.setX(edgeLayout, targetPoint, (float)
                     (lifeline.getPosition().x + lifeline.getSize().x + context.lifelineSpacing / 2));
-            edgeLayout.getTargetPoint().setY((float) message.getTargetYPos());
+            writer.setY(edgeLayout, targetPoint, (float) message.getTargetYPos());
             
             // A lost message is supposed to have a target dummy node in the KGraph; set its position
             KNode dummy = edge.getTarget();
             KShapeLayout dummyLayout = dummy.getData(KShapeLayout.class);
-            dummyLayout.setXpos(edgeLayout.getTargetPoint().getX());
-            dummyLayout.setYpos(edgeLayout.getTargetPoint().getY() - dummyLayout.getHeight() / 2);
+            writer.setXpos(dummyLayout, writer.getX(targetPoint));
+            writer.setYpos(dummyLayout, writer.getY(targetPoint) - dummyLayout.getHeight() / 2);
         }
         
         // Specify bend points for self loops
         if (message.getSource() == message.getTarget()) {
-            KPoint bendPoint = KLayoutDataFactory.eINSTANCE.createKPoint();
-            bendPoint.setX((float) (llCenter + context.messageSpacing / 2));
-            bendPoint.setY(edgeLayout.getSourcePoint().getY());
-            edgeLayout.getBendPoints().add(bendPoint);
+            writer.addBendPoint(edgeLayout,
+                    (float) (llCenter + context.messageSpacing / 2),
+                    writer.getY(sourcePoint));
         }
 
         // Walk through the labels and adjust their position
-        placeLabels(context, message, edge);
+        placeLabels(context, message, edge, writer);
     }
 
     /**
@@ -239,14 +288,19 @@ public final class KGraphExporter implements ISequenceLayoutProcessor {
      * @param lifeline the lifeline the message ends at.
      * @param message the message whose coordinates to apply.
      * @param context layout context of the current layout run.
+     * @param writer the writer that collects the computed coordinates.
      */
     private void applyIncomingMessageCoordinates(final SLifeline lifeline, final SMessage message,
-            final LayoutContext context) {
+            final LayoutContext context, final LayoutDataWriter writer) {
         
         assert lifeline == message.getTarget();
         
         KEdge edge = (KEdge) message.getProperty(InternalProperties.ORIGIN);
         KEdgeLayout edgeLayout = edge.getData(KEdgeLayout.class);
+        if (context.layeringWarmStart) {
+            writer.setProperty(edgeLayout, SequenceDiagramOptions.MESSAGE_LAYER,
+                    message.getProperty(SequenceDiagramOptions.MESSAGE_LAYER));
+        }
 
         MessageType messageType = message.getProperty(SequenceDiagramOptions.MESSAGE_TYPE);
         
@@ -255,8 +309,8 @@ public final class KGraphExporter implements ISequenceLayoutProcessor {
         
         // Apply target point position
         KPoint targetPoint = edgeLayout.getTargetPoint();
-        targetPoint.setY((float) message.getTargetYPos());
-        targetPoint.setX((float) llCenter);
+        writer.setY(edgeLayout, targetPoint, (float) message.getTargetYPos());
+        writer.setX(edgeLayout, targetPoint, (float) llCenter);
         
         if (messageType == MessageType.CREATE) {
             // Set lifeline's yPos to the yPos of the create-message and modify lifeline height
@@ -268,43 +322,41 @@ public final class KGraphExporter implements ISequenceLayoutProcessor {
             lifeline.getSize().y -= delta;
             
             // Reset x-position of create message because it leads to the header and not the line
-            targetPoint.setX((float) lifeline.getPosition().x);
+            writer.setX(edgeLayout, targetPoint, (float) lifeline.getPosition().x);
         } else if (messageType == MessageType.DELETE) {
             // If the lifeline extends beyond the message target position, shorten the lifeline
-            if (lifeline.getPosition().y + lifeline.getSize().y > targetPoint.getY()) {
-                lifeline.getSize().y = targetPoint.getY() - lifeline.getPosition().y;
+            if (lifeline.getPosition().y + lifeline.getSize().y > writer.getY(targetPoint)) {
+                lifeline.getSize().y = writer.getY(targetPoint) - lifeline.getPosition().y;
             }
         }
 
         // Check if the message connects to executions
-        List<SequenceExecution> executions = lifeline.getProperty(
-                SequenceDiagramOptions.EXECUTIONS);
+        List<SequenceExecution> executions = message.getProperty(
+                InternalSequenceProperties.TARGET_EXECUTIONS);
         if (executions != null) {
             for (SequenceExecution execution : executions) {
-                if (execution.getMessages().contains(message)) {
-                    // Adjust the execution's vertical extend. This must be done with consideration for
-                    // self loops: If an execution is created by a self-loop, it needs to start at the
-                    // loop's lower border. If it is ended by a self-loop, it needs to end at the upper
-                    // border. For regular messages, upper and lower border are the same.
-                    double topYPos = upperSequencePositionForMessage(message, false, context);
-                    double bottYPos = lowerSequencePositionForMessage(message, false, context);
-                    
-                    if (execution.getPosition().y == 0) {
-                        // If this is the first message to encounter this execution, initialize the
-                        // execution's y coordinate and height
-                        execution.getPosition().y = bottYPos;
-                        execution.getSize().y = 0;
-                    } else {
-                        // The execution already has a position and size; adjust.
-                        if (topYPos < execution.getPosition().y) {
-                            double delta = execution.getPosition().y - topYPos;
-                            execution.getPosition().y = topYPos;
-                            execution.getSize().y += delta;
-                        }
-                        
-                        if (bottYPos > execution.getPosition().y + execution.getSize().y) {
-                            execution.getSize().y = bottYPos - execution.getPosition().y;
-                        }
+                // Adjust the execution's vertical extend. This must be done with consideration for
+                // self loops: If an execution is created by a self-loop, it needs to start at the
+                // loop's lower border. If it is ended by a self-loop, it needs to end at the upper
+                // border. For regular messages, upper and lower border are the same.
+                double topYPos = upperSequencePositionForMessage(message, false, context);
+                double bottYPos = lowerSequencePositionForMessage(message, false, context);
+                
+                if (execution.getPosition().y == 0) {
+                    // If this is the first message to encounter this execution, initialize the
+                    // execution's y coordinate and height
+                    execution.getPosition().y = bottYPos;
+                    execution.getSize().y = 0;
+                } else {
+                    // The execution already has a position and size; adjust.
+                    if (topYPos < execution.getPosition().y) {
+                        double delta = execution.getPosition().y - topYPos;
+                        execution.getPosition().y = topYPos;
+                        execution.getSize().y += delta;
+                    }
+                
+                    if (bottYPos > execution.getPosition().y + execution.getSize().y) {
+                        execution.getSize().y = bottYPos - execution.getPosition().y;
                     }
                 }
             }
@@ -312,26 +364,26 @@ public final class KGraphExporter implements ISequenceLayoutProcessor {
 
         // Found messages start between their target and the previous lifeline
         if (messageType == MessageType.FOUND) {
-            edgeLayout.getSourcePoint().setX((float)
+            KPoint sourcePoint = edgeLayout.getSourcePoint();
+            writer.setX(edgeLayout, sourcePoint, (float)
                     (lifeline.getPosition().x - context.lifelineSpacing / 2));
-            edgeLayout.getSourcePoint().setY((float) message.getSourceYPos());
+            writer.setY(edgeLayout, sourcePoint, (float) message.getSourceYPos());
             
             // A found message is supposed to have a source dummy node in the KGraph; set its position
             KNode dummy = edge.getSource();
             KShapeLayout dummyLayout = dummy.getData(KShapeLayout.class);
-            dummyLayout.setXpos(edgeLayout.getSourcePoint().getX() - dummyLayout.getWidth());
-            dummyLayout.setYpos(edgeLayout.getSourcePoint().getY() - dummyLayout.getHeight() / 2);
+            writer.setXpos(dummyLayout, writer.getX(sourcePoint) - dummyLayout.getWidth());
+            writer.setYpos(dummyLayout, writer.getY(sourcePoint) - dummyLayout.getHeight() / 2);
             
             // Found messages now need to have their label placed
-            placeLabels(context, message, edge);
+            placeLabels(context, message, edge, writer);
         }
         
         // Specify bend points for self loops
         if (message.getSource() == message.getTarget()) {
-            KPoint bendPoint = KLayoutDataFactory.eINSTANCE.createKPoint();
-            bendPoint.setX((float) (llCenter + context.messageSpacing / 2));
-            bendPoint.setY(edgeLayout.getTargetPoint().getY());
-            edgeLayout.getBendPoints().add(bendPoint);
+            writer.addBendPoint(edgeLayout,
+                    (float) (llCenter + context.messageSpacing / 2),
+                    writer.getY(targetPoint));
         }
     }
     
@@ -368,8 +420,17 @@ public final class KGraphExporter implements ISequenceLayoutProcessor {
      *            the message whose labels to place
      * @param edge
      *            the edge representing the message in the original graph
+     * @param writer
+     *            the writer that collects the computed coordinates.
      */
-    private void placeLabels(final LayoutContext context, final SMessage message, final KEdge edge) {
+    private void placeLabels(final LayoutContext context, final SMessage message, final KEdge edge,
+            final LayoutDataWriter writer) {
+        
+        // Labels keep their old positions in draft quality
+        if (context.quality == LayoutQuality.DRAFT) {
+            return;
+        }
+        
         // If the message is a lost / found message, its direction will not depend on the
         // target / source lifeline's index in the ordered lifeline list
         MessageType messageType = message.getProperty(SequenceDiagramOptions.MESSAGE_TYPE);
@@ -381,29 +442,29 @@ public final class KGraphExporter implements ISequenceLayoutProcessor {
             SLifeline messageSource = message.getSource();
             
             if (messageType == MessageType.LOST) {
-                placeRightPointingMessageLabels(context, message, labelLayout);
+                placeRightPointingMessageLabels(context, message, labelLayout, writer);
             } else if (messageSource.getHorizontalSlot() < messageTarget.getHorizontalSlot()) {
-                placeRightPointingMessageLabels(context, message, labelLayout);
+                placeRightPointingMessageLabels(context, message, labelLayout, writer);
             } else if (messageSource.getHorizontalSlot() > messageTarget.getHorizontalSlot()) {
-                placeLeftPointingMessageLabels(context, message, labelLayout);
+                placeLeftPointingMessageLabels(context, message, labelLayout, writer);
             } else {
                 // The message is a self loop, so place labels to its right
                 KEdgeLayout edgeLayout = edge.getData(KEdgeLayout.class);
                 double xPos;
-                if (edgeLayout.getBendPoints().size() > 0) {
-                    KPoint firstBend = edgeLayout.getBendPoints().get(0);
-                    xPos = firstBend.getX();
+                if (writer.getBendPointCount(edgeLayout) > 0) {
+                    xPos = writer.getBendPointX(edgeLayout, 0);
                 } else {
-                    xPos = edgeLayout.getSourcePoint().getX();
+                    xPos = writer.getX(edgeLayout.getSourcePoint());
                 }
-                labelLayout.setYpos((float)
+                writer.setYpos(labelLayout, (float)
                         (message.getSourceYPos() + SequenceLayoutConstants.LABELSPACING));
-                labelLayout.setXpos((float)
+                writer.setXpos(labelLayout, (float)
                         (xPos + SequenceLayoutConstants.LABELMARGIN / 2));
             }
             
             // Labels may cause the graph's width to get wider. Compensate!
-            ensureGraphIsWideEnough(context, labelLayout.getXpos() + labelLayout.getWidth());
+            ensureGraphIsWideEnough(context, writer,
+                    writer.getXpos(labelLayout) + labelLayout.getWidth());
         }
     }
 
@@ -417,21 +478,23 @@ public final class KGraphExporter implements ISequenceLayoutProcessor {
      *            the message whose label to place
      * @param labelLayout
      *            layout of the label to be placed where the layout information will be stored
+     * @param writer
+     *            the writer that collects the computed coordinates.
      */
     private void placeRightPointingMessageLabels(final LayoutContext context, final SMessage message,
-            final KShapeLayout labelLayout) {
+            final KShapeLayout labelLayout, final LayoutDataWriter writer) {
         
         SLifeline srcLifeline = message.getSource();
         double llCenter = srcLifeline.getPosition().x + srcLifeline.getSize().x / 2;
         
         // Labels are placed above messages pointing rightwards
-        labelLayout.setYpos((float) (message.getSourceYPos() - labelLayout.getHeight() - 2));
+        writer.setYpos(labelLayout, (float) (message.getSourceYPos() - labelLayout.getHeight() - 2));
         
         // For the horizontal alignment, we need to check which alignment strategy to use
         LabelAlignment alignment = context.labelAlignment;
         
         if (alignment == LabelAlignment.SOURCE_CENTER
-                && srcLifeline.getHorizontalSlot() + 1 == context.lifelineOrder.size()) {
+                && srcLifeline.getHorizontalSlot() + 1 == context.lifelinesBySlot.length) {
             
             // This is a lost message; fall back to source placement
             alignment = LabelAlignment.SOURCE;
@@ -445,19 +508,20 @@ public final class KGraphExporter implements ISequenceLayoutProcessor {
         switch (alignment) {
         case SOURCE_CENTER:
             // Place label centered between the source lifeline and the next lifeline
-            SLifeline nextLL = context.lifelineOrder.get(srcLifeline.getHorizontalSlot() + 1);
+            SLifeline nextLL = context.lifelinesBySlot[srcLifeline.getHorizontalSlot() + 1];
             double center = (llCenter + nextLL.getPosition().x + nextLL.getSize().x / 2) / 2;
-            labelLayout.setXpos((float) (center - labelLayout.getWidth() / 2));
+            writer.setXpos(labelLayout, (float) (center - labelLayout.getWidth() / 2));
             break;
         case SOURCE:
             // Place label near the source lifeline
-            labelLayout.setXpos((float) llCenter + SequenceLayoutConstants.LABELSPACING);
+            writer.setXpos(labelLayout, (float) llCenter + SequenceLayoutConstants.LABELSPACING);
             break;
         case CENTER:
             // Place label at the center of the message
             double targetCenter = message.getTarget().getPosition().x
                     + message.getTarget().getSize().x / 2;
-            labelLayout.setXpos((float) ((llCenter + targetCenter) / 2 - labelLayout.getWidth() / 2));
+            writer.setXpos(labelLayout,
+                    (float) ((llCenter + targetCenter) / 2 - labelLayout.getWidth() / 2));
             break;
         }
     }
@@ -472,15 +536,17 @@ public final class KGraphExporter implements ISequenceLayoutProcessor {
      *            the message whose label to place
      * @param labelLayout
      *            layout of the label to be placed where the layout information will be stored
+     * @param writer
+     *            the writer that collects the computed coordinates.
      */
     private void placeLeftPointingMessageLabels(final LayoutContext context, final SMessage message,
-            final KShapeLayout labelLayout) {
+            final KShapeLayout labelLayout, final LayoutDataWriter writer) {
 
         SLifeline srcLifeline = message.getSource();
         double llCenter = srcLifeline.getPosition().x + srcLifeline.getSize().x / 2;
 
         // Labels are placed below messages pointing leftwards
-        labelLayout.setYpos((float) (message.getSourceYPos() + 2));
+        writer.setYpos(labelLayout, (float) (message.getSourceYPos() + 2));
         
         // For the horizontal alignment, we need to check which alignment strategy to use
         LabelAlignment alignment = context.labelAlignment;
@@ -494,20 +560,21 @@ public final class KGraphExporter implements ISequenceLayoutProcessor {
         switch (alignment) {
         case SOURCE_CENTER:
             // Place label centered between the source lifeline and the previous lifeline
-            SLifeline lastLL = context.lifelineOrder.get(srcLifeline.getHorizontalSlot() - 1);
+            SLifeline lastLL = context.lifelinesBySlot[srcLifeline.getHorizontalSlot() - 1];
             double center = (llCenter + lastLL.getPosition().x + lastLL.getSize().x / 2) / 2;
-            labelLayout.setXpos((float) (center - labelLayout.getWidth() / 2));
+            writer.setXpos(labelLayout, (float) (center - labelLayout.getWidth() / 2));
             break;
         case SOURCE:
             // Place label near the source lifeline
-            labelLayout.setXpos((float)
+            writer.setXpos(labelLayout, (float)
                     (llCenter - labelLayout.getWidth() - SequenceLayoutConstants.LABELSPACING));
             break;
         case CENTER:
             // Place label at the center of the message
             double targetCenter = message.getTarget().getPosition().x
                     + message.getTarget().getSize().x / 2;
-            labelLayout.setXpos((float) ((llCenter + targetCenter) / 2 - labelLayout.getWidth() / 2));
+            writer.setXpos(labelLayout,
+                    (float) ((llCenter + targetCenter) / 2 - labelLayout.getWidth() / 2));
             break;
         }
     }
@@ -523,8 +590,12 @@ public final class KGraphExporter implements ISequenceLayoutProcessor {
      *            the layout context that contains all relevant information for the current layout run.
      * @param lifeline
      *            the lifeline whose executions are to be placed.
+     * @param writer
+     *            the writer that collects the computed coordinates.
      */
-    private void applyExecutionCoordinates(final LayoutContext context, final SLifeline lifeline) {
+    private void applyExecutionCoordinates(final LayoutContext context, final SLifeline lifeline,
+            final LayoutDataWriter writer) {
+        
         List<SequenceExecution> executions = lifeline.getProperty(
                 SequenceDiagramOptions.EXECUTIONS);
         if (executions == null || executions.isEmpty()) {
@@ -532,7 +603,7 @@ public final class KGraphExporter implements ISequenceLayoutProcessor {
         }
         
         // Set xPos, maxXPos and height / maxYPos
-        arrangeExecutions(executions, lifeline);
+        arrangeExecutions(context, executions, lifeline);
 
         // Self-messages need to be processed later, once all executions are placed
         Multimap<SMessage, SequenceExecution> selfMessages = HashMultimap.create();
@@ -550,12 +621,14 @@ public final class KGraphExporter implements ISequenceLayoutProcessor {
             KNode executionNode = (KNode) execution.getOrigin();
             
             KShapeLayout executionlayout = executionNode.getData(KShapeLayout.class);
-            executionlayout.setXpos((float) execution.getPosition().x);
-            executionlayout.setYpos((float) (execution.getPosition().y - lifeline.getPosition().y));
-            executionlayout.setWidth((float) execution.getSize().x);
-            executionlayout.setHeight((float) execution.getSize().y);
+            writer.setXpos(executionlayout, (float) execution.getPosition().x);
+            writer.setYpos(executionlayout,
+                    (float) (execution.getPosition().y - lifeline.getPosition().y));
+            writer.setWidth(executionlayout, (float) execution.getSize().x);
+            writer.setHeight(executionlayout, (float) execution.getSize().y);
             
-            ensureGraphIsWideEnough(context, executionlayout.getXpos() + executionlayout.getWidth());
+            ensureGraphIsWideEnough(context, writer,
+                    writer.getXpos(executionlayout) + writer.getWidth(executionlayout));
 
             // Walk through execution's messages and adjust their position
             for (Object messObj : execution.getMessages()) {
@@ -581,8 +654,8 @@ public final class KGraphExporter implements ISequenceLayoutProcessor {
                     if (toRight) {
                         newXPos += execution.getSize().x;
                     }
-                    double delta = newXPos - edgeLayout.getSourcePoint().getX();
-                    offsetX(edgeLayout.getSourcePoint(), (float) delta, context);
+                    double delta = newXPos - writer.getX(edgeLayout.getSourcePoint());
+                    offsetX(edgeLayout, edgeLayout.getSourcePoint(), (float) delta, context, writer);
                     
                     // TODO Labels positioned at the source should be offset as well
                 }
@@ -591,56 +664,50 @@ public final class KGraphExporter implements ISequenceLayoutProcessor {
                     if (!toRight) {
                         newXPos += execution.getSize().x;
                     }
-                    double delta = newXPos - edgeLayout.getTargetPoint().getX();
-                    offsetX(edgeLayout.getTargetPoint(), (float) delta, context);
+                    double delta = newXPos - writer.getX(edgeLayout.getTargetPoint());
+                    offsetX(edgeLayout, edgeLayout.getTargetPoint(), (float) delta, context, writer);
                 }
             }
         }
         
-        applyExecutionCoordinatesToSelfMessages(lifeline, selfMessages, context);
+        applyExecutionCoordinatesToSelfMessages(lifeline, selfMessages, context, writer);
     }
 
     /**
      * Set x position and width of an execution and check for minimum height.
      * 
+     * @param context
+     *            the layout context that contains all relevant information for the current layout run.
      * @param executions
      *            List of {@link SequenceExecution} at the given {@link SLifeline}
      * @param lifeline
      *            the lifeline the executions belong to.
      */
-    private void arrangeExecutions(final List<SequenceExecution> executions, final SLifeline lifeline) {
+    private void arrangeExecutions(final LayoutContext context,
+            final List<SequenceExecution> executions, final SLifeline lifeline) {
+        
         // All executions are initially centered in their lifeline
         for (SequenceExecution execution : executions) {
             execution.getPosition().x =
                     (lifeline.getSize().x - SequenceLayoutConstants.EXECUCTION_WIDTH) / 2;
         }
 
-        // If there are multiple executions, some may have to be shifted horizontally if they overlap
-        if (executions.size() > 1) {
-            for (SequenceExecution execution : executions) {
+        // If there are multiple executions, some may have to be shifted horizontally if they overlap;
+        // in draft quality, they simply stay centered
+        if (executions.size() > 1 && context.quality != LayoutQuality.DRAFT) {
+            // The "less OR EQUAL" bottom rule is significant here: in KGraph mode, several executions
+            // can end at the same message
+            int[] slots = ExecutionNestingUtil.computeNestingSlots(executions, true);
+            for (int i = 0; i < executions.size(); i++) {
+                SequenceExecution execution = executions.get(i);
                 if (execution.getType() == SequenceExecutionType.DURATION
                         || execution.getType() == SequenceExecutionType.TIME_CONSTRAINT) {
                     
                     continue;
                 }
                 
-                int slot = 0;
-                for (SequenceExecution otherExecution : executions) {
-                    if (execution != otherExecution) {
-                        // The "less OR EQUAL" when calculating "bottomOverlaps" is significant here:
-                        // in KGraph mode, several executions can end at the same message
-                        boolean topOverlaps = execution.getPosition().y > otherExecution.getPosition().y;
-                        boolean bottomOverlaps = execution.getPosition().y + execution.getSize().y
-                                <= otherExecution.getPosition().y + otherExecution.getSize().y;
-                        
-                        if (topOverlaps && bottomOverlaps) {
-                            slot++;
-                        }
-                    }
-                }
-                
                 // Shift execution position
-                execution.getPosition().x += slot * SequenceLayoutConstants.EXECUCTION_WIDTH / 2;
+                execution.getPosition().x += slots[i] * SequenceLayoutConstants.EXECUCTION_WIDTH / 2;
             }
         }
 
@@ -675,9 +742,12 @@ public final class KGraphExporter implements ISequenceLayoutProcessor {
      * @param context
      *            the layout context that contains all relevant information for the current layout
      *            run.
+     * @param writer
+     *            the writer that collects the computed coordinates.
      */
     private void applyExecutionCoordinatesToSelfMessages(final SLifeline lifeline,
-            final Multimap<SMessage, SequenceExecution> selfMsgs, final LayoutContext context) {
+            final Multimap<SMessage, SequenceExecution> selfMsgs, final LayoutContext context,
+            final LayoutDataWriter writer) {
         
         double lifelineXCenter = lifeline.getSize().x / 2;
         
@@ -704,25 +774,27 @@ public final class KGraphExporter implements ISequenceLayoutProcessor {
                 double execBotYPos = execTopYPos + execution.getSize().y;
                 
                 // Check if the source point is in the execution's area
-                if (msgSourcePoint.getY() >= execTopYPos && msgSourcePoint.getY() <= execBotYPos) {
+                float sourceYPos = writer.getY(msgSourcePoint);
+                if (sourceYPos >= execTopYPos && sourceYPos <= execBotYPos) {
                     sourceOffset = Math.max(sourceOffset,
                             execution.getPosition().x + execution.getSize().x - lifelineXCenter);
                 }
                 
                 // Check if the target point is in the execution's area
-                if (msgTargetPoint.getY() >= execTopYPos && msgTargetPoint.getY() <= execBotYPos) {
+                float targetYPos = writer.getY(msgTargetPoint);
+                if (targetYPos >= execTopYPos && targetYPos <= execBotYPos) {
                     targetOffset = Math.max(targetOffset,
                             execution.getPosition().x + execution.getSize().x - lifelineXCenter);
                 }
             }
             
             // Apply offsets
-            offsetX(msgSourcePoint, (float) sourceOffset, context);
-            offsetX(msgTargetPoint, (float) targetOffset, context);
+            offsetX(selfMsgEdgeLayout, msgSourcePoint, (float) sourceOffset, context, writer);
+            offsetX(selfMsgEdgeLayout, msgTargetPoint, (float) targetOffset, context, writer);
             
             float maxOffset = (float) Math.max(sourceOffset, targetOffset);
-            offsetX(selfMsgEdgeLayout.getBendPoints(), maxOffset, context);
-            offsetLabelsX(selfMsgEdge.getLabels(), maxOffset, context);
+            offsetBendPointsX(selfMsgEdgeLayout, maxOffset, context, writer);
+            offsetLabelsX(selfMsgEdge.getLabels(), maxOffset, context, writer);
         }
     }
     
@@ -730,32 +802,45 @@ public final class KGraphExporter implements ISequenceLayoutProcessor {
      * Adds the given delta to the given point's X coordinate. Also ensures the graph is wide enough
      * to accomodate the new point.
      * 
+     * @param edgeLayout
+     *            layout of the edge the point belongs to.
      * @param point
      *            the point to offset.
      * @param delta
      *            the amount to add to the X coordinate.
      * @param context
      *            the layout context that contains all relevant information for the current layout run.
+     * @param writer
+     *            the writer that collects the computed coordinates.
      */
-    private void offsetX(final KPoint point, final float delta, final LayoutContext context) {
-        point.setX(point.getX() + delta);
-        ensureGraphIsWideEnough(context, point.getX());
+    private void offsetX(final KEdgeLayout edgeLayout, final KPoint point, final float delta,
+            final LayoutContext context, final LayoutDataWriter writer) {
+        
+        writer.setX(edgeLayout, point, writer.getX(point) + delta);
+        ensureGraphIsWideEnough(context, writer, writer.getX(point));
     }
     
     /**
-     * Calls {@link #offsetX(KPoint, double)} on every point in the given list. Also 
+     * Adds the given delta to the X coordinate of every bend point of the given edge. Also ensures the
+     * graph is wide enough to accomodate the new points.
      * 
-     * @param points
-     *            the points to offset.
+     * @param edgeLayout
+     *            layout of the edge whose bend points to offset.
      * @param delta
      *            the amount to add to the X coordinate.
      * @param context
      *            the layout context that contains all relevant information for the current layout
      *            run.
+     * @param writer
+     *            the writer that collects the computed coordinates.
      */
-    private void offsetX(final List<KPoint> points, final float delta, final LayoutContext context) {
-        for (KPoint point : points) {
-            offsetX(point, delta, context);
+    private void offsetBendPointsX(final KEdgeLayout edgeLayout, final float delta,
+            final LayoutContext context, final LayoutDataWriter writer) {
+        
+        for (int i = 0; i < writer.getBendPointCount(edgeLayout); i++) {
+            float x = writer.getBendPointX(edgeLayout, i) + delta;
+            writer.setBendPointX(edgeLayout, i, x);
+            ensureGraphIsWideEnough(context, writer, x);
         }
     }
     
@@ -769,15 +854,18 @@ public final class KGraphExporter implements ISequenceLayoutProcessor {
      * @param context
      *            the layout context that contains all relevant information for the current layout
      *            run.
+     * @param writer
+     *            the writer that collects the computed coordinates.
      */
     private void offsetLabelsX(final List<KLabel> labels, final float delta,
-            final LayoutContext context) {
+            final LayoutContext context, final LayoutDataWriter writer) {
         
         for (KLabel label : labels) {
             KShapeLayout shapeLayout = label.getData(KShapeLayout.class);
-            shapeLayout.setXpos(shapeLayout.getXpos() + delta);
+            writer.setXpos(shapeLayout, writer.getXpos(shapeLayout) + delta);
             
-            ensureGraphIsWideEnough(context, shapeLayout.getXpos() + shapeLayout.getWidth());
+            ensureGraphIsWideEnough(context, writer,
+                    writer.getXpos(shapeLayout) + shapeLayout.getWidth());
         }
     }
     
@@ -790,12 +878,15 @@ public final class KGraphExporter implements ISequenceLayoutProcessor {
      * 
      * @param graph
      *            the Sequence Graph
+     * @param writer
+     *            the writer that collects the computed coordinates.
      */
-    private void placeComments(final SGraph graph) {
+    private void placeComments(final SGraph graph, final LayoutDataWriter writer) {
         for (SComment comment : graph.getComments()) {
             Object origin = comment.getProperty(InternalProperties.ORIGIN);
             KShapeLayout commentLayout = ((KNode) origin).getData(KShapeLayout.class);
-            commentLayout.setPos((float) comment.getPosition().x, (float) comment.getPosition().y);
+            writer.setPos(commentLayout, (float) comment.getPosition().x,
+                    (float) comment.getPosition().y);
             if (comment.getMessage() != null) {
                 // Connected comments
 
@@ -821,14 +912,16 @@ public final class KGraphExporter implements ISequenceLayoutProcessor {
                     KPoint targetPoint = edgeLayout.getTargetPoint();
                     KPoint sourcePoint = edgeLayout.getSourcePoint();
                     edgeSourceYPos = comment.getPosition().y + comment.getSize().y;
-                    edgeTargetYPos = (targetPoint.getY() + sourcePoint.getY()) / 2;
+                    edgeTargetYPos = (writer.getY(targetPoint) + writer.getY(sourcePoint)) / 2;
                 }
 
                 // Apply connection coordinates to layout
                 KEdgeLayout edgelayout = comment.getProperty(
                         InternalSequenceProperties.COMMENT_CONNECTION).getData(KEdgeLayout.class);
-                edgelayout.getSourcePoint().setPos((float) edgeSourceXPos, (float) edgeSourceYPos);
-                edgelayout.getTargetPoint().setPos((float) edgeTargetXPos, (float) edgeTargetYPos);
+                writer.setPos(edgelayout, edgelayout.getSourcePoint(),
+                        (float) edgeSourceXPos, (float) edgeSourceYPos);
+                writer.setPos(edgelayout, edgelayout.getTargetPoint(),
+                        (float) edgeTargetXPos, (float) edgeTargetYPos);
             }
         }
     }
@@ -838,18 +931,22 @@ public final class KGraphExporter implements ISequenceLayoutProcessor {
     // Utility Methods
     
     /**
-     * Ensures that the context's SGraph's width is wide enough to accomodate an element that
-     * extends to the given x coordinate.
+     * Ensures that the context's SGraph's width will be wide enough to accomodate an element that
+     * extends to the given x coordinate. The graph's width is only updated once all lifelines are
+     * placed.
      * 
      * @param context
      *            the layout context.
+     * @param writer
+     *            the writer that collects the width the graph needs to have.
      * @param rightmostElement
      *            x coordinate of the right border of the element that needs to fit inside the
      *            graph.
      */
-    private void ensureGraphIsWideEnough(final LayoutContext context, final double rightmostElement) {
-        KVector graphSize = context.sgraph.getSize();
-        graphSize.x = Math.max(graphSize.x, rightmostElement + context.borderSpacing);
+    private void ensureGraphIsWideEnough(final LayoutContext context, final LayoutDataWriter writer,
+            final double rightmostElement) {
+        
+        writer.ensureGraphWidth(rightmostElement + context.borderSpacing);
     }
 
 }
@@ -0,0 +1,791 @@
+/*
+ * KIELER - Kiel Integrated Environment for Layout Eclipse RichClient
+ *
+ * http://www.informatik.uni-kiel.de/rtsys/kieler/
+ * 
+ * Copyright 2016 by
+ * + Kiel University
+ *   + Department of Computer Science
+ *     + Real-Time and Embedded Systems Group
+ * 
+ * This code is provided under the terms of the Eclipse Public License (EPL).
+ * See the file epl-v10.html for the license text.
+ */
+package de.cau.cs.kieler.papyrus.sequence.p6export;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.elk.core.klayoutdata.KEdgeLayout;
+import org.eclipse.elk.core.klayoutdata.KLayoutData;
+import org.eclipse.elk.core.klayoutdata.KLayoutDataFactory;
+import org.eclipse.elk.core.klayoutdata.KPoint;
+import org.eclipse.elk.core.klayoutdata.KShapeLayout;
+import org.eclipse.elk.core.util.ElkUtil;
+import org.eclipse.elk.graph.KNode;
+import org.eclipse.elk.graph.properties.IProperty;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+/**
+ * Collects the coordinates an exporter computes for the layout data of the original graph and
+ * writes them once the export is complete. Until then, coordinates read through the writer reflect
+ * the values already set through it, so exporters can keep adjusting coordinates they have computed
+ * earlier without each adjustment causing a write to the layout data.
+ * 
+ * <p>In delta mode, only values that differ from the existing layout data by more than a given
+ * epsilon are written, and bend points are updated in place instead of being replaced. Otherwise,
+ * all values are written. In both modes, the writer counts the layout data that actually
+ * changed.</p>
+ * 
+ * <p>The values collected by one writer can be added to another one. This allows computing the
+ * coordinates of different parts of the diagram in parallel, each into a writer of its own, and
+ * writing all of them in a single sequential pass afterwards.</p>
+ * 
+ * @author cds
+ */
+final class LayoutDataWriter {
+
+    /** Index of the x coordinate in the values of a shape or point. */
+    private static final int X = 0;
+    /** Index of the y coordinate in the values of a shape or point. */
+    private static final int Y = 1;
+    /** Index of the width in the values of a shape. */
+    private static final int WIDTH = 2;
+    /** Index of the height in the values of a shape. */
+    private static final int HEIGHT = 3;
+
+    /** Whether to only write values that have changed. */
+    private final boolean deltaOnly;
+    /** The amount by which a value has to change to count as changed. */
+    private final double epsilon;
+    /** The values set for shape layouts so far. */
+    private final Map<KShapeLayout, PendingValues> shapes = Maps.newLinkedHashMap();
+    /** The values set for source and target points of edges so far. */
+    private final Map<KPoint, PendingValues> points = Maps.newLinkedHashMap();
+    /** The edge layout each point in {@link #points} belongs to. */
+    private final Map<KPoint, KEdgeLayout> pointOwners = Maps.newHashMap();
+    /** The bend points set for edge layouts so far, as alternating x and y coordinates. */
+    private final Map<KEdgeLayout, List<Float>> bendPoints = Maps.newLinkedHashMap();
+    /** The new sizes of nodes to be resized. */
+    private final Map<KNode, float[]> nodeSizes = Maps.newLinkedHashMap();
+    /** The property values set for layout data so far. */
+    private final Map<KLayoutData, Map<IProperty<?>, Object>> properties = Maps.newLinkedHashMap();
+    /** The width the graph needs to have to accomodate the elements placed through this writer. */
+    private double requiredGraphWidth = 0;
+
+
+    /**
+     * Creates a new writer.
+     * 
+     * @param deltaOnly
+     *            {@code true} if only values that have changed should be written.
+     * @param epsilon
+     *            the amount by which a value has to change to be written in delta mode.
+     */
+    LayoutDataWriter(final boolean deltaOnly, final double epsilon) {
+        this.deltaOnly = deltaOnly;
+        this.epsilon = deltaOnly ? epsilon : 0;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    // Shapes
+
+    /**
+     * Returns the x coordinate of the given shape.
+     * 
+     * @param layout
+     *            the shape layout.
+     * @return the x coordinate set through this writer, or the layout's current one.
+     */
+    float getXpos(final KShapeLayout layout) {
+        PendingValues values = shapes.get(layout);
+        return values != null && values.isSet(X) ? values.values[X] : layout.getXpos();
+    }
+
+    /**
+     * Returns the y coordinate of the given shape.
+     * 
+     * @param layout
+     *            the shape layout.
+     * @return the y coordinate set through this writer, or the layout's current one.
+     */
+    float getYpos(final KShapeLayout layout) {
+        PendingValues values = shapes.get(layout);
+        return values != null && values.isSet(Y) ? values.values[Y] : layout.getYpos();
+    }
+
+    /**
+     * Returns the width of the given shape.
+     * 
+     * @param layout
+     *            the shape layout.
+     * @return the width set through this writer, or the layout's current one.
+     */
+    float getWidth(final KShapeLayout layout) {
+        PendingValues values = shapes.get(layout);
+        return values != null && values.isSet(WIDTH) ? values.values[WIDTH] : layout.getWidth();
+    }
+
+    /**
+     * Returns the height of the given shape.
+     * 
+     * @param layout
+     *            the shape layout.
+     * @return the height set through this writer, or the layout's current one.
+     */
+    float getHeight(final KShapeLayout layout) {
+        PendingValues values = shapes.get(layout);
+        return values != null && values.isSet(HEIGHT) ? values.values[HEIGHT] : layout.getHeight();
+    }
+
+    /**
+     * Sets the x coordinate of the given shape.
+     * 
+     * @param layout
+     *            the shape layout.
+     * @param xpos
+     *            the new x coordinate.
+     */
+    void setXpos(final KShapeLayout layout, final float xpos) {
+        shapeValues(layout).set(X, xpos);
+    }
+
+    /**
+     * Sets the y coordinate of the given shape.
+     * 
+     * @param layout
+     *            the shape layout.
+     * @param ypos
+     *            the new y coordinate.
+     */
+    void setYpos(final KShapeLayout layout, final float ypos) {
+        shapeValues(layout).set(Y, ypos);
+    }
+
+    /**
+     * Sets the width of the given shape.
+     * 
+     * @param layout
+     *            the shape layout.
+     * @param width
+     *            the new width.
+     */
+    void setWidth(final KShapeLayout layout, final float width) {
+        shapeValues(layout).set(WIDTH, width);
+    }
+
+    /**
+     * Sets the height of the given shape.
+     * 
+     * @param layout
+     *            the shape layout.
+     * @param height
+     *            the new height.
+     */
+    void setHeight(final KShapeLayout layout, final float height) {
+        shapeValues(layout).set(HEIGHT, height);
+    }
+
+    /**
+     * Sets the position of the given shape.
+     * 
+     * @param layout
+     *            the shape layout.
+     * @param xpos
+     *            the new x coordinate.
+     * @param ypos
+     *            the new y coordinate.
+     */
+    void setPos(final KShapeLayout layout, final float xpos, final float ypos) {
+        PendingValues values = shapeValues(layout);
+        values.set(X, xpos);
+        values.set(Y, ypos);
+    }
+
+    /**
+     * Resizes the given node using {@link ElkUtil#resizeNode(KNode, float, float, boolean, boolean)},
+     * without moving its ports or labels.
+     * 
+     * @param node
+     *            the node to resize.
+     * @param width
+     *            the new width.
+     * @param height
+     *            the new height.
+     */
+    void resizeNode(final KNode node, final float width, final float height) {
+        nodeSizes.put(node, new float[] {width, height});
+    }
+
+    /**
+     * Returns the pending values of the given shape layout, creating them if necessary.
+     * 
+     * @param layout
+     *            the shape layout.
+     * @return the pending values.
+     */
+    private PendingValues shapeValues(final KShapeLayout layout) {
+        PendingValues values = shapes.get(layout);
+        if (values == null) {
+            values = new PendingValues(HEIGHT + 1);
+            shapes.put(layout, values);
+        }
+        return values;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    // Points
+
+    /**
+     * Returns the x coordinate of the given source or target point of an edge.
+     * 
+     * @param point
+     *            the point.
+     * @return the x coordinate set through this writer, or the point's current one.
+     */
+    float getX(final KPoint point) {
+        PendingValues values = points.get(point);
+        return values != null && values.isSet(X) ? values.values[X] : point.getX();
+    }
+
+    /**
+     * Returns the y coordinate of the given source or target point of an edge.
+     * 
+     * @param point
+     *            the point.
+     * @return the y coordinate set through this writer, or the point's current one.
+     */
+    float getY(final KPoint point) {
+        PendingValues values = points.get(point);
+        return values != null && values.isSet(Y) ? values.values[Y] : point.getY();
+    }
+
+    /**
+     * Sets the x coordinate of the given source or target point of an edge.
+     * 
+     * @param edgeLayout
+     *            the layout of the edge the point belongs to.
+     * @param point
+     *            the point.
+     * @param x
+     *            the new x coordinate.
+     */
+    void setX(final KEdgeLayout edgeLayout, final KPoint point, final float x) {
+        pointValues(edgeLayout, point).set(X, x);
+    }
+
+    /**
+     * Sets the y coordinate of the given source or target point of an edge.
+     * 
+     * @param edgeLayout
+     *            the layout of the edge the point belongs to.
+     * @param point
+     *            the point.
+     * @param y
+     *            the new y coordinate.
+     */
+    void setY(final KEdgeLayout edgeLayout, final KPoint point, final float y) {
+        pointValues(edgeLayout, point).set(Y, y);
+    }
+
+    /**
+     * Sets the position of the given source or target point of an edge.
+     * 
+     * @param edgeLayout
+     *            the layout of the edge the point belongs to.
+     * @param point
+     *            the point.
+     * @param x
+     *            the new x coordinate.
+     * @param y
+     *            the new y coordinate.
+     */
+    void setPos(final KEdgeLayout edgeLayout, final KPoint point, final float x, final float y) {
+        PendingValues values = pointValues(edgeLayout, point);
+        values.set(X, x);
+        values.set(Y, y);
+    }
+
+    /**
+     * Returns the pending values of the given point, creating them if necessary.
+     * 
+     * @param edgeLayout
+     *            the layout of the edge the point belongs to.
+     * @param point
+     *            the point.
+     * @return the pending values.
+     */
+    private PendingValues pointValues(final KEdgeLayout edgeLayout, final KPoint point) {
+        PendingValues values = points.get(point);
+        if (values == null) {
+            values = new PendingValues(Y + 1);
+            points.put(point, values);
+            pointOwners.put(point, edgeLayout);
+        }
+        return values;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    // Bend Points
+
+    /**
+     * Removes all bend points of the given edge.
+     * 
+     * @param edgeLayout
+     *            the edge layout.
+     */
+    void clearBendPoints(final KEdgeLayout edgeLayout) {
+        bendPoints.put(edgeLayout, Lists.<Float>newArrayList());
+    }
+
+    /**
+     * Appends a bend point to the given edge.
+     * 
+     * @param edgeLayout
+     *            the edge layout.
+     * @param x
+     *            the bend point's x coordinate.
+     * @param y
+     *            the bend point's y coordinate.
+     */
+    void addBendPoint(final KEdgeLayout edgeLayout, final float x, final float y) {
+        List<Float> coordinates = bendPointCoordinates(edgeLayout);
+        coordinates.add(x);
+        coordinates.add(y);
+    }
+
+    /**
+     * Returns the number of bend points of the given edge.
+     * 
+     * @param edgeLayout
+     *            the edge layout.
+     * @return the number of bend points set through this writer, or the edge's current number.
+     */
+    int getBendPointCount(final KEdgeLayout edgeLayout) {
+        List<Float> coordinates = bendPoints.get(edgeLayout);
+        return coordinates != null ? coordinates.size() / 2 : edgeLayout.getBendPoints().size();
+    }
+
+    /**
+     * Returns the x coordinate of a bend point of the given edge.
+     * 
+     * @param edgeLayout
+     *            the edge layout.
+     * @param index
+     *            index of the bend point.
+     * @return the bend point's x coordinate.
+     */
+    float getBendPointX(final KEdgeLayout edgeLayout, final int index) {
+        List<Float> coordinates = bendPoints.get(edgeLayout);
+        return coordinates != null
+                ? coordinates.get(2 * index) : edgeLayout.getBendPoints().get(index).getX();
+    }
+
+    /**
+     * Returns the y coordinate of a bend point of the given edge.
+     * 
+     * @param edgeLayout
+     *            the edge layout.
+     * @param index
+     *            index of the bend point.
+     * @return the bend point's y coordinate.
+     */
+    float getBendPointY(final KEdgeLayout edgeLayout, final int index) {
+        List<Float> coordinates = bendPoints.get(edgeLayout);
+        return coordinates != null
+                ? coordinates.get(2 * index + 1) : edgeLayout.getBendPoints().get(index).getY();
+    }
+
+    /**
+     * Sets the x coordinate of a bend point of the given edge.
+     * 
+     * @param edgeLayout
+     *            the edge layout.
+     * @param index
+     *            index of the bend point.
+     * @param x
+     *            the bend point's new x coordinate.
+     */
+    void setBendPointX(final KEdgeLayout edgeLayout, final int index, final float x) {
+        bendPointCoordinates(edgeLayout).set(2 * index, x);
+    }
+
+    /**
+     * Sets the y coordinate of a bend point of the given edge.
+     * 
+     * @param edgeLayout
+     *            the edge layout.
+     * @param index
+     *            index of the bend point.
+     * @param y
+     *            the bend point's new y coordinate.
+     */
+    void setBendPointY(final KEdgeLayout edgeLayout, final int index, final float y) {
+        bendPointCoordinates(edgeLayout).set(2 * index + 1, y);
+    }
+
+    /**
+     * Returns the pending bend point coordinates of the given edge, initializing them with the edge's
+     * current bend points if necessary.
+     * 
+     * @param edgeLayout
+     *            the edge layout.
+     * @return the bend point coordinates.
+     */
+    private List<Float> bendPointCoordinates(final KEdgeLayout edgeLayout) {
+        List<Float> coordinates = bendPoints.get(edgeLayout);
+        if (coordinates == null) {
+            coordinates = Lists.<Float>newArrayList();
+            for (KPoint bendPoint : edgeLayout.getBendPoints()) {
+                coordinates.add(bendPoint.getX());
+                coordinates.add(bendPoint.getY());
+            }
+            bendPoints.put(edgeLayout, coordinates);
+        }
+        return coordinates;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    // Properties and Graph Size
+
+    /**
+     * Sets a property of the given layout data. The property is only written if its value changes.
+     * 
+     * @param layoutData
+     *            the layout data.
+     * @param property
+     *            the property.
+     * @param value
+     *            the property's new value.
+     * @param <T>
+     *            type of the property's value.
+     */
+    <T> void setProperty(final KLayoutData layoutData, final IProperty<T> property, final T value) {
+        Map<IProperty<?>, Object> values = properties.get(layoutData);
+        if (values == null) {
+            values = Maps.newLinkedHashMap();
+            properties.put(layoutData, values);
+        }
+        values.put(property, value);
+    }
+
+    /**
+     * Makes sure the graph is at least as wide as the given width.
+     * 
+     * @param width
+     *            the minimum width of the graph.
+     */
+    void ensureGraphWidth(final double width) {
+        requiredGraphWidth = Math.max(requiredGraphWidth, width);
+    }
+
+    /**
+     * Returns the width the graph needs to have to accomodate the elements placed through this writer.
+     * 
+     * @return the largest width passed to {@link #ensureGraphWidth(double)}, or {@code 0}.
+     */
+    double getRequiredGraphWidth() {
+        return requiredGraphWidth;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    // Combining Writers
+
+    /**
+     * Adds all values set through the given writer to this writer, as if they had been set through
+     * this writer after all of its own values. The given writer must not be used afterwards.
+     * 
+     * @param other
+     *            the writer whose values to add.
+     */
+    void addAll(final LayoutDataWriter other) {
+        for (Map.Entry<KShapeLayout, PendingValues> entry : other.shapes.entrySet()) {
+            shapeValues(entry.getKey()).setAll(entry.getValue());
+        }
+
+        for (Map.Entry<KPoint, PendingValues> entry : other.points.entrySet()) {
+            KPoint point = entry.getKey();
+            pointValues(other.pointOwners.get(point), point).setAll(entry.getValue());
+        }
+
+        bendPoints.putAll(other.bendPoints);
+        nodeSizes.putAll(other.nodeSizes);
+
+        for (Map.Entry<KLayoutData, Map<IProperty<?>, Object>> entry : other.properties.entrySet()) {
+            Map<IProperty<?>, Object> values = properties.get(entry.getKey());
+            if (values == null) {
+                properties.put(entry.getKey(), entry.getValue());
+            } else {
+                values.putAll(entry.getValue());
+            }
+        }
+
+        ensureGraphWidth(other.requiredGraphWidth);
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    // Writing
+
+    /**
+     * Writes all values set through this writer to the layout data.
+     * 
+     * @return the number of shape and edge layouts that have changed.
+     */
+    int apply() {
+        Set<KLayoutData> changed = Sets.newHashSet();
+
+        for (Map.Entry<KShapeLayout, PendingValues> entry : shapes.entrySet()) {
+            KShapeLayout layout = entry.getKey();
+            PendingValues values = entry.getValue();
+            if (apply(values, X, layout.getXpos())) {
+                layout.setXpos(values.values[X]);
+            }
+            if (apply(values, Y, layout.getYpos())) {
+                layout.setYpos(values.values[Y]);
+            }
+            if (apply(values, WIDTH, layout.getWidth())) {
+                layout.setWidth(values.values[WIDTH]);
+            }
+            if (apply(values, HEIGHT, layout.getHeight())) {
+                layout.setHeight(values.values[HEIGHT]);
+            }
+            if (values.changed) {
+                changed.add(layout);
+            }
+        }
+
+        for (Map.Entry<KNode, float[]> entry : nodeSizes.entrySet()) {
+            KShapeLayout layout = entry.getKey().getData(KShapeLayout.class);
+            float[] size = entry.getValue();
+            boolean sizeChanged = differs(layout.getWidth(), size[0])
+                    || differs(layout.getHeight(), size[1]);
+            if (sizeChanged || !deltaOnly) {
+                ElkUtil.resizeNode(entry.getKey(), size[0], size[1], false, false);
+            }
+            if (sizeChanged) {
+                changed.add(layout);
+            }
+        }
+
+        for (Map.Entry<KPoint, PendingValues> entry : points.entrySet()) {
+            KPoint point = entry.getKey();
+            PendingValues values = entry.getValue();
+            if (apply(values, X, point.getX())) {
+                point.setX(values.values[X]);
+            }
+            if (apply(values, Y, point.getY())) {
+                point.setY(values.values[Y]);
+            }
+            if (values.changed) {
+                changed.add(pointOwners.get(point));
+            }
+        }
+
+        for (Map.Entry<KEdgeLayout, List<Float>> entry : bendPoints.entrySet()) {
+            if (applyBendPoints(entry.getKey(), entry.getValue())) {
+                changed.add(entry.getKey());
+            }
+        }
+
+        for (Map.Entry<KLayoutData, Map<IProperty<?>, Object>> entry : properties.entrySet()) {
+            KLayoutData layoutData = entry.getKey();
+            for (Map.Entry<IProperty<?>, Object> property : entry.getValue().entrySet()) {
+                applyProperty(layoutData, property.getKey(), property.getValue());
+            }
+        }
+
+        return changed.size();
+    }
+
+    /**
+     * Writes the given property value to the given layout data if it differs from the current one.
+     * 
+     * @param layoutData
+     *            the layout data.
+     * @param property
+     *            the property.
+     * @param value
+     *            the property's new value.
+     * @param <T>
+     *            type of the property's value.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> void applyProperty(final KLayoutData layoutData, final IProperty<T> property,
+            final Object value) {
+
+        if (!Objects.equal(value, layoutData.getProperty(property))) {
+            layoutData.setProperty(property, (T) value);
+        }
+    }
+
+    /**
+     * Determines whether the given value of a shape or point is to be written. Updates the values'
+     * change flag.
+     * 
+     * @param values
+     *            the pending values.
+     * @param index
+     *            index of the value to check.
+     * @param current
+     *            the current value in the layout data.
+     * @return {@code true} if the value is to be written.
+     */
+    private boolean apply(final PendingValues values, final int index, final float current) {
+        if (!values.isSet(index)) {
+            return false;
+        }
+
+        boolean valueChanged = differs(current, values.values[index]);
+        values.changed |= valueChanged;
+        return valueChanged || !deltaOnly;
+    }
+
+    /**
+     * Writes the given bend point coordinates to the given edge. In delta mode, existing bend points
+     * are reused; otherwise, they are replaced by new ones.
+     * 
+     * @param edgeLayout
+     *            the edge layout.
+     * @param coordinates
+     *            the bend points as alternating x and y coordinates.
+     * @return {@code true} if the bend points have changed.
+     */
+    private boolean applyBendPoints(final KEdgeLayout edgeLayout, final List<Float> coordinates) {
+        List<KPoint> existing = edgeLayout.getBendPoints();
+        int count = coordinates.size() / 2;
+        boolean bendPointsChanged = existing.size() != count;
+
+        for (int i = 0; i < Math.min(count, existing.size()); i++) {
+            KPoint point = existing.get(i);
+            float x = coordinates.get(2 * i);
+            float y = coordinates.get(2 * i + 1);
+            if (differs(point.getX(), x) || differs(point.getY(), y)) {
+                bendPointsChanged = true;
+                if (deltaOnly) {
+                    point.setPos(x, y);
+                }
+            }
+        }
+
+        if (deltaOnly) {
+            // Update the list of bend points only as far as required
+            while (existing.size() > count) {
+                existing.remove(existing.size() - 1);
+            }
+            for (int i = existing.size(); i < count; i++) {
+                existing.add(createPoint(coordinates.get(2 * i), coordinates.get(2 * i + 1)));
+            }
+        } else {
+            existing.clear();
+            for (int i = 0; i < count; i++) {
+                existing.add(createPoint(coordinates.get(2 * i), coordinates.get(2 * i + 1)));
+            }
+        }
+
+        return bendPointsChanged;
+    }
+
+    /**
+     * Creates a new point.
+     * 
+     * @param x
+     *            the point's x coordinate.
+     * @param y
+     *            the point's y coordinate.
+     * @return the new point.
+     */
+    private KPoint createPoint(final float x, final float y) {
+        KPoint point = KLayoutDataFactory.eINSTANCE.createKPoint();
+        point.setPos(x, y);
+        return point;
+    }
+
+    /**
+     * Checks whether the new value differs from the current one by more than the epsilon.
+     * 
+     * @param current
+     *            the current value.
+     * @param value
+     *            the new value.
+     * @return {@code true} if the value has changed.
+     */
+    private boolean differs(final float current, final float value) {
+        return Math.abs(value - current) > epsilon;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    // Pending Values
+
+    /**
+     * The values set for a shape or point, along with which of them have been set.
+     */
+    private static final class PendingValues {
+        /** The values, indexed by {@link LayoutDataWriter#X} and friends. */
+        private final float[] values;
+        /** Bit mask of the values that have been set. */
+        private int setMask;
+        /** Whether any of the values has changed. Computed when writing. */
+        private boolean changed;
+
+        /**
+         * Creates pending values with room for the given number of values.
+         * 
+         * @param size
+         *            the number of values.
+         */
+        PendingValues(final int size) {
+            values = new float[size];
+        }
+
+        /**
+         * Checks whether the value with the given index has been set.
+         * 
+         * @param index
+         *            index of the value.
+         * @return {@code true} if it has been set.
+         */
+        boolean isSet(final int index) {
+            return (setMask & (1 << index)) != 0;
+        }
+
+        /**
+         * Sets the value with the given index.
+         * 
+         * @param index
+         *            index of the value.
+         * @param value
+         *            the new value.
+         */
+        void set(final int index, final float value) {
+            values[index] = value;
+            setMask |= 1 << index;
+        }
+
+        /**
+         * Sets all values that have been set in the given pending values.
+         * 
+         * @param other
+         *            the pending values to take the values from.
+         */
+        void setAll(final PendingValues other) {
+            for (int index = 0; index < other.values.length; index++) {
+                if (other.isSet(index)) {
+                    set(index, other.values[index]);
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,175 @@
+/*
+ * KIELER - Kiel Integrated Environment for Layout Eclipse RichClient
+ *
+ * http://www.informatik.uni-kiel.de/rtsys/kieler/
+ * 
+ * Copyright 2016 by
+ * + Kiel University
+ *   + Department of Computer Science
+ *     + Real-Time and Embedded Systems Group
+ * 
+ * This code is provided under the terms of the Eclipse Public License (EPL).
+ * See the file epl-v10.html for the license text.
+ */
+package de.cau.cs.kieler.papyrus.sequence.p6export;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import de.cau.cs.kieler.papyrus.sequence.graph.SLifeline;
+
+/**
+ * Utility methods shared by the exporters to compute the layout of the lifelines in parallel.
+ * 
+ * @author cds
+ */
+final class LifelineExportUtil {
+
+    /** Minimum number of lifelines to compute the layout of in parallel. */
+    private static final int PARALLEL_LIFELINES = 128;
+    /** Number of lifelines a task processes itself instead of splitting them up further. */
+    private static final int LIFELINES_PER_TASK = 32;
+
+    /**
+     * Utility class, not to be instantiated.
+     */
+    private LifelineExportUtil() {
+
+    }
+
+    /**
+     * Computes the layout of each of the given lifelines and collects it in the given writer. Dummy
+     * lifelines don't need any layout and are skipped.
+     * 
+     * <p>If there are enough lifelines to make that worthwhile, their layouts are computed in
+     * parallel, each into a writer of its own. These are then added to the given writer in the order
+     * of the lifelines, so the writer ends up with the same values as if the lifelines had been
+     * processed one after another. For this to work, the exporter must only change the state of the
+     * lifeline it processes and of the executions, message ends and labels that belong to it, and must
+     * not read values other lifelines set through their writers.</p>
+     * 
+     * @param lifelines
+     *            the lifelines to process, in the order in which they would be processed sequentially.
+     * @param exporter
+     *            the exporter that computes the layout of a single lifeline.
+     * @param writer
+     *            the writer to collect the layout of all lifelines in.
+     * @param pool
+     *            the pool to compute the layouts in if that happens in parallel.
+     */
+    static void exportLifelines(final List<SLifeline> lifelines, final LifelineExporter exporter,
+            final LayoutDataWriter writer, final ForkJoinPool pool) {
+
+        if (lifelines.size() < PARALLEL_LIFELINES) {
+            for (SLifeline lifeline : lifelines) {
+                if (!lifeline.isDummy()) {
+                    exporter.exportLifeline(lifeline, writer);
+                }
+            }
+        } else {
+            SLifeline[] lifelineArray = lifelines.toArray(new SLifeline[lifelines.size()]);
+            LayoutDataWriter[] writers = new LayoutDataWriter[lifelineArray.length];
+
+            pool.invoke(new LifelineTask(exporter, lifelineArray, writers, 0,
+                    lifelineArray.length));
+
+            for (LayoutDataWriter lifelineWriter : writers) {
+                if (lifelineWriter != null) {
+                    writer.addAll(lifelineWriter);
+                }
+            }
+        }
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    // Lifeline Exporter
+
+    /**
+     * Computes the layout of a single lifeline.
+     */
+    interface LifelineExporter {
+
+        /**
+         * Computes the layout of the given lifeline, including its messages, labels and executions,
+         * and sets it through the given writer.
+         * 
+         * @param lifeline
+         *            the lifeline. Never a dummy lifeline.
+         * @param writer
+         *            the writer to set the lifeline's layout through.
+         */
+        void exportLifeline(SLifeline lifeline, LayoutDataWriter writer);
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    // Parallel Lifeline Processing
+
+    /**
+     * Task that computes the layout of a range of lifelines, each into a writer of its own, splitting
+     * the range in half until it is small enough.
+     */
+    private static final class LifelineTask extends RecursiveAction {
+        private static final long serialVersionUID = 5320719213880271519L;
+
+        /** The exporter that computes the layout of a single lifeline. */
+        private final LifelineExporter exporter;
+        /** The lifelines to process. */
+        private final SLifeline[] lifelines;
+        /** The writer of each lifeline, filled in by the task. Dummy lifelines don't get one. */
+        private final LayoutDataWriter[] writers;
+        /** The index of the first lifeline to process. */
+        private final int from;
+        /** The index after the last lifeline to process. */
+        private final int to;
+
+        /**
+         * Creates a new task for the given range of lifelines.
+         * 
+         * @param exporter
+         *            the exporter that computes the layout of a single lifeline.
+         * @param lifelines
+         *            the lifelines to process.
+         * @param writers
+         *            the writer of each lifeline, filled in by the task.
+         * @param from
+         *            the index of the first lifeline to process.
+         * @param to
+         *            the index after the last lifeline to process.
+         */
+        LifelineTask(final LifelineExporter exporter, final SLifeline[] lifelines,
+                final LayoutDataWriter[] writers, final int from, final int to) {
+
+            this.exporter = exporter;
+            this.lifelines = lifelines;
+            this.writers = writers;
+            this.from = from;
+            this.to = to;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected void compute() {
+            if (to - from <= LIFELINES_PER_TASK) {
+                for (int i = from; i < to; i++) {
+                    if (!lifelines[i].isDummy()) {
+                        // The writer is only used to collect values; how they are written is up to
+                        // the writer they are added to
+                        writers[i] = new LayoutDataWriter(false, 0);
+                        exporter.exportLifeline(lifelines[i], writers[i]);
+                    }
+                }
+            } else {
+                int middle = (from + to) / 2;
+                invokeAll(
+                        new LifelineTask(exporter, lifelines, writers, from, middle),
+                        new LifelineTask(exporter, lifelines, writers, middle, to));
+            }
+        }
+    }
+
+}
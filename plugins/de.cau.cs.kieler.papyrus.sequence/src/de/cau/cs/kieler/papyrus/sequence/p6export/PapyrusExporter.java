@@ -24,6 +24,8 @@ import org.eclipse.elk.graph.KEdge;
 import org.eclipse.elk.graph.KLabel;
 import org.eclipse.elk.graph.KNode;
 
+import com.google.common.collect.Lists;
+
 import de.cau.cs.kieler.papyrus.sequence.ISequenceLayoutProcessor;
 import de.cau.cs.kieler.papyrus.sequence.LayoutContext;
 import de.cau.cs.kieler.papyrus.sequence.SequenceLayoutConstants;
@@ -31,6 +33,8 @@ import de.cau.cs.kieler.papyrus.sequence.graph.SComment;
 import de.cau.cs.kieler.papyrus.sequence.graph.SGraph;
 import de.cau.cs.kieler.papyrus.sequence.graph.SLifeline;
 import de.cau.cs.kieler.papyrus.sequence.graph.SMessage;
+import de.cau.cs.kieler.papyrus.sequence.p6export.LifelineExportUtil.LifelineExporter;
+import de.cau.cs.kieler.papyrus.sequence.properties.LayoutQuality;
 import de.cau.cs.kieler.papyrus.sequence.properties.MessageType;
 import de.cau.cs.kieler.papyrus.sequence.properties.NodeType;
 import de.cau.cs.kieler.papyrus.sequence.properties.SequenceDiagramOptions;
@@ -55,63 +59,94 @@ public final class PapyrusExporter implements ISequenceLayoutProcessor {
         progressMonitor.begin("Applying Layout Results", 1);
         
         // The height of the diagram (the surrounding interaction)
-        double diagramHeight = context.sgraph.getSize().y + context.messageSpacing
+        final double diagramHeight = context.sgraph.getSize().y + context.messageSpacing
                 + context.lifelineHeader + context.lifelineYPos;
         
-        // Set position for lifelines/nodes
+        // Lifelines that come after the surrounding interaction in the lifeline order are not placed
+        List<SLifeline> lifelines = Lists.newArrayList();
         for (SLifeline lifeline : context.lifelineOrder) {
-            // Dummy lifelines don't need any layout
-            if (lifeline.isDummy()) {
-                continue;
+            if (!lifeline.isDummy()) {
+                KNode node = (KNode) lifeline.getProperty(InternalProperties.ORIGIN);
+                if (node.getData(KShapeLayout.class).getProperty(SequenceDiagramOptions.NODE_TYPE)
+                        == NodeType.SURROUNDING_INTERACTION) {
+                    
+                    // This is the surrounding node
+                    break;
+                }
             }
-
-            KNode node = (KNode) lifeline.getProperty(InternalProperties.ORIGIN);
-            KShapeLayout nodeLayout = node.getData(KShapeLayout.class);
-
-            if (nodeLayout.getProperty(SequenceDiagramOptions.NODE_TYPE)
-                    == NodeType.SURROUNDING_INTERACTION) {
-                
-                // This is the surrounding node
-                break;
+            lifelines.add(lifeline);
+        }
+        
+        LayoutDataWriter writer = new LayoutDataWriter(false, 0);
+        
+        // Compute the coordinates of the lifelines along with their messages and executions. Each
+        // lifeline only changes its own state, so large diagrams are handled in parallel
+        LifelineExportUtil.exportLifelines(lifelines, new LifelineExporter() {
+            @Override
+            public void exportLifeline(final SLifeline lifeline, final LayoutDataWriter lifelineWriter) {
+                applyLifelineCoordinates(context, diagramHeight, lifeline, lifelineWriter);
             }
+        }, writer, context.threadPool);
 
-            // Handle messages of the lifeline and their labels
-            List<SequenceExecution> executions = lifeline.getProperty(
-                    SequenceDiagramOptions.EXECUTIONS);
-            applyMessageCoordinates(context, diagramHeight, lifeline, executions);
-
-            // Apply execution coordinates and adjust positions of messages attached to these
-            // executions.
-            applyExecutionCoordinates(context, lifeline);
-
-            // Set position and height for the lifeline.
-            nodeLayout.setYpos((float) lifeline.getPosition().y);
-            nodeLayout.setXpos((float) lifeline.getPosition().x);
-            nodeLayout.setHeight((float) lifeline.getSize().y);
-
-            // Place destruction if existing
-            KNode destruction = lifeline.getProperty(SequenceDiagramOptions.DESTRUCTION_NODE);
-            if (destruction != null) {
-                KShapeLayout destructLayout = destruction.getData(KShapeLayout.class);
-                double destructionXPos = nodeLayout.getWidth() / 2 - destructLayout.getWidth() / 2;
-                double destructionYPos = nodeLayout.getHeight() - destructLayout.getHeight();
-                destructLayout.setPos((float) destructionXPos, (float) destructionYPos);
-            }
+        // Place all comments, unless they were left alone in draft quality
+        if (context.quality != LayoutQuality.DRAFT) {
+            placeComments(context.sgraph, writer);
         }
 
-        // Place all comments
-        placeComments(context.sgraph);
-
         // Set position and size of surrounding interaction
         KShapeLayout parentLayout = context.kgraph.getData(KShapeLayout.class);
-        parentLayout.setWidth((float) context.sgraph.getSize().x);
-        parentLayout.setHeight((float) diagramHeight);
-        parentLayout.setPos((float) context.borderSpacing, (float) context.borderSpacing);
+        writer.setWidth(parentLayout, (float) context.sgraph.getSize().x);
+        writer.setHeight(parentLayout, (float) diagramHeight);
+        writer.setPos(parentLayout, (float) context.borderSpacing, (float) context.borderSpacing);
+        
+        // Write the coordinates to the KGraph in one go
+        writer.apply();
         
         progressMonitor.done();
     }
     
 
+    /**
+     * Computes the coordinates of the given lifeline, its destruction, and the messages and
+     * executions connected to it.
+     * 
+     * @param context
+     *            the layout context that contains all relevant information for the current layout run.
+     * @param diagramHeight
+     *            the height of the whole diagram
+     * @param lifeline
+     *            the lifeline to be placed
+     * @param writer
+     *            the writer that collects the computed coordinates
+     */
+    private void applyLifelineCoordinates(final LayoutContext context, final double diagramHeight,
+            final SLifeline lifeline, final LayoutDataWriter writer) {
+        
+        KNode node = (KNode) lifeline.getProperty(InternalProperties.ORIGIN);
+        KShapeLayout nodeLayout = node.getData(KShapeLayout.class);
+
+        // Handle messages of the lifeline and their labels
+        applyMessageCoordinates(context, diagramHeight, lifeline, writer);
+
+        // Apply execution coordinates and adjust positions of messages attached to these
+        // executions.
+        applyExecutionCoordinates(context, lifeline, writer);
+
+        // Set position and height for the lifeline.
+        writer.setYpos(nodeLayout, (float) lifeline.getPosition().y);
+        writer.setXpos(nodeLayout, (float) lifeline.getPosition().x);
+        writer.setHeight(nodeLayout, (float) lifeline.getSize().y);
+
+        // Place destruction if existing
+        KNode destruction = lifeline.getProperty(SequenceDiagramOptions.DESTRUCTION_NODE);
+        if (destruction != null) {
+            KShapeLayout destructLayout = destruction.getData(KShapeLayout.class);
+            double destructionXPos = writer.getWidth(nodeLayout) / 2 - destructLayout.getWidth() / 2;
+            double destructionYPos = writer.getHeight(nodeLayout) - destructLayout.getHeight();
+            writer.setPos(destructLayout, (float) destructionXPos, (float) destructionYPos);
+        }
+    }
+
     /**
      * Apply the calculated coordinates of the messages that are connected to the given lifeline.
      * 
@@ -121,11 +156,11 @@ public final class PapyrusExporter implements ISequenceLayoutProcessor {
      *            the height of the whole diagram
      * @param lifeline
      *            the lifeline whose messages are handled
-     * @param executions
-     *            the list of executions
+     * @param writer
+     *            the writer that collects the computed coordinates
      */
     private void applyMessageCoordinates(final LayoutContext context, final double diagramHeight,
-            final SLifeline lifeline, final List<SequenceExecution> executions) {
+            final SLifeline lifeline, final LayoutDataWriter writer) {
         
         /*
          * TODO Set this to one if Papyrus team fixes its bug. Workaround for Papyrus bug:
@@ -161,31 +196,36 @@ public final class PapyrusExporter implements ISequenceLayoutProcessor {
         for (SMessage message : lifeline.getOutgoingMessages()) {
             KEdge edge = (KEdge) message.getProperty(InternalProperties.ORIGIN);
             KEdgeLayout edgeLayout = edge.getData(KEdgeLayout.class);
+            if (context.layeringWarmStart) {
+                writer.setProperty(edgeLayout, SequenceDiagramOptions.MESSAGE_LAYER,
+                        message.getProperty(SequenceDiagramOptions.MESSAGE_LAYER));
+            }
             KPoint sourcePoint = edgeLayout.getSourcePoint();
-            sourcePoint.setY((float) (message.getSourceYPos() * factor));
-            sourcePoint.setX((float) (lifeline.getPosition().x + lifeline.getSize().x / 2));
+            writer.setY(edgeLayout, sourcePoint, (float) (message.getSourceYPos() * factor));
+            writer.setX(edgeLayout, sourcePoint,
+                    (float) (lifeline.getPosition().x + lifeline.getSize().x / 2));
 
             // Set execution coordinates according to connected messages coordinates
+            List<SequenceExecution> executions = message.getProperty(
+                    InternalSequenceProperties.SOURCE_EXECUTIONS);
             if (executions != null) {
                 for (SequenceExecution execution : executions) {
-                    if (execution.getMessages().contains(message)) {
-                        double sourceYPos = message.getSourceYPos();
-                        if (execution.getPosition().y == 0) {
-                            execution.getPosition().y = sourceYPos;
-                            execution.getSize().y = 0;
-                        } else {
-                            if (sourceYPos < execution.getPosition().y) {
-                                if (message.getSource() != message.getTarget()) {
-                                    double diff = execution.getPosition().y - sourceYPos;
-                                    execution.getPosition().y = sourceYPos;
-                                    if (execution.getSize().y >= 0) {
-                                        execution.getSize().y += diff;
-                                    }
+                    double sourceYPos = message.getSourceYPos();
+                    if (execution.getPosition().y == 0) {
+                        execution.getPosition().y = sourceYPos;
+                        execution.getSize().y = 0;
+                    } else {
+                        if (sourceYPos < execution.getPosition().y) {
+                            if (message.getSource() != message.getTarget()) {
+                                double diff = execution.getPosition().y - sourceYPos;
+                                execution.getPosition().y = sourceYPos;
+                                if (execution.getSize().y >= 0) {
+                                    execution.getSize().y += diff;
                                 }
                             }
-                            if (sourceYPos > execution.getPosition().y + execution.getSize().y) {
-                                execution.getSize().y = sourceYPos - execution.getPosition().y;
-                            }
+                        }
+                        if (sourceYPos > execution.getPosition().y + execution.getSize().y) {
+                            execution.getSize().y = sourceYPos - execution.getPosition().y;
                         }
                     }
                 }
@@ -196,65 +236,69 @@ public final class PapyrusExporter implements ISequenceLayoutProcessor {
                 KPoint targetPoint = edgeLayout.getTargetPoint();
                 double reverseFactor = lifeline.getSize().y
                         / (diagramHeight + SequenceLayoutConstants.FOURTY);
-                targetPoint.setY((float)
+                writer.setY(edgeLayout, targetPoint, (float)
                         (SequenceLayoutConstants.TWENTY + message.getTargetYPos() * reverseFactor));
 
                 // Lost-messages end between its source and the next lifeline
                 if (message.getProperty(SequenceDiagramOptions.MESSAGE_TYPE) == MessageType.LOST) {
-                    targetPoint.setX((float) (lifeline.getPosition().x + lifeline.getSize().x 
-                            + context.lifelineSpacing / 2));
+                    writer.setX(edgeLayout, targetPoint, (float) (lifeline.getPosition().x
+                            + lifeline.getSize().x + context.lifelineSpacing / 2));
                 }
             }
 
             if (message.getSource() == message.getTarget()) {
                 // Specify bendpoints for selfloops
-                List<KPoint> bendPoints = edgeLayout.getBendPoints();
-                bendPoints.get(0).setX((float) (llCenter + context.messageSpacing / 2));
-                bendPoints.get(0).setY(edgeLayout.getSourcePoint().getY());
+                writer.setBendPointX(edgeLayout, 0, (float) (llCenter + context.messageSpacing / 2));
+                writer.setBendPointY(edgeLayout, 0, writer.getY(edgeLayout.getSourcePoint()));
             }
 
             // Walk through the labels and adjust their position
-            placeLabels(context, lifeline, factor, llCenter, message, edge);
+            placeLabels(context, lifeline, factor, llCenter, message, edge, writer);
         }
 
         // Handle incoming messages
         for (SMessage message : lifeline.getIncomingMessages()) {
             KEdge edge = (KEdge) message.getProperty(InternalProperties.ORIGIN);
             KEdgeLayout edgeLayout = edge.getData(KEdgeLayout.class);
+            if (context.layeringWarmStart) {
+                writer.setProperty(edgeLayout, SequenceDiagramOptions.MESSAGE_LAYER,
+                        message.getProperty(SequenceDiagramOptions.MESSAGE_LAYER));
+            }
             KPoint targetPoint = edgeLayout.getTargetPoint();
-            targetPoint.setX((float) (lifeline.getPosition().x + lifeline.getSize().x / 2));
-            targetPoint.setY((float) (message.getTargetYPos() * factor));
+            writer.setX(edgeLayout, targetPoint,
+                    (float) (lifeline.getPosition().x + lifeline.getSize().x / 2));
+            writer.setY(edgeLayout, targetPoint, (float) (message.getTargetYPos() * factor));
 
             if (message.getProperty(SequenceDiagramOptions.MESSAGE_TYPE) == MessageType.CREATE) {
                 // Reset x-position of create message because it leads to the header and not the line
-                targetPoint.setX((float) lifeline.getPosition().x);
+                writer.setX(edgeLayout, targetPoint, (float) lifeline.getPosition().x);
             } else if (message.getProperty(SequenceDiagramOptions.MESSAGE_TYPE) 
                     == MessageType.DELETE) {
                 // Reset y-position of delete message to end at the end of the lifeline
-                targetPoint.setY((float) ((lifeline.getPosition().y + lifeline.getSize().y 
-                        - context.lifelineHeader) * factor));
+                writer.setY(edgeLayout, targetPoint, (float) ((lifeline.getPosition().y
+                        + lifeline.getSize().y - context.lifelineHeader) * factor));
             }
 
             // Reset execution coordinates if the message is contained in an execution
+            List<SequenceExecution> executions = message.getProperty(
+                    InternalSequenceProperties.TARGET_EXECUTIONS);
             if (executions != null) {
                 for (SequenceExecution execution : executions) {
-                    if (execution.getMessages().contains(message)) {
-                        double targetYPos = message.getTargetYPos();
-                        if (execution.getPosition().y == 0) {
+                    double targetYPos = message.getTargetYPos();
+                    if (execution.getPosition().y == 0) {
+                        execution.getPosition().y = targetYPos;
+                        execution.getSize().y = 0;
+                    } else {
+                        if (targetYPos < execution.getPosition().y) {
+                            double diff = execution.getPosition().y - targetYPos;
                             execution.getPosition().y = targetYPos;
-                            execution.getSize().y = 0;
-                        } else {
-                            if (targetYPos < execution.getPosition().y) {
-                                double diff = execution.getPosition().y - targetYPos;
-                                execution.getPosition().y = targetYPos;
-                                if (execution.getSize().y >= 0) {
-                                    execution.getSize().y += diff;
-                                }
-                            }
-                            if (targetYPos > execution.getPosition().y + execution.getSize().y) {
-                                execution.getSize().y = targetYPos - execution.getPosition().y;
+                            if (execution.getSize().y >= 0) {
+                                execution.getSize().y += diff;
                             }
                         }
+                        if (targetYPos > execution.getPosition().y + execution.getSize().y) {
+                            execution.getSize().y = targetYPos - execution.getPosition().y;
+                        }
                     }
                 }
             }
@@ -264,20 +308,20 @@ public final class PapyrusExporter implements ISequenceLayoutProcessor {
                 KPoint sourcePoint = edgeLayout.getSourcePoint();
                 double reverseFactor = lifeline.getSize().y
                         / (diagramHeight + SequenceLayoutConstants.FOURTY);
-                sourcePoint.setY((float)
+                writer.setY(edgeLayout, sourcePoint, (float)
                         (SequenceLayoutConstants.TWENTY + message.getSourceYPos() * reverseFactor));
 
                 // Found-messages start between its source and the previous lifeline
                 if (message.getProperty(SequenceDiagramOptions.MESSAGE_TYPE) == MessageType.FOUND) {
-                    sourcePoint.setX((float) (lifeline.getPosition().x - context.lifelineSpacing / 2));
+                    writer.setX(edgeLayout, sourcePoint,
+                            (float) (lifeline.getPosition().x - context.lifelineSpacing / 2));
                 }
             }
 
             if (message.getSource() == message.getTarget()) {
                 // Specify bendpoints for selfloops
-                List<KPoint> bendPoints = edgeLayout.getBendPoints();
-                bendPoints.get(1).setX((float) (llCenter + context.messageSpacing / 2));
-                bendPoints.get(1).setY(edgeLayout.getTargetPoint().getY());
+                writer.setBendPointX(edgeLayout, 1, (float) (llCenter + context.messageSpacing / 2));
+                writer.setBendPointY(edgeLayout, 1, writer.getY(edgeLayout.getTargetPoint()));
             }
         }
     }
@@ -297,15 +341,23 @@ public final class PapyrusExporter implements ISequenceLayoutProcessor {
      *            the current message
      * @param edge
      *            the edge representation of the message
+     * @param writer
+     *            the writer that collects the computed coordinates
      */
     private void placeLabels(final LayoutContext context, final SLifeline lifeline,
-            final double factor, final double llCenter, final SMessage message, final KEdge edge) {
+            final double factor, final double llCenter, final SMessage message, final KEdge edge,
+            final LayoutDataWriter writer) {
+        
+        // Labels keep their old positions in draft quality
+        if (context.quality == LayoutQuality.DRAFT) {
+            return;
+        }
         
         for (KLabel label : edge.getLabels()) {
             KShapeLayout labelLayout = label.getData(KShapeLayout.class);
 
             // The index of the current lifeline in the ordered list of lifelines
-            int lifelineIndex = context.lifelineOrder.indexOf(lifeline);
+            int lifelineIndex = lifeline.getHorizontalSlot();
 
             if (message.getTarget().getHorizontalSlot() > lifeline.getHorizontalSlot()) {
                 // Message leads rightwards
@@ -313,31 +365,32 @@ public final class PapyrusExporter implements ISequenceLayoutProcessor {
                 case SOURCE_CENTER:
                     // If the lifeline is the last lifeline (lost message), fall through to SOURCE
                     // placement to avoid ArrayIndexOutOfBoundsException
-                    if (lifelineIndex + 1 < context.lifelineOrder.size()) {
+                    if (lifelineIndex + 1 < context.lifelinesBySlot.length) {
                         // Place labels centered between the source lifeline and its neighbored
                         // lifeline
-                        SLifeline nextLL = context.lifelineOrder.get(lifelineIndex + 1);
+                        SLifeline nextLL = context.lifelinesBySlot[lifelineIndex + 1];
                         double center = (llCenter + nextLL.getPosition().x + nextLL.getSize().x / 2) / 2;
-                        labelLayout.setXpos((float) (center - labelLayout.getWidth() / 2));
+                        writer.setXpos(labelLayout, (float) (center - labelLayout.getWidth() / 2));
                         break;
                     }
                 case SOURCE:
                     // Place labels near the source lifeline
-                    labelLayout.setXpos((float) llCenter + SequenceLayoutConstants.LABELSPACING);
+                    writer.setXpos(labelLayout, (float) llCenter + SequenceLayoutConstants.LABELSPACING);
                     break;
                 case CENTER:
                     // Place labels in the center of the message
                     double targetCenter = message.getTarget().getPosition().x
                             + message.getTarget().getSize().x / 2;
-                    labelLayout.setXpos((float) ((llCenter + targetCenter) / 2 - labelLayout
+                    writer.setXpos(labelLayout, (float) ((llCenter + targetCenter) / 2 - labelLayout
                             .getWidth() / 2));
                 }
                 // Create messages should not overlap the target's header
                 if (message.getProperty(SequenceDiagramOptions.MESSAGE_TYPE) == MessageType.CREATE) {
-                    labelLayout.setXpos((float) (llCenter + SequenceLayoutConstants.LABELSPACING));
+                    writer.setXpos(labelLayout,
+                            (float) (llCenter + SequenceLayoutConstants.LABELSPACING));
                 }
-                labelLayout.setYpos((float) ((message.getSourceYPos() - labelLayout.getHeight() - 2)
-                        * factor));
+                writer.setYpos(labelLayout,
+                        (float) ((message.getSourceYPos() - labelLayout.getHeight() - 2) * factor));
             } else if (message.getTarget().getHorizontalSlot() < lifeline.getHorizontalSlot()) {
                 // Message leads leftwards
                 switch (context.labelAlignment) {
@@ -347,39 +400,38 @@ public final class PapyrusExporter implements ISequenceLayoutProcessor {
                     if (lifelineIndex > 0) {
                         // Place labels centered between the source lifeline and its neighbored
                         // lifeline
-                        SLifeline lastLL = context.lifelineOrder.get(lifelineIndex - 1);
+                        SLifeline lastLL = context.lifelinesBySlot[lifelineIndex - 1];
                         double center = (llCenter + lastLL.getPosition().x + lastLL.getSize().x / 2) / 2;
-                        labelLayout.setXpos((float) (center - labelLayout.getWidth() / 2));
+                        writer.setXpos(labelLayout, (float) (center - labelLayout.getWidth() / 2));
                         break;
                     }
                 case SOURCE:
                     // Place labels near the source lifeline
-                    labelLayout.setXpos((float)
+                    writer.setXpos(labelLayout, (float)
                             (llCenter - labelLayout.getWidth() - SequenceLayoutConstants.LABELSPACING));
                     break;
                 case CENTER:
                     // Place labels in the center of the message
                     double targetCenter = message.getTarget().getPosition().x
                             + message.getTarget().getSize().x / 2;
-                    labelLayout.setXpos((float) ((llCenter + targetCenter) / 2 - labelLayout
+                    writer.setXpos(labelLayout, (float) ((llCenter + targetCenter) / 2 - labelLayout
                             .getWidth() / 2));
                 }
-                labelLayout.setYpos((float) ((message.getSourceYPos() + 2) * factor));
+                writer.setYpos(labelLayout, (float) ((message.getSourceYPos() + 2) * factor));
             } else {
                 // Message is selfloop
                 
                 // Place labels right of the selfloop
                 KEdgeLayout edgeLayout = edge.getData(KEdgeLayout.class);
                 double xPos;
-                if (edgeLayout.getBendPoints().size() > 0) {
-                    KPoint firstBend = edgeLayout.getBendPoints().get(0);
-                    xPos = firstBend.getX();
+                if (writer.getBendPointCount(edgeLayout) > 0) {
+                    xPos = writer.getBendPointX(edgeLayout, 0);
                 } else {
-                    xPos = edgeLayout.getSourcePoint().getX();
+                    xPos = writer.getX(edgeLayout.getSourcePoint());
                 }
-                labelLayout.setYpos((float)
+                writer.setYpos(labelLayout, (float)
                         ((message.getSourceYPos() + SequenceLayoutConstants.LABELSPACING) * factor));
-                labelLayout.setXpos((float)
+                writer.setXpos(labelLayout, (float)
                         (xPos + SequenceLayoutConstants.LABELMARGIN / 2));
             }
         }
@@ -392,22 +444,26 @@ public final class PapyrusExporter implements ISequenceLayoutProcessor {
      *            the layout context that contains all relevant information for the current layout run.
      * @param lifeline
      *            the lifeline, whose executions are placed
+     * @param writer
+     *            the writer that collects the computed coordinates
      */
-    private void applyExecutionCoordinates(final LayoutContext context, final SLifeline lifeline) {
+    private void applyExecutionCoordinates(final LayoutContext context, final SLifeline lifeline,
+            final LayoutDataWriter writer) {
+        
         List<SequenceExecution> executions = lifeline.getProperty(SequenceDiagramOptions.EXECUTIONS);
         if (executions == null) {
             return;
         }
 
         // Set xPos, maxXPos and height / maxYPos
-        arrangeExecutions(executions, lifeline.getSize().x);
+        arrangeExecutions(context, executions, lifeline.getSize().x);
 
         // Get the layout data of the execution
         KNode node = (KNode) lifeline.getProperty(InternalProperties.ORIGIN);
         KShapeLayout nodeLayout = node.getData(KShapeLayout.class);
 
         // Walk through the lifeline's executions
-        nodeLayout.setProperty(SequenceDiagramOptions.EXECUTIONS, executions);
+        writer.setProperty(nodeLayout, SequenceDiagramOptions.EXECUTIONS, executions);
         for (SequenceExecution execution : executions) {
             Object executionObj = execution.getOrigin();
 
@@ -421,10 +477,10 @@ public final class PapyrusExporter implements ISequenceLayoutProcessor {
                 // Apply calculated coordinates to the execution
                 KNode executionNode = (KNode) executionObj;
                 KShapeLayout shapelayout = executionNode.getData(KShapeLayout.class);
-                shapelayout.setXpos((float) execution.getPosition().x);
-                shapelayout.setYpos((float) (execution.getPosition().y - context.lifelineYPos));
-                shapelayout.setWidth((float) execution.getSize().x);
-                shapelayout.setHeight((float) execution.getSize().y);
+                writer.setXpos(shapelayout, (float) execution.getPosition().x);
+                writer.setYpos(shapelayout, (float) (execution.getPosition().y - context.lifelineYPos));
+                writer.setWidth(shapelayout, (float) execution.getSize().x);
+                writer.setHeight(shapelayout, (float) execution.getSize().y);
 
                 // Determine max and min y-pos of messages
                 double minYPos = lifeline.getSize().y;
@@ -475,36 +531,39 @@ public final class PapyrusExporter implements ISequenceLayoutProcessor {
                         double newXPos = lifeline.getPosition().x + execution.getPosition().x;
                         if (mess.getSource() == mess.getTarget()) {
                             // Selfloop: insert bend points
-                            edgeLayout.getBendPoints().get(0).setY(edgeLayout.getSourcePoint().getY());
-                            edgeLayout.getBendPoints().get(1).setY(edgeLayout.getTargetPoint().getY());
-                            edgeLayout.getTargetPoint().setX((float) (newXPos + execution.getSize().x));
-                            edgeLayout.getTargetPoint().setY(0);
+                            KPoint sourcePoint = edgeLayout.getSourcePoint();
+                            KPoint targetPoint = edgeLayout.getTargetPoint();
+                            writer.setBendPointY(edgeLayout, 0, writer.getY(sourcePoint));
+                            writer.setBendPointY(edgeLayout, 1, writer.getY(targetPoint));
+                            writer.setX(edgeLayout, targetPoint,
+                                    (float) (newXPos + execution.getSize().x));
+                            writer.setY(edgeLayout, targetPoint, 0);
                         } else if (mess.getSource() == lifeline) {
                             if (!toLeft) {
                                 newXPos += execution.getSize().x;
                             }
-                            edgeLayout.getSourcePoint().setX((float) newXPos);
+                            writer.setX(edgeLayout, edgeLayout.getSourcePoint(), (float) newXPos);
 
                             // Calculate the message's height relative to the execution
                             double relHeight = mess.getSourceYPos() - minYPos;
                             if (relHeight == 0) {
-                                edgeLayout.getSourcePoint().setY(0);
+                                writer.setY(edgeLayout, edgeLayout.getSourcePoint(), 0);
                             } else {
-                                edgeLayout.getSourcePoint().setY(
+                                writer.setY(edgeLayout, edgeLayout.getSourcePoint(),
                                         (float) (context.lifelineHeader + relHeight * executionFactor));
                             }
                         } else {
                             if (toLeft) {
                                 newXPos += execution.getSize().x;
                             }
-                            edgeLayout.getTargetPoint().setX((float) newXPos);
+                            writer.setX(edgeLayout, edgeLayout.getTargetPoint(), (float) newXPos);
 
                             // Calculate the message's height relative to the execution
                             double relHeight = mess.getTargetYPos() - minYPos;
                             if (relHeight == 0) {
-                                edgeLayout.getTargetPoint().setY(0);
+                                writer.setY(edgeLayout, edgeLayout.getTargetPoint(), 0);
                             } else {
-                                edgeLayout.getTargetPoint().setY(
+                                writer.setY(edgeLayout, edgeLayout.getTargetPoint(),
                                         (float) (context.lifelineHeader + relHeight * executionFactor));
                             }
                         }
@@ -517,12 +576,16 @@ public final class PapyrusExporter implements ISequenceLayoutProcessor {
     /**
      * Set x position and width of an execution and check for minimum height.
      * 
+     * @param context
+     *            the layout context that contains all relevant information for the current layout run.
      * @param executions
      *            List of {@link SequenceExecution} at the given {@link SLifeline}
      * @param parentWidth
      *            Width of the {@link SLifeline}
      */
-    private void arrangeExecutions(final List<SequenceExecution> executions, final double parentWidth) {
+    private void arrangeExecutions(final LayoutContext context,
+            final List<SequenceExecution> executions, final double parentWidth) {
+        
         final double minHeight = 20;
         final double executionWidth = 16;
 
@@ -537,24 +600,18 @@ public final class PapyrusExporter implements ISequenceLayoutProcessor {
             }
         }
 
-        if (executions.size() > 1) {
-            // reset xPos if execution is attached to another execution
-            for (SequenceExecution execution : executions) {
+        if (executions.size() > 1 && context.quality != LayoutQuality.DRAFT) {
+            // reset xPos if execution is attached to another execution; executions stay centered in
+            // draft quality
+            int[] slots = ExecutionNestingUtil.computeNestingSlots(executions, false);
+            for (int i = 0; i < executions.size(); i++) {
+                SequenceExecution execution = executions.get(i);
                 if (execution.getType() == SequenceExecutionType.DURATION
                         || execution.getType() == SequenceExecutionType.TIME_CONSTRAINT) {
                     continue;
                 }
                 
-                int pos = 0;
-                for (SequenceExecution otherExecution : executions) {
-                    if (execution != otherExecution) {
-                        if (execution.getPosition().y > otherExecution.getPosition().y
-                                && execution.getPosition().y + execution.getSize().y < otherExecution
-                                        .getPosition().y + otherExecution.getSize().y) {
-                            pos++;
-                        }
-                    }
-                }
+                int pos = slots[i];
                 if (pos > 0) {
                     execution.getPosition().x = execution.getPosition().x + pos * executionWidth
                             / 2;
@@ -582,12 +639,15 @@ public final class PapyrusExporter implements ISequenceLayoutProcessor {
      * 
      * @param graph
      *            the Sequence Graph
+     * @param writer
+     *            the writer that collects the computed coordinates
      */
-    private void placeComments(final SGraph graph) {
+    private void placeComments(final SGraph graph, final LayoutDataWriter writer) {
         for (SComment comment : graph.getComments()) {
             Object origin = comment.getProperty(InternalProperties.ORIGIN);
             KShapeLayout commentLayout = ((KNode) origin).getData(KShapeLayout.class);
-            commentLayout.setPos((float) comment.getPosition().x, (float) comment.getPosition().y);
+            writer.setPos(commentLayout, (float) comment.getPosition().x,
+                    (float) comment.getPosition().y);
             if (comment.getMessage() != null) {
                 // Connected comments
 
@@ -613,14 +673,16 @@ public final class PapyrusExporter implements ISequenceLayoutProcessor {
                     KPoint targetPoint = edgeLayout.getTargetPoint();
                     KPoint sourcePoint = edgeLayout.getSourcePoint();
                     edgeSourceYPos = comment.getPosition().y + comment.getSize().y;
-                    edgeTargetYPos = (targetPoint.getY() + sourcePoint.getY()) / 2;
+                    edgeTargetYPos = (writer.getY(targetPoint) + writer.getY(sourcePoint)) / 2;
                 }
 
                 // Apply connection coordinates to layout
                 KEdgeLayout edgelayout = comment.getProperty(
                         InternalSequenceProperties.COMMENT_CONNECTION).getData(KEdgeLayout.class);
-                edgelayout.getSourcePoint().setPos((float) edgeSourceXPos, (float) edgeSourceYPos);
-                edgelayout.getTargetPoint().setPos((float) edgeTargetXPos, (float) edgeTargetYPos);
+                writer.setPos(edgelayout, edgelayout.getSourcePoint(),
+                        (float) edgeSourceXPos, (float) edgeSourceYPos);
+                writer.setPos(edgelayout, edgelayout.getTargetPoint(),
+                        (float) edgeTargetXPos, (float) edgeTargetYPos);
             }
         }
     }
@@ -0,0 +1,146 @@
+/*
+ * KIELER - Kiel Integrated Environment for Layout Eclipse RichClient
+ * 
+ * http://www.informatik.uni-kiel.de/rtsys/kieler/
+ * 
+ * Copyright 2016 by
+ * + Kiel University
+ *   + Department of Computer Science
+ *     + Real-Time and Embedded Systems Group
+ * 
+ * This code is provided under the terms of the Eclipse Public License (EPL).
+ * See the file epl-v10.html for the license text.
+ */
+package de.cau.cs.kieler.papyrus.sequence.p6export;
+
+import java.util.Map;
+
+import org.eclipse.elk.core.klayoutdata.KEdgeLayout;
+import org.eclipse.elk.core.klayoutdata.KPoint;
+import org.eclipse.elk.core.klayoutdata.KShapeLayout;
+import org.eclipse.elk.graph.KNode;
+import org.eclipse.emf.ecore.EObject;
+
+import com.google.common.collect.Maps;
+
+import de.cau.cs.kieler.papyrus.sequence.LayoutContext;
+import de.cau.cs.kieler.papyrus.sequence.properties.SequenceDiagramOptions;
+
+/**
+ * The result of the refinement pass of a progressive layout. The refinement lays out a copy of the
+ * interaction in the background, so the original graph is not touched until the refined coordinates
+ * are applied to it by calling {@link #apply()}. This must happen on the thread that owns the graph.
+ * 
+ * <p>Elements that were added to the graph after the refinement was started are not laid out by it.
+ * If the graph was changed structurally in the meantime, the result should rather be discarded.</p>
+ * 
+ * @author cds
+ */
+public final class RefinedLayout {
+
+    /** The parent node of the original interaction. */
+    private final KNode parentNode;
+    /** The writer that holds the refined coordinates of the original graph's elements. */
+    private final LayoutDataWriter writer;
+
+
+    /**
+     * Use {@link #fromCopy(KNode, Map, LayoutContext)} to obtain a new instance.
+     * 
+     * @param parentNode
+     *            the parent node of the original interaction.
+     * @param writer
+     *            the writer that holds the refined coordinates.
+     */
+    private RefinedLayout(final KNode parentNode, final LayoutDataWriter writer) {
+        this.parentNode = parentNode;
+        this.writer = writer;
+    }
+
+    /**
+     * Collects the coordinates of a copy of the interaction that has been laid out. Only the copy's
+     * layout data are read; the original objects merely serve as keys that tell the writer where to
+     * put the coordinates. Since the original graph is neither read nor written, this can be called
+     * on a thread other than the one that owns it.
+     * 
+     * @param parentNode
+     *            the parent node of the original interaction.
+     * @param copies
+     *            map from the original interaction's objects to their copies, as created by the
+     *            copier that copied the interaction.
+     * @param context
+     *            the layout context of the layout run that laid out the copy.
+     * @return the refined layout.
+     */
+    public static RefinedLayout fromCopy(final KNode parentNode, final Map<EObject, EObject> copies,
+            final LayoutContext context) {
+
+        LayoutDataWriter writer = new LayoutDataWriter(context.deltaExport, context.deltaExportEpsilon);
+
+        // The writer needs the original edge points, which we find through their copies since
+        // asking the original edges for them would read the original graph
+        Map<KPoint, KPoint> originalPoints = Maps.newHashMap();
+        for (Map.Entry<EObject, EObject> entry : copies.entrySet()) {
+            if (entry.getKey() instanceof KPoint) {
+                originalPoints.put((KPoint) entry.getValue(), (KPoint) entry.getKey());
+            }
+        }
+
+        for (Map.Entry<EObject, EObject> entry : copies.entrySet()) {
+            if (entry.getKey() instanceof KShapeLayout) {
+                KShapeLayout layout = (KShapeLayout) entry.getKey();
+                KShapeLayout copyLayout = (KShapeLayout) entry.getValue();
+                writer.setPos(layout, copyLayout.getXpos(), copyLayout.getYpos());
+                writer.setWidth(layout, copyLayout.getWidth());
+                writer.setHeight(layout, copyLayout.getHeight());
+
+            } else if (entry.getKey() instanceof KEdgeLayout) {
+                KEdgeLayout edgeLayout = (KEdgeLayout) entry.getKey();
+                KEdgeLayout copyLayout = (KEdgeLayout) entry.getValue();
+                
+                KPoint copySourcePoint = copyLayout.getSourcePoint();
+                if (originalPoints.containsKey(copySourcePoint)) {
+                    writer.setPos(edgeLayout, originalPoints.get(copySourcePoint),
+                            copySourcePoint.getX(), copySourcePoint.getY());
+                }
+                KPoint copyTargetPoint = copyLayout.getTargetPoint();
+                if (originalPoints.containsKey(copyTargetPoint)) {
+                    writer.setPos(edgeLayout, originalPoints.get(copyTargetPoint),
+                            copyTargetPoint.getX(), copyTargetPoint.getY());
+                }
+
+                writer.clearBendPoints(edgeLayout);
+                for (KPoint bendPoint : copyLayout.getBendPoints()) {
+                    writer.addBendPoint(edgeLayout, bendPoint.getX(), bendPoint.getY());
+                }
+
+                // Later layout runs may start from the refined layering; only messages have one,
+                // comment connections don't and must not receive the property's default
+                Object messageLayer = copyLayout.getAllProperties().get(
+                        SequenceDiagramOptions.MESSAGE_LAYER);
+                if (messageLayer instanceof Integer) {
+                    writer.setProperty(edgeLayout, SequenceDiagramOptions.MESSAGE_LAYER,
+                            (Integer) messageLayer);
+                }
+            }
+        }
+
+        return new RefinedLayout(parentNode, writer);
+    }
+
+    /**
+     * Writes the refined coordinates to the original graph and reports how many elements have
+     * changed through the graph's {@link SequenceDiagramOptions#CHANGED_ELEMENTS} property. Must only
+     * be called once.
+     * 
+     * @return the number of shapes and edges whose layout data were changed.
+     */
+    public int apply() {
+        int changedElements = writer.apply();
+
+        KShapeLayout parentLayout = parentNode.getData(KShapeLayout.class);
+        parentLayout.setProperty(SequenceDiagramOptions.CHANGED_ELEMENTS, changedElements);
+        return changedElements;
+    }
+
+}
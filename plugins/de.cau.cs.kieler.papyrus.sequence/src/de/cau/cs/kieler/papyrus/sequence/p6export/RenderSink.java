@@ -0,0 +1,306 @@
+/*
+ * KIELER - Kiel Integrated Environment for Layout Eclipse RichClient
+ *
+ * http://www.informatik.uni-kiel.de/rtsys/kieler/
+ * 
+ * Copyright 2016 by
+ * + Kiel University
+ *   + Department of Computer Science
+ *     + Real-Time and Embedded Systems Group
+ * 
+ * This code is provided under the terms of the Eclipse Public License (EPL).
+ * See the file epl-v10.html for the license text.
+ */
+package de.cau.cs.kieler.papyrus.sequence.p6export;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import de.cau.cs.kieler.papyrus.sequence.properties.MessageType;
+import de.cau.cs.kieler.papyrus.sequence.properties.RenderFormat;
+import de.cau.cs.kieler.papyrus.sequence.properties.SequenceExecutionType;
+
+/**
+ * Receives the elements of a laid out diagram from the {@link SGraphRenderer} and streams them to a
+ * writer in a particular format. Elements are passed in sections, one section per kind of element,
+ * in the order of the {@link Section} constants. All coordinates are relative to the surrounding
+ * interaction.
+ * 
+ * @author cds
+ */
+abstract class RenderSink {
+
+    /**
+     * The sections the elements of a diagram are grouped in, in the order they are rendered in.
+     */
+    enum Section {
+        /** Interactions, combined fragments and their operands. */
+        AREAS,
+        /** Lifelines with their headers. */
+        LIFELINES,
+        /** Executions and constraints on lifelines. */
+        EXECUTIONS,
+        /** Destruction events at the end of lifelines. */
+        DESTRUCTIONS,
+        /** Messages. */
+        MESSAGES,
+        /** Labels of messages, areas and comments. */
+        LABELS,
+        /** Comments, constraints and observations. */
+        COMMENTS,
+        /** Connections between comments and the elements they are attached to. */
+        CONNECTIONS;
+    }
+
+    /** The writer the output is streamed to. */
+    private final Writer out;
+
+
+    /**
+     * Creates a new sink that writes to the given writer.
+     * 
+     * @param out
+     *            the writer to stream the output to.
+     */
+    RenderSink(final Writer out) {
+        this.out = out;
+    }
+
+    /**
+     * Creates a sink that writes to the given writer in the given format.
+     * 
+     * @param format
+     *            the format to write.
+     * @param out
+     *            the writer to stream the output to.
+     * @return the new sink.
+     */
+    static RenderSink create(final RenderFormat format, final Writer out) {
+        if (format == RenderFormat.JSON) {
+            return new JsonRenderSink(out);
+        } else {
+            return new SvgRenderSink(out);
+        }
+    }
+
+
+    /////////////////////////////////////////////////////////////////////////////////////////////////
+    // Structure
+
+    /**
+     * Starts the output of a diagram of the given size.
+     * 
+     * @param width
+     *            width of the diagram.
+     * @param height
+     *            height of the diagram.
+     * @throws IOException
+     *             if writing fails.
+     */
+    abstract void beginDiagram(double width, double height) throws IOException;
+
+    /**
+     * Finishes the output of the diagram.
+     * 
+     * @throws IOException
+     *             if writing fails.
+     */
+    abstract void endDiagram() throws IOException;
+
+    /**
+     * Starts a section of elements of the same kind.
+     * 
+     * @param section
+     *            the section.
+     * @throws IOException
+     *             if writing fails.
+     */
+    abstract void beginSection(Section section) throws IOException;
+
+    /**
+     * Finishes the current section.
+     * 
+     * @throws IOException
+     *             if writing fails.
+     */
+    abstract void endSection() throws IOException;
+
+
+    /////////////////////////////////////////////////////////////////////////////////////////////////
+    // Elements
+
+    /**
+     * Outputs an area.
+     * 
+     * @param x
+     *            x coordinate of the area.
+     * @param y
+     *            y coordinate of the area.
+     * @param width
+     *            width of the area.
+     * @param height
+     *            height of the area.
+     * @throws IOException
+     *             if writing fails.
+     */
+    abstract void area(double x, double y, double width, double height) throws IOException;
+
+    /**
+     * Outputs a lifeline.
+     * 
+     * @param name
+     *            the lifeline's name. May be {@code null}.
+     * @param x
+     *            x coordinate of the lifeline.
+     * @param y
+     *            y coordinate of the lifeline's header.
+     * @param width
+     *            width of the lifeline.
+     * @param height
+     *            height of the lifeline, including its header.
+     * @param headerHeight
+     *            height of the lifeline's header.
+     * @throws IOException
+     *             if writing fails.
+     */
+    abstract void lifeline(String name, double x, double y, double width, double height,
+            double headerHeight) throws IOException;
+
+    /**
+     * Outputs an execution.
+     * 
+     * @param type
+     *            the execution's type.
+     * @param x
+     *            x coordinate of the execution.
+     * @param y
+     *            y coordinate of the execution.
+     * @param width
+     *            width of the execution.
+     * @param height
+     *            height of the execution.
+     * @throws IOException
+     *             if writing fails.
+     */
+    abstract void execution(SequenceExecutionType type, double x, double y, double width,
+            double height) throws IOException;
+
+    /**
+     * Outputs a destruction event.
+     * 
+     * @param x
+     *            x coordinate of the destruction event.
+     * @param y
+     *            y coordinate of the destruction event.
+     * @param width
+     *            width of the destruction event.
+     * @param height
+     *            height of the destruction event.
+     * @throws IOException
+     *             if writing fails.
+     */
+    abstract void destruction(double x, double y, double width, double height) throws IOException;
+
+    /**
+     * Outputs a message.
+     * 
+     * @param type
+     *            the message's type.
+     * @param points
+     *            the points of the message's path from its source to its target, as alternating x and
+     *            y coordinates.
+     * @throws IOException
+     *             if writing fails.
+     */
+    abstract void message(MessageType type, double[] points) throws IOException;
+
+    /**
+     * Outputs a label.
+     * 
+     * @param text
+     *            the label's text. May be {@code null}.
+     * @param x
+     *            x coordinate of the label.
+     * @param y
+     *            y coordinate of the label.
+     * @param width
+     *            width of the label.
+     * @param height
+     *            height of the label.
+     * @throws IOException
+     *             if writing fails.
+     */
+    abstract void label(String text, double x, double y, double width, double height)
+            throws IOException;
+
+    /**
+     * Outputs a comment.
+     * 
+     * @param x
+     *            x coordinate of the comment.
+     * @param y
+     *            y coordinate of the comment.
+     * @param width
+     *            width of the comment.
+     * @param height
+     *            height of the comment.
+     * @throws IOException
+     *             if writing fails.
+     */
+    abstract void comment(double x, double y, double width, double height) throws IOException;
+
+    /**
+     * Outputs the connection of a comment to the element it is attached to.
+     * 
+     * @param x1
+     *            x coordinate of the connection's start.
+     * @param y1
+     *            y coordinate of the connection's start.
+     * @param x2
+     *            x coordinate of the connection's end.
+     * @param y2
+     *            y coordinate of the connection's end.
+     * @throws IOException
+     *             if writing fails.
+     */
+    abstract void connection(double x1, double y1, double x2, double y2) throws IOException;
+
+
+    /////////////////////////////////////////////////////////////////////////////////////////////////
+    // Utility Methods
+
+    /**
+     * Writes the given string to the output.
+     * 
+     * @param string
+     *            the string to write.
+     * @return this sink, for chaining.
+     * @throws IOException
+     *             if writing fails.
+     */
+    protected RenderSink write(final String string) throws IOException {
+        out.write(string);
+        return this;
+    }
+
+    /**
+     * Writes the given number to the output. Numbers are rounded to two decimal places, and integral
+     * numbers are written without any.
+     * 
+     * @param number
+     *            the number to write.
+     * @return this sink, for chaining.
+     * @throws IOException
+     *             if writing fails.
+     */
+    protected RenderSink write(final double number) throws IOException {
+        long hundredths = Math.round(number * 100);
+        if (hundredths % 100 == 0) {
+            out.write(Long.toString(hundredths / 100));
+        } else {
+            out.write(Double.toString(hundredths / 100.0));
+        }
+        return this;
+    }
+
+}
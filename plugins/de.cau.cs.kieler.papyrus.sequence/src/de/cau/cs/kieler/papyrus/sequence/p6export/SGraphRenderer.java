@@ -0,0 +1,464 @@
+/*
+ * KIELER - Kiel Integrated Environment for Layout Eclipse RichClient
+ *
+ * http://www.informatik.uni-kiel.de/rtsys/kieler/
+ * 
+ * Copyright 2016 by
+ * + Kiel University
+ *   + Department of Computer Science
+ *     + Real-Time and Embedded Systems Group
+ * 
+ * This code is provided under the terms of the Eclipse Public License (EPL).
+ * See the file epl-v10.html for the license text.
+ */
+package de.cau.cs.kieler.papyrus.sequence.p6export;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.eclipse.elk.alg.layered.properties.InternalProperties;
+import org.eclipse.elk.core.klayoutdata.KEdgeLayout;
+import org.eclipse.elk.core.klayoutdata.KShapeLayout;
+import org.eclipse.elk.core.math.KVector;
+import org.eclipse.elk.core.util.IElkProgressMonitor;
+import org.eclipse.elk.core.util.WrappedException;
+import org.eclipse.elk.graph.KEdge;
+import org.eclipse.elk.graph.KLabel;
+import org.eclipse.elk.graph.KNode;
+
+import com.google.common.collect.Lists;
+
+import de.cau.cs.kieler.papyrus.sequence.ISequenceLayoutProcessor;
+import de.cau.cs.kieler.papyrus.sequence.LayoutContext;
+import de.cau.cs.kieler.papyrus.sequence.graph.SComment;
+import de.cau.cs.kieler.papyrus.sequence.graph.SLifeline;
+import de.cau.cs.kieler.papyrus.sequence.graph.SMessage;
+import de.cau.cs.kieler.papyrus.sequence.p6export.RenderSink.Section;
+import de.cau.cs.kieler.papyrus.sequence.properties.InternalSequenceProperties;
+import de.cau.cs.kieler.papyrus.sequence.properties.LayoutQuality;
+import de.cau.cs.kieler.papyrus.sequence.properties.SequenceArea;
+import de.cau.cs.kieler.papyrus.sequence.properties.SequenceDiagramOptions;
+import de.cau.cs.kieler.papyrus.sequence.properties.SequenceExecution;
+
+/**
+ * Writes the layout results to the render target as an SVG image or JSON geometry description instead
+ * of applying them to the original KGraph. The coordinates are computed just like the
+ * {@link KGraphExporter} computes them, but are never written to the KGraph's layout data. The output
+ * is streamed to the render target while the diagram is traversed.
+ * 
+ * @author cds
+ */
+public final class SGraphRenderer implements ISequenceLayoutProcessor {
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void process(final LayoutContext context, final IElkProgressMonitor progressMonitor) {
+        progressMonitor.begin("Rendering Layout Results", 1);
+
+        // Compute the final coordinates without applying them
+        LayoutDataWriter layout = new KGraphExporter().computeLayout(context);
+
+        RenderSink sink = RenderSink.create(context.renderFormat, context.renderTarget);
+
+        try {
+            KVector graphSize = context.sgraph.getSize();
+            sink.beginDiagram(graphSize.x, graphSize.y);
+
+            renderAreas(context, layout, sink);
+            renderLifelines(context, layout, sink);
+            renderExecutions(context, layout, sink);
+            renderDestructions(context, layout, sink);
+            renderMessages(context, layout, sink);
+            
+            if (context.quality == LayoutQuality.DRAFT) {
+                // Labels and comments were not placed in draft quality, so they are left out
+                sink.beginSection(Section.LABELS);
+                sink.endSection();
+                sink.beginSection(Section.COMMENTS);
+                sink.endSection();
+                sink.beginSection(Section.CONNECTIONS);
+                sink.endSection();
+            } else {
+                renderLabels(context, layout, sink);
+                renderComments(context, layout, sink);
+                renderConnections(context, layout, sink);
+            }
+
+            sink.endDiagram();
+            context.renderTarget.flush();
+        } catch (IOException exception) {
+            throw new WrappedException(exception, "Could not write the rendered diagram.");
+        }
+
+        progressMonitor.done();
+    }
+
+
+    /////////////////////////////////////////////////////////////////////////////////////////////////
+    // Sections
+
+    /**
+     * Renders the areas and their operands. The coordinates of areas were already computed by the
+     * coordinate calculator. Operands are placed relative to their area.
+     * 
+     * @param context
+     *            the layout context that contains all relevant information for the current layout run.
+     * @param layout
+     *            the computed coordinates.
+     * @param sink
+     *            the sink to render to.
+     * @throws IOException
+     *             if writing fails.
+     */
+    private void renderAreas(final LayoutContext context, final LayoutDataWriter layout,
+            final RenderSink sink) throws IOException {
+
+        sink.beginSection(Section.AREAS);
+
+        List<SequenceArea> areas = context.sgraph.getProperty(SequenceDiagramOptions.AREAS);
+        if (areas != null) {
+            for (SequenceArea area : areas) {
+                KShapeLayout areaLayout = area.getLayoutNode().getData(KShapeLayout.class);
+                float areaX = layout.getXpos(areaLayout);
+                float areaY = layout.getYpos(areaLayout);
+                sink.area(areaX, areaY, layout.getWidth(areaLayout), layout.getHeight(areaLayout));
+
+                for (SequenceArea subArea : area.getSubAreas()) {
+                    KShapeLayout subAreaLayout = subArea.getLayoutNode().getData(KShapeLayout.class);
+                    sink.area(areaX + layout.getXpos(subAreaLayout),
+                            areaY + layout.getYpos(subAreaLayout),
+                            layout.getWidth(subAreaLayout),
+                            layout.getHeight(subAreaLayout));
+                }
+            }
+        }
+
+        sink.endSection();
+    }
+
+    /**
+     * Renders the lifelines.
+     * 
+     * @param context
+     *            the layout context that contains all relevant information for the current layout run.
+     * @param layout
+     *            the computed coordinates.
+     * @param sink
+     *            the sink to render to.
+     * @throws IOException
+     *             if writing fails.
+     */
+    private void renderLifelines(final LayoutContext context, final LayoutDataWriter layout,
+            final RenderSink sink) throws IOException {
+
+        sink.beginSection(Section.LIFELINES);
+
+        for (SLifeline lifeline : context.lifelineOrder) {
+            if (!lifeline.isDummy()) {
+                KShapeLayout nodeLayout = lifelineLayout(lifeline);
+                sink.lifeline(lifeline.getName(),
+                        layout.getXpos(nodeLayout), layout.getYpos(nodeLayout),
+                        layout.getWidth(nodeLayout), layout.getHeight(nodeLayout),
+                        context.lifelineHeader);
+            }
+        }
+
+        sink.endSection();
+    }
+
+    /**
+     * Renders the executions of all lifelines. Executions are placed relative to their lifeline.
+     * 
+     * @param context
+     *            the layout context that contains all relevant information for the current layout run.
+     * @param layout
+     *            the computed coordinates.
+     * @param sink
+     *            the sink to render to.
+     * @throws IOException
+     *             if writing fails.
+     */
+    private void renderExecutions(final LayoutContext context, final LayoutDataWriter layout,
+            final RenderSink sink) throws IOException {
+
+        sink.beginSection(Section.EXECUTIONS);
+
+        for (SLifeline lifeline : context.lifelineOrder) {
+            List<SequenceExecution> executions = lifeline.getProperty(
+                    SequenceDiagramOptions.EXECUTIONS);
+            if (lifeline.isDummy() || executions == null) {
+                continue;
+            }
+
+            KShapeLayout nodeLayout = lifelineLayout(lifeline);
+            for (SequenceExecution execution : executions) {
+                KShapeLayout executionLayout = execution.getOrigin().getData(KShapeLayout.class);
+                sink.execution(execution.getType(),
+                        layout.getXpos(nodeLayout) + layout.getXpos(executionLayout),
+                        layout.getYpos(nodeLayout) + layout.getYpos(executionLayout),
+                        layout.getWidth(executionLayout),
+                        layout.getHeight(executionLayout));
+            }
+        }
+
+        sink.endSection();
+    }
+
+    /**
+     * Renders the destruction events of all lifelines. Destruction events are placed relative to
+     * their lifeline.
+     * 
+     * @param context
+     *            the layout context that contains all relevant information for the current layout run.
+     * @param layout
+     *            the computed coordinates.
+     * @param sink
+     *            the sink to render to.
+     * @throws IOException
+     *             if writing fails.
+     */
+    private void renderDestructions(final LayoutContext context, final LayoutDataWriter layout,
+            final RenderSink sink) throws IOException {
+
+        sink.beginSection(Section.DESTRUCTIONS);
+
+        for (SLifeline lifeline : context.lifelineOrder) {
+            KNode destruction = lifeline.getProperty(SequenceDiagramOptions.DESTRUCTION_NODE);
+            if (lifeline.isDummy() || destruction == null) {
+                continue;
+            }
+
+            KShapeLayout nodeLayout = lifelineLayout(lifeline);
+            KShapeLayout destructionLayout = destruction.getData(KShapeLayout.class);
+            sink.destruction(
+                    layout.getXpos(nodeLayout) + layout.getXpos(destructionLayout),
+                    layout.getYpos(nodeLayout) + layout.getYpos(destructionLayout),
+                    layout.getWidth(destructionLayout),
+                    layout.getHeight(destructionLayout));
+        }
+
+        sink.endSection();
+    }
+
+    /**
+     * Renders all messages, including the bend points of self loops.
+     * 
+     * @param context
+     *            the layout context that contains all relevant information for the current layout run.
+     * @param layout
+     *            the computed coordinates.
+     * @param sink
+     *            the sink to render to.
+     * @throws IOException
+     *             if writing fails.
+     */
+    private void renderMessages(final LayoutContext context, final LayoutDataWriter layout,
+            final RenderSink sink) throws IOException {
+
+        sink.beginSection(Section.MESSAGES);
+
+        for (SMessage message : collectMessages(context)) {
+            KEdgeLayout edgeLayout = messageEdge(message).getData(KEdgeLayout.class);
+            int bendPointCount = layout.getBendPointCount(edgeLayout);
+
+            double[] points = new double[2 * bendPointCount + 4];
+            points[0] = layout.getX(edgeLayout.getSourcePoint());
+            points[1] = layout.getY(edgeLayout.getSourcePoint());
+            for (int i = 0; i < bendPointCount; i++) {
+                points[2 * i + 2] = layout.getBendPointX(edgeLayout, i);
+                points[2 * i + 3] = layout.getBendPointY(edgeLayout, i);
+            }
+            points[points.length - 2] = layout.getX(edgeLayout.getTargetPoint());
+            points[points.length - 1] = layout.getY(edgeLayout.getTargetPoint());
+
+            sink.message(message.getProperty(SequenceDiagramOptions.MESSAGE_TYPE), points);
+        }
+
+        sink.endSection();
+    }
+
+    /**
+     * Renders the labels of messages, areas and comments. Message labels are placed relative to the
+     * surrounding interaction, the other labels relative to the element they belong to.
+     * 
+     * @param context
+     *            the layout context that contains all relevant information for the current layout run.
+     * @param layout
+     *            the computed coordinates.
+     * @param sink
+     *            the sink to render to.
+     * @throws IOException
+     *             if writing fails.
+     */
+    private void renderLabels(final LayoutContext context, final LayoutDataWriter layout,
+            final RenderSink sink) throws IOException {
+
+        sink.beginSection(Section.LABELS);
+
+        for (SMessage message : collectMessages(context)) {
+            renderLabels(messageEdge(message).getLabels(), 0, 0, layout, sink);
+        }
+
+        List<SequenceArea> areas = context.sgraph.getProperty(SequenceDiagramOptions.AREAS);
+        if (areas != null) {
+            for (SequenceArea area : areas) {
+                KNode areaNode = area.getLayoutNode();
+                KShapeLayout areaLayout = areaNode.getData(KShapeLayout.class);
+                renderLabels(areaNode.getLabels(),
+                        layout.getXpos(areaLayout), layout.getYpos(areaLayout), layout, sink);
+            }
+        }
+
+        for (SComment comment : context.sgraph.getComments()) {
+            KNode commentNode = (KNode) comment.getProperty(InternalProperties.ORIGIN);
+            KShapeLayout commentLayout = commentNode.getData(KShapeLayout.class);
+            renderLabels(commentNode.getLabels(),
+                    layout.getXpos(commentLayout), layout.getYpos(commentLayout), layout, sink);
+        }
+
+        sink.endSection();
+    }
+
+    /**
+     * Renders the given labels, offset by the given amount.
+     * 
+     * @param labels
+     *            the labels to render.
+     * @param offsetX
+     *            the amount to add to the labels' x coordinates.
+     * @param offsetY
+     *            the amount to add to the labels' y coordinates.
+     * @param layout
+     *            the computed coordinates.
+     * @param sink
+     *            the sink to render to.
+     * @throws IOException
+     *             if writing fails.
+     */
+    private void renderLabels(final List<KLabel> labels, final double offsetX, final double offsetY,
+            final LayoutDataWriter layout, final RenderSink sink) throws IOException {
+
+        for (KLabel label : labels) {
+            KShapeLayout labelLayout = label.getData(KShapeLayout.class);
+            sink.label(label.getText(),
+                    offsetX + layout.getXpos(labelLayout), offsetY + layout.getYpos(labelLayout),
+                    layout.getWidth(labelLayout), layout.getHeight(labelLayout));
+        }
+    }
+
+    /**
+     * Renders the comments.
+     * 
+     * @param context
+     *            the layout context that contains all relevant information for the current layout run.
+     * @param layout
+     *            the computed coordinates.
+     * @param sink
+     *            the sink to render to.
+     * @throws IOException
+     *             if writing fails.
+     */
+    private void renderComments(final LayoutContext context, final LayoutDataWriter layout,
+            final RenderSink sink) throws IOException {
+
+        sink.beginSection(Section.COMMENTS);
+
+        for (SComment comment : context.sgraph.getComments()) {
+            KNode commentNode = (KNode) comment.getProperty(InternalProperties.ORIGIN);
+            KShapeLayout commentLayout = commentNode.getData(KShapeLayout.class);
+            sink.comment(layout.getXpos(commentLayout), layout.getYpos(commentLayout),
+                    layout.getWidth(commentLayout), layout.getHeight(commentLayout));
+        }
+
+        sink.endSection();
+    }
+
+    /**
+     * Renders the connections of comments that are attached to other elements.
+     * 
+     * @param context
+     *            the layout context that contains all relevant information for the current layout run.
+     * @param layout
+     *            the computed coordinates.
+     * @param sink
+     *            the sink to render to.
+     * @throws IOException
+     *             if writing fails.
+     */
+    private void renderConnections(final LayoutContext context, final LayoutDataWriter layout,
+            final RenderSink sink) throws IOException {
+
+        sink.beginSection(Section.CONNECTIONS);
+
+        for (SComment comment : context.sgraph.getComments()) {
+            // Only comments attached to messages have their connection placed
+            if (comment.getMessage() != null) {
+                KEdgeLayout connectionLayout = comment.getProperty(
+                        InternalSequenceProperties.COMMENT_CONNECTION).getData(KEdgeLayout.class);
+                sink.connection(
+                        layout.getX(connectionLayout.getSourcePoint()),
+                        layout.getY(connectionLayout.getSourcePoint()),
+                        layout.getX(connectionLayout.getTargetPoint()),
+                        layout.getY(connectionLayout.getTargetPoint()));
+            }
+        }
+
+        sink.endSection();
+    }
+
+
+    /////////////////////////////////////////////////////////////////////////////////////////////////
+    // Utility Methods
+
+    /**
+     * Collects all messages of the diagram. Each message is collected as an outgoing message of its
+     * source lifeline, except for found messages, whose dummy source lifelines are not part of the
+     * SGraph.
+     *
+     * @param context
+     *            the layout context that contains all relevant information for the current layout run.
+     * @return list of all messages.
+     */
+    static List<SMessage> collectMessages(final LayoutContext context) {
+        List<SMessage> messages = Lists.newArrayList();
+
+        for (SLifeline lifeline : context.sgraph.getLifelines()) {
+            for (SMessage message : lifeline.getOutgoingMessages()) {
+                messages.add(message);
+            }
+
+            for (SMessage message : lifeline.getIncomingMessages()) {
+                if (message.getSource().isDummy()) {
+                    messages.add(message);
+                }
+            }
+        }
+
+        return messages;
+    }
+
+    /**
+     * Returns the layout data of the node that represents the given lifeline.
+     * 
+     * @param lifeline
+     *            a non-dummy lifeline.
+     * @return the lifeline's layout data.
+     */
+    private KShapeLayout lifelineLayout(final SLifeline lifeline) {
+        return ((KNode) lifeline.getProperty(InternalProperties.ORIGIN)).getData(KShapeLayout.class);
+    }
+
+    /**
+     * Returns the edge that represents the given message.
+     * 
+     * @param message
+     *            the message.
+     * @return the message's edge.
+     */
+    private KEdge messageEdge(final SMessage message) {
+        return (KEdge) message.getProperty(InternalProperties.ORIGIN);
+    }
+
+}
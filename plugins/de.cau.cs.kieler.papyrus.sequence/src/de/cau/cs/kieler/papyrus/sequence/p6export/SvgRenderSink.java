@@ -0,0 +1,289 @@
+/*
+ * KIELER - Kiel Integrated Environment for Layout Eclipse RichClient
+ *
+ * http://www.informatik.uni-kiel.de/rtsys/kieler/
+ * 
+ * Copyright 2016 by
+ * + Kiel University
+ *   + Department of Computer Science
+ *     + Real-Time and Embedded Systems Group
+ * 
+ * This code is provided under the terms of the Eclipse Public License (EPL).
+ * See the file epl-v10.html for the license text.
+ */
+package de.cau.cs.kieler.papyrus.sequence.p6export;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import de.cau.cs.kieler.papyrus.sequence.properties.MessageType;
+import de.cau.cs.kieler.papyrus.sequence.properties.SequenceExecutionType;
+
+/**
+ * Streams a diagram as an SVG image. Each section becomes a group whose class is the section's name
+ * in lower case, and the elements are styled through an embedded style sheet.
+ * 
+ * @author cds
+ */
+final class SvgRenderSink extends RenderSink {
+
+    /** The style sheet embedded into the image. */
+    private static final String STYLE =
+            "rect,path{fill:none;stroke:#000}"
+            + ".areas rect{stroke:#666}"
+            + ".lifelines rect,.executions rect,.comments rect{fill:#fff}"
+            + ".lifelines line{stroke:#000;stroke-dasharray:4 3}"
+            + ".executions .constraint{fill:none;stroke-dasharray:2 2}"
+            + ".messages polyline{fill:none;stroke:#000}"
+            + ".messages .reply{stroke-dasharray:6 3}"
+            + ".connections line{stroke:#666;stroke-dasharray:2 2}"
+            + "text{font:10px sans-serif}";
+
+
+    /**
+     * Creates a new sink that writes to the given writer.
+     * 
+     * @param out
+     *            the writer to stream the image to.
+     */
+    SvgRenderSink(final Writer out) {
+        super(out);
+    }
+
+
+    /////////////////////////////////////////////////////////////////////////////////////////////////
+    // Structure
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    void beginDiagram(final double width, final double height) throws IOException {
+        write("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"").write(width)
+                .write("\" height=\"").write(height)
+                .write("\" viewBox=\"0 0 ").write(width).write(" ").write(height).write("\">\n");
+        write("<style>").write(STYLE).write("</style>\n");
+
+        // Synchronous messages end in a filled arrow head, all others in an open one
+        write("<defs>");
+        write("<marker id=\"filled\" viewBox=\"0 0 10 10\" refX=\"10\" refY=\"5\" markerWidth=\"8\" "
+                + "markerHeight=\"8\" orient=\"auto\"><path d=\"M0,0L10,5L0,10z\" "
+                + "style=\"fill:#000\"/></marker>");
+        write("<marker id=\"open\" viewBox=\"0 0 10 10\" refX=\"10\" refY=\"5\" markerWidth=\"8\" "
+                + "markerHeight=\"8\" orient=\"auto\"><path d=\"M0,0L10,5L0,10\"/></marker>");
+        write("</defs>\n");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    void endDiagram() throws IOException {
+        write("</svg>\n");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    void beginSection(final Section section) throws IOException {
+        write("<g class=\"").write(section.name().toLowerCase()).write("\">\n");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    void endSection() throws IOException {
+        write("</g>\n");
+    }
+
+
+    /////////////////////////////////////////////////////////////////////////////////////////////////
+    // Elements
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    void area(final double x, final double y, final double width, final double height)
+            throws IOException {
+
+        rect(null, x, y, width, height);
+        write("\n");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    void lifeline(final String name, final double x, final double y, final double width,
+            final double height, final double headerHeight) throws IOException {
+
+        double center = x + width / 2;
+        write("<line x1=\"").write(center).write("\" y1=\"").write(y + headerHeight)
+                .write("\" x2=\"").write(center).write("\" y2=\"").write(y + height).write("\"/>");
+        rect(null, x, y, width, headerHeight);
+
+        if (name != null) {
+            write("<text x=\"").write(center).write("\" y=\"").write(y + headerHeight / 2)
+                    .write("\" text-anchor=\"middle\" dominant-baseline=\"central\">");
+            text(name);
+            write("</text>");
+        }
+        write("\n");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    void execution(final SequenceExecutionType type, final double x, final double y,
+            final double width, final double height) throws IOException {
+
+        rect(type == SequenceExecutionType.EXECUTION ? null : "constraint", x, y, width, height);
+        write("\n");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    void destruction(final double x, final double y, final double width, final double height)
+            throws IOException {
+
+        // Destruction events are drawn as a cross
+        write("<path d=\"M").write(x).write(",").write(y)
+                .write("L").write(x + width).write(",").write(y + height)
+                .write("M").write(x + width).write(",").write(y)
+                .write("L").write(x).write(",").write(y + height).write("\"/>\n");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    void message(final MessageType type, final double[] points) throws IOException {
+        if (type == MessageType.REPLY) {
+            write("<polyline class=\"reply\" points=\"");
+        } else {
+            write("<polyline points=\"");
+        }
+
+        for (int i = 0; i < points.length; i += 2) {
+            if (i > 0) {
+                write(" ");
+            }
+            write(points[i]).write(",").write(points[i + 1]);
+        }
+
+        write("\" marker-end=\"url(#").write(type == MessageType.SYNCHRONOUS ? "filled" : "open")
+                .write(")\"/>\n");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    void label(final String text, final double x, final double y, final double width,
+            final double height) throws IOException {
+
+        if (text == null || text.isEmpty()) {
+            return;
+        }
+
+        write("<text x=\"").write(x).write("\" y=\"").write(y + height / 2)
+                .write("\" dominant-baseline=\"central\">");
+        text(text);
+        write("</text>\n");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    void comment(final double x, final double y, final double width, final double height)
+            throws IOException {
+
+        rect(null, x, y, width, height);
+        write("\n");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    void connection(final double x1, final double y1, final double x2, final double y2)
+            throws IOException {
+
+        write("<line x1=\"").write(x1).write("\" y1=\"").write(y1)
+                .write("\" x2=\"").write(x2).write("\" y2=\"").write(y2).write("\"/>\n");
+    }
+
+
+    /////////////////////////////////////////////////////////////////////////////////////////////////
+    // Utility Methods
+
+    /**
+     * Writes a rectangle.
+     * 
+     * @param styleClass
+     *            the rectangle's style class, or {@code null} if it doesn't need one.
+     * @param x
+     *            x coordinate of the rectangle.
+     * @param y
+     *            y coordinate of the rectangle.
+     * @param width
+     *            width of the rectangle.
+     * @param height
+     *            height of the rectangle.
+     * @throws IOException
+     *             if writing fails.
+     */
+    private void rect(final String styleClass, final double x, final double y, final double width,
+            final double height) throws IOException {
+
+        write("<rect ");
+        if (styleClass != null) {
+            write("class=\"").write(styleClass).write("\" ");
+        }
+        write("x=\"").write(x).write("\" y=\"").write(y)
+                .write("\" width=\"").write(width).write("\" height=\"").write(height).write("\"/>");
+    }
+
+    /**
+     * Writes the given text, escaping characters that have a special meaning in XML and dropping
+     * control characters, which XML doesn't allow.
+     * 
+     * @param text
+     *            the text to write.
+     * @throws IOException
+     *             if writing fails.
+     */
+    private void text(final String text) throws IOException {
+        StringBuilder escaped = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+            case '<':
+                escaped.append("&lt;");
+                break;
+            case '>':
+                escaped.append("&gt;");
+                break;
+            case '&':
+                escaped.append("&amp;");
+                break;
+            case '"':
+                escaped.append("&quot;");
+                break;
+            default:
+                if (c >= ' ' || c == '\t' || c == '\n' || c == '\r') {
+                    escaped.append(c);
+                }
+            }
+        }
+        write(escaped.toString());
+    }
+
+}
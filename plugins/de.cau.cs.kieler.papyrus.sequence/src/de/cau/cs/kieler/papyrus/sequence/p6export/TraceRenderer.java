@@ -0,0 +1,256 @@
+/*
+ * KIELER - Kiel Integrated Environment for Layout Eclipse RichClient
+ *
+ * http://www.informatik.uni-kiel.de/rtsys/kieler/
+ * 
+ * Copyright 2016 by
+ * + Kiel University
+ *   + Department of Computer Science
+ *     + Real-Time and Embedded Systems Group
+ * 
+ * This code is provided under the terms of the Eclipse Public License (EPL).
+ * See the file epl-v10.html for the license text.
+ */
+package de.cau.cs.kieler.papyrus.sequence.p6export;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+import org.eclipse.elk.core.util.IElkProgressMonitor;
+import org.eclipse.elk.core.util.WrappedException;
+
+import de.cau.cs.kieler.papyrus.sequence.ISequenceLayoutProcessor;
+import de.cau.cs.kieler.papyrus.sequence.LayoutContext;
+import de.cau.cs.kieler.papyrus.sequence.SequenceLayoutConstants;
+import de.cau.cs.kieler.papyrus.sequence.graph.SLifeline;
+import de.cau.cs.kieler.papyrus.sequence.graph.SMessage;
+import de.cau.cs.kieler.papyrus.sequence.p6export.RenderSink.Section;
+import de.cau.cs.kieler.papyrus.sequence.properties.InternalSequenceProperties;
+import de.cau.cs.kieler.papyrus.sequence.properties.LayoutQuality;
+import de.cau.cs.kieler.papyrus.sequence.properties.MessageType;
+import de.cau.cs.kieler.papyrus.sequence.properties.SequenceDiagramOptions;
+
+/**
+ * Writes the layout of an interaction imported from a trace to the render target. Traces have no
+ * KGraph the {@link KGraphExporter} could compute coordinates for, so the coordinates are derived
+ * directly from the SGraph here. Traces consist of lifelines and messages only, which makes this a lot
+ * simpler: messages connect the centers of their lifelines, and labels are always placed near their
+ * message's source.
+ * 
+ * @author cds
+ */
+public final class TraceRenderer implements ISequenceLayoutProcessor {
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void process(final LayoutContext context, final IElkProgressMonitor progressMonitor) {
+        progressMonitor.begin("Rendering Trace", 1);
+
+        adjustLifelineExtents(context);
+        List<SMessage> messages = SGraphRenderer.collectMessages(context);
+
+        // Labels of messages that leave the last lifeline may stick out of the diagram; labels are
+        // left out in draft quality
+        boolean draft = context.quality == LayoutQuality.DRAFT;
+        double width = context.sgraph.getSize().x;
+        for (SMessage message : messages) {
+            if (!draft && message.getProperty(InternalSequenceProperties.MESSAGE_LABEL) != null) {
+                double[] labelBox = labelBox(context, message, messagePoints(context, message));
+                width = Math.max(width, labelBox[0] + labelBox[2] + context.borderSpacing);
+            }
+        }
+
+        // Windows may each be written to a target of their own
+        Writer target = context.renderTarget;
+        if (context.traceWindowSize > 0 && context.traceWindowTargets != null) {
+            target = context.traceWindowTargets.apply(context.traceWindowIndex);
+        }
+        RenderSink sink = RenderSink.create(context.renderFormat, target);
+
+        try {
+            sink.beginDiagram(width, context.sgraph.getSize().y);
+
+            // Traces don't have areas
+            sink.beginSection(Section.AREAS);
+            sink.endSection();
+
+            sink.beginSection(Section.LIFELINES);
+            for (SLifeline lifeline : context.lifelineOrder) {
+                if (!lifeline.isDummy()) {
+                    sink.lifeline(lifeline.getName(),
+                            lifeline.getPosition().x, lifeline.getPosition().y,
+                            lifeline.getSize().x, lifeline.getSize().y,
+                            context.lifelineHeader);
+                }
+            }
+            sink.endSection();
+
+            // Traces don't have executions or destructions either
+            sink.beginSection(Section.EXECUTIONS);
+            sink.endSection();
+            sink.beginSection(Section.DESTRUCTIONS);
+            sink.endSection();
+
+            sink.beginSection(Section.MESSAGES);
+            for (SMessage message : messages) {
+                sink.message(message.getProperty(SequenceDiagramOptions.MESSAGE_TYPE),
+                        messagePoints(context, message));
+            }
+            sink.endSection();
+
+            sink.beginSection(Section.LABELS);
+            for (SMessage message : messages) {
+                String label = message.getProperty(InternalSequenceProperties.MESSAGE_LABEL);
+                if (!draft && label != null) {
+                    double[] labelBox = labelBox(context, message, messagePoints(context, message));
+                    sink.label(label, labelBox[0], labelBox[1], labelBox[2], labelBox[3]);
+                }
+            }
+            sink.endSection();
+
+            // ...nor comments
+            sink.beginSection(Section.COMMENTS);
+            sink.endSection();
+            sink.beginSection(Section.CONNECTIONS);
+            sink.endSection();
+
+            sink.endDiagram();
+            target.flush();
+        } catch (IOException exception) {
+            throw new WrappedException(exception, "Could not write the rendered trace.");
+        }
+
+        progressMonitor.done();
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    // Lifelines
+
+    /**
+     * Lets lifelines start at their create messages and end at their delete messages.
+     * 
+     * @param context
+     *            the layout context that contains all relevant information for the current layout run.
+     */
+    private void adjustLifelineExtents(final LayoutContext context) {
+        for (SLifeline lifeline : context.sgraph.getLifelines()) {
+            for (SMessage message : lifeline.getIncomingMessages()) {
+                MessageType messageType = message.getProperty(SequenceDiagramOptions.MESSAGE_TYPE);
+
+                if (messageType == MessageType.CREATE) {
+                    double delta = message.getTargetYPos() - context.lifelineHeader / 2
+                            - lifeline.getPosition().y;
+
+                    lifeline.getPosition().y += delta;
+                    lifeline.getSize().y -= delta;
+                } else if (messageType == MessageType.DELETE) {
+                    if (lifeline.getPosition().y + lifeline.getSize().y > message.getTargetYPos()) {
+                        lifeline.getSize().y = message.getTargetYPos() - lifeline.getPosition().y;
+                    }
+                }
+            }
+        }
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    // Messages
+
+    /**
+     * Computes the path of the given message. Messages without a source lifeline start halfway
+     * between their target and the previous lifeline, messages without a target lifeline end halfway
+     * between their source and the next lifeline. Self loops get two bend points.
+     * 
+     * @param context
+     *            the layout context that contains all relevant information for the current layout run.
+     * @param message
+     *            the message.
+     * @return the message's path as alternating x and y coordinates.
+     */
+    private double[] messagePoints(final LayoutContext context, final SMessage message) {
+        SLifeline source = message.getSource();
+        SLifeline target = message.getTarget();
+
+        double sourceX;
+        if (source.isDummy()) {
+            sourceX = target.getPosition().x - context.lifelineSpacing / 2;
+        } else {
+            sourceX = source.getPosition().x + source.getSize().x / 2;
+        }
+
+        double targetX;
+        if (target.isDummy()) {
+            targetX = source.getPosition().x + source.getSize().x + context.lifelineSpacing / 2;
+        } else if (message.getProperty(SequenceDiagramOptions.MESSAGE_TYPE) == MessageType.CREATE) {
+            // Create messages lead to the header and not the line
+            targetX = target.getPosition().x;
+        } else {
+            targetX = target.getPosition().x + target.getSize().x / 2;
+        }
+
+        if (source == target) {
+            double loopX = sourceX + context.messageSpacing / 2;
+            return new double[] {
+                sourceX, message.getSourceYPos(),
+                loopX, message.getSourceYPos(),
+                loopX, message.getTargetYPos(),
+                targetX, message.getTargetYPos()
+            };
+        } else {
+            return new double[] {
+                sourceX, message.getSourceYPos(),
+                targetX, message.getTargetYPos()
+            };
+        }
+    }
+
+    /**
+     * Computes the box of the given message's label. Labels are placed above messages pointing
+     * rightwards and below messages pointing leftwards, next to the message's source. Labels of self
+     * loops are placed to their right.
+     * 
+     * @param context
+     *            the layout context that contains all relevant information for the current layout run.
+     * @param message
+     *            the message.
+     * @param points
+     *            the message's path as computed by {@link #messagePoints(LayoutContext, SMessage)}.
+     * @return the label's box as x, y, width and height.
+     */
+    private double[] labelBox(final LayoutContext context, final SMessage message,
+            final double[] points) {
+
+        double width = message.getLabelWidth();
+        double height = SequenceLayoutConstants.TRACE_LABEL_HEIGHT;
+        double sourceX = points[0];
+        double targetX = points[points.length - 2];
+
+        if (message.getSource() == message.getTarget()) {
+            return new double[] {
+                points[2] + SequenceLayoutConstants.LABELMARGIN / 2,
+                message.getSourceYPos() + SequenceLayoutConstants.LABELSPACING,
+                width,
+                height
+            };
+        } else if (sourceX < targetX) {
+            return new double[] {
+                sourceX + SequenceLayoutConstants.LABELSPACING,
+                message.getSourceYPos() - height - 2,
+                width,
+                height
+            };
+        } else {
+            return new double[] {
+                sourceX - width - SequenceLayoutConstants.LABELSPACING,
+                message.getSourceYPos() + 2,
+                width,
+                height
+            };
+        }
+    }
+
+}
@@ -13,6 +13,8 @@
  */
 package de.cau.cs.kieler.papyrus.sequence.properties;
 
+import java.util.List;
+
 import org.eclipse.elk.alg.layered.graph.LNode;
 import org.eclipse.elk.graph.KEdge;
 import org.eclipse.elk.graph.properties.IProperty;
@@ -37,6 +39,20 @@ public final class InternalSequenceProperties {
     public static final IProperty<KEdge> COMMENT_CONNECTION = new Property<KEdge>(
             "de.cau.cs.kieler.papyrus.sequence.commentConnection");
 
+    /** The text of a message imported from a trace, which has no KEdge to carry labels. */
+    public static final IProperty<String> MESSAGE_LABEL = new Property<String>(
+            "de.cau.cs.kieler.papyrus.sequence.messageLabel");
+
+    /** The executions of its source lifeline that a message is connected to. */
+    public static final IProperty<List<SequenceExecution>> SOURCE_EXECUTIONS =
+            new Property<List<SequenceExecution>>(
+                    "de.cau.cs.kieler.papyrus.sequence.sourceExecutions");
+
+    /** The executions of its target lifeline that a message is connected to. */
+    public static final IProperty<List<SequenceExecution>> TARGET_EXECUTIONS =
+            new Property<List<SequenceExecution>>(
+                    "de.cau.cs.kieler.papyrus.sequence.targetExecutions");
+
 
     private InternalSequenceProperties() {
         // Hide the constructor
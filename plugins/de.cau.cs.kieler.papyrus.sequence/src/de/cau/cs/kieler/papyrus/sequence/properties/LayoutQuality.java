@@ -0,0 +1,46 @@
+/*
+ * KIELER - Kiel Integrated Environment for Layout Eclipse RichClient
+ *
+ * http://www.informatik.uni-kiel.de/rtsys/kieler/
+ * 
+ * Copyright 2016 by
+ * + Kiel University
+ *   + Department of Computer Science
+ *     + Real-Time and Embedded Systems Group
+ * 
+ * This code is provided under the terms of the Eclipse Public License (EPL).
+ * See the file epl-v10.html for the license text.
+ */
+package de.cau.cs.kieler.papyrus.sequence.properties;
+
+/**
+ * The quality levels layout results can be computed with.
+ * 
+ * @author cds
+ */
+public enum LayoutQuality {
+
+    /**
+     * Lays out all elements of the diagram.
+     */
+    NORMAL,
+    
+    /**
+     * Only places lifelines, messages, executions and areas. Comments, labels and area labels keep
+     * their old positions, and nested executions are not shifted next to each other.
+     */
+    DRAFT;
+    
+
+    /**
+     * Returns the enumeration value related to the given ordinal.
+     * 
+     * @param i
+     *            ordinal value
+     * @return the related enumeration value
+     */
+    public static LayoutQuality valueOf(final int i) {
+        return values()[i];
+    }
+    
+}
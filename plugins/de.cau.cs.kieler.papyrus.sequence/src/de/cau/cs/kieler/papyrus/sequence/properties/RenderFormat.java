@@ -0,0 +1,45 @@
+/*
+ * KIELER - Kiel Integrated Environment for Layout Eclipse RichClient
+ *
+ * http://www.informatik.uni-kiel.de/rtsys/kieler/
+ * 
+ * Copyright 2016 by
+ * + Kiel University
+ *   + Department of Computer Science
+ *     + Real-Time and Embedded Systems Group
+ * 
+ * This code is provided under the terms of the Eclipse Public License (EPL).
+ * See the file epl-v10.html for the license text.
+ */
+package de.cau.cs.kieler.papyrus.sequence.properties;
+
+/**
+ * The formats layout results can be rendered in instead of being applied to the graph.
+ * 
+ * @author cds
+ */
+public enum RenderFormat {
+
+    /**
+     * An SVG image of the diagram.
+     */
+    SVG,
+    
+    /**
+     * A compact JSON description of the diagram's geometry.
+     */
+    JSON;
+    
+
+    /**
+     * Returns the enumeration value related to the given ordinal.
+     * 
+     * @param i
+     *            ordinal value
+     * @return the related enumeration value
+     */
+    public static RenderFormat valueOf(final int i) {
+        return values()[i];
+    }
+    
+}
@@ -0,0 +1,47 @@
+/*
+ * KIELER - Kiel Integrated Environment for Layout Eclipse RichClient
+ *
+ * http://www.informatik.uni-kiel.de/rtsys/kieler/
+ * 
+ * Copyright 2016 by
+ * + Kiel University
+ *   + Department of Computer Science
+ *     + Real-Time and Embedded Systems Group
+ * 
+ * This code is provided under the terms of the Eclipse Public License (EPL).
+ * See the file epl-v10.html for the license text.
+ */
+package de.cau.cs.kieler.papyrus.sequence.properties;
+
+/**
+ * The formats interaction traces can be read from.
+ * 
+ * @author cds
+ */
+public enum TraceFormat {
+
+    /**
+     * One JSON object per line with the fields {@code timestamp}, {@code sender}, {@code receiver},
+     * {@code kind} and {@code label}.
+     */
+    JSON_LINES,
+    
+    /**
+     * One comma-separated record per line with the fields timestamp, sender, receiver, kind and label,
+     * in that order. An optional header line is skipped.
+     */
+    CSV;
+    
+
+    /**
+     * Returns the enumeration value related to the given ordinal.
+     * 
+     * @param i
+     *            ordinal value
+     * @return the related enumeration value
+     */
+    public static TraceFormat valueOf(final int i) {
+        return values()[i];
+    }
+    
+}